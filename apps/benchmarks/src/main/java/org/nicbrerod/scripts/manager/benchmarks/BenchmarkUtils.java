@@ -0,0 +1,47 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Utils shared by all benchmarks
+ */
+final class BenchmarkUtils {
+    /**
+     * System property with the command used to run the Python interpreter in script runner benchmarks
+     */
+    static final String PYTHON_PATH_PROPERTY = "benchmark.python-path";
+
+    /**
+     * System property with the command used to run virtualenv in script runner benchmarks
+     */
+    static final String VENV_PATH_PROPERTY = "benchmark.venv-path";
+
+    private BenchmarkUtils() {}
+
+    /**
+     * Hides info messages, because benchmarked code logs each message sent and each script run, and writing them
+     * would be measured instead of the code itself
+     */
+    static void quietLogging() {
+        Logger.getLogger("").setLevel(Level.WARNING);
+    }
+
+    /**
+     * Deletes a folder with all its content
+     * @param path Folder to delete
+     * @throws IOException Thrown if folder can't be walked
+     */
+    static void deleteRecursively(Path path) throws IOException {
+        if (Files.exists(path)) {
+            try (var files = Files.walk(path)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
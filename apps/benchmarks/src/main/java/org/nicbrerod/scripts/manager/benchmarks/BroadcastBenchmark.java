@@ -0,0 +1,83 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to deliver a broadcast message to all nodes of a cluster through {@link LocalCommInterface}, for
+ * clusters of different sizes. Nodes are created but they don't run the consensus, so only received messages are
+ * counted
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    /**
+     * Number of simulated nodes that receive the broadcast
+     */
+    @Param({ "1", "4", "16", "64" })
+    int nodes;
+
+    private final List<LocalCommInterface> commInterfaces = new ArrayList<>();
+
+    private LocalCommInterface sender;
+
+    private HeartBeatMessage message;
+
+    /**
+     * Number of messages received by all nodes
+     */
+    private long received;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkUtils.quietLogging();
+
+        for (int i = 0; i < nodes; i++) {
+            var commInterface = new LocalCommInterface();
+            commInterface.registerNode(new TestNode(commInterface));
+            commInterface.configureMessageProcessing(msg -> received++);
+            commInterfaces.add(commInterface);
+        }
+
+        sender = new LocalCommInterface();
+        message = new HeartBeatMessage(UUID.randomUUID(), true, 1, 0.5f, 0.5f);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (received == 0)
+            throw new IllegalStateException("No broadcast message has been received");
+
+        commInterfaces.forEach(LocalCommInterface::onStop);
+    }
+
+    @Benchmark
+    public long broadcast() {
+        sender.sendBroadcast(message);
+        return received;
+    }
+}
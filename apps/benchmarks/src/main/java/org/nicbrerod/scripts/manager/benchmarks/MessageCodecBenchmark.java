@@ -0,0 +1,103 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.BinaryMessageCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.JavaSerializationCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.MessageCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to encode and decode the messages sent most often between nodes, with each codec. The size of
+ * each encoded message is reported as a secondary result of the encode benchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    /**
+     * Codec to measure: 'binary' or 'java'
+     */
+    @Param({ "binary", "java" })
+    String codec;
+
+    /**
+     * Message to encode: 'heartbeat', a request with a string as content or a request with an script as content
+     */
+    @Param({ "heartbeat", "request-string", "request-script" })
+    String message;
+
+    private MessageCodec messageCodec;
+
+    private CommInterfaceMessage decoded;
+
+    private byte[] encoded;
+
+    /**
+     * Secondary result with the size of the encoded message
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        /**
+         * Bytes of the encoded message
+         */
+        public long encodedBytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        messageCodec = "java".equals(codec) ? new JavaSerializationCodec() : new BinaryMessageCodec();
+        var sender = UUID.randomUUID();
+
+        switch (message) {
+            case "heartbeat":
+                decoded = new HeartBeatMessage(sender, true, 42, 0.35f, 0.6f, 3, 12);
+                break;
+            case "request-string":
+                decoded = new RequestMessage<>(sender, "RUN", UUID.randomUUID().toString(), UUID.randomUUID());
+                break;
+            case "request-script":
+                decoded = new RequestMessage<>(sender, "REGISTER", new Script(UUID.randomUUID(), "import sys\nprint(sys.argv)\n",
+                    new String[] { "requests==2.31.0" }, 10, TimeUnit.MINUTES), UUID.randomUUID());
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown message '%s'", message));
+        }
+
+        encoded = messageCodec.encode(decoded);
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws IOException {
+        var bytes = messageCodec.encode(decoded);
+        size.encodedBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public CommInterfaceMessage decode() throws IOException {
+        return messageCodec.decode(encoded);
+    }
+}
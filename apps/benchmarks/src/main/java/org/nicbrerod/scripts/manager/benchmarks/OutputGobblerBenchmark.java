@@ -0,0 +1,78 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.ScriptOutputGobbler;
+import org.nicbrerod.scripts.manager.script.runner.output.LogSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+import org.nicbrerod.scripts.manager.script.runner.output.TailSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long {@link ScriptOutputGobbler} takes to drain {@link #OUTPUT_SIZE} bytes of output, written in
+ * lines of different sizes, to a sink that keeps the tail of the output and to a sink that logs each line
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputGobblerBenchmark {
+    /**
+     * Number of bytes drained in each operation
+     */
+    private static final int OUTPUT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Size, in bytes, of each line of output, including its line break
+     */
+    @Param({ "16", "128", "1024", "8192" })
+    int lineSize;
+
+    /**
+     * Sink that receives the output: 'tail' or 'log'
+     */
+    @Param({ "tail", "log" })
+    String sink;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.quietLogging();
+        output = new byte[OUTPUT_SIZE];
+        Arrays.fill(output, (byte) 'x');
+
+        for (int i = lineSize - 1; i < output.length; i += lineSize) {
+            output[i] = '\n';
+        }
+    }
+
+    private OutputSink createSink() {
+        return "log".equals(sink) ? new LogSink(log) : new TailSink(4096);
+    }
+
+    @Benchmark
+    public long drain() {
+        var gobbler = new ScriptOutputGobbler(new ByteArrayInputStream(output), OutputStreamType.STDOUT, createSink());
+        gobbler.run();
+        return gobbler.getBytesRead();
+    }
+}
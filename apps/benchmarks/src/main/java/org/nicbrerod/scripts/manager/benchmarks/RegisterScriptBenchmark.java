@@ -0,0 +1,66 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.py.PythonScriptRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many scripts without dependencies can be registered per second, with and without a pool of virtual
+ * environments created in background. It needs Python and virtualenv installed, their commands can be changed with
+ * 'benchmark.python-path' and 'benchmark.venv-path' system properties
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class RegisterScriptBenchmark {
+
+    /**
+     * Number of environments kept ready by the pool, zero to create each environment on registration
+     */
+    @Param({ "0", "8" })
+    int venvPoolSize;
+
+    private Path homeDir;
+
+    private PythonScriptRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkUtils.quietLogging();
+        homeDir = Files.createTempDirectory("register-script-benchmark");
+        runner = new PythonScriptRunner(System.getProperty(BenchmarkUtils.PYTHON_PATH_PROPERTY, "python3"),
+            System.getProperty(BenchmarkUtils.VENV_PATH_PROPERTY, "env"), homeDir.toString(), "", "", venvPoolSize, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        runner.close();
+        BenchmarkUtils.deleteRecursively(homeDir);
+    }
+
+    @Benchmark
+    public boolean registerScript() {
+        return runner.registerScript(new Script(UUID.randomUUID(), "print('registered')"));
+    }
+}
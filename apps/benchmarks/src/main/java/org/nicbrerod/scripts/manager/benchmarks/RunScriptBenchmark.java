@@ -0,0 +1,74 @@
+package org.nicbrerod.scripts.manager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.script.runner.exception.ScriptNotExistException;
+import org.nicbrerod.scripts.manager.script.runner.exception.ScriptTimeoutException;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.py.PythonScriptRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of running a trivial Python script, which is mostly the cost of starting the interpreter,
+ * with and without warm workers. It needs Python and virtualenv installed, their commands can be changed with
+ * 'benchmark.python-path' and 'benchmark.venv-path' system properties
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RunScriptBenchmark {
+
+    /**
+     * Executions after which a warm worker is replaced, zero to run each execution in a new process
+     */
+    @Param({ "0", "1000" })
+    int workerMaxRuns;
+
+    private Path homeDir;
+
+    private PythonScriptRunner runner;
+
+    private final UUID scriptId = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkUtils.quietLogging();
+        homeDir = Files.createTempDirectory("run-script-benchmark");
+        runner = new PythonScriptRunner(System.getProperty(BenchmarkUtils.PYTHON_PATH_PROPERTY, "python3"),
+            System.getProperty(BenchmarkUtils.VENV_PATH_PROPERTY, "env"), homeDir.toString(), "", "", 0, 0, workerMaxRuns,
+            TimeUnit.MINUTES.toMillis(10));
+
+        if (!runner.registerScript(new Script(scriptId, "pass")))
+            throw new IllegalStateException("Script can't be registered, check that Python and virtualenv are installed");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        runner.close();
+        BenchmarkUtils.deleteRecursively(homeDir);
+    }
+
+    @Benchmark
+    public boolean runScript() throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        return runner.runScript(scriptId, new Object[0]);
+    }
+}
@@ -1,16 +1,31 @@
 package org.nicbrerod.scripts.manager.node;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
-import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
-import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.distributed.utils.election.ElectionStateFile;
+import org.nicbrerod.scripts.manager.distributed.utils.membership.MembershipMode;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.ConsistentHashPlacement;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.LeastLoadedPlacement;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.PlacementStrategy;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.PowerOfTwoChoicesPlacement;
+import org.nicbrerod.scripts.manager.script.runner.cgroup.CgroupManager;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+import org.nicbrerod.scripts.manager.script.runner.history.ExecutionHistory;
+import org.nicbrerod.scripts.manager.script.runner.py.PythonScriptRunner;
+import org.nicbrerod.scripts.manager.script.runner.registry.DurableScriptRegistry;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.arc.log.LoggerName;
 import io.quarkus.runtime.Startup;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -45,15 +60,169 @@ public class ClusterNodeProducer {
     @ConfigProperty(name = "node.id")
     UUID id;
 
+    /**
+     * Strategy used by the leader to select the node that runs each script: 'least-loaded', 'power-of-two' or 
+     * 'consistent-hash'
+     */
+    @ConfigProperty(name = "node.placement-strategy")
+    String placementStrategy;
+
+    /**
+     * How the node discovers the rest of nodes: 'broadcast', where all nodes send heartbeats to all nodes, or 
+     * 'gossip', where each node probes one node per period and membership changes are piggybacked on probes
+     */
+    @ConfigProperty(name = "node.membership")
+    String membership;
+
+    /**
+     * Number of nodes asked to probe a node indirectly, in gossip membership
+     */
+    @ConfigProperty(name = "node.gossip.fan-out")
+    int gossipFanOut;
+
+    /**
+     * Suspicion level from which a node that doesn't send heartbeats is deregistered, in broadcast membership. 
+     * Each unit divides by ten the probability of deregistering a node that is alive
+     */
+    @ConfigProperty(name = "node.failure-detector.phi-threshold")
+    double phiThreshold;
+
+    /**
+     * Expected number of nodes of the cluster, it's required. Leader election and replication need a majority of 
+     * this size, so a partitioned cluster never has two leaders
+     */
+    @ConfigProperty(name = "node.cluster-size")
+    int clusterSize;
+
+    /**
+     * Number of operations of the replicated script registry after which the registry is captured in a snapshot 
+     * and the log is compacted. Nodes that join the cluster receive the snapshot and the operations after it
+     */
+    @ConfigProperty(name = "node.replication.snapshot-threshold")
+    int snapshotThreshold;
+
+    /**
+     * Time, in milliseconds, that run requests wait to be sent together, merging the ones of the same script. If 
+     * zero, requests are sent one by one
+     */
+    @ConfigProperty(name = "node.requests.coalescing-window")
+    long coalescingWindow;
+
+    /**
+     * Number of threads that process received requests, out of the thread that consumes messages, so slow requests 
+     * don't delay heartbeats. Requests of the same node are processed in order. If zero, requests are processed by 
+     * the consumer thread
+     */
+    @ConfigProperty(name = "node.requests.threads")
+    int requestThreads;
+
+    /**
+     * Maximum number of requests waiting for each request thread, requests received when it's reached are discarded
+     */
+    @ConfigProperty(name = "node.requests.queue-capacity")
+    int requestQueueCapacity;
+
+    /**
+     * Maximum number of events of the same type, like received heartbeats, recorded per second in the event log of 
+     * the node. If zero, all events are recorded
+     */
+    @ConfigProperty(name = "node.events.max-per-second")
+    int eventsPerSecond;
+
+    /**
+     * Maximum number of scripts running at the same time in this node
+     */
+    @ConfigProperty(name = "node.scripts.max-concurrency")
+    int maxConcurrency;
+
+    /**
+     * Time, in hours, that ended executions are kept in the execution history of the node
+     */
+    @ConfigProperty(name = "node.scripts.history-retention-hours")
+    long historyRetentionHours;
+
+    /**
+     * Command used to run the Python interpreter
+     */
+    @ConfigProperty(name = "node.scripts.python-path")
+    String pythonPath;
+
+    /**
+     * Command used to run virtualenv
+     */
+    @ConfigProperty(name = "node.scripts.venv-path")
+    String venvPath;
+
+    /**
+     * Folder where scripts' environments are created
+     */
+    @ConfigProperty(name = "node.scripts.home-dir")
+    String homeDir;
+
+    /**
+     * Control group delegated to the node, where each script execution runs in its own sub-group. If empty, 
+     * executions are not placed in control groups and resource limits of scripts are not applied
+     */
+    @ConfigProperty(name = "node.scripts.cgroup-root")
+    Optional<String> cgroupRoot;
+
+    /**
+     * Number of empty virtual environments kept ready to be claimed by new scripts. If zero, the pool is disabled
+     */
+    @ConfigProperty(name = "node.scripts.venv-pool.size")
+    int venvPoolSize;
+
+    /**
+     * Time, in milliseconds, between two consecutive environment creations to refill the pool
+     */
+    @ConfigProperty(name = "node.scripts.venv-pool.refill-rate")
+    long venvPoolRefillRate;
+
+    /**
+     * Number of executions after which a warm worker is replaced by a new one. If zero, each execution starts a 
+     * new Python process
+     */
+    @ConfigProperty(name = "node.scripts.workers.max-runs")
+    int workerMaxRuns;
+
+    /**
+     * Time, in milliseconds, that a warm worker can stay without executions before being stopped
+     */
+    @ConfigProperty(name = "node.scripts.workers.idle-timeout")
+    long workerIdleTimeout;
+
     /**
      * CommInterface instance used to send messages to the other nodes
      */
     @Inject
     CommInterface commInterface;
 
+    /**
+     * Registry where meters of the node and its script runner are published, exported in the Prometheus endpoint
+     */
+    @Inject
+    MeterRegistry registry;
+
     @LoggerName("node")
     Logger log;
     
+    /**
+     * Creates the placement strategy configured in {@link #placementStrategy}
+     * @return Placement strategy used by the node when it's the leader
+     */
+    private PlacementStrategy createPlacementStrategy() {
+        switch (placementStrategy) {
+            case "power-of-two":
+                return new PowerOfTwoChoicesPlacement();
+            case "consistent-hash":
+                return new ConsistentHashPlacement();
+            case "least-loaded":
+                return new LeastLoadedPlacement();
+            default:
+                throw new IllegalArgumentException(String.format("Unknown placement strategy '%s'", placementStrategy));
+        }
+    }
+
     /**
      * Method to generate a unique instance of node in this system
      * @return The generated ClusterNode instance, based on properties
@@ -61,17 +230,76 @@ public class ClusterNodeProducer {
     @Startup
     @Produces
     @Singleton
-    public ClusterNode<Script> createNode() {
-        var node = new ScriptManagerClusterNode(commInterface, id, heartbeatRate, millisStart, millisEnd);
-        node.configureCommInterface();
-        new Thread(() -> {
+    public ScriptManagerClusterNode createNode() {
+        PythonScriptRunner runner;
+
+        try {
+            runner = new PythonScriptRunner(pythonPath, venvPath, homeDir, "", "", venvPoolSize, venvPoolRefillRate, 
+                workerMaxRuns, workerIdleTimeout);
+        } catch (IOException e) {
+            log.error("Error preparing environment pool or warm workers, each script is run in a new process and environment", e);
+            runner = new PythonScriptRunner(pythonPath, venvPath, homeDir);
+        }
+
+        runner.bindMeters(registry);
+
+        if (cgroupRoot.isPresent()) {
             try {
-                node.consensus();
-            } catch (InterruptedException e) {
-                log.error("Error running consensus algorithm for node", e);
+                runner.setCgroupManager(new CgroupManager(cgroupRoot.get()));
+            } catch (IOException e) {
+                log.error("Error preparing control groups, resource limits of scripts are not applied", e);
             }
-        }).start();
+        }
+
+        try {
+            // Scripts registered before a restart are recovered with their environments
+            runner.restore(new DurableScriptRegistry(homeDir));
+        } catch (IOException e) {
+            log.error("Error opening durable script registry, scripts are only kept in memory", e);
+        }
+
+        ExecutionHistory history = null;
+
+        try {
+            history = new ExecutionHistory(homeDir, id, TimeUnit.HOURS.toMillis(historyRetentionHours));
+        } catch (IOException e) {
+            log.error("Error opening execution history, executions are not stored", e);
+        }
+
+        var executions = new ExecutionScheduler(runner, maxConcurrency, ExecutionScheduler.DEFAULT_MAX_QUEUED, history);
+        var node = new ScriptManagerClusterNode(commInterface, id, heartbeatRate, millisStart, millisEnd, runner, executions);
+        node.setPlacementStrategy(createPlacementStrategy());
+        node.setMembershipMode(MembershipMode.valueOf(membership.toUpperCase()));
+        node.setGossipFanOut(gossipFanOut);
+        node.setPhiThreshold(phiThreshold);
+        node.setClusterSize(clusterSize);
+        // Term and vote are stored with the scripts, so a restarted node doesn't vote twice in the same term
+        node.setElectionStateFile(Paths.get(homeDir, ElectionStateFile.FILE_NAME));
+        node.setSnapshotThreshold(snapshotThreshold);
+        node.setCoalescingWindow(coalescingWindow);
+        node.setRequestThreads(requestThreads);
+        node.setRequestQueueCapacity(requestQueueCapacity);
+        node.bindMeters(registry);
+        node.getEvents().setMaxPerSecond(eventsPerSecond);
+        runner.setEventListener(node.getEvents()::record);
+        node.configureCommInterface();
+
+        try {
+            node.consensus();
+        } catch (InterruptedException e) {
+            log.error("Error running consensus algorithm for node", e);
+            Thread.currentThread().interrupt();
+        }
+
         return node;
     }
 
+    /**
+     * Stops the node when the application stops, with its script runner and executions
+     * @param node Node created by {@link #createNode()}
+     */
+    public void stopNode(@Disposes ScriptManagerClusterNode node) {
+        node.stop();
+    }
+
 }
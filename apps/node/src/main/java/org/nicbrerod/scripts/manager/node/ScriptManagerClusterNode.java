@@ -1,21 +1,349 @@
 package org.nicbrerod.scripts.manager.node;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.jboss.logging.Logger;
 import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.JavaSerializationCodec;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
 import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
+import org.nicbrerod.scripts.manager.script.runner.ScriptRunner;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+import org.nicbrerod.scripts.manager.script.runner.history.ExecutionHistory;
 import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.periodic.PeriodicScheduler;
 
+/**
+ * Cluster node that runs scripts. Run requests are placed by the leader in a node of the cluster, and each node
+ * queues them in its own execution scheduler, reporting its running and queued executions in heartbeats.
+ *
+ * Scripts are registered through the replicated log, so all nodes know all scripts and prepare their environments
+ * in background, and any node can run any script without preparing it first. A node that joins the cluster receives
+ * the registry in a snapshot, instead of all registrations since the cluster was started.
+ *
+ * Periodic executions are scheduled in a single node, which runs them in its own execution scheduler. Schedules are
+ * only kept in memory and are removed from the node when their script is unregistered from the cluster
+ */
 public class ScriptManagerClusterNode extends ClusterNode<Script> {
+    /**
+     * Type of request used to run an script, registering it first if it's not registered in the node
+     */
+    public static final String REQUEST_RUN = "RUN";
 
-    public ScriptManagerClusterNode(CommInterface commInterface, UUID id, long heartbeatRate, long millisStart, long millisEnd) {
+    /**
+     * Type of request used to remove an script from the node
+     */
+    public static final String REQUEST_UNREGISTER = "UNREGISTER";
+
+    /**
+     * Type of log entry used to register a new script in all nodes
+     */
+    public static final String LOG_REGISTER = "REGISTER";
+
+    /**
+     * Type of log entry used to replace an script registered in all nodes
+     */
+    public static final String LOG_UPDATE = "UPDATE";
+
+    /**
+     * Type of log entry used to remove an script from all nodes
+     */
+    public static final String LOG_UNREGISTER = "UNREGISTER";
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Script runner used to prepare and run the scripts
+     */
+    private final ScriptRunner runner;
+
+    /**
+     * Scheduler used to run the scripts asynchronously, limiting the executions running at the same time
+     */
+    private final ExecutionScheduler executions;
+
+    /**
+     * Scheduler used to run the scripts periodically in this node
+     */
+    private final PeriodicScheduler periodic;
+
+    /**
+     * Scripts registered through the replicated log, by their id
+     */
+    private final Map<UUID, Script> registry = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the log entry that last changed each registered script, used to discard outdated preparations
+     */
+    private final Map<UUID, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Executor used to prepare the environments of registered scripts one by one, out of the thread that applies
+     * the replicated log
+     */
+    private final ExecutorService preparation;
+
+    public ScriptManagerClusterNode(CommInterface commInterface, UUID id, long heartbeatRate, long millisStart, long millisEnd, 
+        ScriptRunner runner, ExecutionScheduler executions) {
         super(commInterface, id, heartbeatRate, millisStart, millisEnd);
+        this.runner = runner;
+        this.executions = executions;
+        this.periodic = new PeriodicScheduler(executions);
+        this.preparation = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "script-preparation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtains an script registered in the cluster
+     * @param id ID related to script
+     * @return Registered script, or empty if the script is not registered or this node has not applied its 
+     * registration yet
+     */
+    public Optional<Script> getScript(UUID id) {
+        return Optional.ofNullable(registry.get(id));
+    }
+
+    /**
+     * Obtains all scripts registered in the cluster, as known by this node
+     * @return Registered scripts
+     */
+    public Collection<Script> getScripts() {
+        return List.copyOf(registry.values());
+    }
+
+    /**
+     * Obtains the history of the executions run by this node
+     * @return Execution history, or empty if executions are not stored
+     */
+    public Optional<ExecutionHistory> getExecutionHistory() {
+        return Optional.ofNullable(executions.getHistory());
+    }
+
+    /**
+     * Obtains the scheduler of the periodic executions of this node
+     * @return Periodic scheduler, whose executions are queued in the execution scheduler of the node
+     */
+    public PeriodicScheduler getPeriodicScheduler() {
+        return periodic;
+    }
+
+    @Override
+    protected void onLogEntry(LogEntry<Script> entry) {
+        if (entry.type() == null)
+            return;
+
+        var script = entry.content();
+
+        switch (entry.type()) {
+            case LOG_REGISTER:
+            case LOG_UPDATE:
+                registry.put(script.id(), script);
+                versions.put(script.id(), entry.index());
+                preparation.execute(() -> prepare(script, entry.index()));
+                break;
+            case LOG_UNREGISTER:
+                registry.remove(script.id());
+                versions.remove(script.id());
+                periodic.unscheduleScript(script.id());
+                preparation.execute(() -> {
+                    // Script may have been registered again before this task runs
+                    if (!versions.containsKey(script.id())) {
+                        runner.unregisterScript(script.id());
+                    }
+                });
+                break;
+            default:
+                log.warn(String.format("Unknown log entry type '%s'", entry.type()));
+                break;
+        }
+    }
+
+    /**
+     * Captures the registry and the version of each script
+     */
+    @Override
+    protected byte[] snapshotState() {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new HashMap<>(registry));
+            out.writeObject(new HashMap<>(versions));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the registry and prepares the environments of all scripts in background
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void restoreState(byte[] snapshot) {
+        Map<UUID, Script> restoredRegistry;
+        Map<UUID, Long> restoredVersions;
+
+        try (var in = JavaSerializationCodec.filteredInput(snapshot)) {
+            restoredRegistry = (Map<UUID, Script>) in.readObject();
+            restoredVersions = (Map<UUID, Long>) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Received registry snapshot can't be read", e);
+        }
+
+        log.info(String.format("Restoring registry snapshot with %d scripts", restoredRegistry.size()));
+        registry.keySet().retainAll(restoredRegistry.keySet());
+        versions.keySet().retainAll(restoredRegistry.keySet());
+        registry.putAll(restoredRegistry);
+        versions.putAll(restoredVersions);
+
+        restoredRegistry.forEach((id, script) -> {
+            var version = restoredVersions.get(id);
+
+            // Without its version the script can't be checked against later log entries, it's prepared when registered again
+            if (version == null) {
+                log.warn(String.format("Restored script %s has no version, its environment isn't prepared", id));
+                return;
+            }
+
+            preparation.execute(() -> prepare(script, version));
+        });
+    }
+
+    /**
+     * Prepares the environment of a registered script, unless a later log entry has changed it
+     * @param script Script to prepare
+     * @param version Index of the log entry that registered this version of the script
+     */
+    private void prepare(Script script, long version) {
+        if (!Long.valueOf(version).equals(versions.get(script.id())))
+            return;
+
+        // Scripts restored by the runner after a restart are received again from the log
+        if (runner.getRegisteredScript(script.id()).filter(registered -> sameScript(registered, script)).isPresent())
+            return;
+
+        runner.unregisterScript(script.id());
+
+        if (!runner.registerScript(script)) {
+            log.error(String.format("Environment of script %s can't be prepared", script.id()));
+        }
+    }
+
+    /**
+     * Compares two versions of an script, including the content of their dependencies and their resource limits
+     */
+    private static boolean sameScript(Script a, Script b) {
+        return a.id().equals(b.id()) && Objects.equals(a.script(), b.script()) && Arrays.equals(a.dependencies(), b.dependencies()) 
+            && a.timeout() == b.timeout() && a.timeunit() == b.timeunit() && Objects.equals(a.limits(), b.limits());
+    }
+
+    /**
+     * Stops the node, cancelling periodic executions, queued executions and preparations, and releases the script runner
+     */
+    @Override
+    public void stop() {
+        preparation.shutdownNow();
+        super.stop();
+        periodic.close();
+        executions.close();
+        runner.close();
+
+        getExecutionHistory().ifPresent(history -> {
+            try {
+                history.close();
+            } catch (IOException e) {
+                log.warn("Error closing execution history", e);
+            }
+        });
     }
 
     @Override
     protected void onRequest(RequestMessage<Script> request) {
-        // TODO: Call scriptsManager
+        // Scripts registered in the cluster are run with their registered version, and the parameters of the request
+        var script = registry.getOrDefault(request.getRequestContent().id(), request.getRequestContent());
+        Object[] parameters = request.getParameters();
+
+        switch (request.getRequestType()) {
+            case REQUEST_RUN:
+                if (runner.isRegistered(script.id())) {
+                    submit(script, parameters);
+                } else {
+                    // Preparing an script installs its dependencies, so it's done after the preparations already 
+                    // queued, out of the thread that processes requests
+                    preparation.execute(() -> {
+                        if (!runner.isRegistered(script.id()) && !runner.registerScript(script)) {
+                            log.error(String.format("Script %s can't be registered, execution discarded", script.id()));
+                            return;
+                        }
+
+                        submit(script, parameters);
+                    });
+                }
+                break;
+            case REQUEST_UNREGISTER:
+                runner.unregisterScript(script.id());
+                break;
+            default:
+                log.warn(String.format("Unknown request type '%s'", request.getRequestType()));
+                break;
+        }
+    }
+
+    /**
+     * Queues an execution of a prepared script. Runs of the same script and parameters requested while one is still 
+     * queued share its execution, if requests are coalesced
+     * @param script Script to run
+     * @param parameters Parameters passed to the execution
+     */
+    private void submit(Script script, Object[] parameters) {
+        executions.submit(script.id(), parameters, ExecutionPriority.NORMAL, getCoalescingWindow() > 0);
+    }
+
+    /**
+     * Executions of the same script are placed in the same node while the cluster doesn't change, if placement 
+     * strategy uses affinity, so scripts that are not registered in the cluster are only prepared in that node
+     */
+    @Override
+    protected String affinityKey(RequestMessage<Script> request) {
+        return request.getRequestContent().id().toString();
+    }
+
+    /**
+     * Run requests of the same script with the same parameters are equivalent, because registered scripts are always 
+     * run with their registered version. Parameters may contain nulls, so they are compared as a list that allows them
+     */
+    @Override
+    protected Object coalescingKey(RequestMessage<Script> request) {
+        return List.of(request.getRequestType(), request.getRequestContent().id(), Arrays.asList(request.getParameters()));
+    }
+
+    @Override
+    protected int getRunningRequests() {
+        return executions.getRunning();
+    }
+
+    @Override
+    protected int getQueuedRequests() {
+        return executions.getQueued();
     }
-    
 }
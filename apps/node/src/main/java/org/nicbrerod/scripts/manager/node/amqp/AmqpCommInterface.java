@@ -1,6 +1,11 @@
 package org.nicbrerod.scripts.manager.node.amqp;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -8,31 +13,84 @@ import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.BatchingPublisher;
 import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.BinaryMessageCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.MessageCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.TimedMessageCodec;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.MessageLane;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.reactive.messaging.rabbitmq.OutgoingRabbitMQMetadata;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 /**
  * Instance of CommInterface used to define a service used by a cluster's node to send messages to another ones and 
- * specify how to process received messages. This implementation is based on RabbitMQ and Smallrye Reactive Messaging.
+ * specify how to process received messages. This implementation is based on RabbitMQ and Smallrye Reactive Messaging. 
+ * Messages of each {@link MessageLane} are sent through their own channel and received in their own queue, consumed 
+ * by its own consumer, so control messages are never queued behind data messages. Messages sent to the same routing 
+ * key during a short window are published together, and published messages are confirmed by the broker 
+ * asynchronously, with a limited number of them waiting for confirmation
  * @see CommInterface
  * @see https://smallrye.io/smallrye-reactive-messaging/3.18.0/rabbitmq/rabbitmq/
  */
 @Singleton
 public class AmqpCommInterface implements CommInterface {
 
+    /**
+     * Content type of all messages sent through the exchange
+     */
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Names of the meters of publishers
+     */
+    private static final String PUBLISHER_PENDING = "cluster.publisher.pending", PUBLISHER_IN_FLIGHT = "cluster.publisher.inflight", 
+        PUBLISHER_MESSAGES = "cluster.publisher.messages";
+
+    /**
+     * Codec used to convert messages to bytes and back, measured in the registry of the application
+     */
+    private final MessageCodec codec;
+
+    /**
+     * Publisher of control messages
+     */
+    private final BatchingPublisher controlPublisher;
+
+    /**
+     * Publisher of data messages
+     */
+    private final BatchingPublisher dataPublisher;
+
+    /**
+     * Metadata of published messages by routing key, created once for each routing key
+     */
+    private final Map<String, Metadata> metadata = new ConcurrentHashMap<>();
+
     /**
      * Consumer object used to process received files
      */
     private Consumer<CommInterfaceMessage> consumer = null;
 
     /**
-     * Channel to send messages to a RabbitMQ's exchange
+     * Channel to send control messages to the RabbitMQ's exchange
+     */
+    @Channel("control-out")
+    Emitter<byte[]> controlEmitter;
+
+    /**
+     * Channel to send data messages to the RabbitMQ's exchange
      */
-    @Channel("consensus") 
-    Emitter<CommInterfaceMessage> commInterfaceMessageEmitter;
+    @Channel("data-out")
+    Emitter<byte[]> dataEmitter;
 
     /**
      * Node's ID
@@ -41,21 +99,130 @@ public class AmqpCommInterface implements CommInterface {
     UUID nodeId;
 
     /**
-     * Sends a message to all nodes. In this case, all consumers in all nodes have a "consensus" topic configured, so, routing messages with this key, all 
-     * nodes will receive the messages
+     * Creates the interface with a codec whose encoding and decoding times are published in a registry, and a 
+     * publisher for each lane
+     * @param registry Registry where codec and publishers meters are published
+     * @param batchWindow Time, in milliseconds, that a message waits for other messages of its routing key
+     * @param maxBatch Maximum number of messages published together
+     * @param maxInFlight Maximum number of published groups of messages waiting for confirmation, in each lane
+     * @param maxPending Maximum number of messages waiting to be published, in each lane
+     */
+    @Inject
+    public AmqpCommInterface(MeterRegistry registry, @ConfigProperty(name = "node.amqp.batch-window") long batchWindow, 
+        @ConfigProperty(name = "node.amqp.max-batch") int maxBatch, @ConfigProperty(name = "node.amqp.max-in-flight") int maxInFlight, 
+        @ConfigProperty(name = "node.amqp.max-pending") int maxPending) {
+        this.codec = new TimedMessageCodec(new BinaryMessageCodec(), registry);
+        this.controlPublisher = new BatchingPublisher((routingKey, batch) -> publish(controlEmitter, routingKey, batch), batchWindow, maxBatch, 
+            maxInFlight, maxPending);
+        this.dataPublisher = new BatchingPublisher((routingKey, batch) -> publish(dataEmitter, routingKey, batch), batchWindow, maxBatch, 
+            maxInFlight, maxPending);
+        bindMeters(registry, MessageLane.CONTROL, controlPublisher);
+        bindMeters(registry, MessageLane.DATA, dataPublisher);
+    }
+
+    /**
+     * Publishes the meters of the publisher of a lane in a registry
+     * @param registry Registry where meters are published
+     * @param lane Lane of the publisher
+     * @param publisher Publisher to measure
+     */
+    private static void bindMeters(MeterRegistry registry, MessageLane lane, BatchingPublisher publisher) {
+        var laneTag = routingKey(lane);
+        Gauge.builder(PUBLISHER_PENDING, publisher, BatchingPublisher::getPending).tag("lane", laneTag)
+            .description("Messages waiting to be published").register(registry);
+        Gauge.builder(PUBLISHER_IN_FLIGHT, publisher, BatchingPublisher::getInFlight).tag("lane", laneTag)
+            .description("Groups of messages waiting for confirmation").register(registry);
+        FunctionCounter.builder(PUBLISHER_MESSAGES, publisher, BatchingPublisher::getConfirmed).tags("lane", laneTag, "outcome", "confirmed")
+            .description("Messages handled by the publisher").register(registry);
+        FunctionCounter.builder(PUBLISHER_MESSAGES, publisher, BatchingPublisher::getFailed).tags("lane", laneTag, "outcome", "failed")
+            .description("Messages handled by the publisher").register(registry);
+        FunctionCounter.builder(PUBLISHER_MESSAGES, publisher, BatchingPublisher::getRejected).tags("lane", laneTag, "outcome", "rejected")
+            .description("Messages handled by the publisher").register(registry);
+    }
+
+    /**
+     * Sends a message to all nodes. In this case, all queues of a lane in all nodes are bound with the name of the lane, so, routing messages with 
+     * this key, all nodes will receive the messages
      */
     @Override
     public void sendBroadcast(CommInterfaceMessage message) {
-        commInterfaceMessageEmitter.send(Message.of(message, Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey("consensus").build())));
+        var lane = MessageLane.of(message.getType());
+        send(message, lane, routingKey(lane));
     }
 
     /**
-     * Sends a message to only one node, All consumers in all nodes have another topic configured, with the same name of their ID, so, to send a message only 
-     * to an specific node, using its ID as routing key, only these node will receive the message
+     * Sends a message to only one node, All queues of a lane in all nodes are also bound with the ID of their node followed by the name of the lane, 
+     * so, to send a message only to an specific node, using its ID as routing key, only these node will receive the message
      */
     @Override
     public void sendMessage(CommInterfaceMessage message, UUID recipient) {
-        commInterfaceMessageEmitter.send(Message.of(message, Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey(recipient.toString()).build())));
+        var lane = MessageLane.of(message.getType());
+        send(message, lane, String.format("%s.%s", recipient, routingKey(lane)));
+    }
+
+    /**
+     * Obtains the routing key used to broadcast messages of a lane
+     * @param lane Lane of messages
+     * @return Name of the lane, in lower case
+     */
+    private static String routingKey(MessageLane lane) {
+        return lane == MessageLane.CONTROL ? "control" : "data";
+    }
+
+    /**
+     * Encodes a message and adds it to the publisher of its lane
+     * @param message Message to send
+     * @param lane Lane of the message
+     * @param routingKey Routing key used to select the nodes that receive the message
+     */
+    private void send(CommInterfaceMessage message, MessageLane lane, String routingKey) {
+        byte[] data;
+
+        try {
+            data = codec.encode(message);
+        } catch (IOException e) {
+            log.error(String.format("Error encoding message '%s'", message.getId()), e);
+            return;
+        }
+
+        var publisher = lane == MessageLane.CONTROL ? controlPublisher : dataPublisher;
+
+        if (!publisher.publish(routingKey, data)) {
+            log.warn(String.format("Message '%s' discarded, too many messages waiting to be published", message.getId()));
+        }
+    }
+
+    /**
+     * Publishes a group of messages to the exchange, with the metadata of its routing key
+     * @param emitter Channel of the lane of the messages
+     * @param routingKey Routing key used to select the nodes that receive the messages
+     * @param batch Messages packed by {@link BatchingPublisher#pack(java.util.List)}
+     * @return Stage completed when the broker confirms the messages, or exceptionally if it rejects them
+     */
+    private CompletionStage<Void> publish(Emitter<byte[]> emitter, String routingKey, byte[] batch) {
+        var confirmation = new CompletableFuture<Void>();
+        var routingMetadata = metadata.computeIfAbsent(routingKey, 
+            key -> Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey(key).withContentType(CONTENT_TYPE).build()));
+
+        emitter.send(Message.of(batch, routingMetadata, () -> {
+            confirmation.complete(null);
+            return CompletableFuture.completedFuture(null);
+        }, error -> {
+            confirmation.completeExceptionally(error);
+            return CompletableFuture.completedFuture(null);
+        }));
+
+        return confirmation;
+    }
+
+    /**
+     * The interface is saturated while data messages can't be published until the broker confirms the previous ones, 
+     * or while too many data messages are waiting to be published
+     * @see BatchingPublisher#isSaturated()
+     */
+    @Override
+    public boolean isSaturated() {
+        return dataPublisher.isSaturated();
     }
 
     /**
@@ -67,18 +234,41 @@ public class AmqpCommInterface implements CommInterface {
     }
 
     /**
-     * Makes anything before CommInterface stop. In this case, RabbitMQ is managed by SmallRye and Quarkus, so, it's not needed an implementation
+     * Makes anything before CommInterface stop. RabbitMQ connection is managed by SmallRye and Quarkus, so it only 
+     * closes the publishers of both lanes, discarding messages not published yet
      */
     @Override
     public void onStop() {
-        // do nothing
+        controlPublisher.close();
+        dataPublisher.close();
     }
 
     /**
-     * Receives a message and process it using configured consumer
-     * @param message Message received
+     * Receives a group of encoded messages and process each one using configured consumer
+     * @param data Messages received, packed by {@link BatchingPublisher#pack(java.util.List)}
      */
-    public void receive(CommInterfaceMessage message) {
+    public void receive(byte[] data) {
+        try {
+            BatchingPublisher.unpack(data, this::dispatch);
+        } catch (IOException e) {
+            log.error("Error unpacking received messages", e);
+        }
+    }
+
+    /**
+     * Decodes a message unpacked from a received group and process it using configured consumer
+     * @param data Message encoded with {@link #codec}
+     */
+    private void dispatch(byte[] data) {
+        CommInterfaceMessage message;
+
+        try {
+            message = codec.decode(data);
+        } catch (IOException e) {
+            log.error("Error decoding received message", e);
+            return;
+        }
+
         if (consumer != null && !message.getSender().equals(nodeId))
             consumer.accept(message);
     }
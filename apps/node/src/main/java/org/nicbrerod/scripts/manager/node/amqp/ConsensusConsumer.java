@@ -4,14 +4,17 @@ import java.util.concurrent.CompletionStage;
 
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Message;
-import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
 
-import io.smallrye.reactive.messaging.annotations.Merge;
+import io.smallrye.reactive.messaging.annotations.Blocking;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 /**
- * Consumer used to process all incoming messages received from another nodes
+ * Consumer used to process all incoming messages received from another nodes. Each lane has its own queue and 
+ * consumer: control messages are processed as soon as they are delivered, while data messages are processed in a 
+ * separate pool of worker threads, so a burst of data messages never delays control messages. Data messages are 
+ * processed concurrently: requests keep the order of each sender in the request lanes of the node, and log 
+ * replication checks the previous entry of each message, so it doesn't depend on the order of delivery
  */
 @ApplicationScoped
 public class ConsensusConsumer {
@@ -23,13 +26,24 @@ public class ConsensusConsumer {
     AmqpCommInterface commInterface;
 
     /**
-     * Consumer's method used to process received messages
+     * Consumer's method used to process received control messages, like heartbeats or election messages
      * @param message Message received
      * @return A completion stage, sending the ACK to RabbitMQ server
      */
-    @Incoming("consensus")
-    @Merge
-    public CompletionStage<Void> consume(Message<CommInterfaceMessage> message) {
+    @Incoming("control")
+    public CompletionStage<Void> consumeControl(Message<byte[]> message) {
+        commInterface.receive(message.getPayload());
+        return message.ack();
+    }
+
+    /**
+     * Consumer's method used to process received data messages, like requests or replication messages
+     * @param message Message received
+     * @return A completion stage, sending the ACK to RabbitMQ server
+     */
+    @Incoming("data")
+    @Blocking(value = "data-lane", ordered = false)
+    public CompletionStage<Void> consumeData(Message<byte[]> message) {
         commInterface.receive(message.getPayload());
         return message.ack();
     }
@@ -0,0 +1,23 @@
+package org.nicbrerod.scripts.manager.node.model;
+
+/**
+ * Event recorded by a node, with its message already built
+ */
+public record EventInfo(
+    /**
+     * Time, in milliseconds since epoch, when event was recorded
+     */
+    long timestamp,
+    /**
+     * Type of the event
+     */
+    String type,
+    /**
+     * Level of the event
+     */
+    String level,
+    /**
+     * Message of the event
+     */
+    String message
+) {}
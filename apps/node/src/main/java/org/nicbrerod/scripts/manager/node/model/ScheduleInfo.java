@@ -0,0 +1,45 @@
+package org.nicbrerod.scripts.manager.node.model;
+
+import java.util.UUID;
+
+/**
+ * Periodic execution of an script in a node
+ */
+public record ScheduleInfo(
+    /**
+     * Id related to schedule
+     */
+    UUID id,
+    /**
+     * Id related to scheduled script
+     */
+    UUID scriptId,
+    /**
+     * Rule used to calculate fire times
+     */
+    String trigger,
+    /**
+     * What to do when a fire time is missed
+     */
+    String misfirePolicy,
+    /**
+     * True if a fire can start an execution while the previous one is still running
+     */
+    boolean allowOverlap,
+    /**
+     * Next fire time, in milliseconds since epoch
+     */
+    long nextFireTime,
+    /**
+     * Number of executions started by the schedule
+     */
+    long fired,
+    /**
+     * Number of fires skipped because the previous execution was still running
+     */
+    long skipped,
+    /**
+     * Number of fires that happened later than expected
+     */
+    long misfired
+) {}
@@ -1,29 +1,79 @@
 package org.nicbrerod.scripts.manager.node.ws;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
+import org.nicbrerod.scripts.manager.node.ScriptManagerClusterNode;
 import org.nicbrerod.scripts.manager.node.model.BaseNodeInfo;
+import org.nicbrerod.scripts.manager.node.model.EventInfo;
+import org.nicbrerod.scripts.manager.node.model.ScheduleInfo;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
 import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.periodic.CronTrigger;
+import org.nicbrerod.scripts.manager.script.runner.periodic.FixedDelayTrigger;
+import org.nicbrerod.scripts.manager.script.runner.periodic.FixedRateTrigger;
+import org.nicbrerod.scripts.manager.script.runner.periodic.MisfirePolicy;
+import org.nicbrerod.scripts.manager.script.runner.periodic.PeriodicSchedule;
+import org.nicbrerod.scripts.manager.script.runner.periodic.Trigger;
 
 import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 
 /**
  * Service used to retrieve information about node and their neighbours
  */
 @Path("/node")
 public class NodeApi {
+    /**
+     * Maximum number of executions returned in a page
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
     
     /**
      * Node created in the system
      */
     @Inject
-    ClusterNode<Script> node;
+    ScriptManagerClusterNode node;
+
+    /**
+     * Proposes a change of the scripts registered in the cluster
+     * @param type Type of the log entry
+     * @param script Script to change
+     * @return Accepted response if change has been sent to the leader, or service unavailable if there is no leader
+     */
+    private Response propose(String type, Script script) {
+        if (!node.propose(type, script))
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+        return Response.accepted().build();
+    }
+
+    /**
+     * Builds the information returned for a schedule
+     * @param schedule Periodic schedule of the node
+     * @return Information of the schedule
+     */
+    private static ScheduleInfo toScheduleInfo(PeriodicSchedule schedule) {
+        return new ScheduleInfo(schedule.getId(), schedule.getScriptId(), schedule.getTrigger().toString(), 
+            schedule.getMisfirePolicy().name(), schedule.isAllowOverlap(), schedule.getNextFireTime(), schedule.getFired(), 
+            schedule.getSkipped(), schedule.getMisfired());
+    }
 
     /**
      * Used to get basic information about server's node
@@ -45,4 +95,207 @@ public class NodeApi {
     public Set<BaseNodeInfo> getRegisteredNodes() {
         return node.getClusterNodesInfo().values().stream().map(info -> new BaseNodeInfo(info.getSender(), info.getTerm(), info.isLeader())).collect(Collectors.toSet());
     }
+
+    /**
+     * Used to run an script in the cluster. Request is sent to the leader, which selects the node that runs it
+     * @param script Script to run
+     * @param parameters Parameters passed to the execution
+     * @return Accepted response, script runs asynchronously, or service unavailable if the node can't send more 
+     * messages until the broker confirms the previous ones
+     */
+    @POST
+    @Path("/run")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response runScript(Script script, @QueryParam("parameter") List<String> parameters) {
+        if (!node.submitRequest(ScriptManagerClusterNode.REQUEST_RUN, script, parameters.toArray(String[]::new)))
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+        return Response.accepted().build();
+    }
+
+    /**
+     * Used to get the scripts registered in the cluster, as known by this node
+     * @return Registered scripts
+     */
+    @GET
+    @Path("/scripts")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Collection<Script> getScripts() {
+        return node.getScripts();
+    }
+
+    /**
+     * Used to register an script in all nodes of the cluster, which prepare its environment in background
+     * @param script Script to register
+     * @return Accepted response if registration has been sent to the leader, or service unavailable if there is 
+     * no leader
+     */
+    @POST
+    @Path("/scripts")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response registerScript(Script script) {
+        return propose(ScriptManagerClusterNode.LOG_REGISTER, script);
+    }
+
+    /**
+     * Used to replace an script registered in all nodes of the cluster
+     * @param script New version of the script
+     * @return Accepted response if update has been sent to the leader, or service unavailable if there is no leader
+     */
+    @PUT
+    @Path("/scripts")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response updateScript(Script script) {
+        return propose(ScriptManagerClusterNode.LOG_UPDATE, script);
+    }
+
+    /**
+     * Used to remove an script from all nodes of the cluster
+     * @param id ID related to script
+     * @return Accepted response if removal has been sent to the leader, or service unavailable if there is no leader
+     */
+    @DELETE
+    @Path("/scripts/{id}")
+    public Response unregisterScript(@PathParam("id") UUID id) {
+        return propose(ScriptManagerClusterNode.LOG_UNREGISTER, new Script(id, null));
+    }
+
+    /**
+     * Used to run an script registered in the cluster. Request is sent to the leader, which selects the node that 
+     * runs it
+     * @param id ID related to script
+     * @param parameters Parameters passed to the execution
+     * @return Accepted response, script runs asynchronously, not found if the script is not registered, or service 
+     * unavailable if the node can't send more messages until the broker confirms the previous ones
+     */
+    @POST
+    @Path("/scripts/{id}/run")
+    public Response runRegisteredScript(@PathParam("id") UUID id, @QueryParam("parameter") List<String> parameters) {
+        var script = node.getScript(id);
+
+        if (script.isEmpty())
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        if (!node.submitRequest(ScriptManagerClusterNode.REQUEST_RUN, script.get(), parameters.toArray(String[]::new)))
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+        return Response.accepted().build();
+    }
+
+    /**
+     * Used to run an script registered in the cluster periodically in this node. Schedule is not replicated, so it's 
+     * lost if the node stops, and it's removed when the script is unregistered. Only one of cron, rate or delay 
+     * must be given
+     * @param id ID related to script
+     * @param cron Cron expression, with 5 or 6 fields, whose fire times start the executions
+     * @param rate Time, in milliseconds, between the starts of two executions
+     * @param delay Time, in milliseconds, between the end of an execution and the start of the next one
+     * @param misfirePolicy What to do when a fire time is missed, FIRE_NOW or SKIP
+     * @param allowOverlap If false, fires that happen while a previous execution is running are skipped
+     * @param parameters Parameters passed to each execution
+     * @return Created response with the schedule, not found if the script is not registered, or bad request if the 
+     * trigger is not valid or never fires
+     */
+    @POST
+    @Path("/scripts/{id}/schedules")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response scheduleScript(@PathParam("id") UUID id, @QueryParam("cron") String cron, @QueryParam("rate") Long rate, 
+        @QueryParam("delay") Long delay, @QueryParam("misfirePolicy") @DefaultValue("FIRE_NOW") MisfirePolicy misfirePolicy,
+        @QueryParam("allowOverlap") @DefaultValue("false") boolean allowOverlap, @QueryParam("parameter") List<String> parameters) {
+        if (node.getScript(id).isEmpty())
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        if ((cron != null ? 1 : 0) + (rate != null ? 1 : 0) + (delay != null ? 1 : 0) != 1)
+            return Response.status(Response.Status.BAD_REQUEST).entity("Only one of cron, rate or delay must be given").build();
+
+        Trigger trigger;
+
+        try {
+            var now = System.currentTimeMillis();
+            trigger = cron != null ? new CronTrigger(cron) : rate != null ? new FixedRateTrigger(now, rate) : new FixedDelayTrigger(now, delay);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+
+        var schedule = node.getPeriodicScheduler().schedule(id, parameters.toArray(), trigger, misfirePolicy, allowOverlap, 
+            ExecutionPriority.NORMAL);
+
+        if (schedule.isEmpty())
+            return Response.status(Response.Status.BAD_REQUEST).entity("Trigger never fires").build();
+
+        return Response.status(Response.Status.CREATED).entity(toScheduleInfo(schedule.get())).build();
+    }
+
+    /**
+     * Used to get the periodic executions scheduled in this node
+     * @return Active schedules
+     */
+    @GET
+    @Path("/schedules")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<ScheduleInfo> getSchedules() {
+        return node.getPeriodicScheduler().getSchedules().stream().map(NodeApi::toScheduleInfo).collect(Collectors.toList());
+    }
+
+    /**
+     * Used to remove a periodic execution scheduled in this node. Running executions are not cancelled
+     * @param id ID related to schedule
+     * @return No content response, or not found if the schedule doesn't exist in this node
+     */
+    @DELETE
+    @Path("/schedules/{id}")
+    public Response unscheduleScript(@PathParam("id") UUID id) {
+        if (!node.getPeriodicScheduler().unschedule(id))
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        return Response.noContent().build();
+    }
+
+    /**
+     * Used to read the executions run by this node, in the order they ended, page by page. Only a page is read from
+     * disk on each call, so all history can be traversed without loading it in memory
+     * @param cursor Cursor returned in the previous page, or empty to start from the oldest execution
+     * @param limit Maximum number of executions of the page, up to {@link #MAX_PAGE_SIZE}
+     * @param scriptId ID related to script whose executions are read, or empty to read all executions
+     * @param minDurationMillis Minimum duration, in milliseconds, of read executions
+     * @return Page with the executions and the cursor of the next page, not found if node doesn't store its
+     * executions, or bad request if cursor is malformed
+     */
+    @GET
+    @Path("/executions")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getExecutions(@QueryParam("cursor") String cursor, @QueryParam("limit") @DefaultValue("100") int limit,
+        @QueryParam("scriptId") UUID scriptId, @QueryParam("minDurationMillis") @DefaultValue("0") long minDurationMillis) {
+        var history = node.getExecutionHistory();
+
+        if (history.isEmpty())
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        var minDurationNanos = TimeUnit.MILLISECONDS.toNanos(minDurationMillis);
+
+        try {
+            var page = history.get().read(cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)), 
+                record -> (scriptId == null || scriptId.equals(record.scriptId())) && record.durationNanos() >= minDurationNanos);
+            return Response.ok(page).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (IOException e) {
+            return Response.serverError().entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Used to read the last events recorded by this node, like received messages, dispatched requests or run 
+     * scripts. Events are sampled by type, so not all events are recorded under load
+     * @param limit Maximum number of events returned
+     * @return Last recorded events, from oldest to newest
+     */
+    @GET
+    @Path("/events")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<EventInfo> getEvents(@QueryParam("limit") @DefaultValue("100") int limit) {
+        return node.getEvents().recent(limit).stream()
+            .map(event -> new EventInfo(event.timestamp(), event.type(), event.level().name(), event.message()))
+            .collect(Collectors.toList());
+    }
 }
@@ -6,7 +6,10 @@ import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Metadata;
 import org.junit.jupiter.api.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.BatchingPublisher;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.codec.BinaryMessageCodec;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
 import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
 import org.nicbrerod.scripts.manager.node.testresources.NodeTestResources;
@@ -21,6 +24,8 @@ import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -28,27 +33,39 @@ import java.util.concurrent.TimeUnit;
 @QuarkusTestResource(NodeTestResources.class)
 public class NodeTests {
     
-    @Channel("consensus") 
-    Emitter<CommInterfaceMessage> commInterfaceMessageEmitter;
+    @Channel("control-out") 
+    Emitter<byte[]> commInterfaceMessageEmitter;
 
     @Inject
     ClusterNode<Script> node;
 
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    /**
+     * Sends a message to all nodes through the control lane, encoded and packed as the nodes do. Heartbeats and election 
+     * messages, the only ones sent by these tests, belong to that lane
+     * @param message Message to send
+     * @throws IOException Thrown if message can't be encoded
+     */
+    private void sendBroadcast(CommInterfaceMessage message) throws IOException {
+        commInterfaceMessageEmitter.send(Message.of(BatchingPublisher.pack(List.of(codec.encode(message))), 
+            Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey("control").build())));
+    }
+
     /**
      * Test used to simulate some situations, like receive new messages and register new nodes, a previously registered node that 
      * falls, ot another node that is the new leader
      */
     @Test
-    public void checkMultipleNodesTest() {
+    public void checkMultipleNodesTest() throws IOException {
         var neighbourId = UUID.randomUUID();
         var neighbourId2 = UUID.randomUUID();
 
-        // Wait, at least, 10 seconds to ensure node is active
-        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> node.isActive());
+        // Wait, at least, 10 seconds to ensure node is active and, as it's alone, it has elected itself as leader
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> node.isActive() && node.imLeader());
 
         // Send a message to simulate a new node in cluster
-        commInterfaceMessageEmitter.send(Message.of(new HeartBeatMessage(neighbourId, false, node.getTerm() + 1000, 0, 0), 
-            Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey("consensus").build())));
+        sendBroadcast(new HeartBeatMessage(neighbourId, false, node.getTerm() + 1000, 0, 0));
 
         // Gets current node info and checks if id is the same as configured for current node
         given()
@@ -68,8 +85,8 @@ public class NodeTests {
                     .body("get(0).id", equalTo(neighbourId.toString()))
                     .body("get(0).isLeader", equalTo(false));
 
-        // Wait to ensure current node detects that simulated node is fallen
-        Awaitility.await().pollDelay(3, TimeUnit.SECONDS).until(() -> true);
+        // Wait to ensure current node detects that simulated node is fallen and is leader again
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> node.getClusterNodesInfo().isEmpty() && node.imLeader());
 
         // Check if simulated node has been unregistered
         given()
@@ -79,12 +96,11 @@ public class NodeTests {
                     .body("size()", is(0));
 
         // Send information about same simulated node to register it again
-        commInterfaceMessageEmitter.send(Message.of(new HeartBeatMessage(neighbourId, false, -1, 0, 0), 
-            Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey("consensus").build())));
+        sendBroadcast(new HeartBeatMessage(neighbourId, false, -1, 0, 0));
 
-        // Send information about new node with a term value less than current node to force it become to follower
-        commInterfaceMessageEmitter.send(Message.of(new HeartBeatMessage(neighbourId2, false, node.getTerm() - 1000, 0, 0), 
-            Metadata.of(new OutgoingRabbitMQMetadata.Builder().withRoutingKey("consensus").build())));
+        // Send information about new node and a heartbeat of a leader in a newer term to force current node become follower
+        sendBroadcast(new HeartBeatMessage(neighbourId2, true, node.getTerm() + 1, 0, 0));
+        sendBroadcast(new ElectionMessage(neighbourId2, ElectionMessage.Kind.LEADER_HEARTBEAT, node.getTerm() + 1, 1, false));
 
         // Wait to ensure current node receives messages
         Awaitility.await().pollDelay(500, TimeUnit.MILLISECONDS).until(() -> true);
@@ -104,7 +120,7 @@ public class NodeTests {
                     .statusCode(200)
                     .body("size()", is(2))
                     .body(String.format("find { it.id == '%s' }.term", neighbourId), equalTo(-1))
-                    .body(String.format("find { it.id == '%s' }.term", neighbourId2), equalTo((int) node.getTerm() - 1000));
+                    .body(String.format("find { it.id == '%s' }.term", neighbourId2), equalTo((int) node.getTerm()));
                     
     }
 
@@ -0,0 +1,468 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Publisher that groups encoded messages sent to the same destination during a short window, and sends each group as
+ * a single message, packed with {@link #pack(List)}. The number of groups sent and not confirmed yet by the broker is
+ * limited: when the limit is reached, messages wait in the publisher until a confirmation arrives, and when too many
+ * messages are waiting, new ones are rejected, so callers know that they must slow down. Groups are sent out of the 
+ * lock of the publisher, by one thread at a time and in the order they were taken, because confirmations may arrive 
+ * in threads that must not block, like event loops
+ */
+public class BatchingPublisher implements AutoCloseable {
+    /**
+     * Default time, in milliseconds, that a message waits for other messages of its destination
+     */
+    public static final long DEFAULT_WINDOW = 2;
+
+    /**
+     * Default maximum number of messages sent together
+     */
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    /**
+     * Default maximum number of groups sent and not confirmed yet
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    /**
+     * Default maximum number of messages waiting in the publisher
+     */
+    public static final int DEFAULT_MAX_PENDING = 8192;
+
+    /**
+     * Sends a group of messages to a destination
+     */
+    @FunctionalInterface
+    public interface BatchSender {
+        /**
+         * Sends a packed group of messages
+         * @param destination Destination of the messages, like a routing key
+         * @param batch Packed messages
+         * @return Stage completed when the broker confirms the group, or completed exceptionally if it's rejected
+         */
+        CompletionStage<Void> send(String destination, byte[] batch);
+    }
+
+    /**
+     * Group of messages taken from {@link #pending}, ready to be sent
+     */
+    private record Outgoing(String destination, List<byte[]> batch) {}
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Sends each group of messages
+     */
+    private final BatchSender sender;
+
+    /**
+     * Time, in milliseconds, that a message waits for other messages of its destination, zero to send it at once if
+     * there is room in the in-flight window
+     */
+    private final long window;
+
+    /**
+     * Maximum number of messages sent together
+     */
+    private final int maxBatch;
+
+    /**
+     * Maximum number of groups sent and not confirmed yet
+     */
+    private final int maxInFlight;
+
+    /**
+     * Maximum number of messages waiting in the publisher
+     */
+    private final int maxPending;
+
+    /**
+     * Messages waiting to be sent, by destination, in the order they were published
+     */
+    private final Map<String, List<byte[]>> pending = new LinkedHashMap<>();
+
+    /**
+     * Number of messages in {@link #pending}
+     */
+    private int pendingCount;
+
+    /**
+     * Number of groups sent and not confirmed yet
+     */
+    private int inFlight;
+
+    /**
+     * Groups ready to be sent, in the order they were taken. Their room in the in-flight window is already reserved
+     */
+    private final Deque<Outgoing> ready = new ArrayDeque<>();
+
+    /**
+     * Indicates if a thread is sending the groups of {@link #ready}, so the rest of threads only add groups to it
+     */
+    private boolean draining;
+
+    /**
+     * Indicates if publisher has been closed, so new messages are rejected
+     */
+    private boolean closed;
+
+    /**
+     * Executor used to end the window of waiting messages
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Scheduled end of the current window, null if there isn't any message waiting for it. Messages waiting while 
+     * it's null have already waited their window, and they are sent as soon as there is room in the in-flight window
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Number of messages confirmed by the broker
+     */
+    private final AtomicLong confirmed = new AtomicLong();
+
+    /**
+     * Number of messages rejected by the broker or that couldn't be sent
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Number of messages rejected because too many messages were waiting or publisher was closed
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BatchingPublisher(BatchSender sender) {
+        this(sender, DEFAULT_WINDOW, DEFAULT_MAX_BATCH, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Creates a new publisher
+     * @param sender Sends each group of messages
+     * @param window Time, in milliseconds, that a message waits for other messages of its destination
+     * @param maxBatch Maximum number of messages sent together
+     * @param maxInFlight Maximum number of groups sent and not confirmed yet
+     * @param maxPending Maximum number of messages waiting in the publisher
+     */
+    public BatchingPublisher(BatchSender sender, long window, int maxBatch, int maxInFlight, int maxPending) {
+        this.sender = sender;
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.maxInFlight = maxInFlight;
+        this.maxPending = maxPending;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "batching-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a message to the group of its destination
+     * @param destination Destination of the message
+     * @param message Encoded message
+     * @return True if message will be sent, false if it has been rejected because too many messages are waiting or 
+     * publisher is closed
+     */
+    public boolean publish(String destination, byte[] message) {
+        synchronized (this) {
+            if (closed || pendingCount >= maxPending) {
+                rejected.incrementAndGet();
+                return false;
+            }
+
+            var overdue = scheduledFlush == null && pendingCount > 0;
+            var batch = pending.computeIfAbsent(destination, k -> new ArrayList<>());
+            batch.add(message);
+            pendingCount++;
+
+            if (window <= 0 || overdue) {
+                takeReady(null);
+            } else if (batch.size() >= maxBatch) {
+                takeReady(destination);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::endWindow, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        drain();
+        return true;
+    }
+
+    /**
+     * Ends the window of waiting messages, sending them while there is room in the in-flight window
+     */
+    private void endWindow() {
+        synchronized (this) {
+            scheduledFlush = null;
+            takeReady(null);
+        }
+
+        drain();
+    }
+
+    /**
+     * Moves waiting groups to {@link #ready} while there is room in the in-flight window. It must be called holding 
+     * the lock of the publisher
+     * @param destination Destination whose group is taken, or null to take the groups of all destinations
+     */
+    private void takeReady(String destination) {
+        if (closed)
+            return;
+
+        var destinations = destination != null ? List.of(destination) : new ArrayList<>(pending.keySet());
+
+        for (var next : destinations) {
+            while (inFlight < maxInFlight && pending.containsKey(next)) {
+                ready.add(new Outgoing(next, take(next)));
+            }
+        }
+    }
+
+    /**
+     * Sends the groups of {@link #ready}, out of the lock of the publisher. If another thread is already sending 
+     * them, it also sends the groups added by this one, so groups are never reordered and a confirmation received 
+     * while sending doesn't send groups recursively
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining)
+                return;
+
+            draining = true;
+        }
+
+        while (true) {
+            Outgoing next;
+
+            synchronized (this) {
+                next = ready.poll();
+
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            send(next.destination(), next.batch());
+        }
+    }
+
+    /**
+     * Takes up to {@link #maxBatch} waiting messages of a destination, reserving their room in the in-flight window
+     * @param destination Destination of the messages
+     * @return Taken messages
+     */
+    private List<byte[]> take(String destination) {
+        var batch = pending.get(destination);
+        List<byte[]> taken;
+
+        if (batch.size() <= maxBatch) {
+            taken = pending.remove(destination);
+        } else {
+            var head = batch.subList(0, maxBatch);
+            taken = new ArrayList<>(head);
+            head.clear();
+        }
+
+        pendingCount -= taken.size();
+        inFlight++;
+        return taken;
+    }
+
+    /**
+     * Sends a group of messages, releasing its room in the in-flight window when it's confirmed or rejected
+     * @param destination Destination of the messages
+     * @param batch Messages to send
+     */
+    private void send(String destination, List<byte[]> batch) {
+        try {
+            sender.send(destination, pack(batch)).whenComplete((result, error) -> {
+                if (error != null) {
+                    failed.addAndGet(batch.size());
+                    log.warn(String.format("Group of %d messages to '%s' rejected", batch.size(), destination), error);
+                } else {
+                    confirmed.addAndGet(batch.size());
+                }
+
+                release();
+            });
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            log.warn(String.format("Error sending group of %d messages to '%s'", batch.size(), destination), e);
+            release();
+        }
+    }
+
+    /**
+     * Releases the room of a group in the in-flight window, sending the messages that were waiting for it
+     */
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+
+            // Messages waiting for their window are sent when it ends
+            if (scheduledFlush == null) {
+                takeReady(null);
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Checks if callers should slow down, because the in-flight window is full or half of the messages that can
+     * wait in the publisher are already waiting
+     * @return True if no more groups can be sent until a confirmation arrives, or too many messages are waiting
+     */
+    public synchronized boolean isSaturated() {
+        return inFlight >= maxInFlight || pendingCount >= maxPending / 2;
+    }
+
+    /**
+     * Number of messages waiting in the publisher
+     * @return Count of waiting messages
+     */
+    public synchronized int getPending() {
+        return pendingCount;
+    }
+
+    /**
+     * Number of groups sent and not confirmed yet
+     * @return Count of groups in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Number of messages confirmed by the broker since publisher creation
+     * @return Count of confirmed messages
+     */
+    public long getConfirmed() {
+        return confirmed.get();
+    }
+
+    /**
+     * Number of messages that couldn't be sent or were rejected by the broker since publisher creation
+     * @return Count of failed messages
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Number of messages rejected by the publisher because too many messages were waiting or it was closed
+     * @return Count of rejected messages
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops the publisher. New messages are rejected, and messages that have not been sent yet are discarded and 
+     * counted as failed. Groups already sent still wait for their confirmation
+     */
+    @Override
+    public void close() {
+        int discarded;
+
+        synchronized (this) {
+            if (closed)
+                return;
+
+            closed = true;
+
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            discarded = pendingCount;
+            pending.clear();
+            pendingCount = 0;
+
+            for (var outgoing : ready) {
+                discarded += outgoing.batch().size();
+                inFlight--;
+            }
+
+            ready.clear();
+        }
+
+        executor.shutdownNow();
+
+        if (discarded > 0) {
+            failed.addAndGet(discarded);
+            log.warn(String.format("Publisher closed, %d messages not sent", discarded));
+        }
+    }
+
+    /**
+     * Packs several encoded messages in a single array: the number of messages followed by the length and the bytes
+     * of each message
+     * @param messages Encoded messages
+     * @return Packed messages
+     */
+    public static byte[] pack(List<byte[]> messages) {
+        var size = Integer.BYTES;
+
+        for (var message : messages) {
+            size += Integer.BYTES + message.length;
+        }
+
+        var buffer = ByteBuffer.allocate(size).putInt(messages.size());
+
+        for (var message : messages) {
+            buffer.putInt(message.length).put(message);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Unpacks the messages packed with {@link #pack(List)}
+     * @param data Packed messages
+     * @param consumer Receives each encoded message, in the order they were packed
+     * @throws IOException Thrown if data is not a valid group of messages
+     */
+    public static void unpack(byte[] data, Consumer<byte[]> consumer) throws IOException {
+        var buffer = ByteBuffer.wrap(data);
+
+        try {
+            var count = buffer.getInt();
+
+            for (int i = 0; i < count; i++) {
+                var length = buffer.getInt();
+
+                if (length < 0 || length > buffer.remaining())
+                    throw new IOException(String.format("Invalid length %d of packed message %d", length, i));
+
+                var message = new byte[length];
+                buffer.get(message);
+                consumer.accept(message);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated group of messages", e);
+        }
+    }
+}
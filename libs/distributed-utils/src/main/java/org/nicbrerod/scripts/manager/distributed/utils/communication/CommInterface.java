@@ -31,6 +31,15 @@ public interface CommInterface {
      */
     void configureMessageProcessing(Consumer<CommInterfaceMessage> consumer);
 
+    /**
+     * Checks if comm interface can't send more messages at this moment, because too many messages are waiting to 
+     * be sent or confirmed. Callers should slow down while it's saturated
+     * @return True if comm interface is saturated, by default false
+     */
+    default boolean isSaturated() {
+        return false;
+    }
+
     /**
      * Operations to execute when algorithm wants to stop using comm interface. This method is 
      * usefull when your implementation have some asynchronous elements, like threads, 
@@ -0,0 +1,447 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.GossipMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberState;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberUpdate;
+
+/**
+ * Compact and versioned binary codec. Heartbeats, requests, gossip and election messages are written field by 
+ * field, with fixed-width values: UUIDs as two longs and dates as epoch nanoseconds plus their offset in seconds. Any other message type is written 
+ * with {@link JavaSerializationCodec}, so new types can be sent before they have a binary layout.
+ * 
+ * All messages start with a header of two bytes: format version and message tag
+ */
+public class BinaryMessageCodec implements MessageCodec {
+    /**
+     * Current version of the format, decoder rejects messages with another version
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Tag of messages encoded with Java serialization
+     */
+    private static final byte TAG_SERIALIZED = 0;
+
+    /**
+     * Tag of heartbeat messages
+     */
+    private static final byte TAG_HEARTBEAT = 1;
+
+    /**
+     * Tag of request messages
+     */
+    private static final byte TAG_REQUEST = 2;
+
+    /**
+     * Tag of gossip messages
+     */
+    private static final byte TAG_GOSSIP = 3;
+
+    /**
+     * Tag of election messages
+     */
+    private static final byte TAG_ELECTION = 4;
+
+    /**
+     * Tags of request contents
+     */
+    private static final byte CONTENT_NULL = 0, CONTENT_STRING = 1, CONTENT_SERIALIZED = 2;
+
+    /**
+     * Size of header, version and tag
+     */
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * Size of an encoded UUID
+     */
+    private static final int UUID_SIZE = 2 * Long.BYTES;
+
+    /**
+     * Size of an encoded date
+     */
+    private static final int DATE_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Size of the fields common to all messages: id, timestamp and sender
+     */
+    private static final int COMMON_SIZE = UUID_SIZE + DATE_SIZE + UUID_SIZE;
+
+    /**
+     * Size of an encoded heartbeat without header, all its fields have fixed width
+     */
+    private static final int HEARTBEAT_SIZE = COMMON_SIZE + 1 + Long.BYTES + 2 * Float.BYTES + 2 * Integer.BYTES 
+        + 2 * Long.BYTES + DATE_SIZE;
+
+    /**
+     * Size of an encoded election message, all its fields have fixed width
+     */
+    private static final int ELECTION_SIZE = HEADER_SIZE + COMMON_SIZE + 1 + 4 * Long.BYTES + 1;
+
+    /**
+     * Size of an encoded membership update without the information of the node
+     */
+    private static final int MEMBER_UPDATE_SIZE = UUID_SIZE + 1 + Long.BYTES + 1;
+
+    /**
+     * Codec used for messages without binary layout
+     */
+    private final JavaSerializationCodec fallback = new JavaSerializationCodec();
+
+    @Override
+    public byte[] encode(CommInterfaceMessage message) throws IOException {
+        if (message instanceof HeartBeatMessage)
+            return encodeHeartbeat((HeartBeatMessage) message);
+
+        if (message instanceof RequestMessage)
+            return encodeRequest((RequestMessage<?>) message);
+
+        if (message instanceof GossipMessage)
+            return encodeGossip((GossipMessage) message);
+
+        if (message instanceof ElectionMessage)
+            return encodeElection((ElectionMessage) message);
+
+        var serialized = fallback.encode(message);
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + serialized.length);
+        buffer.put(VERSION).put(TAG_SERIALIZED).put(serialized);
+        return buffer.array();
+    }
+
+    @Override
+    public CommInterfaceMessage decode(byte[] data) throws IOException {
+        var buffer = ByteBuffer.wrap(data);
+
+        try {
+            var version = buffer.get();
+
+            if (version != VERSION)
+                throw new IOException(String.format("Unsupported message format version %d", version));
+
+            var tag = buffer.get();
+
+            switch (tag) {
+                case TAG_HEARTBEAT:
+                    return decodeHeartbeat(buffer);
+                case TAG_REQUEST:
+                    return decodeRequest(buffer);
+                case TAG_GOSSIP:
+                    return decodeGossip(buffer);
+                case TAG_ELECTION:
+                    return decodeElection(buffer);
+                case TAG_SERIALIZED:
+                    return fallback.decode(Arrays.copyOfRange(data, HEADER_SIZE, data.length));
+                default:
+                    throw new IOException(String.format("Unknown message tag %d", tag));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Received message is truncated", e);
+        } catch (DateTimeException e) {
+            throw new IOException("Received message has an invalid date", e);
+        }
+    }
+
+    private byte[] encodeHeartbeat(HeartBeatMessage message) {
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + HEARTBEAT_SIZE);
+        buffer.put(VERSION).put(TAG_HEARTBEAT);
+        putHeartbeat(buffer, message);
+        return buffer.array();
+    }
+
+    private static void putHeartbeat(ByteBuffer buffer, HeartBeatMessage message) {
+        putCommon(buffer, message);
+        buffer.put((byte) (message.isLeader() ? 1 : 0))
+            .putLong(message.getTerm())
+            .putFloat(message.getCpuUsage())
+            .putFloat(message.getMemoryUsage())
+            .putInt(message.getRunningRequests())
+            .putInt(message.getQueuedRequests())
+            .putLong(message.getHeapUsed())
+            .putLong(message.getHeapMax());
+        putDate(buffer, message.getDateTime());
+    }
+
+    private static HeartBeatMessage decodeHeartbeat(ByteBuffer buffer) {
+        var id = getUUID(buffer);
+        var timestamp = getDate(buffer);
+        var sender = getUUID(buffer);
+
+        return new HeartBeatMessage(id, timestamp, sender, buffer.get() == 1, buffer.getLong(), buffer.getFloat(), buffer.getFloat(), 
+            buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong(), getDate(buffer));
+    }
+
+    private byte[] encodeRequest(RequestMessage<?> message) throws IOException {
+        var requestType = message.getRequestType() != null ? message.getRequestType().getBytes(StandardCharsets.UTF_8) : null;
+        var content = message.getRequestContent();
+        byte contentTag;
+        byte[] contentBytes;
+
+        if (content == null) {
+            contentTag = CONTENT_NULL;
+            contentBytes = new byte[0];
+        } else if (content instanceof String) {
+            contentTag = CONTENT_STRING;
+            contentBytes = ((String) content).getBytes(StandardCharsets.UTF_8);
+        } else {
+            contentTag = CONTENT_SERIALIZED;
+            contentBytes = serialize(content);
+        }
+
+        var parameters = new byte[message.getParameters().length][];
+        var parametersSize = Integer.BYTES;
+
+        for (int i = 0; i < parameters.length; i++) {
+            var parameter = message.getParameters()[i];
+            parameters[i] = parameter != null ? parameter.getBytes(StandardCharsets.UTF_8) : null;
+            parametersSize += Integer.BYTES + (parameters[i] != null ? parameters[i].length : 0);
+        }
+
+        var size = HEADER_SIZE + COMMON_SIZE + 1 + UUID_SIZE + Integer.BYTES + (requestType != null ? requestType.length : 0) 
+            + 1 + Integer.BYTES + contentBytes.length + parametersSize;
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION).put(TAG_REQUEST);
+        putCommon(buffer, message);
+
+        buffer.put((byte) (message.getAssignee() != null ? 1 : 0));
+        putUUID(buffer, message.getAssignee() != null ? message.getAssignee() : new UUID(0, 0));
+
+        buffer.putInt(requestType != null ? requestType.length : -1);
+
+        if (requestType != null) {
+            buffer.put(requestType);
+        }
+
+        buffer.put(contentTag).putInt(contentBytes.length).put(contentBytes);
+        buffer.putInt(parameters.length);
+
+        for (var parameter : parameters) {
+            // -1 is the length of a null parameter
+            buffer.putInt(parameter != null ? parameter.length : -1);
+
+            if (parameter != null) {
+                buffer.put(parameter);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private RequestMessage<Serializable> decodeRequest(ByteBuffer buffer) throws IOException {
+        var id = getUUID(buffer);
+        var timestamp = getDate(buffer);
+        var sender = getUUID(buffer);
+        var hasAssignee = buffer.get() == 1;
+        var assignee = getUUID(buffer);
+
+        var requestTypeLength = buffer.getInt();
+        String requestType = null;
+
+        // -1 is the length of a null request type
+        if (requestTypeLength != -1) {
+            requestType = new String(getBytes(buffer, requestTypeLength), StandardCharsets.UTF_8);
+        }
+
+        var contentTag = buffer.get();
+        var contentBytes = getBytes(buffer, buffer.getInt());
+
+        Serializable content;
+
+        switch (contentTag) {
+            case CONTENT_NULL:
+                content = null;
+                break;
+            case CONTENT_STRING:
+                content = new String(contentBytes, StandardCharsets.UTF_8);
+                break;
+            case CONTENT_SERIALIZED:
+                content = deserialize(contentBytes);
+                break;
+            default:
+                throw new IOException(String.format("Unknown request content tag %d", contentTag));
+        }
+
+        // Requests encoded before parameters existed end after their content
+        var parameterCount = buffer.hasRemaining() ? buffer.getInt() : 0;
+
+        if (parameterCount < 0 || parameterCount > buffer.remaining() / Integer.BYTES)
+            throw new IOException(String.format("Invalid number of request parameters %d", parameterCount));
+
+        var parameters = new String[parameterCount];
+
+        for (int i = 0; i < parameterCount; i++) {
+            var length = buffer.getInt();
+            parameters[i] = length != -1 ? new String(getBytes(buffer, length), StandardCharsets.UTF_8) : null;
+        }
+
+        return new RequestMessage<>(id, timestamp, sender, requestType, content, parameters, hasAssignee ? assignee : null);
+    }
+
+    private byte[] encodeGossip(GossipMessage message) {
+        var updates = message.getUpdates();
+        var size = HEADER_SIZE + COMMON_SIZE + 1 + Long.BYTES + 1 + UUID_SIZE + Integer.BYTES;
+
+        for (var update : updates) {
+            size += MEMBER_UPDATE_SIZE + (update.info() != null ? HEARTBEAT_SIZE : 0);
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION).put(TAG_GOSSIP);
+        putCommon(buffer, message);
+
+        buffer.put((byte) message.getKind().ordinal()).putLong(message.getSequence());
+        buffer.put((byte) (message.getTarget() != null ? 1 : 0));
+        putUUID(buffer, message.getTarget() != null ? message.getTarget() : new UUID(0, 0));
+
+        buffer.putInt(updates.size());
+
+        for (var update : updates) {
+            putUUID(buffer, update.node());
+            buffer.put((byte) update.state().ordinal()).putLong(update.incarnation());
+            buffer.put((byte) (update.info() != null ? 1 : 0));
+
+            if (update.info() != null) {
+                putHeartbeat(buffer, update.info());
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private GossipMessage decodeGossip(ByteBuffer buffer) throws IOException {
+        var id = getUUID(buffer);
+        var timestamp = getDate(buffer);
+        var sender = getUUID(buffer);
+        var kind = getEnum(GossipMessage.Kind.values(), buffer.get());
+        var sequence = buffer.getLong();
+        var hasTarget = buffer.get() == 1;
+        var target = getUUID(buffer);
+        var count = buffer.getInt();
+
+        if (count < 0 || count > buffer.remaining() / MEMBER_UPDATE_SIZE)
+            throw new IOException(String.format("Invalid number of membership updates %d", count));
+
+        List<MemberUpdate> updates = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            var node = getUUID(buffer);
+            var state = getEnum(MemberState.values(), buffer.get());
+            var incarnation = buffer.getLong();
+            var info = buffer.get() == 1 ? decodeHeartbeat(buffer) : null;
+            updates.add(new MemberUpdate(node, state, incarnation, info));
+        }
+
+        return new GossipMessage(id, timestamp, sender, kind, sequence, hasTarget ? target : null, updates);
+    }
+
+    private byte[] encodeElection(ElectionMessage message) {
+        var buffer = ByteBuffer.allocate(ELECTION_SIZE);
+        buffer.put(VERSION).put(TAG_ELECTION);
+        putCommon(buffer, message);
+        buffer.put((byte) message.getKind().ordinal())
+            .putLong(message.getTerm())
+            .putLong(message.getRound())
+            .put((byte) (message.isGranted() ? 1 : 0))
+            .putLong(message.getLastLogIndex())
+            .putLong(message.getLastLogTerm());
+        return buffer.array();
+    }
+
+    private ElectionMessage decodeElection(ByteBuffer buffer) throws IOException {
+        var id = getUUID(buffer);
+        var timestamp = getDate(buffer);
+        var sender = getUUID(buffer);
+
+        return new ElectionMessage(id, timestamp, sender, getEnum(ElectionMessage.Kind.values(), buffer.get()), buffer.getLong(), 
+            buffer.getLong(), buffer.get() == 1, buffer.getLong(), buffer.getLong());
+    }
+
+    private static <E extends Enum<E>> E getEnum(E[] values, byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IOException(String.format("Unknown value %d of %s", ordinal, values.getClass().getComponentType().getSimpleName()));
+
+        return values[ordinal];
+    }
+
+    /**
+     * Serializes a request content without binary layout
+     */
+    private static byte[] serialize(Serializable content) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var output = new ObjectOutputStream(bytes)) {
+            output.writeObject(content);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a request content written by {@link #serialize(Serializable)}, only with the classes allowed by 
+     * {@link JavaSerializationCodec#FILTER}
+     */
+    private static Serializable deserialize(byte[] data) throws IOException {
+        try (var input = JavaSerializationCodec.filteredInput(data)) {
+            return (Serializable) input.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Received request content is not valid", e);
+        }
+    }
+
+    /**
+     * Reads a field of variable length, checking that its length is valid before allocating it
+     */
+    private static byte[] getBytes(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining())
+            throw new IOException(String.format("Invalid field length %d", length));
+
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putCommon(ByteBuffer buffer, CommInterfaceMessage message) {
+        putUUID(buffer, message.getId());
+        putDate(buffer, message.getTimestamp());
+        putUUID(buffer, message.getSender());
+    }
+
+    private static void putUUID(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUUID(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void putDate(ByteBuffer buffer, OffsetDateTime date) {
+        var instant = date.toInstant();
+        buffer.putLong(instant.getEpochSecond() * 1_000_000_000L + instant.getNano())
+            .putInt(date.getOffset().getTotalSeconds());
+    }
+
+    private static OffsetDateTime getDate(ByteBuffer buffer) {
+        var nanos = buffer.getLong();
+        var offset = ZoneOffset.ofTotalSeconds(buffer.getInt());
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L)), offset);
+    }
+}
@@ -0,0 +1,56 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+
+/**
+ * Codec based on Java serialization. It supports any message, but encoded messages are large because they include 
+ * class descriptors of all fields. Received data comes from the network, so only messages, models of this project and 
+ * basic JDK types are deserialized, with limited depth, references and array lengths
+ */
+public class JavaSerializationCodec implements MessageCodec {
+    /**
+     * Filter applied to all deserialized data, rejects any class out of the allow-list
+     */
+    public static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+        "maxdepth=64;maxrefs=100000;maxarray=1048576;"
+        + "org.nicbrerod.scripts.manager.**;java.lang.*;java.util.*;java.util.concurrent.TimeUnit;java.time.*;!*");
+
+    /**
+     * Creates a stream that deserializes received data, using {@link #FILTER}
+     * @param data Serialized data
+     * @return Filtered stream
+     * @throws IOException Thrown if stream header is not valid
+     */
+    public static ObjectInputStream filteredInput(byte[] data) throws IOException {
+        var input = new ObjectInputStream(new ByteArrayInputStream(data));
+        input.setObjectInputFilter(FILTER);
+        return input;
+    }
+
+    @Override
+    public byte[] encode(CommInterfaceMessage message) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var output = new ObjectOutputStream(bytes)) {
+            output.writeObject(message);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public CommInterfaceMessage decode(byte[] data) throws IOException {
+        try (var input = filteredInput(data)) {
+            return (CommInterfaceMessage) input.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Received data is not a valid message", e);
+        }
+    }
+}
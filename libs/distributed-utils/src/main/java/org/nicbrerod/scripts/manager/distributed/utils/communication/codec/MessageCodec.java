@@ -0,0 +1,28 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication.codec;
+
+import java.io.IOException;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+
+/**
+ * Converts messages sent between nodes to bytes and back, used by {@link org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface} 
+ * implementations whose transport only moves bytes
+ */
+public interface MessageCodec {
+
+    /**
+     * Converts a message to bytes
+     * @param message Message to encode
+     * @return Encoded message
+     * @throws IOException Thrown if message can't be encoded
+     */
+    byte[] encode(CommInterfaceMessage message) throws IOException;
+
+    /**
+     * Rebuilds a message from its bytes
+     * @param data Encoded message
+     * @return Decoded message
+     * @throws IOException Thrown if data is not a valid encoded message
+     */
+    CommInterfaceMessage decode(byte[] data) throws IOException;
+}
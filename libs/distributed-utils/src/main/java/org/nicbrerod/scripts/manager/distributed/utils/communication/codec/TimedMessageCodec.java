@@ -0,0 +1,66 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication.codec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Codec that measures the time spent by another codec to encode and decode messages, and the size of encoded
+ * messages, sent or received. Meters are created with the codec, so measuring a message doesn't allocate
+ */
+public class TimedMessageCodec implements MessageCodec {
+    /**
+     * Names of the meters
+     */
+    public static final String ENCODE_TIME = "cluster.messages.encode", DECODE_TIME = "cluster.messages.decode",
+        MESSAGE_SIZE = "cluster.messages.size";
+
+    /**
+     * Measured codec
+     */
+    private final MessageCodec delegate;
+
+    private final Timer encodeTime;
+
+    private final Timer decodeTime;
+
+    private final DistributionSummary messageSize;
+
+    /**
+     * Creates a codec that measures another one
+     * @param delegate Codec to measure
+     * @param registry Registry where meters are published
+     */
+    public TimedMessageCodec(MessageCodec delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.encodeTime = Timer.builder(ENCODE_TIME).description("Time to encode a message").publishPercentiles(0.5, 0.99)
+            .register(registry);
+        this.decodeTime = Timer.builder(DECODE_TIME).description("Time to decode a message").publishPercentiles(0.5, 0.99)
+            .register(registry);
+        this.messageSize = DistributionSummary.builder(MESSAGE_SIZE).baseUnit("bytes").description("Size of encoded messages")
+            .register(registry);
+    }
+
+    @Override
+    public byte[] encode(CommInterfaceMessage message) throws IOException {
+        var start = System.nanoTime();
+        var data = delegate.encode(message);
+        encodeTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        messageSize.record(data.length);
+        return data;
+    }
+
+    @Override
+    public CommInterfaceMessage decode(byte[] data) throws IOException {
+        var start = System.nanoTime();
+        var message = delegate.decode(data);
+        decodeTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        messageSize.record(data.length);
+        return message;
+    }
+}
@@ -0,0 +1,95 @@
+package org.nicbrerod.scripts.manager.distributed.utils.election;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import lombok.Getter;
+
+/**
+ * Current term and vote of a node stored in disk, so a restarted node doesn't vote twice in the same term. State is
+ * written in a temporary file that is moved over the previous one, so a failure leaves the previous state untouched
+ */
+public class ElectionStateFile {
+    /**
+     * Name of the file, inside the working directory of the node, where state is usually stored
+     */
+    public static final String FILE_NAME = ".election-state";
+
+    /**
+     * File where state is stored
+     */
+    private final Path file;
+
+    /**
+     * Last stored term
+     */
+    @Getter
+    private long term;
+
+    /**
+     * Candidate that received the vote of the node in last stored term, or null if it has not voted
+     */
+    @Getter
+    private UUID votedFor;
+
+    /**
+     * Opens the state stored in a file, starting from term 0 without vote if file not exists
+     * @param file File where state is stored, its folder is created if not exists
+     * @throws IOException Thrown if file exists and can't be read, or its folder can't be created
+     */
+    public ElectionStateFile(Path file) throws IOException {
+        this.file = file;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        if (Files.exists(file)) {
+            try (var in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+                term = in.readLong();
+                votedFor = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            }
+        }
+    }
+
+    /**
+     * Stores a term and the vote of the node in it. Method returns when state is in disk
+     * @param term Current term
+     * @param votedFor Candidate that received the vote of the node in current term, or null if it has not voted
+     * @throws IOException Thrown if state can't be written
+     */
+    public synchronized void save(long term, UUID votedFor) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeLong(term);
+            out.writeBoolean(votedFor != null);
+
+            if (votedFor != null) {
+                out.writeLong(votedFor.getMostSignificantBits());
+                out.writeLong(votedFor.getLeastSignificantBits());
+            }
+        }
+
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(true);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.term = term;
+        this.votedFor = votedFor;
+    }
+}
@@ -0,0 +1,637 @@
+package org.nicbrerod.scripts.manager.distributed.utils.election;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage.Kind;
+
+/**
+ * Raft-style leader election. Time is divided in terms, numbered with consecutive integers, and each term has, at
+ * most, one leader. A follower that doesn't hear from a leader during a random election timeout starts a new term,
+ * votes for itself and asks the rest of nodes for their votes. Each node grants one vote per term, and a candidate
+ * with the votes of a majority becomes the leader. Any message with a newer term makes the receiver move to that
+ * term as a follower, so an old leader steps down as soon as it hears from the new one.
+ *
+ * Leadership is kept with leases, so all nodes know who is the leader without round-trips:
+ * <ul>
+ * <li>The leader broadcasts a heartbeat every heartbeat interval. When a majority acknowledges a heartbeat, its
+ * lease is extended until the heartbeat was sent plus {@link #LEASE_RATIO} of the minimum election timeout. A
+ * leader without a valid lease steps down</li>
+ * <li>A follower rejects votes for other candidates during the minimum election timeout after hearing from its
+ * leader or granting its vote, so no other leader can be elected while the lease of the current one is valid</li>
+ * </ul>
+ *
+ * After a leader stops, a new one is elected in, at most, the maximum election timeout plus a round-trip, unless
+ * votes are split, which is unlikely thanks to random timeouts. Majorities are calculated over the cluster size 
+ * given by the node when it counts votes and acknowledgements. These guarantees only hold if that size doesn't 
+ * shrink when members are not reachable, and if term and vote are stored in a {@link ElectionStateFile}, so a 
+ * restarted node doesn't vote twice in the same term
+ */
+public class LeaderElection implements AutoCloseable {
+    /**
+     * Fraction of the minimum election timeout that a lease lasts, the rest is a margin for clock drift
+     */
+    public static final double LEASE_RATIO = 0.9;
+
+    /**
+     * Minimum duration, in milliseconds, of a tick of the election timer
+     */
+    private static final long MIN_TICK = 10;
+
+    /**
+     * Heartbeat sent by the leader, waiting for acknowledgements
+     */
+    private static class Round {
+        private final long sentAt;
+        private final Set<UUID> acks = new HashSet<>();
+
+        private Round(long sentAt) {
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * Message waiting to be sent, messages are sent out of the lock to avoid deadlocks with synchronous transports
+     */
+    private record Outgoing(ElectionMessage message, UUID recipient) {}
+
+    private final Logger log;
+
+    /**
+     * Id related to this node
+     */
+    private final UUID self;
+
+    /**
+     * Communication interface used to send messages
+     */
+    private final CommInterface commInterface;
+
+    /**
+     * Time, in nanoseconds, between two heartbeats of the leader
+     */
+    private final long heartbeatInterval;
+
+    /**
+     * Minimum election timeout, in nanoseconds
+     */
+    private final long electionTimeoutMin;
+
+    /**
+     * Maximum election timeout, in nanoseconds
+     */
+    private final long electionTimeoutMax;
+
+    /**
+     * Duration of the lease of the leader, in nanoseconds
+     */
+    private final long leaseDuration;
+
+    /**
+     * Supplier of the number of nodes in the cluster, including this one
+     */
+    private final IntSupplier clusterSize;
+
+    /**
+     * Position of the last entry of this node's replicated log
+     */
+    private final LogState logState;
+
+    private final Random rand;
+
+    /**
+     * File where term and vote are stored, or null if they are kept only in memory
+     */
+    private final ElectionStateFile stateFile;
+
+    private NodeRole role = NodeRole.FOLLOWER;
+
+    private long currentTerm;
+
+    /**
+     * Candidate that received the vote of this node in current term, or null if it has not voted
+     */
+    private UUID votedFor;
+
+    /**
+     * Leader of current term, or null if it's not known
+     */
+    private UUID leader;
+
+    /**
+     * Last leader known by this node, kept when leader is lost to detect if a new leader is a different node
+     */
+    private UUID lastLeader;
+
+    /**
+     * Number of times that this node has recognized a leader different from the last known one
+     */
+    private long leaderChanges;
+
+    /**
+     * Last time this node heard from the leader or granted a vote, or its creation time
+     */
+    private long lastLeaderContact;
+
+    /**
+     * Time when this node starts an election if it doesn't hear from a leader
+     */
+    private long electionDeadline;
+
+    /**
+     * Time when current election started
+     */
+    private long electionStart;
+
+    /**
+     * Votes received in current election
+     */
+    private final Set<UUID> votes = new HashSet<>();
+
+    /**
+     * Time until which the leadership of this node is guaranteed
+     */
+    private long leaseExpiry;
+
+    /**
+     * Time when the leader sends its next heartbeat
+     */
+    private long nextHeartbeat;
+
+    private long round;
+
+    /**
+     * Heartbeats of the leader still inside the lease duration, by their round
+     */
+    private final Map<Long, Round> rounds = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the election protocol of a node
+     * @param self Id related to this node
+     * @param commInterface Communication interface used to send messages
+     * @param heartbeatInterval Time, in milliseconds, between two heartbeats of the leader
+     * @param electionTimeoutMin Minimum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param electionTimeoutMax Maximum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param clusterSize Supplier of the number of nodes in the cluster, including this one
+     * @param rand Random object used to generate election timeouts
+     */
+    public LeaderElection(UUID self, CommInterface commInterface, long heartbeatInterval, long electionTimeoutMin, long electionTimeoutMax,
+        IntSupplier clusterSize, Random rand) {
+        this(self, commInterface, heartbeatInterval, electionTimeoutMin, electionTimeoutMax, clusterSize, rand, LogState.EMPTY);
+    }
+
+    /**
+     * Creates the election protocol of a node with a replicated log
+     * @param self Id related to this node
+     * @param commInterface Communication interface used to send messages
+     * @param heartbeatInterval Time, in milliseconds, between two heartbeats of the leader
+     * @param electionTimeoutMin Minimum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param electionTimeoutMax Maximum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param clusterSize Supplier of the number of nodes in the cluster, including this one
+     * @param rand Random object used to generate election timeouts
+     * @param logState Position of the last entry of this node's log. Accesses to it are synchronized on it
+     */
+    public LeaderElection(UUID self, CommInterface commInterface, long heartbeatInterval, long electionTimeoutMin, long electionTimeoutMax,
+        IntSupplier clusterSize, Random rand, LogState logState) {
+        this(self, commInterface, heartbeatInterval, electionTimeoutMin, electionTimeoutMax, clusterSize, rand, logState, null);
+    }
+
+    /**
+     * Creates the election protocol of a node with a replicated log, whose term and vote survive restarts
+     * @param self Id related to this node
+     * @param commInterface Communication interface used to send messages
+     * @param heartbeatInterval Time, in milliseconds, between two heartbeats of the leader
+     * @param electionTimeoutMin Minimum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param electionTimeoutMax Maximum time, in milliseconds, that a follower waits for the leader before starting
+     * an election
+     * @param clusterSize Supplier of the number of nodes in the cluster, including this one
+     * @param rand Random object used to generate election timeouts
+     * @param logState Position of the last entry of this node's log. Accesses to it are synchronized on it
+     * @param stateFile File where term and vote are stored before they are sent to other nodes, or null to keep 
+     * them only in memory
+     */
+    public LeaderElection(UUID self, CommInterface commInterface, long heartbeatInterval, long electionTimeoutMin, long electionTimeoutMax,
+        IntSupplier clusterSize, Random rand, LogState logState, ElectionStateFile stateFile) {
+        if (electionTimeoutMin <= heartbeatInterval || electionTimeoutMax < electionTimeoutMin)
+            throw new IllegalArgumentException("Election timeout must be greater than heartbeat interval");
+
+        this.self = self;
+        this.commInterface = commInterface;
+        this.heartbeatInterval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);
+        this.electionTimeoutMin = TimeUnit.MILLISECONDS.toNanos(electionTimeoutMin);
+        this.electionTimeoutMax = TimeUnit.MILLISECONDS.toNanos(electionTimeoutMax);
+        this.leaseDuration = (long) (this.electionTimeoutMin * LEASE_RATIO);
+        this.clusterSize = clusterSize;
+        this.rand = rand;
+        this.logState = logState;
+        this.stateFile = stateFile;
+        this.log = Logger.getLogger(self.toString());
+
+        if (stateFile != null) {
+            this.currentTerm = stateFile.getTerm();
+            this.votedFor = stateFile.getVotedFor();
+        }
+
+        // A restarted node could have voted before stopping, so it doesn't vote during the first timeout
+        this.lastLeaderContact = System.nanoTime();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "leader-election");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the election timer, node starts as a follower without leader
+     */
+    public void start() {
+        synchronized (this) {
+            resetElectionDeadline(System.nanoTime());
+        }
+
+        var tick = Math.max(TimeUnit.NANOSECONDS.toMillis(heartbeatInterval) / 10, MIN_TICK);
+        executor.scheduleAtFixedRate(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtains the leader of the cluster, as known by this node, without communicating with other nodes
+     * @return Id related to leader, or null if there is no leader with a valid lease
+     */
+    public synchronized UUID getLeader() {
+        var now = System.nanoTime();
+
+        if (role == NodeRole.LEADER)
+            return now - leaseExpiry < 0 ? self : null;
+
+        if (leader != null && now - lastLeaderContact < electionTimeoutMin)
+            return leader;
+
+        return null;
+    }
+
+    /**
+     * Checks if this node is the leader and its lease is valid
+     * @return True if this node is the leader
+     */
+    public boolean isLeader() {
+        return self.equals(getLeader());
+    }
+
+    /**
+     * Term in which this node is the leader with a valid lease. Role and term are read at the same time, so the term
+     * is always one led by this node
+     * @return Current term if this node is the leader, or -1 if it's not
+     */
+    public synchronized long getLeaderTerm() {
+        return isLeader() ? currentTerm : -1;
+    }
+
+    /**
+     * Current term of this node
+     * @return Term number, it never decreases
+     */
+    public synchronized long getTerm() {
+        return currentTerm;
+    }
+
+    /**
+     * Current role of this node
+     * @return Role in current term
+     */
+    public synchronized NodeRole getRole() {
+        return role;
+    }
+
+    /**
+     * Number of times that this node has recognized a leader different from the last known one, including the 
+     * first leader
+     * @return Count of leader changes since protocol creation
+     */
+    public synchronized long getLeaderChanges() {
+        return leaderChanges;
+    }
+
+    /**
+     * Moves to a term if it's newer than current one, stepping down if this node is candidate or leader. Used when 
+     * a newer term is received in messages of other protocols
+     * @param term Received term
+     */
+    public synchronized void observeTerm(long term) {
+        observeTerm(term, System.nanoTime());
+    }
+
+    /**
+     * Processes a received election message
+     * @param message Received message
+     */
+    public void receive(ElectionMessage message) {
+        if (closed || message.getSender().equals(self))
+            return;
+
+        List<Outgoing> outgoing = new ArrayList<>();
+
+        synchronized (this) {
+            var now = System.nanoTime();
+
+            switch (message.getKind()) {
+                case REQUEST_VOTE:
+                    outgoing.add(new Outgoing(vote(message, now), message.getSender()));
+                    break;
+                case VOTE:
+                    observeTerm(message.getTerm(), now);
+
+                    if (role == NodeRole.CANDIDATE && message.getTerm() == currentTerm && message.isGranted()) {
+                        votes.add(message.getSender());
+                        checkVotes(now, outgoing);
+                    }
+                    break;
+                case LEADER_HEARTBEAT:
+                    observeTerm(message.getTerm(), now);
+
+                    if (message.getTerm() == currentTerm) {
+                        if (role != NodeRole.FOLLOWER || !message.getSender().equals(leader)) {
+                            log.info(String.format("Following leader '%s' in term %d", message.getSender(), currentTerm));
+                        }
+
+                        role = NodeRole.FOLLOWER;
+                        recognizeLeader(message.getSender());
+                        lastLeaderContact = now;
+                        resetElectionDeadline(now);
+                    }
+
+                    // Old leaders receive the newer term in the answer and step down
+                    outgoing.add(new Outgoing(new ElectionMessage(self, Kind.LEADER_HEARTBEAT_ACK, currentTerm, message.getRound(), false),
+                        message.getSender()));
+                    break;
+                case LEADER_HEARTBEAT_ACK:
+                    observeTerm(message.getTerm(), now);
+
+                    var acked = rounds.get(message.getRound());
+
+                    if (role == NodeRole.LEADER && message.getTerm() == currentTerm && acked != null) {
+                        acked.acks.add(message.getSender());
+                        checkLease(acked);
+                    }
+                    break;
+            }
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Stops the protocol. Received messages are ignored after it
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Periodic task: leader sends heartbeats and steps down if its lease expires, followers and candidates start an
+     * election when their timeout expires
+     */
+    private void tick() {
+        List<Outgoing> outgoing = new ArrayList<>();
+
+        synchronized (this) {
+            var now = System.nanoTime();
+
+            if (role == NodeRole.LEADER) {
+                if (now - leaseExpiry >= 0) {
+                    log.warn(String.format("Lease of term %d expired without acknowledgement of a majority, stepping down", currentTerm));
+                    stepDown(now);
+                } else if (now - nextHeartbeat >= 0) {
+                    sendHeartbeat(now, outgoing);
+                }
+            } else if (now - electionDeadline >= 0) {
+                startElection(now, outgoing);
+            }
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Starts a new term as candidate, voting for this node and asking for the votes of the rest of nodes
+     */
+    private void startElection(long now, List<Outgoing> outgoing) {
+        currentTerm++;
+        role = NodeRole.CANDIDATE;
+        leader = null;
+        votedFor = self;
+        votes.clear();
+        votes.add(self);
+        electionStart = now;
+        resetElectionDeadline(now);
+
+        log.info(String.format("Starting election for term %d", currentTerm));
+
+        // Votes are not requested until the vote for this node is stored, the election is retried on next timeout
+        if (!persist())
+            return;
+
+        long lastLogIndex, lastLogTerm;
+
+        synchronized (logState) {
+            lastLogIndex = logState.lastIndex();
+            lastLogTerm = logState.lastTerm();
+        }
+
+        outgoing.add(new Outgoing(new ElectionMessage(self, Kind.REQUEST_VOTE, currentTerm, 0, false, lastLogIndex, lastLogTerm), null));
+        checkVotes(now, outgoing);
+    }
+
+    /**
+     * Becomes the leader if a majority has voted for this node
+     */
+    private void checkVotes(long now, List<Outgoing> outgoing) {
+        if (votes.size() < getQuorum())
+            return;
+
+        log.info(String.format("Elected leader of term %d with %d votes", currentTerm, votes.size()));
+        role = NodeRole.LEADER;
+        recognizeLeader(self);
+        rounds.clear();
+        // Voters don't vote again until their election timeout, measured from their vote, expires
+        leaseExpiry = electionStart + leaseDuration;
+        sendHeartbeat(now, outgoing);
+    }
+
+    /**
+     * Sets the leader of current term, counting it as a leader change if it's not the last known leader
+     */
+    private void recognizeLeader(UUID newLeader) {
+        leader = newLeader;
+
+        if (!newLeader.equals(lastLeader)) {
+            lastLeader = newLeader;
+            leaderChanges++;
+        }
+    }
+
+    /**
+     * Answers a vote request. Vote is granted if candidate's term is current one, this node has not voted for
+     * another candidate in it, candidate's log is, at least, as up-to-date as this node's one and this node has not 
+     * heard from a leader or granted its vote during the minimum election timeout, whether or not the leader is known
+     */
+    private ElectionMessage vote(ElectionMessage request, long now) {
+        var candidate = request.getSender();
+        // A candidate elected with this vote counts its lease from its election start, so it's valid while the vote is
+        var leaderAlive = role == NodeRole.LEADER ? now - leaseExpiry < 0 : 
+            now - lastLeaderContact < electionTimeoutMin && !candidate.equals(leader) && !candidate.equals(votedFor);
+
+        if (leaderAlive) {
+            // Term is not updated, so a node that can't reach the leader doesn't depose it
+            return new ElectionMessage(self, Kind.VOTE, currentTerm, 0, false);
+        }
+
+        observeTerm(request.getTerm(), now);
+        var granted = request.getTerm() == currentTerm && (votedFor == null || votedFor.equals(request.getSender())) 
+            && isUpToDate(request.getLastLogIndex(), request.getLastLogTerm());
+
+        if (granted) {
+            votedFor = request.getSender();
+            lastLeaderContact = now;
+            resetElectionDeadline(now);
+            // Vote is kept in memory if it can't be stored, so it's not given to another candidate in this term
+            granted = persist();
+        }
+
+        return new ElectionMessage(self, Kind.VOTE, currentTerm, 0, granted);
+    }
+
+    /**
+     * Checks if a candidate's log is, at least, as up-to-date as this node's one: its last entry has a newer term or, 
+     * with the same term, the log is not shorter
+     */
+    private boolean isUpToDate(long lastLogIndex, long lastLogTerm) {
+        synchronized (logState) {
+            if (lastLogTerm != logState.lastTerm())
+                return lastLogTerm > logState.lastTerm();
+
+            return lastLogIndex >= logState.lastIndex();
+        }
+    }
+
+    /**
+     * Moves to a newer term as follower, without leader and without vote
+     */
+    private void observeTerm(long term, long now) {
+        if (term <= currentTerm)
+            return;
+
+        log.info(String.format("Moving from term %d to newer term %d", currentTerm, term));
+        currentTerm = term;
+        votedFor = null;
+        persist();
+
+        if (role != NodeRole.FOLLOWER) {
+            stepDown(now);
+        } else {
+            leader = null;
+        }
+    }
+
+    /**
+     * Becomes a follower without leader
+     */
+    private void stepDown(long now) {
+        role = NodeRole.FOLLOWER;
+        leader = null;
+        rounds.clear();
+        resetElectionDeadline(now);
+    }
+
+    /**
+     * Sends a new heartbeat as leader, acknowledged by this node
+     */
+    private void sendHeartbeat(long now, List<Outgoing> outgoing) {
+        var heartbeat = new Round(now);
+        heartbeat.acks.add(self);
+        rounds.put(++round, heartbeat);
+        // Rounds older than a lease can't extend it
+        rounds.values().removeIf(old -> now - old.sentAt > leaseDuration);
+        nextHeartbeat = now + heartbeatInterval;
+
+        outgoing.add(new Outgoing(new ElectionMessage(self, Kind.LEADER_HEARTBEAT, currentTerm, round, false), null));
+        checkLease(heartbeat);
+    }
+
+    /**
+     * Extends the lease if a majority has acknowledged a heartbeat
+     */
+    private void checkLease(Round acked) {
+        if (acked.acks.size() >= getQuorum() && acked.sentAt + leaseDuration - leaseExpiry > 0) {
+            leaseExpiry = acked.sentAt + leaseDuration;
+        }
+    }
+
+    /**
+     * Number of nodes that form a majority of the cluster
+     * @return Minimum number of votes or acknowledgements, including the ones of this node
+     */
+    public int getQuorum() {
+        return Math.max(clusterSize.getAsInt(), 1) / 2 + 1;
+    }
+
+    /**
+     * Stores current term and vote, if they have changed, before they are sent to other nodes
+     * @return False if they can't be stored
+     */
+    private boolean persist() {
+        if (stateFile == null || (stateFile.getTerm() == currentTerm && Objects.equals(stateFile.getVotedFor(), votedFor)))
+            return true;
+
+        try {
+            stateFile.save(currentTerm, votedFor);
+            return true;
+        } catch (IOException e) {
+            log.error(String.format("Term %d and vote can't be stored", currentTerm), e);
+            return false;
+        }
+    }
+
+    private void resetElectionDeadline(long now) {
+        electionDeadline = now + electionTimeoutMin + (long) (rand.nextDouble() * (electionTimeoutMax - electionTimeoutMin));
+    }
+
+    private void send(List<Outgoing> outgoing) {
+        for (var message : outgoing) {
+            try {
+                if (message.recipient() == null) {
+                    commInterface.sendBroadcast(message.message());
+                } else {
+                    commInterface.sendMessage(message.message(), message.recipient());
+                }
+            } catch (RuntimeException e) {
+                log.warn(String.format("Error sending election message to '%s'", message.recipient()), e);
+            }
+        }
+    }
+}
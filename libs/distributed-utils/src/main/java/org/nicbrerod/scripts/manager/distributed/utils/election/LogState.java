@@ -0,0 +1,34 @@
+package org.nicbrerod.scripts.manager.distributed.utils.election;
+
+/**
+ * Position of the last entry of the replicated log of a node. Votes are only granted to candidates whose log is, at 
+ * least, as up-to-date as the voter's one, so an elected leader always has all committed entries
+ */
+public interface LogState {
+    /**
+     * State of a node without replicated log
+     */
+    LogState EMPTY = new LogState() {
+        @Override
+        public long lastIndex() {
+            return 0;
+        }
+
+        @Override
+        public long lastTerm() {
+            return 0;
+        }
+    };
+
+    /**
+     * Index of the last entry of the log
+     * @return Index, or 0 if log is empty
+     */
+    long lastIndex();
+
+    /**
+     * Term of the last entry of the log
+     * @return Term, or 0 if log is empty
+     */
+    long lastTerm();
+}
@@ -0,0 +1,19 @@
+package org.nicbrerod.scripts.manager.distributed.utils.election;
+
+/**
+ * Roles of a node in the leader election protocol
+ */
+public enum NodeRole {
+    /**
+     * Node follows the leader of its term, or waits for one
+     */
+    FOLLOWER,
+    /**
+     * Node is asking for votes to become the leader of its term
+     */
+    CANDIDATE,
+    /**
+     * Node has been elected by a majority of the cluster in its term
+     */
+    LEADER
+}
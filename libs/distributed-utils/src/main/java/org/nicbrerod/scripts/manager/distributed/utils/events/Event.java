@@ -0,0 +1,38 @@
+package org.nicbrerod.scripts.manager.distributed.utils.events;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Event recorded in an {@link EventLog}. Its message is kept as a format and its arguments, and it's only built
+ * when the event is written or read
+ */
+public record Event(
+    /**
+     * Time, in milliseconds since epoch, when event was recorded
+     */
+    long timestamp,
+    /**
+     * Type of the event, used to limit the rate of similar events
+     */
+    String type,
+    /**
+     * Level used to write the event in the logger
+     */
+    Logger.Level level,
+    /**
+     * Format of the message, as used by {@link String#format(String, Object...)}
+     */
+    String format,
+    /**
+     * Arguments of the message
+     */
+    Object[] args
+) {
+    /**
+     * Builds the message of the event
+     * @return Format of the message, filled with its arguments
+     */
+    public String message() {
+        return args == null || args.length == 0 ? format : String.format(format, args);
+    }
+}
@@ -0,0 +1,287 @@
+package org.nicbrerod.scripts.manager.distributed.utils.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Log of the events of a component, written in a logger in background. Events are sampled by type: only a limited
+ * number of events of each type are recorded per second, and the number of discarded ones is written with the first
+ * event of the same type recorded in a later second. Messages are only built when events are written or read, so
+ * events discarded, or whose level is not enabled in the logger, don't build any string. Last recorded events are
+ * kept in a ring buffer, to be read with {@link #recent(int)}
+ */
+public class EventLog {
+    /**
+     * Default number of events kept in the ring buffer
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Default number of events of the same type recorded per second
+     */
+    public static final int DEFAULT_MAX_PER_SECOND = 20;
+
+    /**
+     * Maximum number of events waiting to be written in the logger. Events that don't fit are not written, but they
+     * are kept in the ring buffer
+     */
+    private static final int MAX_PENDING = 1024;
+
+    /**
+     * Thread shared by all event logs to write their events
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "event-log-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Logger where events are written
+     */
+    private final Logger log;
+
+    /**
+     * Last recorded events, {@link #recorded} modulo its length is the position of the next one
+     */
+    private final Event[] recent;
+
+    /**
+     * Number of events recorded since log creation
+     */
+    private long recorded;
+
+    /**
+     * Events waiting to be written in the logger
+     */
+    private final BlockingQueue<Event> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+
+    /**
+     * True while a task of {@link #WRITER} is writing the pending events of this log
+     */
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    /**
+     * Sampling windows of each type of event
+     */
+    private final Map<String, TypeWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Number of events of each type recorded per second if a type doesn't have its own limit, zero or less to
+     * record all of them
+     */
+    @Getter
+    @Setter
+    private volatile int maxPerSecond = DEFAULT_MAX_PER_SECOND;
+
+    /**
+     * Number of events discarded by sampling since log creation
+     */
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Number of events not written in the logger because there were too many pending events
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    public EventLog(Logger log) {
+        this(log, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an event log
+     * @param log Logger where events are written
+     * @param capacity Number of events kept in the ring buffer
+     */
+    public EventLog(Logger log, int capacity) {
+        this.log = log;
+        this.recent = new Event[capacity];
+    }
+
+    /**
+     * Records an event, if its type hasn't reached its limit in the current second
+     * @param level Level used to write the event in the logger
+     * @param type Type of the event
+     * @param format Format of the message
+     * @param args Arguments of the message
+     */
+    public void record(Logger.Level level, String type, String format, Object... args) {
+        var window = windows.get(type);
+
+        if (window == null) {
+            window = windows.computeIfAbsent(type, k -> new TypeWindow());
+        }
+
+        var now = System.currentTimeMillis();
+        var previouslySuppressed = window.acquire(now, maxPerSecond);
+
+        if (previouslySuppressed < 0) {
+            suppressed.incrementAndGet();
+            return;
+        }
+
+        // Suppression is expected for frequent events, so it's reported with the level of the suppressed ones
+        if (previouslySuppressed > 0) {
+            add(new Event(now, type, level, "Suppressed %d events of type '%s'", new Object[] { previouslySuppressed, type }));
+        }
+
+        add(new Event(now, type, level, format, args));
+    }
+
+    /**
+     * Sets the number of events of a type recorded per second
+     * @param type Type of the events
+     * @param maxPerSecond Number of events recorded per second, zero or less to record all of them
+     */
+    public void setLimit(String type, int maxPerSecond) {
+        windows.computeIfAbsent(type, k -> new TypeWindow()).limit = maxPerSecond;
+    }
+
+    /**
+     * Adds an event to the ring buffer and, if its level is enabled, to the events waiting to be written
+     * @param event Recorded event
+     */
+    private void add(Event event) {
+        synchronized (recent) {
+            recent[(int) (recorded++ % recent.length)] = event;
+        }
+
+        if (!log.isEnabled(event.level()))
+            return;
+
+        if (!pending.offer(event)) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        if (writing.compareAndSet(false, true)) {
+            try {
+                WRITER.execute(this::write);
+            } catch (RejectedExecutionException e) {
+                writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending events in the logger. If events are added while finishing, they are written too, so no
+     * event remains pending without a task writing it
+     */
+    private void write() {
+        do {
+            Event event;
+
+            while ((event = pending.poll()) != null) {
+                log.log(event.level(), event.message());
+            }
+
+            writing.set(false);
+        } while (!pending.isEmpty() && writing.compareAndSet(false, true));
+    }
+
+    /**
+     * Gets the last recorded events
+     * @param limit Maximum number of events returned
+     * @return Last recorded events, from oldest to newest
+     */
+    public List<Event> recent(int limit) {
+        synchronized (recent) {
+            var count = (int) Math.max(0, Math.min(Math.min(limit, recent.length), recorded));
+            List<Event> events = new ArrayList<>(count);
+
+            for (long i = recorded - count; i < recorded; i++) {
+                events.add(recent[(int) (i % recent.length)]);
+            }
+
+            return events;
+        }
+    }
+
+    /**
+     * Number of events discarded by sampling
+     * @return Count of discarded events since log creation
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * Number of events not written in the logger because too many events were waiting to be written
+     * @return Count of not written events since log creation
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Sampling window of a type of event, of one second
+     */
+    private static class TypeWindow {
+        /**
+         * Value of {@link #limit} when type uses the limit of its log
+         */
+        private static final int DEFAULT_LIMIT = Integer.MIN_VALUE;
+
+        /**
+         * Number of events recorded per second, zero or less to record all of them
+         */
+        private volatile int limit = DEFAULT_LIMIT;
+
+        /**
+         * Second, since epoch, of the current window
+         */
+        private long second;
+
+        /**
+         * Events recorded in the current window
+         */
+        private int count;
+
+        /**
+         * Events discarded in the current window
+         */
+        private long discarded;
+
+        /**
+         * Checks if an event can be recorded in the current window
+         * @param now Current time, in milliseconds since epoch
+         * @param defaultLimit Limit used if type doesn't have its own limit
+         * @return -1 if event must be discarded, else the number of events discarded in the previous window, if it
+         * has just ended, or zero
+         */
+        synchronized long acquire(long now, int defaultLimit) {
+            var maxPerSecond = limit == DEFAULT_LIMIT ? defaultLimit : limit;
+            var currentSecond = now / 1000;
+            var previouslyDiscarded = 0L;
+
+            if (currentSecond != second) {
+                second = currentSecond;
+                count = 0;
+                previouslyDiscarded = discarded;
+                discarded = 0;
+            }
+
+            if (maxPerSecond > 0 && count >= maxPerSecond) {
+                discarded++;
+                return -1;
+            }
+
+            count++;
+            return previouslyDiscarded;
+        }
+    }
+}
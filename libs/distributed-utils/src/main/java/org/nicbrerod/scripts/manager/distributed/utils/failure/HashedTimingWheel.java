@@ -0,0 +1,209 @@
+package org.nicbrerod.scripts.manager.distributed.utils.failure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+
+/**
+ * Hashed timing wheel: timeouts are kept in a circular array of buckets, one per tick, so scheduling and expiring a 
+ * timeout is O(1) regardless of the number of timeouts. Deadlines are {@link System#nanoTime()} values, so they 
+ * don't depend on the wall clock.
+ * 
+ * Timeouts can be postponed with {@link Timeout#reschedule(long)}, which only writes the new deadline. The timeout 
+ * stays in its bucket and, when its tick comes, it's moved to the bucket of its current deadline instead of 
+ * expiring. Deadlines further than a revolution of the wheel are also moved once per revolution until they are due.
+ * 
+ * Wheel doesn't have its own thread, it's advanced by calls to {@link #advance(long)}, usually once per tick. 
+ * Timeouts expire, at most, a tick after their deadline
+ * @param <K> Type of keys identifying the timeouts
+ */
+public class HashedTimingWheel<K> {
+
+    /**
+     * Timeout registered in a {@link HashedTimingWheel}
+     * @param <K> Type of the key identifying the timeout
+     */
+    public static class Timeout<K> {
+        /**
+         * Key identifying the timeout
+         */
+        @Getter
+        private final K key;
+
+        /**
+         * Time when timeout expires, in {@link System#nanoTime()} scale
+         */
+        @Getter
+        private volatile long deadline;
+
+        /**
+         * Indicates if timeout has been cancelled, cancelled timeouts are dropped when their tick comes
+         */
+        @Getter
+        private volatile boolean cancelled;
+
+        private Timeout(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Changes the deadline of the timeout. It can be called from any thread and doesn't move the timeout, so 
+         * it's applied when the tick of the previous deadline comes, and then it can't be earlier than it
+         * @param deadline New deadline, in {@link System#nanoTime()} scale
+         */
+        public void reschedule(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout, so it never expires
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+    }
+
+    /**
+     * Duration of a tick, in nanoseconds
+     */
+    @Getter
+    private final long tickDuration;
+
+    /**
+     * Buckets of the wheel, its size is a power of two
+     */
+    private final List<ArrayDeque<Timeout<K>>> buckets;
+
+    /**
+     * Mask used to obtain the bucket of a tick
+     */
+    private final int mask;
+
+    /**
+     * Time of tick 0, in {@link System#nanoTime()} scale
+     */
+    private final long start;
+
+    /**
+     * Timeouts scheduled since last advance, they are put in their buckets by the advancing thread
+     */
+    private final Queue<Timeout<K>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Function called for each expired timeout, outside of any lock of the wheel
+     */
+    private final Consumer<Timeout<K>> onExpired;
+
+    /**
+     * Next tick to process
+     */
+    private long tick;
+
+    /**
+     * Creates a wheel starting now
+     * @param tickDuration Duration of a tick, in nanoseconds
+     * @param size Number of buckets, rounded up to a power of two
+     * @param onExpired Function called for each expired timeout
+     */
+    public HashedTimingWheel(long tickDuration, int size, Consumer<Timeout<K>> onExpired) {
+        this(tickDuration, size, System.nanoTime(), onExpired);
+    }
+
+    /**
+     * Creates a wheel
+     * @param tickDuration Duration of a tick, in nanoseconds
+     * @param size Number of buckets, rounded up to a power of two
+     * @param start Time of tick 0, in {@link System#nanoTime()} scale
+     * @param onExpired Function called for each expired timeout
+     */
+    public HashedTimingWheel(long tickDuration, int size, long start, Consumer<Timeout<K>> onExpired) {
+        if (tickDuration <= 0 || size <= 0)
+            throw new IllegalArgumentException("Tick duration and size of timing wheel must be positive");
+
+        var buckets = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+
+        this.tickDuration = tickDuration;
+        this.buckets = new ArrayList<>(buckets);
+        this.mask = buckets - 1;
+        this.start = start;
+        this.onExpired = onExpired;
+
+        for (int i = 0; i < buckets; i++) {
+            this.buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Schedules a new timeout. It can be called from any thread
+     * @param key Key identifying the timeout
+     * @param deadline Time when timeout expires, in {@link System#nanoTime()} scale
+     * @return Scheduled timeout
+     */
+    public Timeout<K> schedule(K key, long deadline) {
+        var timeout = new Timeout<>(key, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Processes all ticks ended before a time, expiring their due timeouts
+     * @param now Current time, in {@link System#nanoTime()} scale
+     * @return Number of expired timeouts
+     */
+    public int advance(long now) {
+        List<Timeout<K>> expired = new ArrayList<>();
+
+        synchronized (this) {
+            Timeout<K> timeout;
+
+            while ((timeout = pending.poll()) != null) {
+                insert(timeout);
+            }
+
+            // A tick is processed when it has completely passed, so due timeouts are never expired early
+            while (now - (start + (tick + 1) * tickDuration) >= 0) {
+                var bucket = buckets.get((int) (tick & mask));
+
+                for (int i = bucket.size(); i > 0; i--) {
+                    timeout = bucket.poll();
+
+                    if (timeout.isCancelled())
+                        continue;
+
+                    if (tickOf(timeout.getDeadline()) <= tick) {
+                        expired.add(timeout);
+                    } else {
+                        // Postponed timeout or deadline in a later revolution
+                        insert(timeout);
+                    }
+                }
+
+                tick++;
+            }
+        }
+
+        expired.forEach(onExpired);
+        return expired.size();
+    }
+
+    /**
+     * Puts a timeout in the bucket of its deadline, or in the next bucket to process if deadline has passed
+     */
+    private void insert(Timeout<K> timeout) {
+        var timeoutTick = Math.max(tickOf(timeout.getDeadline()), tick);
+        buckets.get((int) (timeoutTick & mask)).add(timeout);
+    }
+
+    /**
+     * Calculates the tick that contains a time
+     */
+    private long tickOf(long time) {
+        return Math.floorDiv(time - start, tickDuration);
+    }
+}
@@ -0,0 +1,156 @@
+package org.nicbrerod.scripts.manager.distributed.utils.failure;
+
+/**
+ * Sliding window of the intervals between the heartbeats of a node, used to calculate the phi-accrual suspicion 
+ * level of the node. Intervals are assumed to follow a normal distribution with the mean and standard deviation of 
+ * the window, and phi is {@code -log10(P(next heartbeat arrives after the elapsed time))}, so a phi of 1 means a 
+ * 10% chance of being wrong suspecting the node, 2 means 1%, 3 means 0.1% and so on.
+ * 
+ * Normal distribution is approximated with a logistic function, as in Akka's detector. This class is not thread-safe
+ */
+public class HeartbeatHistory {
+    /**
+     * Intervals of the window, in nanoseconds, as a circular buffer
+     */
+    private final double[] intervals;
+
+    /**
+     * Minimum standard deviation used in calculations, so a node with very regular heartbeats is not suspected 
+     * after a small delay
+     */
+    private final double minStdDeviation;
+
+    /**
+     * Time, in nanoseconds, added to the mean interval, so pauses of this duration, like GC pauses, don't raise 
+     * the suspicion level
+     */
+    private final double acceptablePause;
+
+    /**
+     * Number of intervals in the window
+     */
+    private int size;
+
+    /**
+     * Position of the next interval in the circular buffer
+     */
+    private int next;
+
+    /**
+     * Sum of the intervals of the window
+     */
+    private double sum;
+
+    /**
+     * Sum of the squares of the intervals of the window
+     */
+    private double squaredSum;
+
+    /**
+     * Creates a window with an estimation of the first intervals, so phi can be calculated before receiving real 
+     * intervals. Estimation is replaced when the window is full
+     * @param maxSamples Maximum number of intervals of the window
+     * @param firstInterval Expected interval between heartbeats, in nanoseconds
+     * @param minStdDeviation Minimum standard deviation used in calculations, in nanoseconds
+     * @param acceptablePause Pause, in nanoseconds, that doesn't raise the suspicion level
+     */
+    public HeartbeatHistory(int maxSamples, double firstInterval, double minStdDeviation, double acceptablePause) {
+        if (maxSamples < 2)
+            throw new IllegalArgumentException("Heartbeat history must have at least two samples");
+
+        this.intervals = new double[maxSamples];
+        this.minStdDeviation = minStdDeviation;
+        this.acceptablePause = acceptablePause;
+
+        // Two samples with the expected interval as mean and a quarter of it as standard deviation
+        add(firstInterval - firstInterval / 4);
+        add(firstInterval + firstInterval / 4);
+    }
+
+    /**
+     * Adds a new interval to the window, removing the oldest one if window is full
+     * @param interval Interval between the last two heartbeats, in nanoseconds
+     */
+    public void add(double interval) {
+        if (size == intervals.length) {
+            var oldest = intervals[next];
+            sum -= oldest;
+            squaredSum -= oldest * oldest;
+        } else {
+            size++;
+        }
+
+        intervals[next] = interval;
+        next = (next + 1) % intervals.length;
+        sum += interval;
+        squaredSum += interval * interval;
+    }
+
+    /**
+     * Mean interval of the window plus the acceptable pause
+     * @return Mean, in nanoseconds
+     */
+    public double mean() {
+        return sum / size + acceptablePause;
+    }
+
+    /**
+     * Standard deviation of the window, never lower than the minimum one
+     * @return Standard deviation, in nanoseconds
+     */
+    public double stdDeviation() {
+        var mean = sum / size;
+        var variance = Math.max(squaredSum / size - mean * mean, 0);
+        return Math.max(Math.sqrt(variance), minStdDeviation);
+    }
+
+    /**
+     * Calculates the suspicion level of the node
+     * @param elapsed Time since last heartbeat, in nanoseconds
+     * @return Suspicion level, it grows with the elapsed time
+     */
+    public double phi(double elapsed) {
+        return phi(elapsed, mean(), stdDeviation());
+    }
+
+    /**
+     * Calculates the elapsed time since last heartbeat needed to reach a suspicion level
+     * @param threshold Suspicion level
+     * @return Elapsed time, in nanoseconds
+     */
+    public long timeToPhi(double threshold) {
+        var mean = mean();
+        var stdDeviation = stdDeviation();
+        long low = 0, high = (long) (mean + stdDeviation);
+
+        while (phi(high, mean, stdDeviation) < threshold) {
+            low = high;
+            high *= 2;
+        }
+
+        // phi grows with elapsed time, so the crossing point is found with a binary search
+        var precision = Math.max((long) (stdDeviation / 1000), 1);
+
+        while (high - low > precision) {
+            var middle = low + (high - low) / 2;
+
+            if (phi(middle, mean, stdDeviation) < threshold) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        return high;
+    }
+
+    private static double phi(double elapsed, double mean, double stdDeviation) {
+        var y = (elapsed - mean) / stdDeviation;
+        var e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+
+        if (elapsed > mean)
+            return -Math.log10(e / (1 + e));
+
+        return -Math.log10(1 - 1 / (1 + e));
+    }
+}
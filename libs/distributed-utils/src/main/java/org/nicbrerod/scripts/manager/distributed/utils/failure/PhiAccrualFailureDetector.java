@@ -0,0 +1,233 @@
+package org.nicbrerod.scripts.manager.distributed.utils.failure;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.failure.HashedTimingWheel.Timeout;
+
+import lombok.Getter;
+
+/**
+ * Failure detector based on the phi-accrual suspicion level of each node. Instead of a fixed cutoff, the time after 
+ * which a node is considered failed adapts to the distribution of its heartbeat intervals, so nodes with regular 
+ * heartbeats are detected earlier and nodes with irregular ones, like nodes with GC pauses, are not evicted by 
+ * mistake.
+ * 
+ * Each node has a single timeout in a {@link HashedTimingWheel}, with the time when its suspicion level reaches the 
+ * threshold as deadline. A heartbeat only moves that deadline, so registering it and expiring nodes are O(1). All 
+ * times are taken from {@link System#nanoTime()}. Detector must be advanced periodically with {@link #expire()}, 
+ * every {@link #getTickDuration()} milliseconds
+ */
+public class PhiAccrualFailureDetector {
+    /**
+     * Default suspicion level from which a node is considered failed
+     */
+    public static final double DEFAULT_THRESHOLD = 8;
+
+    /**
+     * Number of intervals kept to calculate the suspicion level of a node
+     */
+    private static final int MAX_SAMPLES = 100;
+
+    /**
+     * Number of buckets of the timing wheel
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * Minimum duration of a tick of the timing wheel, in milliseconds
+     */
+    private static final long MIN_TICK_DURATION = 10;
+
+    /**
+     * Information kept about a monitored node
+     */
+    private class Monitor {
+        private final HeartbeatHistory history = new HeartbeatHistory(MAX_SAMPLES, heartbeatInterval, minStdDeviation, acceptablePause);
+        private long lastHeartbeat;
+        private Timeout<UUID> timeout;
+    }
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Suspicion level from which a node is considered failed
+     */
+    @Getter
+    private final double threshold;
+
+    /**
+     * Expected interval between heartbeats, in nanoseconds
+     */
+    private final double heartbeatInterval;
+
+    /**
+     * Minimum standard deviation of heartbeat intervals, in nanoseconds
+     */
+    private final double minStdDeviation;
+
+    /**
+     * Pause, in nanoseconds, that doesn't raise the suspicion level of a node
+     */
+    private final double acceptablePause;
+
+    /**
+     * Duration of a tick of the timing wheel, in milliseconds
+     */
+    @Getter
+    private final long tickDuration;
+
+    /**
+     * Monitored nodes, by their ID
+     */
+    private final Map<UUID, Monitor> monitors = new ConcurrentHashMap<>();
+
+    /**
+     * Wheel with the deadline of each monitored node
+     */
+    private final HashedTimingWheel<UUID> wheel;
+
+    /**
+     * Function called when a node is considered failed
+     */
+    private final Consumer<UUID> onFailure;
+
+    /**
+     * Creates a detector with the default threshold and a heartbeat interval as acceptable pause
+     * @param heartbeatRate Expected interval between heartbeats, in milliseconds
+     * @param onFailure Function called when a node is considered failed
+     */
+    public PhiAccrualFailureDetector(long heartbeatRate, Consumer<UUID> onFailure) {
+        this(heartbeatRate, DEFAULT_THRESHOLD, heartbeatRate, onFailure);
+    }
+
+    /**
+     * Creates a detector
+     * @param heartbeatRate Expected interval between heartbeats, in milliseconds
+     * @param threshold Suspicion level from which a node is considered failed
+     * @param acceptablePause Pause, in milliseconds, that doesn't raise the suspicion level of a node
+     * @param onFailure Function called when a node is considered failed
+     */
+    public PhiAccrualFailureDetector(long heartbeatRate, double threshold, long acceptablePause, Consumer<UUID> onFailure) {
+        this.threshold = threshold;
+        this.heartbeatInterval = TimeUnit.MILLISECONDS.toNanos(heartbeatRate);
+        this.minStdDeviation = heartbeatInterval / 10;
+        this.acceptablePause = TimeUnit.MILLISECONDS.toNanos(acceptablePause);
+        this.tickDuration = Math.max(heartbeatRate / 10, MIN_TICK_DURATION);
+        this.wheel = new HashedTimingWheel<>(TimeUnit.MILLISECONDS.toNanos(tickDuration), WHEEL_SIZE, this::expired);
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Registers a heartbeat of a node, starting to monitor it if it wasn't monitored
+     * @param node ID related to node
+     */
+    public void heartbeat(UUID node) {
+        var now = System.nanoTime();
+
+        while (true) {
+            var monitor = monitors.computeIfAbsent(node, id -> new Monitor());
+
+            synchronized (monitor) {
+                // Monitor has been removed by a failure after obtaining it
+                if (monitors.get(node) != monitor)
+                    continue;
+
+                if (monitor.timeout != null) {
+                    monitor.history.add(now - monitor.lastHeartbeat);
+                }
+
+                monitor.lastHeartbeat = now;
+                var deadline = now + monitor.history.timeToPhi(threshold);
+
+                if (monitor.timeout == null) {
+                    monitor.timeout = wheel.schedule(node, deadline);
+                } else {
+                    monitor.timeout.reschedule(deadline);
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops monitoring a node
+     * @param node ID related to node
+     */
+    public void remove(UUID node) {
+        var monitor = monitors.remove(node);
+
+        if (monitor != null) {
+            synchronized (monitor) {
+                monitor.timeout.cancel();
+            }
+        }
+    }
+
+    /**
+     * Calculates the current suspicion level of a node
+     * @param node ID related to node
+     * @return Suspicion level, or 0 if node is not monitored
+     */
+    public double phi(UUID node) {
+        var monitor = monitors.get(node);
+
+        if (monitor == null)
+            return 0;
+
+        synchronized (monitor) {
+            return monitor.history.phi(System.nanoTime() - monitor.lastHeartbeat);
+        }
+    }
+
+    /**
+     * Checks if a node is monitored and its suspicion level is under the threshold
+     * @param node ID related to node
+     * @return True if node is considered available
+     */
+    public boolean isAvailable(UUID node) {
+        return monitors.containsKey(node) && phi(node) < threshold;
+    }
+
+    /**
+     * Advances the timing wheel to current time, notifying the nodes that have reached the threshold
+     * @return Number of nodes considered failed
+     */
+    public int expire() {
+        return wheel.advance(System.nanoTime());
+    }
+
+    /**
+     * Processes an expired timeout of the wheel, a heartbeat may have arrived while it was being expired
+     */
+    private void expired(Timeout<UUID> timeout) {
+        var node = timeout.getKey();
+        var monitor = monitors.get(node);
+
+        if (monitor == null)
+            return;
+
+        double phi;
+
+        synchronized (monitor) {
+            if (monitor.timeout != timeout)
+                return;
+
+            if (timeout.getDeadline() - System.nanoTime() > 0) {
+                monitor.timeout = wheel.schedule(node, timeout.getDeadline());
+                return;
+            }
+
+            monitors.remove(node);
+            phi = monitor.history.phi(System.nanoTime() - monitor.lastHeartbeat);
+        }
+
+        log.warn(String.format("Node '%s' considered failed, phi %.2f", node, phi));
+        onFailure.accept(node);
+    }
+}
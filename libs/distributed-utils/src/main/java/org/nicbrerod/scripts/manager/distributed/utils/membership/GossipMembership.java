@@ -0,0 +1,525 @@
+package org.nicbrerod.scripts.manager.distributed.utils.membership;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.GossipMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.GossipMessage.Kind;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberState;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberUpdate;
+
+/**
+ * SWIM-style membership protocol. In each protocol period, the node probes one member, chosen in round-robin over a
+ * shuffled list. If the member doesn't answer in a third of the period, the node asks {@link #fanOut} other members
+ * to probe it indirectly, and if there is still no answer at the end of the period, the member becomes suspect.
+ * Suspects that don't refute the suspicion before the suspicion timeout are declared dead.
+ *
+ * Membership changes are not broadcasted: they are piggybacked on probes and answers, and each change is
+ * retransmitted a number of times proportional to the logarithm of the cluster size. Only a node without known
+ * members broadcasts, to join the cluster
+ */
+public class GossipMembership implements AutoCloseable {
+    /**
+     * Default number of members asked to probe a member indirectly
+     */
+    public static final int DEFAULT_FAN_OUT = 3;
+
+    /**
+     * Maximum number of updates piggybacked on a message, besides the state of the sender
+     */
+    private static final int MAX_PIGGYBACK = 8;
+
+    /**
+     * Multiplier of the logarithm of the cluster size used to calculate how many times an update is retransmitted
+     */
+    private static final int RETRANSMIT_MULT = 3;
+
+    /**
+     * Multiplier of the logarithm of the cluster size used to calculate the suspicion timeout, in protocol periods
+     */
+    private static final int SUSPICION_MULT = 4;
+
+    /**
+     * Number of protocol periods that a dead member is remembered, to ignore old updates about it
+     */
+    private static final int DEAD_RETENTION_PERIODS = 30;
+
+    /**
+     * Information about a known member
+     */
+    private static class Member {
+        private MemberState state;
+        private long incarnation;
+        private long changedAt;
+        private HeartBeatMessage info;
+    }
+
+    /**
+     * Update waiting to be piggybacked
+     */
+    private static class Dissemination {
+        private final MemberUpdate update;
+        private int remaining;
+
+        private Dissemination(MemberUpdate update, int remaining) {
+            this.update = update;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Probe sent on behalf of another node
+     */
+    private record Relay(UUID requester, long sequence, long createdAt) {}
+
+    /**
+     * Message waiting to be sent, messages are sent out of the lock to avoid deadlocks with synchronous transports
+     */
+    private record Outgoing(GossipMessage message, UUID recipient) {}
+
+    private final Logger log;
+
+    /**
+     * Id related to this node
+     */
+    private final UUID self;
+
+    /**
+     * Communication interface used to send messages
+     */
+    private final CommInterface commInterface;
+
+    /**
+     * Duration, in milliseconds, of a protocol period
+     */
+    private final long protocolPeriod;
+
+    /**
+     * Number of members asked to probe a member indirectly
+     */
+    private final int fanOut;
+
+    /**
+     * Supplier of the current information of this node, piggybacked on all messages
+     */
+    private final Supplier<HeartBeatMessage> selfInfo;
+
+    /**
+     * Called each time new information about an alive member is received
+     */
+    private final Consumer<HeartBeatMessage> onAlive;
+
+    /**
+     * Called when a member is declared dead
+     */
+    private final Consumer<UUID> onDead;
+
+    private final Random rand;
+
+    /**
+     * Known members, including dead ones during {@link #DEAD_RETENTION_PERIODS}
+     */
+    private final Map<UUID, Member> members = new HashMap<>();
+
+    /**
+     * Updates waiting to be piggybacked, one per member
+     */
+    private final Map<UUID, Dissemination> disseminations = new HashMap<>();
+
+    /**
+     * Probes sent on behalf of other nodes, by their sequence number
+     */
+    private final Map<Long, Relay> relays = new HashMap<>();
+
+    /**
+     * Order in which members are probed, shuffled each time it's completed
+     */
+    private final List<UUID> probeOrder = new ArrayList<>();
+
+    private int probeIndex;
+
+    /**
+     * Incarnation of this node. It starts at current time, so a restarted node with the same id overrides the
+     * updates of its previous execution
+     */
+    private long incarnation = System.currentTimeMillis();
+
+    private long sequence;
+
+    /**
+     * Member probed in current protocol period, or null if there is no probe in progress
+     */
+    private UUID probeTarget;
+
+    private long probeSequence;
+
+    private boolean probeAcked;
+
+    private final ScheduledExecutorService executor;
+
+    private volatile boolean closed;
+
+    public GossipMembership(UUID self, CommInterface commInterface, long protocolPeriod, int fanOut, Supplier<HeartBeatMessage> selfInfo,
+        Consumer<HeartBeatMessage> onAlive, Consumer<UUID> onDead) {
+        this.self = self;
+        this.commInterface = commInterface;
+        this.protocolPeriod = protocolPeriod;
+        this.fanOut = fanOut;
+        this.selfInfo = selfInfo;
+        this.onAlive = onAlive;
+        this.onDead = onDead;
+        this.rand = new Random();
+        this.log = Logger.getLogger(self.toString());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "gossip-membership");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the protocol periods
+     */
+    public void start() {
+        executor.scheduleAtFixedRate(this::protocolPeriod, 0, protocolPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Processes a received gossip message
+     * @param message Received message
+     */
+    public void receive(GossipMessage message) {
+        if (closed || message.getSender().equals(self))
+            return;
+
+        List<Outgoing> outgoing = new ArrayList<>();
+
+        synchronized (this) {
+            message.getUpdates().forEach(this::apply);
+
+            switch (message.getKind()) {
+                case JOIN:
+                case PING:
+                    outgoing.add(new Outgoing(createMessage(Kind.ACK, message.getSequence(), self), message.getSender()));
+                    break;
+                case PING_REQ:
+                    var relaySequence = ++sequence;
+                    relays.put(relaySequence, new Relay(message.getSender(), message.getSequence(), System.nanoTime()));
+                    outgoing.add(new Outgoing(createMessage(Kind.PING, relaySequence, null), message.getTarget()));
+                    break;
+                case ACK:
+                    var relay = relays.remove(message.getSequence());
+
+                    if (relay != null) {
+                        outgoing.add(new Outgoing(createMessage(Kind.ACK, relay.sequence(), message.getSender()), relay.requester()));
+                    } else if (message.getSequence() == probeSequence && message.getTarget() != null && message.getTarget().equals(probeTarget)) {
+                        probeAcked = true;
+                    }
+                    break;
+            }
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Number of known members that are not dead
+     * @return Count of alive and suspect members
+     */
+    public synchronized int size() {
+        return (int) members.values().stream().filter(member -> member.state != MemberState.DEAD).count();
+    }
+
+    /**
+     * Stops the protocol. Received messages are ignored after it
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a protocol period: ends the previous probe, expires suspects and starts a new probe
+     */
+    private void protocolPeriod() {
+        List<Outgoing> outgoing = new ArrayList<>();
+        UUID target = null;
+
+        synchronized (this) {
+            var now = System.nanoTime();
+
+            if (probeTarget != null && !probeAcked) {
+                suspect(probeTarget, now);
+            }
+
+            probeTarget = null;
+            expire(now);
+
+            if (size() == 0) {
+                outgoing.add(new Outgoing(createMessage(Kind.JOIN, ++sequence, null), null));
+            } else {
+                target = nextProbeTarget();
+                probeTarget = target;
+                probeSequence = ++sequence;
+                probeAcked = false;
+                outgoing.add(new Outgoing(createMessage(Kind.PING, probeSequence, null), target));
+            }
+        }
+
+        send(outgoing);
+
+        if (target != null) {
+            var probed = target;
+            executor.schedule(() -> indirectProbe(probed), protocolPeriod / 3, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Asks {@link #fanOut} random members to probe a member that has not answered a direct probe
+     * @param target Member to probe
+     */
+    private void indirectProbe(UUID target) {
+        List<Outgoing> outgoing = new ArrayList<>();
+
+        synchronized (this) {
+            if (!target.equals(probeTarget) || probeAcked)
+                return;
+
+            List<UUID> candidates = new ArrayList<>();
+            members.forEach((id, member) -> {
+                if (member.state == MemberState.ALIVE && !id.equals(target)) {
+                    candidates.add(id);
+                }
+            });
+            Collections.shuffle(candidates, rand);
+
+            for (var helper : candidates.subList(0, Math.min(fanOut, candidates.size()))) {
+                outgoing.add(new Outgoing(createMessage(Kind.PING_REQ, probeSequence, target), helper));
+            }
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Selects next member to probe, in round-robin over a shuffled list of not dead members
+     * @return Member to probe
+     */
+    private UUID nextProbeTarget() {
+        while (true) {
+            if (probeIndex >= probeOrder.size()) {
+                probeOrder.clear();
+                members.forEach((id, member) -> {
+                    if (member.state != MemberState.DEAD) {
+                        probeOrder.add(id);
+                    }
+                });
+                Collections.shuffle(probeOrder, rand);
+                probeIndex = 0;
+            }
+
+            var candidate = probeOrder.get(probeIndex++);
+            var member = members.get(candidate);
+
+            if (member != null && member.state != MemberState.DEAD)
+                return candidate;
+        }
+    }
+
+    /**
+     * Declares dead the suspects whose suspicion timeout has expired and forgets old dead members and relays
+     * @param now Current value of {@link System#nanoTime()}
+     */
+    private void expire(long now) {
+        var suspicionTimeout = TimeUnit.MILLISECONDS.toNanos(Math.round(SUSPICION_MULT * Math.max(1, Math.log10(members.size() + 1)) * protocolPeriod));
+        var deadRetention = TimeUnit.MILLISECONDS.toNanos(DEAD_RETENTION_PERIODS * protocolPeriod);
+
+        List<UUID> expired = new ArrayList<>();
+        members.forEach((id, member) -> {
+            if (member.state == MemberState.SUSPECT && now - member.changedAt > suspicionTimeout) {
+                expired.add(id);
+            }
+        });
+
+        for (var id : expired) {
+            var member = members.get(id);
+            markDead(id, member, now);
+            disseminate(new MemberUpdate(id, MemberState.DEAD, member.incarnation, null));
+        }
+
+        members.values().removeIf(member -> member.state == MemberState.DEAD && now - member.changedAt > deadRetention);
+        relays.values().removeIf(relay -> now - relay.createdAt() > TimeUnit.MILLISECONDS.toNanos(protocolPeriod));
+    }
+
+    /**
+     * Marks a member as suspect, because it has not answered a probe
+     * @param id Id related to member
+     * @param now Current value of {@link System#nanoTime()}
+     */
+    private void suspect(UUID id, long now) {
+        var member = members.get(id);
+
+        if (member == null || member.state != MemberState.ALIVE)
+            return;
+
+        log.info(String.format("Node '%s' is suspect", id));
+        member.state = MemberState.SUSPECT;
+        member.changedAt = now;
+        disseminate(new MemberUpdate(id, MemberState.SUSPECT, member.incarnation, null));
+    }
+
+    private void markDead(UUID id, Member member, long now) {
+        log.warn(String.format("New inactive node: '%s'", id));
+        member.state = MemberState.DEAD;
+        member.changedAt = now;
+        onDead.accept(id);
+    }
+
+    /**
+     * Applies a received update to the membership list, using SWIM precedence rules: a higher incarnation overrides
+     * a lower one, a suspicion overrides an alive state with the same incarnation and death overrides everything
+     * @param update Update to apply
+     */
+    private void apply(MemberUpdate update) {
+        var now = System.nanoTime();
+
+        if (update.node().equals(self)) {
+            if (update.state() != MemberState.ALIVE && update.incarnation() >= incarnation) {
+                // Refutes the suspicion with a new incarnation, sent as current state in all next messages
+                log.info("Refuting suspicion about this node");
+                incarnation = update.incarnation() + 1;
+            }
+            return;
+        }
+
+        var member = members.get(update.node());
+
+        if (member == null) {
+            if (update.state() == MemberState.DEAD)
+                return;
+
+            member = new Member();
+            member.state = update.state();
+            member.incarnation = update.incarnation();
+            member.changedAt = now;
+            members.put(update.node(), member);
+            probeOrder.add(rand.nextInt(probeOrder.size() - probeIndex + 1) + probeIndex, update.node());
+            log.info(String.format("New node: '%s'", update.node()));
+            refreshInfo(member, update.info());
+            disseminate(update);
+            return;
+        }
+
+        switch (update.state()) {
+            case ALIVE:
+                if (update.incarnation() > member.incarnation) {
+                    member.state = MemberState.ALIVE;
+                    member.incarnation = update.incarnation();
+                    member.changedAt = now;
+                    disseminate(update);
+                }
+
+                if (member.state != MemberState.DEAD && update.incarnation() == member.incarnation) {
+                    refreshInfo(member, update.info());
+                }
+                break;
+            case SUSPECT:
+                if ((member.state == MemberState.ALIVE && update.incarnation() >= member.incarnation)
+                    || (member.state == MemberState.SUSPECT && update.incarnation() > member.incarnation)) {
+                    member.state = MemberState.SUSPECT;
+                    member.incarnation = update.incarnation();
+                    member.changedAt = now;
+                    disseminate(update);
+                }
+                break;
+            case DEAD:
+                if (member.state != MemberState.DEAD) {
+                    markDead(update.node(), member, now);
+                    disseminate(update);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Replaces the information of a member if the received one is newer
+     * @param member Member to update
+     * @param info Received information, may be null
+     */
+    private void refreshInfo(Member member, HeartBeatMessage info) {
+        if (info == null || (member.info != null && !info.getTimestamp().isAfter(member.info.getTimestamp())))
+            return;
+
+        member.info = info;
+        onAlive.accept(info);
+    }
+
+    /**
+     * Adds an update to the piggyback queue, replacing any previous update about the same member
+     * @param update Update to spread
+     */
+    private void disseminate(MemberUpdate update) {
+        var retransmits = (int) Math.ceil(RETRANSMIT_MULT * Math.log(members.size() + 2) / Math.log(2));
+        disseminations.put(update.node(), new Dissemination(update, retransmits));
+    }
+
+    /**
+     * Creates a message with the current state of this node and the updates with most pending retransmissions
+     * @param kind Kind of message
+     * @param messageSequence Sequence number of the message
+     * @param target Target of the message, depending on its kind
+     * @return Message to send
+     */
+    private GossipMessage createMessage(Kind kind, long messageSequence, UUID target) {
+        List<MemberUpdate> updates = new ArrayList<>();
+        updates.add(new MemberUpdate(self, MemberState.ALIVE, incarnation, selfInfo.get()));
+
+        var selected = disseminations.values().stream()
+            .sorted(Comparator.comparingInt((Dissemination dissemination) -> dissemination.remaining).reversed())
+            .limit(MAX_PIGGYBACK)
+            .toList();
+
+        for (var dissemination : selected) {
+            updates.add(dissemination.update);
+
+            if (--dissemination.remaining <= 0) {
+                disseminations.remove(dissemination.update.node());
+            }
+        }
+
+        return new GossipMessage(self, kind, messageSequence, target, updates);
+    }
+
+    /**
+     * Sends messages, out of the lock
+     * @param outgoing Messages to send, with null recipient for broadcasts
+     */
+    private void send(List<Outgoing> outgoing) {
+        for (var message : outgoing) {
+            try {
+                if (message.recipient() == null) {
+                    commInterface.sendBroadcast(message.message());
+                } else {
+                    commInterface.sendMessage(message.message(), message.recipient());
+                }
+            } catch (RuntimeException e) {
+                log.warn(String.format("Error sending gossip message to '%s'", message.recipient()), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.nicbrerod.scripts.manager.distributed.utils.membership;
+
+/**
+ * How a cluster node discovers the rest of nodes and detects the ones that have stopped
+ */
+public enum MembershipMode {
+    /**
+     * Each node broadcasts a heartbeat to all nodes periodically. Simple, but the number of messages grows with the 
+     * square of the cluster size
+     */
+    BROADCAST,
+    /**
+     * SWIM-style gossip: each node probes one node per period and membership changes are piggybacked on probes, so 
+     * each node sends a constant number of messages per period
+     * @see GossipMembership
+     */
+    GOSSIP
+}
@@ -0,0 +1,111 @@
+package org.nicbrerod.scripts.manager.distributed.utils.metrics;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Meters of a cluster node. Meters recorded in hot paths are created once, so recording a value doesn't allocate,
+ * and values that the node already keeps, like the number of members, are registered as functions read when meters
+ * are published
+ */
+public class ClusterNodeMeters {
+    /**
+     * Names of the meters
+     */
+    public static final String HEARTBEATS_SENT = "cluster.heartbeats.sent", HEARTBEATS_RECEIVED = "cluster.heartbeats.received",
+        HEARTBEAT_INTERVAL = "cluster.heartbeats.interval", MEMBERS = "cluster.members", LEADER = "cluster.leader",
+        LEADER_CHANGES = "cluster.leader.changes", REQUESTS_COALESCED = "cluster.requests.coalesced";
+
+    /**
+     * Heartbeats sent by the node
+     */
+    private final Counter heartbeatsSent;
+
+    /**
+     * Heartbeats received from other nodes
+     */
+    private final Counter heartbeatsReceived;
+
+    /**
+     * Time between two consecutive heartbeats of the same node
+     */
+    private final Timer heartbeatInterval;
+
+    /**
+     * Time, from {@link System#nanoTime()}, of the last heartbeat received from each node
+     */
+    private final Map<UUID, AtomicLong> lastHeartbeats = new ConcurrentHashMap<>();
+
+    /**
+     * Creates meters that are not published anywhere, used until a node is bound to a registry
+     */
+    public ClusterNodeMeters() {
+        this(new CompositeMeterRegistry(), null);
+    }
+
+    /**
+     * Creates the meters of a node in a registry
+     * @param registry Registry where meters are published
+     * @param node Node whose state is read by function meters, or null to not register them
+     */
+    public ClusterNodeMeters(MeterRegistry registry, ClusterNode<?> node) {
+        this.heartbeatsSent = Counter.builder(HEARTBEATS_SENT).description("Heartbeats sent by this node").register(registry);
+        this.heartbeatsReceived = Counter.builder(HEARTBEATS_RECEIVED).description("Heartbeats received from other nodes").register(registry);
+        this.heartbeatInterval = Timer.builder(HEARTBEAT_INTERVAL).description("Time between two heartbeats received from the same node")
+            .publishPercentiles(0.5, 0.99).publishPercentileHistogram().register(registry);
+
+        if (node != null) {
+            Gauge.builder(MEMBERS, node, n -> n.getClusterNodesInfo().size() + 1).description("Nodes known by this node, including itself")
+                .register(registry);
+            Gauge.builder(LEADER, node, n -> n.imLeader() ? 1 : 0).description("1 if this node is the leader, 0 else").register(registry);
+            FunctionCounter.builder(LEADER_CHANGES, node, ClusterNode::getLeaderChanges).description("Leaders recognized by this node")
+                .register(registry);
+            FunctionCounter.builder(REQUESTS_COALESCED, node, ClusterNode::getCoalescedRequests)
+                .description("Requests merged with an equivalent one").register(registry);
+        }
+    }
+
+    /**
+     * Records a heartbeat sent by the node
+     */
+    public void heartbeatSent() {
+        heartbeatsSent.increment();
+    }
+
+    /**
+     * Records a heartbeat received from a node and the time since its previous one
+     * @param sender Id related to node that sent the heartbeat
+     */
+    public void heartbeatReceived(UUID sender) {
+        heartbeatsReceived.increment();
+        var now = System.nanoTime();
+        var last = lastHeartbeats.get(sender);
+
+        if (last == null) {
+            lastHeartbeats.putIfAbsent(sender, new AtomicLong(now));
+        } else {
+            heartbeatInterval.record(now - last.getAndSet(now), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Forgets the last heartbeat of a node that has left the cluster, so its next heartbeat, if it comes back, is
+     * not recorded as a long interval
+     * @param nodeId Id related to node
+     */
+    public void nodeRemoved(UUID nodeId) {
+        lastHeartbeats.remove(nodeId);
+    }
+}
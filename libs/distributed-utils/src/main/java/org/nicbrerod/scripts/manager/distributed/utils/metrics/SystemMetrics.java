@@ -0,0 +1,28 @@
+package org.nicbrerod.scripts.manager.distributed.utils.metrics;
+
+/**
+ * Snapshot of the resources used by a node
+ */
+public record SystemMetrics(
+    /**
+     * Recent CPU usage of the whole system, from 0 to 1
+     */
+    float cpuUsage,
+    /**
+     * Physical memory used in the system, from 0 to 1
+     */
+    float memoryUsage,
+    /**
+     * Bytes of JVM heap currently used
+     */
+    long heapUsed,
+    /**
+     * Maximum bytes of JVM heap, or -1 if it's not limited
+     */
+    long heapMax
+) {
+    /**
+     * Snapshot used before the first sample is taken
+     */
+    public static final SystemMetrics EMPTY = new SystemMetrics(0, 0, 0, -1);
+}
@@ -0,0 +1,115 @@
+package org.nicbrerod.scripts.manager.distributed.utils.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Samples periodically the resources used by the node and keeps the last snapshot, so readers, like heartbeats, 
+ * only read a cached value instead of querying the system. Values are read from the platform MXBeans, which are 
+ * container-aware and, on Linux, read /proc, so CPU usage is the usage of the system since the previous sample
+ */
+public class SystemMetricsSampler implements AutoCloseable {
+    /**
+     * Logger object used to show sampling errors
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Bean used to read CPU and physical memory usage
+     */
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    /**
+     * Bean used to read JVM heap usage
+     */
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * Executor service used to take samples periodically
+     */
+    private final ScheduledExecutorService samplingExecutor;
+
+    /**
+     * Last sampled snapshot
+     */
+    private volatile SystemMetrics snapshot = SystemMetrics.EMPTY;
+
+    /**
+     * Creates a sampler and starts sampling
+     * @param samplingRate Time, in milliseconds, between two samples
+     */
+    public SystemMetricsSampler(long samplingRate) {
+        this.samplingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "system-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.samplingExecutor.scheduleAtFixedRate(this::sample, 0, samplingRate, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtains the last sampled snapshot, without querying the system
+     * @return Last snapshot, or {@link SystemMetrics#EMPTY} if no sample has been taken yet
+     */
+    public SystemMetrics getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Takes a new sample and replaces the cached snapshot
+     */
+    private void sample() {
+        try {
+            var heap = memoryBean.getHeapMemoryUsage();
+            snapshot = new SystemMetrics(cpuUsage(), memoryUsage(), heap.getUsed(), heap.getMax());
+        } catch (RuntimeException e) {
+            log.warn("Error sampling system metrics", e);
+        }
+    }
+
+    /**
+     * Reads the CPU usage of the system. If the JVM doesn't provide it, it's estimated from the load average
+     * @return CPU usage, from 0 to 1
+     */
+    private float cpuUsage() {
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            var load = ((com.sun.management.OperatingSystemMXBean) osBean).getCpuLoad();
+
+            if (load >= 0)
+                return (float) load;
+        }
+
+        var loadAverage = osBean.getSystemLoadAverage();
+        return loadAverage < 0 ? 0 : (float) Math.min(1, loadAverage / osBean.getAvailableProcessors());
+    }
+
+    /**
+     * Reads the physical memory usage of the system
+     * @return Memory usage, from 0 to 1, or 0 if the JVM doesn't provide it
+     */
+    private float memoryUsage() {
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            var bean = (com.sun.management.OperatingSystemMXBean) osBean;
+            var total = bean.getTotalMemorySize();
+
+            if (total > 0)
+                return (float) (total - bean.getFreeMemorySize()) / total;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Stops sampling
+     */
+    @Override
+    public void close() {
+        samplingExecutor.shutdownNow();
+    }
+}
@@ -6,12 +6,32 @@ package org.nicbrerod.scripts.manager.distributed.utils.model.communication;
  */
 public enum CommInterfaceMessageType {
     /**
-     * Message sent periodically by all nodes with some usefull information 
-     * and used to identify which node is the leader
+     * Message sent periodically by all nodes with some usefull information, like their term 
+     * and if they are the leader
      */
     HEARTBEAT,
     /**
      * Type of message which represents a request from an user to the cluster
      */
-    REQUEST
+    REQUEST,
+    /**
+     * Message with several requests, sent at once to reduce the number of messages during bursts of requests
+     * @see org.nicbrerod.scripts.manager.distributed.utils.request.RequestCoalescer
+     */
+    REQUEST_BATCH,
+    /**
+     * Message used by the gossip membership protocol to probe nodes and spread membership changes
+     * @see org.nicbrerod.scripts.manager.distributed.utils.membership.GossipMembership
+     */
+    GOSSIP,
+    /**
+     * Message used by the leader election protocol to ask for votes and keep the leadership
+     * @see org.nicbrerod.scripts.manager.distributed.utils.election.LeaderElection
+     */
+    ELECTION,
+    /**
+     * Message used to replicate the log of the leader in the rest of nodes
+     * @see org.nicbrerod.scripts.manager.distributed.utils.replication.LogReplication
+     */
+    REPLICATION
 }
@@ -0,0 +1,34 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.communication;
+
+/**
+ * Lanes where a CommInterface can send messages, so messages that keep the cluster alive are not delayed by 
+ * bursts of messages that carry work
+ * @see org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface
+ */
+public enum MessageLane {
+    /**
+     * Messages used to maintain the cluster: heartbeats, membership and leader election. They are small and must 
+     * be delivered on time, or nodes are considered failed
+     */
+    CONTROL,
+    /**
+     * Messages that carry work or state: requests and log replication, including snapshots
+     */
+    DATA;
+
+    /**
+     * Obtains the lane of a type of message
+     * @param type Type of message
+     * @return Lane where messages of this type are sent
+     */
+    public static MessageLane of(CommInterfaceMessageType type) {
+        switch (type) {
+            case HEARTBEAT:
+            case GOSSIP:
+            case ELECTION:
+                return CONTROL;
+            default:
+                return DATA;
+        }
+    }
+}
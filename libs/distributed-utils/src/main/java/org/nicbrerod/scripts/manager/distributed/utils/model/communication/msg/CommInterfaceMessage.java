@@ -25,14 +25,14 @@ public abstract class CommInterfaceMessage implements Serializable {
      * Auto-generated ID, used to register message
      */
     @Getter
-    private final UUID id = UUID.randomUUID();
+    private final UUID id;
 
     /**
      * Date when message was created. This property allows to identify messages, next to 
      * the id
      */
     @Getter
-    private final OffsetDateTime timestamp = OffsetDateTime.now();
+    private final OffsetDateTime timestamp;
 
     /**
      * Id of node who sends the heartbeat message
@@ -41,7 +41,20 @@ public abstract class CommInterfaceMessage implements Serializable {
     private final UUID sender;
 
     public CommInterfaceMessage(CommInterfaceMessageType type, UUID sender) {
+        this(type, UUID.randomUUID(), OffsetDateTime.now(), sender);
+    }
+
+    /**
+     * Constructor used to rebuild a received message with its original id and timestamp
+     * @param type Type of message
+     * @param id Id of message
+     * @param timestamp Date when message was created
+     * @param sender Id of node who sent the message
+     */
+    protected CommInterfaceMessage(CommInterfaceMessageType type, UUID id, OffsetDateTime timestamp, UUID sender) {
         this.type = type;
+        this.id = id;
+        this.timestamp = timestamp;
         this.sender = sender;
     }
 }
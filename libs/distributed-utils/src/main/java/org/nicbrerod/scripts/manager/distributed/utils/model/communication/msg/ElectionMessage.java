@@ -0,0 +1,102 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.CommInterfaceMessageType;
+
+import lombok.Getter;
+
+/**
+ * Message of the leader election protocol. All messages carry the term of the sender, so nodes with an older term 
+ * notice it and move to the newer one
+ * @see org.nicbrerod.scripts.manager.distributed.utils.election.LeaderElection
+ */
+public class ElectionMessage extends CommInterfaceMessage {
+
+    /**
+     * Kinds of election messages
+     */
+    public enum Kind {
+        /**
+         * Broadcasted by a candidate to ask for votes in its term
+         */
+        REQUEST_VOTE,
+        /**
+         * Answer to a {@link #REQUEST_VOTE}, {@link ElectionMessage#granted} indicates if vote has been granted
+         */
+        VOTE,
+        /**
+         * Broadcasted periodically by the leader to keep its leadership and renew its lease
+         */
+        LEADER_HEARTBEAT,
+        /**
+         * Answer to a {@link #LEADER_HEARTBEAT}, it carries the round of the heartbeat it answers
+         */
+        LEADER_HEARTBEAT_ACK
+    }
+
+    /**
+     * Kind of message
+     */
+    @Getter
+    private final Kind kind;
+
+    /**
+     * Current term of the sender
+     */
+    @Getter
+    private final long term;
+
+    /**
+     * Round of the leader heartbeat, answers carry the round of the heartbeat they answer
+     */
+    @Getter
+    private final long round;
+
+    /**
+     * Indicates if a vote has been granted, only used in {@link Kind#VOTE} messages
+     */
+    @Getter
+    private final boolean granted;
+
+    /**
+     * Index of the last entry of the candidate's log, only used in {@link Kind#REQUEST_VOTE} messages
+     */
+    @Getter
+    private final long lastLogIndex;
+
+    /**
+     * Term of the last entry of the candidate's log, only used in {@link Kind#REQUEST_VOTE} messages
+     */
+    @Getter
+    private final long lastLogTerm;
+
+    public ElectionMessage(UUID sender, Kind kind, long term, long round, boolean granted) {
+        this(sender, kind, term, round, granted, 0, 0);
+    }
+
+    public ElectionMessage(UUID sender, Kind kind, long term, long round, boolean granted, long lastLogIndex, long lastLogTerm) {
+        super(CommInterfaceMessageType.ELECTION, sender);
+        this.kind = kind;
+        this.term = term;
+        this.round = round;
+        this.granted = granted;
+        this.lastLogIndex = lastLogIndex;
+        this.lastLogTerm = lastLogTerm;
+    }
+
+    /**
+     * Constructor used by codecs to rebuild a received message with all its original values
+     */
+    public ElectionMessage(UUID id, OffsetDateTime timestamp, UUID sender, Kind kind, long term, long round, boolean granted, 
+        long lastLogIndex, long lastLogTerm) {
+        super(CommInterfaceMessageType.ELECTION, id, timestamp, sender);
+        this.kind = kind;
+        this.term = term;
+        this.round = round;
+        this.granted = granted;
+        this.lastLogIndex = lastLogIndex;
+        this.lastLogTerm = lastLogTerm;
+    }
+}
@@ -0,0 +1,84 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.CommInterfaceMessageType;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberUpdate;
+
+import lombok.Getter;
+
+/**
+ * Message of the gossip membership protocol. All messages carry a list of membership updates, the first one is 
+ * always the current state of the sender
+ * @see org.nicbrerod.scripts.manager.distributed.utils.membership.GossipMembership
+ */
+public class GossipMessage extends CommInterfaceMessage {
+
+    /**
+     * Kinds of gossip messages
+     */
+    public enum Kind {
+        /**
+         * Broadcasted by a node that doesn't know any member, all receivers answer with an {@link #ACK}
+         */
+        JOIN,
+        /**
+         * Direct probe, receiver must answer with an {@link #ACK}
+         */
+        PING,
+        /**
+         * Request to probe {@link GossipMessage#target} on behalf of the sender, used when sender's direct probe 
+         * has not been answered
+         */
+        PING_REQ,
+        /**
+         * Answer to a probe
+         */
+        ACK
+    }
+
+    /**
+     * Kind of message
+     */
+    @Getter
+    private final Kind kind;
+
+    /**
+     * Sequence number of the probe, answers carry the sequence of the message they answer
+     */
+    @Getter
+    private final long sequence;
+
+    /**
+     * Node to probe, for {@link Kind#PING_REQ}, or node that answered a probe, for {@link Kind#ACK}
+     */
+    @Getter
+    private final UUID target;
+
+    /**
+     * Membership updates piggybacked on this message
+     */
+    @Getter
+    private final List<MemberUpdate> updates;
+
+    public GossipMessage(UUID sender, Kind kind, long sequence, UUID target, List<MemberUpdate> updates) {
+        super(CommInterfaceMessageType.GOSSIP, sender);
+        this.kind = kind;
+        this.sequence = sequence;
+        this.target = target;
+        this.updates = updates;
+    }
+
+    /**
+     * Constructor used by codecs to rebuild a received message with all its original values
+     */
+    public GossipMessage(UUID id, OffsetDateTime timestamp, UUID sender, Kind kind, long sequence, UUID target, List<MemberUpdate> updates) {
+        super(CommInterfaceMessageType.GOSSIP, id, timestamp, sender);
+        this.kind = kind;
+        this.sequence = sequence;
+        this.target = target;
+        this.updates = updates;
+    }
+}
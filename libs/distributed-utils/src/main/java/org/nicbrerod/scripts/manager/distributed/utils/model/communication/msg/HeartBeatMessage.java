@@ -40,15 +40,69 @@ public class HeartBeatMessage extends CommInterfaceMessage {
     @Getter    
     private float memoryUsage;
 
+    /**
+     * Number of requests running on sender node
+     */
+    @Getter
+    private int runningRequests;
+
+    /**
+     * Number of requests waiting to run on sender node
+     */
+    @Getter
+    private int queuedRequests;
+
+    /**
+     * Bytes of JVM heap used on sender node
+     */
+    @Getter
+    private long heapUsed;
+
+    /**
+     * Maximum bytes of JVM heap on sender node, or -1 if it's not limited
+     */
+    @Getter
+    private long heapMax;
+
     @Getter
     private OffsetDateTime dateTime;
 
     public HeartBeatMessage(UUID sender, boolean leader, long term, float cpuUsage, float memoryUsage) {
+        this(sender, leader, term, cpuUsage, memoryUsage, 0, 0);
+    }
+
+    public HeartBeatMessage(UUID sender, boolean leader, long term, float cpuUsage, float memoryUsage, int runningRequests, int queuedRequests) {
+        this(sender, leader, term, cpuUsage, memoryUsage, runningRequests, queuedRequests, 0, -1);
+    }
+
+    public HeartBeatMessage(UUID sender, boolean leader, long term, float cpuUsage, float memoryUsage, int runningRequests, int queuedRequests, 
+        long heapUsed, long heapMax) {
         super(CommInterfaceMessageType.HEARTBEAT, sender);
         this.leader = leader;
         this.term = term;
         this.cpuUsage = cpuUsage;
         this.memoryUsage = memoryUsage;
+        this.runningRequests = runningRequests;
+        this.queuedRequests = queuedRequests;
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
         this.dateTime = OffsetDateTime.now();
     }
+
+    /**
+     * Constructor used by codecs to rebuild a received heartbeat with all its original values
+     */
+    public HeartBeatMessage(UUID id, OffsetDateTime timestamp, UUID sender, boolean leader, long term, float cpuUsage, float memoryUsage, 
+        int runningRequests, int queuedRequests, long heapUsed, long heapMax, OffsetDateTime dateTime) {
+        super(CommInterfaceMessageType.HEARTBEAT, id, timestamp, sender);
+        this.leader = leader;
+        this.term = term;
+        this.cpuUsage = cpuUsage;
+        this.memoryUsage = memoryUsage;
+        this.runningRequests = runningRequests;
+        this.queuedRequests = queuedRequests;
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+        this.dateTime = dateTime;
+    }
 }
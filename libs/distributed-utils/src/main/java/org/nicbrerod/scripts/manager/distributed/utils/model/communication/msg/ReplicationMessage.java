@@ -0,0 +1,148 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.CommInterfaceMessageType;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+
+import lombok.Getter;
+
+/**
+ * Message of the log replication protocol
+ * @param <T> Type of the content of log entries
+ * @see org.nicbrerod.scripts.manager.distributed.utils.replication.LogReplication
+ */
+public class ReplicationMessage<T extends Serializable> extends CommInterfaceMessage {
+
+    /**
+     * Kinds of replication messages
+     */
+    public enum Kind {
+        /**
+         * Sent by a follower to the leader to append a new entry, carried with index and term 0
+         */
+        PROPOSE,
+        /**
+         * Sent by the leader to a follower with the entries that follower doesn't have yet, if any, and the commit 
+         * index of the leader
+         */
+        APPEND,
+        /**
+         * Answer to an {@link #APPEND}
+         */
+        APPEND_RESPONSE,
+        /**
+         * Sent by the leader to a follower that needs entries already compacted, with a chunk of the last snapshot
+         */
+        SNAPSHOT,
+        /**
+         * Answer to a {@link #SNAPSHOT}, with the number of consecutive chunks received
+         */
+        SNAPSHOT_RESPONSE
+    }
+
+    /**
+     * Kind of message
+     */
+    @Getter
+    private final Kind kind;
+
+    /**
+     * Current term of the sender
+     */
+    @Getter
+    private final long term;
+
+    /**
+     * Index of the entry before the carried ones, for {@link Kind#APPEND}, last index that matches the leader's 
+     * log, for {@link Kind#APPEND_RESPONSE}, or index of the last entry included in the snapshot, for 
+     * {@link Kind#SNAPSHOT} and {@link Kind#SNAPSHOT_RESPONSE}
+     */
+    @Getter
+    private final long index;
+
+    /**
+     * Term of the entry at {@link #index}, only used in {@link Kind#APPEND} and {@link Kind#SNAPSHOT} messages
+     */
+    @Getter
+    private final long indexTerm;
+
+    /**
+     * Carried entries
+     */
+    @Getter
+    private final List<LogEntry<T>> entries;
+
+    /**
+     * Commit index of the sender
+     */
+    @Getter
+    private final long commitIndex;
+
+    /**
+     * Indicates if entries have been appended, or snapshot has been installed, only used in 
+     * {@link Kind#APPEND_RESPONSE} and {@link Kind#SNAPSHOT_RESPONSE} messages
+     */
+    @Getter
+    private final boolean success;
+
+    /**
+     * Position of the carried chunk, for {@link Kind#SNAPSHOT}, or number of consecutive chunks received, for 
+     * {@link Kind#SNAPSHOT_RESPONSE}
+     */
+    @Getter
+    private final int chunk;
+
+    /**
+     * Total number of chunks of the snapshot, only used in {@link Kind#SNAPSHOT} messages
+     */
+    @Getter
+    private final int chunks;
+
+    /**
+     * Content of the carried chunk, only used in {@link Kind#SNAPSHOT} messages
+     */
+    @Getter
+    private final byte[] data;
+
+    public ReplicationMessage(UUID sender, Kind kind, long term, long index, long indexTerm, List<LogEntry<T>> entries, long commitIndex, 
+        boolean success) {
+        this(sender, kind, term, index, indexTerm, entries, commitIndex, success, 0, 0, null);
+    }
+
+    public ReplicationMessage(UUID sender, Kind kind, long term, long index, long indexTerm, List<LogEntry<T>> entries, long commitIndex, 
+        boolean success, int chunk, int chunks, byte[] data) {
+        super(CommInterfaceMessageType.REPLICATION, sender);
+        this.kind = kind;
+        this.term = term;
+        this.index = index;
+        this.indexTerm = indexTerm;
+        this.entries = entries;
+        this.commitIndex = commitIndex;
+        this.success = success;
+        this.chunk = chunk;
+        this.chunks = chunks;
+        this.data = data;
+    }
+
+    /**
+     * Constructor used by codecs to rebuild a received message with all its original values
+     */
+    public ReplicationMessage(UUID id, OffsetDateTime timestamp, UUID sender, Kind kind, long term, long index, long indexTerm, 
+        List<LogEntry<T>> entries, long commitIndex, boolean success, int chunk, int chunks, byte[] data) {
+        super(CommInterfaceMessageType.REPLICATION, id, timestamp, sender);
+        this.kind = kind;
+        this.term = term;
+        this.index = index;
+        this.indexTerm = indexTerm;
+        this.entries = entries;
+        this.commitIndex = commitIndex;
+        this.success = success;
+        this.chunk = chunk;
+        this.chunks = chunks;
+        this.data = data;
+    }
+}
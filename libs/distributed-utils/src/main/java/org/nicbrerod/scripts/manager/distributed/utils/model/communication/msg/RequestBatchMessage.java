@@ -0,0 +1,45 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.CommInterfaceMessageType;
+
+import lombok.Getter;
+
+/**
+ * Message with several requests, sent by a node to the leader, or by the leader to the node selected to process them
+ * @param <T> Type of the content of requests
+ * @see org.nicbrerod.scripts.manager.distributed.utils.request.RequestCoalescer
+ */
+public class RequestBatchMessage<T extends Serializable> extends CommInterfaceMessage {
+
+    /**
+     * Requests of the batch, in the order they were submitted
+     */
+    @Getter
+    private final List<RequestMessage<T>> requests;
+
+    /**
+     * Id of node selected by the leader to process all requests, or null if requests have not been placed yet
+     */
+    @Getter
+    private final UUID assignee;
+
+    public RequestBatchMessage(UUID sender, List<RequestMessage<T>> requests, UUID assignee) {
+        super(CommInterfaceMessageType.REQUEST_BATCH, sender);
+        this.requests = requests;
+        this.assignee = assignee;
+    }
+
+    /**
+     * Constructor used by codecs to rebuild a received batch with all its original values
+     */
+    public RequestBatchMessage(UUID id, OffsetDateTime timestamp, UUID sender, List<RequestMessage<T>> requests, UUID assignee) {
+        super(CommInterfaceMessageType.REQUEST_BATCH, id, timestamp, sender);
+        this.requests = requests;
+        this.assignee = assignee;
+    }
+}
@@ -1,6 +1,7 @@
 package org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg;
 
 import java.io.Serializable;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.CommInterfaceMessageType;
@@ -17,10 +18,45 @@ public class RequestMessage<T extends Serializable> extends CommInterfaceMessage
     @Getter
     private T requestContent;
 
+    /**
+     * Parameters of this request, that are not part of its content, like the arguments of an execution. Empty if 
+     * request has no parameters
+     */
+    @Getter
+    private String[] parameters;
+
+    /**
+     * Id of node selected by the leader to process the request, or null if request has not been placed yet
+     */
+    @Getter
+    private UUID assignee;
+
     public RequestMessage(UUID sender, String requestType, T requestContent) {
+        this(sender, requestType, requestContent, null);
+    }
+
+    public RequestMessage(UUID sender, String requestType, T requestContent, UUID assignee) {
+        this(sender, requestType, requestContent, null, assignee);
+    }
+
+    public RequestMessage(UUID sender, String requestType, T requestContent, String[] parameters, UUID assignee) {
         super(CommInterfaceMessageType.REQUEST, sender);
         this.requestType = requestType;
         this.requestContent = requestContent;
+        this.parameters = parameters != null ? parameters : new String[]{};
+        this.assignee = assignee;
+    }
+
+    /**
+     * Constructor used by codecs to rebuild a received request with all its original values
+     */
+    public RequestMessage(UUID id, OffsetDateTime timestamp, UUID sender, String requestType, T requestContent, String[] parameters, 
+        UUID assignee) {
+        super(CommInterfaceMessageType.REQUEST, id, timestamp, sender);
+        this.requestType = requestType;
+        this.requestContent = requestContent;
+        this.parameters = parameters != null ? parameters : new String[]{};
+        this.assignee = assignee;
     }
     
 }
@@ -0,0 +1,20 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.membership;
+
+/**
+ * State of a node in the membership list of the gossip protocol
+ */
+public enum MemberState {
+    /**
+     * Node answers to probes
+     */
+    ALIVE,
+    /**
+     * Node has not answered to a probe, it's still considered a member until suspicion timeout expires or it 
+     * refutes the suspicion
+     */
+    SUSPECT,
+    /**
+     * Node has been removed from the cluster
+     */
+    DEAD
+}
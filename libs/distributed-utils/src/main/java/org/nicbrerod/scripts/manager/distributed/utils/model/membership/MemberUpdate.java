@@ -0,0 +1,28 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.membership;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+
+/**
+ * Change in the state of a node, piggybacked on gossip messages to spread it through the cluster
+ */
+public record MemberUpdate(
+    /**
+     * Id related to node
+     */
+    UUID node,
+    /**
+     * New state of the node
+     */
+    MemberState state,
+    /**
+     * Incarnation of the node when the change happened. Only the node itself increases it, to refute suspicions
+     */
+    long incarnation,
+    /**
+     * Last information reported by the node, like its load and term, or null if it's unknown
+     */
+    HeartBeatMessage info
+) implements Serializable {}
@@ -0,0 +1,27 @@
+package org.nicbrerod.scripts.manager.distributed.utils.model.replication;
+
+import java.io.Serializable;
+
+/**
+ * Entry of the replicated log. Entries are appended by the leader and applied, in order, by all nodes once a 
+ * majority of the cluster has stored them
+ * @param <T> Type of the content of the entry
+ */
+public record LogEntry<T extends Serializable>(
+    /**
+     * Position of the entry in the log, starting at 1
+     */
+    long index,
+    /**
+     * Term of the leader that appended the entry
+     */
+    long term,
+    /**
+     * Operation described by the entry, or null for the empty entry appended by each new leader
+     */
+    String type,
+    /**
+     * Content of the operation
+     */
+    T content
+) implements Serializable {}
@@ -1,8 +1,12 @@
 package org.nicbrerod.scripts.manager.distributed.utils.node;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.time.OffsetDateTime;
-import java.time.ZoneId;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
@@ -10,19 +14,52 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.jboss.logging.Logger;
 import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.election.ElectionStateFile;
+import org.nicbrerod.scripts.manager.distributed.utils.election.LeaderElection;
+import org.nicbrerod.scripts.manager.distributed.utils.events.EventLog;
+import org.nicbrerod.scripts.manager.distributed.utils.failure.PhiAccrualFailureDetector;
+import org.nicbrerod.scripts.manager.distributed.utils.membership.GossipMembership;
+import org.nicbrerod.scripts.manager.distributed.utils.membership.MembershipMode;
+import org.nicbrerod.scripts.manager.distributed.utils.metrics.ClusterNodeMeters;
+import org.nicbrerod.scripts.manager.distributed.utils.metrics.SystemMetrics;
+import org.nicbrerod.scripts.manager.distributed.utils.metrics.SystemMetricsSampler;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.GossipMessage;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ReplicationMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestBatchMessage;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
-
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.LeastLoadedPlacement;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.NodeLoad;
+import org.nicbrerod.scripts.manager.distributed.utils.placement.PlacementStrategy;
+import org.nicbrerod.scripts.manager.distributed.utils.replication.LogReplication;
+import org.nicbrerod.scripts.manager.distributed.utils.replication.ReplicatedLog;
+import org.nicbrerod.scripts.manager.distributed.utils.replication.StateMachine;
+import org.nicbrerod.scripts.manager.distributed.utils.request.OrderedRequestExecutor;
+import org.nicbrerod.scripts.manager.distributed.utils.request.RequestCoalescer;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Element to represent a server inside a custer. A ClusterNode has the ability to communicate 
  * between nodes in their same cluster and agree on who is the leader to organize the work
+ * @see LeaderElection
+ * @see LogReplication
  */
 public abstract class ClusterNode<R extends Serializable> {
+    /**
+     * Types of the events recorded by a node in its {@link #events}
+     */
+    public static final String EVENT_HEARTBEAT = "heartbeat", EVENT_REQUEST = "request", EVENT_DISPATCH = "dispatch", 
+        EVENT_MEMBERSHIP = "membership";
 
     /**
      * Random object used to generate random numbers for some operations.
@@ -39,13 +76,14 @@ public abstract class ClusterNode<R extends Serializable> {
 
     /**
      * Minimum value, in milliseconds, that a wait can have in the consensus algorithm when 
-     * a new random wait is generated
+     * a new random wait is generated. It's the minimum election timeout, if it's greater than 
+     * two heartbeats
      */
     private long millisStart;
 
     /**
      * maximum value, in milliseconds, that a wait can have in the consensus algorithm when
-     * a new random wait is generated
+     * a new random wait is generated. It's the maximum election timeout
      */
     private long millisEnd;
 
@@ -69,23 +107,46 @@ public abstract class ClusterNode<R extends Serializable> {
     private Map<UUID, HeartBeatMessage> clusterNodesInfo;
 
     /**
-     * Term value used to check which node in the cluster is the oldest. This value 
-     * is usefull when two or more nodes want to become the leader and algorithm needs to
-     * select one 
+     * Leader election protocol, started by {@link #consensus()}
+     */
+    private LeaderElection election;
+
+    /**
+     * Log of operations replicated in all nodes by the leader
+     */
+    private ReplicatedLog<R> replicatedLog;
+
+    /**
+     * Log replication protocol, started by {@link #consensus()}
+     */
+    private LogReplication<R> replication;
+
+    /**
+     * Expected number of nodes of the cluster, including this one. Elections and commits need a majority of this 
+     * size, or of the known nodes if there are more, so nodes that are not reachable never lower the majority. It 
+     * must be configured before {@link #consensus()}, because a majority of the known nodes would let both sides of 
+     * a partition elect a leader, and it can't be changed after it
      */
     @Getter
-    private long term;
+    @Setter
+    private int clusterSize;
 
     /**
-     * Id related to current leader in the cluster
+     * File where the term and vote of this node are stored, so it doesn't vote twice in the same term after a 
+     * restart. If null, they are kept only in memory. It can't be changed after {@link #consensus()}
      */
     @Getter
-    private UUID leader;
+    @Setter
+    private Path electionStateFile;
 
     /**
-     * Term value related to current leader in the cluster
+     * Number of applied operations of the replicated log after which the state of this node is captured with 
+     * {@link #snapshotState()} and the log is compacted. If zero or less, log is never compacted. It can't be 
+     * changed after {@link #consensus()}
      */
-    private long leaderTerm;
+    @Getter
+    @Setter
+    private int snapshotThreshold;
 
     /**
      * Executor service used to send own information to the other nodes periodically
@@ -97,14 +158,118 @@ public abstract class ClusterNode<R extends Serializable> {
      */
     private ScheduledExecutorService checkClusterNodesExecutor;
 
+    /**
+     * Sampler of the resources used by this node, reported in heartbeats. It's started with heartbeat sending
+     */
+    private SystemMetricsSampler metricsSampler;
+
+    /**
+     * How this node discovers the rest of nodes and detects the stopped ones. It must be the same in all nodes of the
+     * cluster and can't be changed after {@link #consensus()}
+     */
+    @Getter
+    @Setter
+    private MembershipMode membershipMode;
+
+    /**
+     * Number of nodes asked to probe a node indirectly, in {@link MembershipMode#GOSSIP} mode
+     */
+    @Getter
+    @Setter
+    private int gossipFanOut;
+
+    /**
+     * Gossip protocol instance, only started in {@link MembershipMode#GOSSIP} mode
+     */
+    private GossipMembership gossip;
+
+    /**
+     * Suspicion level from which a node that doesn't send heartbeats is deregistered, in 
+     * {@link MembershipMode#BROADCAST} mode
+     */
+    @Getter
+    @Setter
+    private double phiThreshold;
+
+    /**
+     * Detector of nodes that stop sending heartbeats, only started in {@link MembershipMode#BROADCAST} mode
+     */
+    private PhiAccrualFailureDetector failureDetector;
+
     /**
      * Boolean value to indicate that the node is ready to operate with it
      */
     @Getter
     private boolean active;
 
+    /**
+     * Strategy used, when this node is the leader, to select which node processes each request
+     * @see PlacementStrategy
+     */
+    @Getter
+    @Setter
+    private PlacementStrategy placementStrategy;
+
+    /**
+     * Number of requests dispatched by this node to each node since the last heartbeat received from it. They are 
+     * added to the load reported by the node, so a burst of requests is not sent to the same node before its next 
+     * heartbeat
+     */
+    private Map<UUID, AtomicInteger> dispatchedRequests;
+
+    /**
+     * Time, in milliseconds, that submitted requests wait to be sent together, merging the equivalent ones. The 
+     * leader also waits this time before placing received requests, so equivalent requests submitted in different 
+     * nodes are merged too if they reach the leader in the same window. If zero or less, requests are sent one by one. It can't be changed after 
+     * {@link #consensus()}
+     * @see #coalescingKey(RequestMessage)
+     */
+    @Getter
+    @Setter
+    private long coalescingWindow;
+
+    /**
+     * Buffer of requests waiting to be sent, only created if there is a {@link #coalescingWindow}
+     */
+    private RequestCoalescer<R> coalescer;
+
+    /**
+     * Number of threads that process requests, out of the thread that receives them. Requests of the same sender are 
+     * processed in order by the same thread. If zero or less, requests are processed by the thread that receives or 
+     * submits them. It can't be changed after {@link #consensus()}
+     * @see OrderedRequestExecutor
+     */
+    @Getter
+    @Setter
+    private int requestThreads;
+
+    /**
+     * Maximum number of requests waiting for each request thread, requests received when it's reached are discarded
+     */
+    @Getter
+    @Setter
+    private int requestQueueCapacity = OrderedRequestExecutor.DEFAULT_CAPACITY;
+
+    /**
+     * Executor of requests, only created if there are {@link #requestThreads}
+     */
+    private OrderedRequestExecutor<R> requestExecutor;
+
+    /**
+     * Meters recorded by this node, they are not published until node is bound to a registry with 
+     * {@link #bindMeters(MeterRegistry)}
+     */
+    private volatile ClusterNodeMeters meters = new ClusterNodeMeters();
+
     private Logger log;
 
+    /**
+     * Sampled log of the events produced by received messages and dispatched requests, written in {@link #log} in 
+     * background, so handling a message doesn't build strings
+     */
+    @Getter
+    private EventLog events;
+
     public ClusterNode(CommInterface commInterface) {
         this.id = UUID.randomUUID();
         this.commInterface = commInterface;
@@ -113,15 +278,17 @@ public abstract class ClusterNode<R extends Serializable> {
         this.millisStart = 1000;
         this.millisEnd = 5000;
         this.clusterNodesInfo = new ConcurrentHashMap<>();
-        this.term = OffsetDateTime.now().atZoneSameInstant(ZoneId.of("Europe/Madrid")).getNano();
-        this.leader = null;
-        this.leaderTerm = Long.MAX_VALUE;
+        this.replicatedLog = new ReplicatedLog<>();
         this.active = false;
+        this.placementStrategy = new LeastLoadedPlacement();
+        this.dispatchedRequests = new ConcurrentHashMap<>();
+        this.membershipMode = MembershipMode.BROADCAST;
+        this.gossipFanOut = GossipMembership.DEFAULT_FAN_OUT;
+        this.phiThreshold = PhiAccrualFailureDetector.DEFAULT_THRESHOLD;
         this.heartbeatExecutor = Executors.newScheduledThreadPool(1);
         this.checkClusterNodesExecutor = Executors.newScheduledThreadPool(1);
         this.log = Logger.getLogger(this.id.toString());
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> heartbeatExecutor.shutdownNow()));
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> checkClusterNodesExecutor.shutdownNow()));
+        this.events = new EventLog(log);
     }
 
     public ClusterNode(CommInterface commInterface, UUID id) {
@@ -203,41 +370,155 @@ public abstract class ClusterNode<R extends Serializable> {
         this.id = id;
     }
 
-    /**
-     * Maximum time a node can go without communicating with the current node before the current node deregisters it
-     */
-    private long getCheckRegisteredClusterNodesRate() {
-        return Math.round(this.heartbeatRate * 2);
-    }
-
     /**
      * Starts periodically heartbeat message sending
      */
     public void sendPeriodicalHeartBeat() {
-        // TODO: Get system's cpu and memory usage
-        
+        startMetricsSampler();
+
         heartbeatExecutor.scheduleAtFixedRate(() -> {
-            commInterface.sendBroadcast(new HeartBeatMessage(this.id, this.leader != null && this.leader.equals(this.id), term, 0, 0));
+            commInterface.sendBroadcast(createHeartBeat());
         }, 0, heartbeatRate, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Starts periodically nodes checking
+     * Starts the gossip membership protocol, used instead of {@link #sendPeriodicalHeartBeat()} and 
+     * {@link #checkClusterNodeRegistry()} in {@link MembershipMode#GOSSIP} mode. Protocol period is the heartbeat rate
+     */
+    public void startGossip() {
+        startMetricsSampler();
+
+        gossip = new GossipMembership(this.id, commInterface, heartbeatRate, gossipFanOut, this::createHeartBeat, this::registerNodeInfo, 
+            this::unregisterNode);
+        gossip.start();
+    }
+
+    /**
+     * Stops all periodical tasks of this node and its communication interface. Node ignores received messages after it.
+     * Node doesn't register shutdown hooks, so its owner must call this method to release its threads
+     */
+    public void stop() {
+        this.active = false;
+
+        if (coalescer != null) {
+            coalescer.close();
+        }
+
+        if (requestExecutor != null) {
+            requestExecutor.close();
+        }
+
+        heartbeatExecutor.shutdownNow();
+        checkClusterNodesExecutor.shutdownNow();
+
+        if (gossip != null) {
+            gossip.close();
+        }
+
+        if (replication != null) {
+            replication.close();
+        }
+
+        if (election != null) {
+            election.close();
+        }
+
+        if (metricsSampler != null) {
+            metricsSampler.close();
+        }
+
+        commInterface.onStop();
+    }
+
+    /**
+     * Starts sampling system metrics, reported with the information of this node
+     */
+    private void startMetricsSampler() {
+        metricsSampler = new SystemMetricsSampler(heartbeatRate);
+    }
+
+    /**
+     * Creates a heartbeat message with the current information of this node
+     * @return Heartbeat message
+     */
+    private HeartBeatMessage createHeartBeat() {
+        var metrics = getSystemMetrics();
+        meters.heartbeatSent();
+        return new HeartBeatMessage(this.id, imLeader(), getTerm(), metrics.cpuUsage(), 
+            metrics.memoryUsage(), getRunningRequests(), getQueuedRequests() + getPendingRequests(), metrics.heapUsed(), metrics.heapMax());
+    }
+
+    /**
+     * Registers the information received from another node
+     * @param heartbeat Last information of the node
+     */
+    private void registerNodeInfo(HeartBeatMessage heartbeat) {
+        clusterNodesInfo.put(heartbeat.getSender(), heartbeat);
+        meters.heartbeatReceived(heartbeat.getSender());
+        // Heartbeat already reports the requests dispatched before it was sent
+        dispatchedRequests.remove(heartbeat.getSender());
+
+        var detector = failureDetector;
+
+        if (detector != null) {
+            detector.heartbeat(heartbeat.getSender());
+        }
+    }
+
+    /**
+     * Removes a node that has stopped communicating with this one
+     * @param nodeId Id related to node
+     */
+    private void unregisterNode(UUID nodeId) {
+        this.clusterNodesInfo.remove(nodeId);
+        this.dispatchedRequests.remove(nodeId);
+        meters.nodeRemoved(nodeId);
+    }
+
+    /**
+     * Publishes the meters of this node in a registry: heartbeats sent and received, time between heartbeats of each 
+     * node, known members, leadership and coalesced requests
+     * @param registry Registry where meters are published
+     */
+    public void bindMeters(MeterRegistry registry) {
+        meters = new ClusterNodeMeters(registry, this);
+    }
+
+    /**
+     * Obtains the last sample of the resources used by this node
+     * @return Last sampled metrics, or {@link SystemMetrics#EMPTY} if heartbeat sending has not been started
+     */
+    public SystemMetrics getSystemMetrics() {
+        var sampler = metricsSampler;
+        return sampler != null ? sampler.getSnapshot() : SystemMetrics.EMPTY;
+    }
+
+    /**
+     * Starts periodically nodes checking. Each node is deregistered when its phi-accrual suspicion level, calculated 
+     * from the intervals of its heartbeats, reaches {@link #phiThreshold}
      */
     public void checkClusterNodeRegistry() {
         // TODO: Add logic if leader is the cluster node to remove
-        checkClusterNodesExecutor.scheduleAtFixedRate(() -> {
-            var currentMillis = OffsetDateTime.now().toInstant().toEpochMilli();
+        var detector = new PhiAccrualFailureDetector(heartbeatRate, phiThreshold, heartbeatRate, nodeId -> {
+            events.record(Logger.Level.WARN, EVENT_MEMBERSHIP, "New inactive node: '%s'", nodeId);
+            unregisterNode(nodeId);
+        });
+        // Nodes registered before starting the detector are monitored from now
+        clusterNodesInfo.keySet().forEach(detector::heartbeat);
+        failureDetector = detector;
 
-            this.clusterNodesInfo.entrySet().stream().filter(entry -> {
-                var millisDateTime = entry.getValue().getDateTime().toInstant().toEpochMilli();
-                return currentMillis - millisDateTime > getCheckRegisteredClusterNodesRate();
-            }).forEach(entry -> {
-                log.warn(String.format("New inactive node: '%s'", entry.getKey()));
-                this.clusterNodesInfo.remove(entry.getKey());
-            });
+        checkClusterNodesExecutor.scheduleAtFixedRate(detector::expire, detector.getTickDuration(), detector.getTickDuration(), 
+            TimeUnit.MILLISECONDS);
+    }
 
-        }, 0, getCheckRegisteredClusterNodesRate(), TimeUnit.MILLISECONDS);
+    /**
+     * Obtains the current suspicion level of a node, calculated from the intervals of its heartbeats
+     * @param nodeId Id related to node
+     * @return Suspicion level, or 0 if node is not monitored or node checking has not been started
+     */
+    public double getSuspicionLevel(UUID nodeId) {
+        var detector = failureDetector;
+        return detector != null ? detector.phi(nodeId) : 0;
     }
 
     /**
@@ -245,7 +526,36 @@ public abstract class ClusterNode<R extends Serializable> {
      * @return True if this instance is the leader, false else
      */
     public boolean imLeader() {
-        return this.leader.equals(this.id);
+        var currentElection = election;
+        return currentElection != null && currentElection.isLeader();
+    }
+
+    /**
+     * Obtains the leader of the cluster as known by this node, without communicating with other nodes
+     * @return Id related to current leader, or null if there is no leader with a valid lease
+     */
+    public UUID getLeader() {
+        var currentElection = election;
+        return currentElection != null ? currentElection.getLeader() : null;
+    }
+
+    /**
+     * Number of times that this node has recognized a new leader, including the first one
+     * @return Count of leader changes, or 0 if consensus algorithm has not been started
+     */
+    public long getLeaderChanges() {
+        var currentElection = election;
+        return currentElection != null ? currentElection.getLeaderChanges() : 0;
+    }
+
+    /**
+     * Obtains the current election term of this node. Terms are consecutive integers and each one has, at most, 
+     * one leader
+     * @return Current term, or 0 if consensus algorithm has not been started
+     */
+    public long getTerm() {
+        var currentElection = election;
+        return currentElection != null ? currentElection.getTerm() : 0;
     }
 
     /**
@@ -260,23 +570,43 @@ public abstract class ClusterNode<R extends Serializable> {
 
             switch (message.getType()) {
                 case HEARTBEAT:
+                    // In gossip mode, node information is only received through gossip messages
+                    if (membershipMode == MembershipMode.GOSSIP)
+                        break;
+
                     var heartbeat = (HeartBeatMessage)message;
 
-                    log.info(String.format("New heartbeat message received from '%s'", heartbeat.getSender()));
+                    events.record(Logger.Level.INFO, EVENT_HEARTBEAT, "New heartbeat message received from '%s'", heartbeat.getSender());
 
-                    if (heartbeat.getTerm() < this.term) {
-                        this.leader = heartbeat.getSender();
-                        this.leaderTerm = heartbeat.getTerm();
+                    registerNodeInfo(heartbeat);
+                    break;
+                case GOSSIP:
+                    if (gossip != null) {
+                        gossip.receive((GossipMessage)message);
+                    }
+                    break;
+                case ELECTION:
+                    if (election != null) {
+                        election.receive((ElectionMessage)message);
+                    }
+                    break;
+                case REPLICATION:
+                    if (replication != null) {
+                        replication.receive((ReplicationMessage<R>)message);
                     }
-
-                    clusterNodesInfo.put(heartbeat.getSender(), heartbeat);
                     break;
                 case REQUEST:
                     var request = (RequestMessage<R>)message;
 
-                    log.info(String.format("New request received from '%s'", request.getSender()));
+                    events.record(Logger.Level.INFO, EVENT_REQUEST, "New request received from '%s'", request.getSender());
+                    receiveRequest(request, request.getAssignee());
+                    break;
+                case REQUEST_BATCH:
+                    var batch = (RequestBatchMessage<R>)message;
 
-                    onRequest(request);
+                    events.record(Logger.Level.INFO, EVENT_REQUEST, "New batch of %d requests received from '%s'", batch.getRequests().size(), 
+                        batch.getSender());
+                    batch.getRequests().forEach(batchRequest -> receiveRequest(batchRequest, batch.getAssignee()));
                     break;
                 default:
                     break;
@@ -295,29 +625,72 @@ public abstract class ClusterNode<R extends Serializable> {
 
     /**
      * Starts the consensus algorithm to check if exists a leader node and, if not exists, 
-     * try to become it
+     * try to become it. Election timeouts are random values from {@link #millisStart}, or two 
+     * heartbeats if it's greater, to {@link #millisEnd}
      * @throws InterruptedException Throw if any thread-based operation is interrupted by system
+     * @throws IllegalStateException Thrown if {@link #clusterSize} is not configured or {@link #electionStateFile} 
+     * can't be read
      */
     public void consensus() throws InterruptedException {
-        log.info("Starting sending periodical heartbeat");
-        // first of all, start heartbeat sending to notify of your existence
-        sendPeriodicalHeartBeat();
-
-        log.info("Starting checking for another nodes registered");
-        // then, starts to check for another nodes registered as neighbours of same cluster
-        checkClusterNodeRegistry();
-
-        var waitTime = generateRandomWaitTime();
-        log.info(String.format("Sleeping for %d milliseconds", waitTime));
-        // wait a random amount of milliseconds. This is usefull to wait to receive messages from the leader and 
-        // don't to try become it
-        Thread.sleep(waitTime);
-
-        // If leader term registered if less than this instance term, marks it as 
-        // his own to send it to another nodes and notify that it tries to become leader
-        if (leaderTerm > this.term) {
-            this.leader = this.id;
-            this.leaderTerm = this.term;
+        if (clusterSize < 1)
+            throw new IllegalStateException("Cluster size must be configured before starting the consensus algorithm");
+
+        ElectionStateFile stateFile;
+
+        try {
+            stateFile = electionStateFile == null ? null : new ElectionStateFile(electionStateFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Stored election state can't be read", e);
+        }
+
+        if (membershipMode == MembershipMode.GOSSIP) {
+            log.info("Starting gossip membership protocol");
+            // gossip protocol notifies of your existence and detects stopped nodes
+            startGossip();
+        } else {
+            log.info("Starting sending periodical heartbeat");
+            // first of all, start heartbeat sending to notify of your existence
+            sendPeriodicalHeartBeat();
+
+            log.info("Starting checking for another nodes registered");
+            // then, starts to check for another nodes registered as neighbours of same cluster
+            checkClusterNodeRegistry();
+        }
+
+        log.info("Starting leader election");
+        // a node only starts an election if it doesn't hear from a leader during a random wait
+        var electionTimeoutMin = Math.max(millisStart, 2 * heartbeatRate);
+        election = new LeaderElection(this.id, commInterface, heartbeatRate, electionTimeoutMin, Math.max(millisEnd, electionTimeoutMin),
+            () -> Math.max(clusterSize, clusterNodesInfo.size() + 1), rand, replicatedLog, stateFile);
+
+        log.info("Starting log replication");
+        // the leader replicates the log of operations to the rest of nodes
+        replication = new LogReplication<>(this.id, commInterface, election, replicatedLog, heartbeatRate, () -> clusterNodesInfo.keySet(),
+            new StateMachine<R>() {
+                @Override
+                public void apply(LogEntry<R> entry) {
+                    onLogEntry(entry);
+                }
+
+                @Override
+                public byte[] snapshot() {
+                    return snapshotState();
+                }
+
+                @Override
+                public void restore(byte[] snapshot) {
+                    restoreState(snapshot);
+                }
+            }, snapshotThreshold);
+        election.start();
+        replication.start();
+
+        if (coalescingWindow > 0) {
+            coalescer = new RequestCoalescer<>(coalescingWindow, this::coalescingKey, this::sendRequests);
+        }
+
+        if (requestThreads > 0) {
+            requestExecutor = new OrderedRequestExecutor<>(requestThreads, requestQueueCapacity, this::onRequest);
         }
 
         log.info("Node is active");
@@ -325,5 +698,293 @@ public abstract class ClusterNode<R extends Serializable> {
         this.active = true;
     }
 
+    /**
+     * Sends a new request to the cluster. Request is sent to the leader, which selects the node that processes it. 
+     * If there is no leader yet, request is processed by this node. Requests are not accepted while the comm 
+     * interface is saturated
+     * @param requestType Type of the request
+     * @param requestContent Content of the request
+     * @return True if request has been accepted, false if comm interface can't send more messages at this moment
+     * @see CommInterface#isSaturated()
+     */
+    public boolean submitRequest(String requestType, R requestContent) {
+        return submitRequest(requestType, requestContent, null);
+    }
+
+    /**
+     * Sends a new request with some parameters to the cluster, like {@link #submitRequest(String, Serializable)}
+     * @param requestType Type of the request
+     * @param requestContent Content of the request
+     * @param parameters Parameters of the request, that are not part of its content, or null if it has no parameters
+     * @return True if request has been accepted, false if comm interface can't send more messages at this moment
+     */
+    public boolean submitRequest(String requestType, R requestContent, String[] parameters) {
+        if (commInterface.isSaturated())
+            return false;
+
+        var request = new RequestMessage<R>(this.id, requestType, requestContent, parameters, null);
+        var currentCoalescer = coalescer;
+
+        if (currentCoalescer != null) {
+            currentCoalescer.add(request);
+            return true;
+        }
+
+        var currentLeader = getLeader();
+
+        if (currentLeader == null) {
+            process(request);
+        } else if (currentLeader.equals(this.id)) {
+            dispatch(request);
+        } else {
+            commInterface.sendMessage(request, currentLeader);
+        }
+
+        return true;
+    }
+
+    /**
+     * Processes a received request. Requests without assignee are placed if this node is the leader, waiting in 
+     * {@link #coalescer} if exists, and the rest are processed by this node if they are assigned to it
+     * @param request Received request
+     * @param assignee Node selected by the leader to process the request, or null if not placed yet
+     */
+    private void receiveRequest(RequestMessage<R> request, UUID assignee) {
+        var currentCoalescer = coalescer;
+
+        if (assignee == null && imLeader()) {
+            if (currentCoalescer != null) {
+                currentCoalescer.add(request);
+            } else {
+                dispatch(request);
+            }
+        } else if (assignee == null || assignee.equals(this.id)) {
+            process(request);
+        } else {
+            log.warn(String.format("Discarded request assigned to node '%s'", assignee));
+        }
+    }
+
+    /**
+     * Sends the requests flushed by {@link #coalescer}: the leader places them, grouping the requests of each node 
+     * in a batch, and the rest of nodes send them to the leader in a batch
+     * @param requests Flushed requests
+     */
+    private void sendRequests(List<RequestMessage<R>> requests) {
+        var currentLeader = getLeader();
+
+        if (currentLeader == null) {
+            requests.forEach(this::process);
+        } else if (currentLeader.equals(this.id)) {
+            dispatch(requests);
+        } else if (requests.size() == 1) {
+            commInterface.sendMessage(requests.get(0), currentLeader);
+        } else {
+            commInterface.sendMessage(new RequestBatchMessage<R>(this.id, requests, null), currentLeader);
+        }
+    }
+
+    /**
+     * Processes a request assigned to this node, in {@link #requestExecutor} if exists, else in current thread
+     * @param request Request to process
+     */
+    private void process(RequestMessage<R> request) {
+        var currentExecutor = requestExecutor;
+
+        if (currentExecutor == null) {
+            onRequest(request);
+        } else if (!currentExecutor.submit(request)) {
+            events.record(Logger.Level.WARN, EVENT_REQUEST, "Discarded request from '%s', too many requests waiting to be processed", 
+                request.getSender());
+        }
+    }
+
+    /**
+     * Number of requests waiting in {@link #requestExecutor} to be processed by this node
+     * @return Count of waiting requests, zero if requests are processed by the thread that receives them
+     */
+    public int getPendingRequests() {
+        var currentExecutor = requestExecutor;
+        return currentExecutor != null ? currentExecutor.getPending() : 0;
+    }
+
+    /**
+     * Number of submitted or received requests merged with an equivalent one, because they were sent in the same 
+     * {@link #coalescingWindow}
+     * @return Count of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        var currentCoalescer = coalescer;
+        return currentCoalescer != null ? currentCoalescer.getCoalesced() : 0;
+    }
+
+    /**
+     * Proposes a new operation to the replicated log. Once committed, it's applied by all nodes, in the same order, 
+     * through {@link #onLogEntry(LogEntry)}
+     * @param type Type of the operation
+     * @param content Content of the operation
+     * @return True if the operation has been sent to the leader, false if there is no leader or consensus algorithm 
+     * has not been started
+     */
+    public boolean propose(String type, R content) {
+        var currentReplication = replication;
+        return currentReplication != null && currentReplication.propose(type, content);
+    }
+
+    /**
+     * Index of the last operation of the replicated log applied by this node
+     * @return Index of the operation, or 0 if no operation has been applied
+     */
+    public long getLastAppliedIndex() {
+        var currentReplication = replication;
+        return currentReplication != null ? currentReplication.getLastApplied() : 0;
+    }
+
+    /**
+     * Applies a committed operation of the replicated log. Operations are applied one by one, in the order of the 
+     * log, in a thread used only for it, so implementations should move slow work to other threads. By default, 
+     * operations are ignored
+     * @param entry Committed entry, entries appended by new leaders have no type and they can be ignored
+     */
+    protected void onLogEntry(LogEntry<R> entry) {
+        // do nothing
+    }
+
+    /**
+     * Captures the state built by {@link #onLogEntry(LogEntry)}, used to compact the replicated log and to send it 
+     * to nodes that join the cluster. It's called from the thread that applies operations. Nodes that override 
+     * {@link #onLogEntry(LogEntry)} must override it, with {@link #restoreState(byte[])}, to set a 
+     * {@link #snapshotThreshold}
+     * @return Serialized state, by default empty
+     */
+    protected byte[] snapshotState() {
+        return new byte[0];
+    }
+
+    /**
+     * Replaces the state built by {@link #onLogEntry(LogEntry)} with a snapshot received from the leader. It's 
+     * called from the thread that applies operations
+     * @param snapshot Serialized state, as returned by {@link #snapshotState()}
+     */
+    protected void restoreState(byte[] snapshot) {
+        // do nothing
+    }
+
+    /**
+     * Selects, using {@link #placementStrategy}, the node that must process a request and sends the request to it
+     * @param request Request to dispatch
+     */
+    protected void dispatch(RequestMessage<R> request) {
+        var target = selectTarget(request);
+
+        if (target.equals(this.id)) {
+            process(request);
+            return;
+        }
+
+        events.record(Logger.Level.INFO, EVENT_DISPATCH, "Dispatching request '%s' to node '%s'", request.getId(), target);
+        commInterface.sendMessage(new RequestMessage<R>(this.id, request.getRequestType(), request.getRequestContent(), 
+            request.getParameters(), target), target);
+    }
+
+    /**
+     * Selects, using {@link #placementStrategy}, the node that must process each request and sends to each node 
+     * its requests in a single message
+     * @param requests Requests to dispatch
+     */
+    protected void dispatch(List<RequestMessage<R>> requests) {
+        Map<UUID, List<RequestMessage<R>>> byTarget = new LinkedHashMap<>();
+        requests.forEach(request -> byTarget.computeIfAbsent(selectTarget(request), k -> new ArrayList<>()).add(request));
+        var local = byTarget.remove(this.id);
+
+        byTarget.forEach((target, targetRequests) -> {
+            events.record(Logger.Level.INFO, EVENT_DISPATCH, "Dispatching %d requests to node '%s'", targetRequests.size(), target);
+            var assigned = targetRequests.stream()
+                .map(request -> new RequestMessage<R>(this.id, request.getRequestType(), request.getRequestContent(), 
+                    request.getParameters(), target))
+                .collect(Collectors.toList());
+
+            if (assigned.size() == 1) {
+                commInterface.sendMessage(assigned.get(0), target);
+            } else {
+                commInterface.sendMessage(new RequestBatchMessage<R>(this.id, assigned, target), target);
+            }
+        });
+
+        if (local != null) {
+            local.forEach(this::process);
+        }
+    }
+
+    /**
+     * Selects the node that must process a request, counting it in the load of that node until its next heartbeat
+     * @param request Request to place
+     * @return Selected node, this node if there is no other option
+     */
+    private UUID selectTarget(RequestMessage<R> request) {
+        var target = placementStrategy.select(affinityKey(request), getClusterLoad()).orElse(this.id);
+
+        if (!target.equals(this.id)) {
+            dispatchedRequests.computeIfAbsent(target, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        return target;
+    }
+
+    /**
+     * Obtains the load of all alive nodes in the cluster, including this one, as known by this node
+     * @return Load of each node
+     */
+    public List<NodeLoad> getClusterLoad() {
+        List<NodeLoad> loads = new ArrayList<>();
+        var metrics = getSystemMetrics();
+        loads.add(new NodeLoad(this.id, metrics.cpuUsage(), metrics.memoryUsage(), getRunningRequests(), 
+            getQueuedRequests() + getPendingRequests()));
+
+        clusterNodesInfo.values().forEach(info -> {
+            var dispatched = dispatchedRequests.get(info.getSender());
+            loads.add(new NodeLoad(info.getSender(), info.getCpuUsage(), info.getMemoryUsage(), info.getRunningRequests(), 
+                info.getQueuedRequests() + (dispatched != null ? dispatched.get() : 0)));
+        });
+
+        return loads;
+    }
+
+    /**
+     * Number of requests this node is processing, reported to the rest of nodes in heartbeats. By default, requests 
+     * are processed synchronously by {@link #onRequest(RequestMessage)}, so it's zero. Requests waiting in the request 
+     * threads are counted as queued by the node
+     * @return Count of running requests
+     */
+    protected int getRunningRequests() {
+        return 0;
+    }
+
+    /**
+     * Number of requests waiting to be processed by this node, reported to the rest of nodes in heartbeats
+     * @return Count of queued requests
+     */
+    protected int getQueuedRequests() {
+        return 0;
+    }
+
+    /**
+     * Key used by {@link #placementStrategy} to relate requests that should be processed by the same node
+     * @param request Request to place
+     * @return Affinity key of the request, by default based on its type and content
+     */
+    protected String affinityKey(RequestMessage<R> request) {
+        return String.format("%s:%s", request.getRequestType(), request.getRequestContent());
+    }
+
+    /**
+     * Key used by {@link #coalescer} to merge equivalent requests sent in the same {@link #coalescingWindow}
+     * @param request Submitted request
+     * @return Coalescing key of the request, by default based on its type, content and parameters
+     */
+    protected Object coalescingKey(RequestMessage<R> request) {
+        return Arrays.asList(request.getRequestType(), request.getRequestContent(), Arrays.asList(request.getParameters()));
+    }
+
     abstract protected void onRequest(RequestMessage<R> request);
 }
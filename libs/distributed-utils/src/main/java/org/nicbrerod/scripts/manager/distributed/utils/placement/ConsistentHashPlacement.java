@@ -0,0 +1,91 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Strategy that always sends requests with the same key to the same node while cluster doesn't change, so nodes 
+ * keep warm the resources of their scripts. Nodes are placed in a hash ring with several virtual points each, so 
+ * when a node joins or leaves the cluster only its share of keys is moved
+ */
+public class ConsistentHashPlacement implements PlacementStrategy {
+    /**
+     * Default number of points of each node in the ring
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 100;
+
+    /**
+     * Number of points of each node in the ring
+     */
+    private final int virtualNodes;
+
+    /**
+     * Nodes used to build {@link #ring}, ring is rebuilt only when they change
+     */
+    private Set<UUID> ringNodes = Set.of();
+
+    /**
+     * Hash ring, maps each point to its node
+     */
+    private NavigableMap<Long, UUID> ring = new TreeMap<>();
+
+    public ConsistentHashPlacement() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashPlacement(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Hashes a string to a position in the ring
+     * @param value Value to hash
+     * @return First 8 bytes of the MD5 hash of the value
+     */
+    private static long hash(String value) {
+        try {
+            var digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            var result = 0L;
+
+            for (int i = 0; i < Long.BYTES; i++) {
+                result = (result << 8) | (digest[i] & 0xFF);
+            }
+
+            return result;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    @Override
+    public synchronized Optional<UUID> select(String key, List<NodeLoad> candidates) {
+        if (candidates.isEmpty())
+            return Optional.empty();
+
+        var nodes = candidates.stream().map(NodeLoad::id).collect(Collectors.toSet());
+
+        if (!nodes.equals(ringNodes)) {
+            NavigableMap<Long, UUID> newRing = new TreeMap<>();
+
+            for (var node : nodes) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    newRing.put(hash(String.format("%s#%d", node, i)), node);
+                }
+            }
+
+            ring = newRing;
+            ringNodes = nodes;
+        }
+
+        var point = ring.ceilingEntry(hash(key));
+        return Optional.of(point != null ? point.getValue() : ring.firstEntry().getValue());
+    }
+}
@@ -0,0 +1,19 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Strategy that always selects the node with the lowest {@link NodeLoad#score() load score}
+ */
+public class LeastLoadedPlacement implements PlacementStrategy {
+
+    @Override
+    public Optional<UUID> select(String key, List<NodeLoad> candidates) {
+        return candidates.stream()
+            .min(Comparator.comparingDouble(NodeLoad::score))
+            .map(NodeLoad::id);
+    }
+}
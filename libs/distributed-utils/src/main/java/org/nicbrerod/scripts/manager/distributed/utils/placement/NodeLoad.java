@@ -0,0 +1,38 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import java.util.UUID;
+
+/**
+ * Load of a node in the cluster, as seen by the node that takes a placement decision
+ */
+public record NodeLoad(
+    /**
+     * Id related to node
+     */
+    UUID id,
+    /**
+     * Amount of CPU using on node's system, from 0 to 1
+     */
+    float cpuUsage,
+    /**
+     * Amount of memory using on node's system, from 0 to 1
+     */
+    float memoryUsage,
+    /**
+     * Number of requests running in the node
+     */
+    int running,
+    /**
+     * Number of requests waiting to run in the node, including the ones dispatched to it and not yet reported
+     */
+    int queued
+) {
+    /**
+     * Single value used to compare the load of two nodes. Pending work is the main term, CPU usage breaks ties 
+     * between nodes with the same amount of work
+     * @return Load score, lower is less loaded
+     */
+    public double score() {
+        return running + queued + cpuUsage;
+    }
+}
@@ -0,0 +1,20 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Strategy used by the leader of a cluster to decide which node must process a request
+ */
+@FunctionalInterface
+public interface PlacementStrategy {
+
+    /**
+     * Selects the node that must process a request
+     * @param key Affinity key of the request, requests with same key are related, like executions of the same script
+     * @param candidates Current load of all alive nodes in the cluster, including the leader
+     * @return Id of the selected node, or empty if there are no candidates
+     */
+    Optional<UUID> select(String key, List<NodeLoad> candidates);
+}
@@ -0,0 +1,47 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Strategy that picks two random nodes and selects the least loaded of them. Compared with always selecting the 
+ * least loaded node, it avoids sending a burst of requests to the same node when load information is outdated, 
+ * while keeping the load almost as balanced
+ */
+public class PowerOfTwoChoicesPlacement implements PlacementStrategy {
+    /**
+     * Random object used to pick the nodes
+     */
+    private final Random rand;
+
+    public PowerOfTwoChoicesPlacement() {
+        this(new Random());
+    }
+
+    public PowerOfTwoChoicesPlacement(Random rand) {
+        this.rand = rand;
+    }
+
+    @Override
+    public Optional<UUID> select(String key, List<NodeLoad> candidates) {
+        if (candidates.isEmpty())
+            return Optional.empty();
+
+        if (candidates.size() == 1)
+            return Optional.of(candidates.get(0).id());
+
+        var first = rand.nextInt(candidates.size());
+        var second = rand.nextInt(candidates.size() - 1);
+
+        if (second >= first) {
+            second++;
+        }
+
+        var a = candidates.get(first);
+        var b = candidates.get(second);
+
+        return Optional.of(a.score() <= b.score() ? a.id() : b.id());
+    }
+}
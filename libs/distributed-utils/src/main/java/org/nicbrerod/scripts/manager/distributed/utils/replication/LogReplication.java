@@ -0,0 +1,743 @@
+package org.nicbrerod.scripts.manager.distributed.utils.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.election.LeaderElection;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ReplicationMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ReplicationMessage.Kind;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+
+/**
+ * Raft-style log replication, driven by the leader elected by {@link LeaderElection}. Only the leader appends
+ * entries to the log: followers forward their proposals to it. The leader sends to each follower the entries it
+ * doesn't have yet, with the index and term of the entry before them, and a follower only stores them if its log
+ * contains that entry, so logs that differ are repaired going back until the last matching entry.
+ *
+ * An entry is committed when it's stored by a majority and, to avoid committing entries of old leaders that could
+ * be overwritten, only entries of the current term are counted, so a new leader appends an entry without operation
+ * when it's elected. Committed entries are applied in order, in a separate thread, so slow operations don't delay
+ * the protocol. Proposals are not retried: a proposal received by a leader that loses its leadership before
+ * replicating it can be lost.
+ *
+ * Every {@link #snapshotThreshold} applied entries, each node captures the state of its state machine and removes
+ * the entries included in it from its log. A follower that needs compacted entries, like a node that has just
+ * joined the cluster, receives the last snapshot of the leader in chunks, with a window of
+ * {@link #SNAPSHOT_WINDOW} chunks without acknowledgement, and then the entries after it, so it doesn't need to
+ * apply all the history of the cluster
+ * @param <T> Type of the content of log entries
+ */
+public class LogReplication<T extends Serializable> implements AutoCloseable {
+    /**
+     * Maximum number of entries sent in a message
+     */
+    public static final int MAX_BATCH = 64;
+
+    /**
+     * Maximum size, in bytes, of a chunk of a snapshot
+     */
+    public static final int SNAPSHOT_CHUNK_SIZE = 32 * 1024;
+
+    /**
+     * Maximum number of chunks of a snapshot sent to a follower without acknowledgement
+     */
+    public static final int SNAPSHOT_WINDOW = 4;
+
+    /**
+     * Minimum duration, in milliseconds, of a tick of the replication timer
+     */
+    private static final long MIN_TICK = 10;
+
+    /**
+     * Message waiting to be sent, messages are sent out of the lock to avoid deadlocks with synchronous transports
+     */
+    private record Outgoing<T extends Serializable>(ReplicationMessage<T> message, UUID recipient) {}
+
+    /**
+     * State of the state machine after applying the entry with the passed index and term
+     */
+    private record Snapshot(long index, long term, byte[] data) {
+        private int chunks() {
+            return Math.max(1, (data.length + SNAPSHOT_CHUNK_SIZE - 1) / SNAPSHOT_CHUNK_SIZE);
+        }
+
+        private byte[] chunk(int position) {
+            var from = position * SNAPSHOT_CHUNK_SIZE;
+            return Arrays.copyOfRange(data, from, Math.min(data.length, from + SNAPSHOT_CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Snapshot being sent by the leader to a follower
+     */
+    private static class Transfer {
+        private final Snapshot snapshot;
+        private int acked;
+        private int next;
+        private long sentAt;
+
+        private Transfer(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Snapshot being received by a follower
+     */
+    private static class Reception {
+        private final long index;
+        private final long term;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private int received;
+
+        private Reception(long index, long term) {
+            this.index = index;
+            this.term = term;
+        }
+    }
+
+    private final Logger log;
+
+    /**
+     * Id related to this node
+     */
+    private final UUID self;
+
+    /**
+     * Communication interface used to send messages
+     */
+    private final CommInterface commInterface;
+
+    /**
+     * Election protocol that selects the node that replicates the log
+     */
+    private final LeaderElection election;
+
+    /**
+     * Replicated log. The state of this protocol is also guarded by its lock
+     */
+    private final ReplicatedLog<T> replicatedLog;
+
+    /**
+     * Time, in nanoseconds, that the leader waits for the answer of a follower before sending its entries again
+     */
+    private final long retryInterval;
+
+    /**
+     * Supplier of the rest of members of the cluster
+     */
+    private final Supplier<Collection<UUID>> members;
+
+    /**
+     * State machine where committed entries are applied, in order
+     */
+    private final StateMachine<T> stateMachine;
+
+    /**
+     * Number of applied entries after which a snapshot is taken, if zero or less, log is never compacted
+     */
+    private final int snapshotThreshold;
+
+    /**
+     * Last snapshot taken or received, null if log has not been compacted
+     */
+    private Snapshot snapshot;
+
+    /**
+     * Snapshots being sent to followers as leader
+     */
+    private final Map<UUID, Transfer> transfers = new HashMap<>();
+
+    /**
+     * Snapshot being received from the leader, or null
+     */
+    private Reception reception;
+
+    /**
+     * Index of the last entry included in a snapshot, only accessed by the thread that applies entries
+     */
+    private long lastSnapshot;
+
+    /**
+     * Term in which this node is replicating its log as leader, or 0 if it's not the leader
+     */
+    private long leaderTerm;
+
+    /**
+     * Index of the next entry to send to each follower
+     */
+    private final Map<UUID, Long> nextIndex = new HashMap<>();
+
+    /**
+     * Index of the last entry known to be stored by each follower
+     */
+    private final Map<UUID, Long> matchIndex = new HashMap<>();
+
+    /**
+     * Commit index reported by each follower
+     */
+    private final Map<UUID, Long> followerCommit = new HashMap<>();
+
+    /**
+     * Time when the last message without answer was sent to each follower
+     */
+    private final Map<UUID, Long> inFlight = new HashMap<>();
+
+    /**
+     * Index of the last entry known to be committed
+     */
+    private long commitIndex;
+
+    /**
+     * Index of the last entry sent to be applied
+     */
+    private long lastQueued;
+
+    /**
+     * Index of the last entry applied
+     */
+    private volatile long lastApplied;
+
+    private final ScheduledExecutorService executor;
+
+    private final ExecutorService applyExecutor;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the replication protocol of a node
+     * @param self Id related to this node
+     * @param commInterface Communication interface used to send messages
+     * @param election Election protocol that selects the leader, it must use the replicated log as log state
+     * @param replicatedLog Log to replicate
+     * @param retryInterval Time, in milliseconds, that the leader waits for the answer of a follower before sending
+     * its entries again
+     * @param members Supplier of the rest of members of the cluster
+     * @param stateMachine State machine where committed entries are applied, in order
+     */
+    public LogReplication(UUID self, CommInterface commInterface, LeaderElection election, ReplicatedLog<T> replicatedLog,
+        long retryInterval, Supplier<Collection<UUID>> members, StateMachine<T> stateMachine) {
+        this(self, commInterface, election, replicatedLog, retryInterval, members, stateMachine, 0);
+    }
+
+    /**
+     * Creates the replication protocol of a node that compacts its log
+     * @param self Id related to this node
+     * @param commInterface Communication interface used to send messages
+     * @param election Election protocol that selects the leader, it must use the replicated log as log state
+     * @param replicatedLog Log to replicate
+     * @param retryInterval Time, in milliseconds, that the leader waits for the answer of a follower before sending
+     * its entries again
+     * @param members Supplier of the rest of members of the cluster
+     * @param stateMachine State machine where committed entries are applied, in order
+     * @param snapshotThreshold Number of applied entries after which a snapshot is taken, if zero or less, log is 
+     * never compacted
+     */
+    public LogReplication(UUID self, CommInterface commInterface, LeaderElection election, ReplicatedLog<T> replicatedLog,
+        long retryInterval, Supplier<Collection<UUID>> members, StateMachine<T> stateMachine, int snapshotThreshold) {
+        this.self = self;
+        this.commInterface = commInterface;
+        this.election = election;
+        this.replicatedLog = replicatedLog;
+        this.retryInterval = TimeUnit.MILLISECONDS.toNanos(retryInterval);
+        this.members = members;
+        this.stateMachine = stateMachine;
+        this.snapshotThreshold = snapshotThreshold;
+        this.log = Logger.getLogger(self.toString());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "log-replication");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.applyExecutor = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "log-apply");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the replication timer
+     */
+    public void start() {
+        var tick = Math.max(TimeUnit.NANOSECONDS.toMillis(retryInterval) / 10, MIN_TICK);
+        executor.scheduleAtFixedRate(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Proposes a new entry to the log. If this node is the leader, entry is appended to its log, else it's sent to
+     * the leader
+     * @param type Operation described by the entry, it can't be null
+     * @param content Content of the operation
+     * @return True if proposal has been appended or sent to the leader, false if there is no leader. A proposal
+     * sent to the leader is not guaranteed to be committed
+     */
+    public boolean propose(String type, T content) {
+        if (type == null)
+            throw new IllegalArgumentException("Type of a log entry can't be null");
+
+        var term = election.getLeaderTerm();
+
+        if (term < 0) {
+            var leader = election.getLeader();
+
+            // This node can become the leader after reading its term, then proposal is not sent to itself
+            if (leader == null || leader.equals(self))
+                return false;
+
+            send(List.of(new Outgoing<T>(new ReplicationMessage<T>(self, Kind.PROPOSE, election.getTerm(), 0, 0,
+                List.of(new LogEntry<T>(0, 0, type, content)), 0, false), leader)));
+            return true;
+        }
+
+        List<Outgoing<T>> outgoing = new ArrayList<>();
+
+        synchronized (replicatedLog) {
+            lead(term);
+            replicatedLog.append(term, type, content);
+            replicateAll(System.nanoTime(), outgoing);
+        }
+
+        send(outgoing);
+        return true;
+    }
+
+    /**
+     * Processes a received replication message
+     * @param message Received message
+     */
+    public void receive(ReplicationMessage<T> message) {
+        if (closed || message.getSender().equals(self))
+            return;
+
+        List<Outgoing<T>> outgoing = new ArrayList<>();
+        // Election is never called with the lock of the log, it's always taken in the opposite order
+        election.observeTerm(message.getTerm());
+        var term = election.getTerm();
+        var leadingTerm = election.getLeaderTerm();
+
+        switch (message.getKind()) {
+            case PROPOSE:
+                if (leadingTerm < 0) {
+                    log.warn(String.format("Discarded proposal from '%s' received without being the leader", message.getSender()));
+                    break;
+                }
+
+                synchronized (replicatedLog) {
+                    lead(leadingTerm);
+                    message.getEntries().forEach(entry -> replicatedLog.append(leadingTerm, entry.type(), entry.content()));
+                    replicateAll(System.nanoTime(), outgoing);
+                }
+                break;
+            case APPEND:
+                synchronized (replicatedLog) {
+                    outgoing.add(new Outgoing<T>(append(message, term), message.getSender()));
+                }
+                break;
+            case APPEND_RESPONSE:
+                synchronized (replicatedLog) {
+                    if (message.getTerm() == leadingTerm) {
+                        lead(leadingTerm);
+                        acknowledge(message, outgoing);
+                    }
+                }
+                break;
+            case SNAPSHOT:
+                synchronized (replicatedLog) {
+                    outgoing.add(new Outgoing<T>(receiveChunk(message, term), message.getSender()));
+                }
+                break;
+            case SNAPSHOT_RESPONSE:
+                synchronized (replicatedLog) {
+                    if (message.getTerm() == leadingTerm) {
+                        lead(leadingTerm);
+                        acknowledgeChunks(message, outgoing);
+                    }
+                }
+                break;
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Index of the last entry known to be committed
+     * @return Commit index, 0 if no entry has been committed
+     */
+    public long getCommitIndex() {
+        synchronized (replicatedLog) {
+            return commitIndex;
+        }
+    }
+
+    /**
+     * Index of the last entry applied
+     * @return Index of the entry, 0 if no entry has been applied
+     */
+    public long getLastApplied() {
+        return lastApplied;
+    }
+
+    /**
+     * Stops the protocol. Received messages are ignored after it and pending entries are not applied
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        applyExecutor.shutdownNow();
+    }
+
+    /**
+     * Periodic task: leader sends pending entries and commit index to followers
+     */
+    private void tick() {
+        List<Outgoing<T>> outgoing = new ArrayList<>();
+        // Role and term are read at the same time, so the node never leads a term that it has not won
+        var term = election.getLeaderTerm();
+
+        synchronized (replicatedLog) {
+            if (term >= 0) {
+                lead(term);
+                replicateAll(System.nanoTime(), outgoing);
+            } else {
+                leaderTerm = 0;
+            }
+        }
+
+        send(outgoing);
+    }
+
+    /**
+     * Starts replicating as leader of a term, if this node was not replicating in it yet. Followers are supposed to
+     * have the same log as this node until they answer, and an entry without operation is appended to commit the
+     * entries of previous terms
+     */
+    private void lead(long term) {
+        if (leaderTerm == term)
+            return;
+
+        log.info(String.format("Replicating log as leader of term %d from index %d", term, replicatedLog.lastIndex()));
+        leaderTerm = term;
+        nextIndex.clear();
+        matchIndex.clear();
+        followerCommit.clear();
+        inFlight.clear();
+        transfers.clear();
+        replicatedLog.append(term, null, null);
+        advanceCommit();
+    }
+
+    /**
+     * Sends pending entries and commit index to all followers, and forgets followers that aren't members anymore
+     */
+    private void replicateAll(long now, List<Outgoing<T>> outgoing) {
+        var current = members.get();
+        nextIndex.keySet().retainAll(current);
+        matchIndex.keySet().retainAll(current);
+        followerCommit.keySet().retainAll(current);
+        inFlight.keySet().retainAll(current);
+        transfers.keySet().retainAll(current);
+        current.forEach(follower -> replicate(follower, now, outgoing));
+        // Cluster may have shrunk
+        advanceCommit();
+    }
+
+    /**
+     * Sends to a follower the entries it doesn't have yet, if any, and the commit index. Nothing is sent if follower
+     * is up-to-date or it has not answered the last message yet, unless retry interval has elapsed
+     */
+    private void replicate(UUID follower, long now, List<Outgoing<T>> outgoing) {
+        var next = nextIndex.computeIfAbsent(follower, k -> replicatedLog.lastIndex() + 1);
+
+        if (next <= replicatedLog.getSnapshotIndex()) {
+            sendSnapshot(follower, now, outgoing);
+            return;
+        }
+
+        var pending = next <= replicatedLog.lastIndex() || followerCommit.getOrDefault(follower, 0L) < commitIndex;
+        var sentAt = inFlight.get(follower);
+
+        if (!pending || (sentAt != null && now - sentAt < retryInterval))
+            return;
+
+        inFlight.put(follower, now);
+        outgoing.add(new Outgoing<T>(new ReplicationMessage<T>(self, Kind.APPEND, leaderTerm, next - 1, replicatedLog.termAt(next - 1),
+            replicatedLog.getFrom(next, MAX_BATCH), commitIndex, false), follower));
+    }
+
+    /**
+     * Stores entries received by a follower, if its log contains the entry before them
+     * @return Answer to the leader: if entries are stored, it carries the index of the last one, else, the last
+     * index from which leader should retry
+     */
+    private ReplicationMessage<T> append(ReplicationMessage<T> message, long term) {
+        if (message.getTerm() < term)
+            return new ReplicationMessage<T>(self, Kind.APPEND_RESPONSE, term, 0, 0, List.of(), commitIndex, false);
+
+        leaderTerm = 0;
+        var index = message.getIndex();
+        var indexTerm = message.getIndexTerm();
+        var entries = message.getEntries();
+
+        if (index < replicatedLog.getSnapshotIndex()) {
+            // Compacted entries are committed, so they match the ones of any leader
+            var skipped = (int) Math.min(entries.size(), replicatedLog.getSnapshotIndex() - index);
+            entries = entries.subList(skipped, entries.size());
+            index = replicatedLog.getSnapshotIndex();
+            indexTerm = replicatedLog.getSnapshotTerm();
+
+            if (entries.isEmpty() || entries.get(0).index() != index + 1)
+                return new ReplicationMessage<T>(self, Kind.APPEND_RESPONSE, term, index, 0, List.of(), commitIndex, true);
+        }
+
+        var storedTerm = replicatedLog.termAt(index);
+
+        if (storedTerm != indexTerm) {
+            // A shorter log retries from its end and a conflicting one from the entry before the conflict
+            var hint = storedTerm == -1 ? replicatedLog.lastIndex() : index - 1;
+            return new ReplicationMessage<T>(self, Kind.APPEND_RESPONSE, term, hint, 0, List.of(), commitIndex, false);
+        }
+
+        replicatedLog.merge(entries);
+        var match = index + entries.size();
+        // Only entries known to match the leader's log can be committed
+        var committed = Math.min(message.getCommitIndex(), match);
+
+        if (committed > commitIndex) {
+            commitIndex = committed;
+            applyCommitted();
+        }
+
+        return new ReplicationMessage<T>(self, Kind.APPEND_RESPONSE, term, match, 0, List.of(), commitIndex, true);
+    }
+
+    /**
+     * Processes the answer of a follower as leader, sending it more entries if it has pending ones
+     */
+    private void acknowledge(ReplicationMessage<T> message, List<Outgoing<T>> outgoing) {
+        var follower = message.getSender();
+        inFlight.remove(follower);
+        followerCommit.put(follower, message.getCommitIndex());
+
+        if (message.isSuccess()) {
+            matchIndex.merge(follower, message.getIndex(), Math::max);
+            nextIndex.put(follower, message.getIndex() + 1);
+            advanceCommit();
+        } else {
+            var next = nextIndex.getOrDefault(follower, replicatedLog.lastIndex() + 1);
+            nextIndex.put(follower, Math.max(1, Math.min(next - 1, message.getIndex() + 1)));
+        }
+
+        replicate(follower, System.nanoTime(), outgoing);
+    }
+
+    /**
+     * Sends to a follower the chunks of the last snapshot that fit in its window. Chunks without acknowledgement
+     * are sent again when retry interval elapses
+     */
+    private void sendSnapshot(UUID follower, long now, List<Outgoing<T>> outgoing) {
+        if (snapshot == null)
+            return;
+
+        var transfer = transfers.get(follower);
+
+        if (transfer == null || transfer.snapshot != snapshot) {
+            log.info(String.format("Sending snapshot of index %d to '%s'", snapshot.index(), follower));
+            transfer = new Transfer(snapshot);
+            transfers.put(follower, transfer);
+        } else if (transfer.next > transfer.acked && now - transfer.sentAt >= retryInterval) {
+            transfer.next = transfer.acked;
+        }
+
+        var chunks = transfer.snapshot.chunks();
+
+        while (transfer.next < chunks && transfer.next - transfer.acked < SNAPSHOT_WINDOW) {
+            outgoing.add(new Outgoing<T>(new ReplicationMessage<T>(self, Kind.SNAPSHOT, leaderTerm, transfer.snapshot.index(), 
+                transfer.snapshot.term(), List.of(), commitIndex, false, transfer.next, chunks, transfer.snapshot.chunk(transfer.next)), follower));
+            transfer.next++;
+            transfer.sentAt = now;
+        }
+    }
+
+    /**
+     * Processes the acknowledgement of a follower to the chunks of a snapshot, as leader
+     */
+    private void acknowledgeChunks(ReplicationMessage<T> message, List<Outgoing<T>> outgoing) {
+        var follower = message.getSender();
+        var transfer = transfers.get(follower);
+
+        if (message.isSuccess()) {
+            transfers.remove(follower);
+            inFlight.remove(follower);
+            followerCommit.put(follower, message.getCommitIndex());
+            matchIndex.merge(follower, message.getIndex(), Math::max);
+            nextIndex.put(follower, message.getIndex() + 1);
+            advanceCommit();
+        } else if (transfer != null && transfer.snapshot.index() == message.getIndex()) {
+            transfer.acked = Math.max(transfer.acked, message.getChunk());
+            // Chunks are received in order, so a lost chunk makes the follower discard the next ones
+            transfer.next = Math.max(transfer.next, transfer.acked);
+        }
+
+        replicate(follower, System.nanoTime(), outgoing);
+    }
+
+    /**
+     * Stores a chunk of a snapshot received by a follower, installing the snapshot when all chunks are received
+     * @return Answer to the leader with the number of consecutive chunks received
+     */
+    private ReplicationMessage<T> receiveChunk(ReplicationMessage<T> message, long term) {
+        if (message.getTerm() < term)
+            return new ReplicationMessage<T>(self, Kind.SNAPSHOT_RESPONSE, term, message.getIndex(), 0, List.of(), commitIndex, false);
+
+        leaderTerm = 0;
+
+        // State of the snapshot has already been applied, or is going to be applied, from the log
+        if (message.getIndex() <= commitIndex)
+            return new ReplicationMessage<T>(self, Kind.SNAPSHOT_RESPONSE, term, message.getIndex(), 0, List.of(), commitIndex, true);
+
+        if (message.getChunk() == 0) {
+            reception = new Reception(message.getIndex(), message.getIndexTerm());
+        }
+
+        var current = reception != null && reception.index == message.getIndex() && reception.term == message.getIndexTerm();
+
+        if (current && reception.received == message.getChunk()) {
+            reception.data.writeBytes(message.getData());
+            reception.received++;
+        }
+
+        var received = current ? reception.received : 0;
+
+        if (received < message.getChunks())
+            return new ReplicationMessage<T>(self, Kind.SNAPSHOT_RESPONSE, term, message.getIndex(), 0, List.of(), commitIndex, false, 
+                received, 0, null);
+
+        install(new Snapshot(reception.index, reception.term, reception.data.toByteArray()));
+        reception = null;
+        return new ReplicationMessage<T>(self, Kind.SNAPSHOT_RESPONSE, term, message.getIndex(), 0, List.of(), commitIndex, true, 
+            received, 0, null);
+    }
+
+    /**
+     * Replaces the state of this node with a snapshot received from the leader, keeping the entries after it if
+     * log contains them
+     */
+    private void install(Snapshot received) {
+        log.info(String.format("Installing snapshot of index %d", received.index()));
+        replicatedLog.compact(received.index(), received.term());
+        snapshot = received;
+        commitIndex = received.index();
+        lastQueued = received.index();
+
+        if (closed)
+            return;
+
+        applyExecutor.execute(() -> {
+            try {
+                stateMachine.restore(received.data());
+            } catch (RuntimeException e) {
+                log.error(String.format("Error restoring snapshot of index %d", received.index()), e);
+            }
+
+            lastSnapshot = received.index();
+            lastApplied = received.index();
+        });
+    }
+
+    /**
+     * Applies a committed entry and, if threshold is reached, takes a snapshot and compacts the log. It's only
+     * called by the thread that applies entries
+     */
+    private void apply(LogEntry<T> entry) {
+        try {
+            stateMachine.apply(entry);
+        } catch (RuntimeException e) {
+            log.error(String.format("Error applying log entry %d", entry.index()), e);
+        }
+
+        lastApplied = entry.index();
+
+        if (snapshotThreshold <= 0 || entry.index() - lastSnapshot < snapshotThreshold)
+            return;
+
+        byte[] data;
+
+        try {
+            data = stateMachine.snapshot();
+        } catch (RuntimeException e) {
+            log.error(String.format("Error taking snapshot of index %d", entry.index()), e);
+            return;
+        }
+
+        lastSnapshot = entry.index();
+
+        synchronized (replicatedLog) {
+            if (entry.index() > replicatedLog.getSnapshotIndex()) {
+                replicatedLog.compact(entry.index(), entry.term());
+                snapshot = new Snapshot(entry.index(), entry.term(), data);
+            }
+        }
+    }
+
+    /**
+     * Commits the last entry of current term stored by a majority, with all entries before it. Majority is the 
+     * same used by the election protocol
+     */
+    private void advanceCommit() {
+        var followers = members.get();
+        var quorum = election.getQuorum();
+
+        for (var index = replicatedLog.lastIndex(); index > commitIndex && replicatedLog.termAt(index) == leaderTerm; index--) {
+            var stored = 1;
+
+            for (var follower : followers) {
+                if (matchIndex.getOrDefault(follower, 0L) >= index) {
+                    stored++;
+                }
+            }
+
+            if (stored >= quorum) {
+                commitIndex = index;
+                applyCommitted();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sends committed entries to be applied in order
+     */
+    private void applyCommitted() {
+        while (!closed && lastQueued < commitIndex) {
+            var entry = replicatedLog.get(++lastQueued);
+
+            applyExecutor.execute(() -> apply(entry));
+        }
+    }
+
+    private void send(List<Outgoing<T>> outgoing) {
+        for (var message : outgoing) {
+            try {
+                commInterface.sendMessage(message.message(), message.recipient());
+            } catch (RuntimeException e) {
+                log.warn(String.format("Error sending replication message to '%s'", message.recipient()), e);
+            }
+        }
+    }
+}
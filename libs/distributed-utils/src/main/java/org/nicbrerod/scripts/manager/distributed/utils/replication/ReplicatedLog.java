@@ -0,0 +1,140 @@
+package org.nicbrerod.scripts.manager.distributed.utils.replication;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nicbrerod.scripts.manager.distributed.utils.election.LogState;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+
+import lombok.Getter;
+
+/**
+ * Append-only log of entries, kept in memory. Entries are only removed when a new leader overwrites the ones that
+ * were never committed, or when they are compacted into a snapshot, so the log only keeps the entries after the
+ * last snapshot. This class is not thread-safe
+ * @param <T> Type of the content of entries
+ */
+public class ReplicatedLog<T extends Serializable> implements LogState {
+    /**
+     * Entries of the log after the snapshot, entry with index i is at position i - snapshotIndex - 1
+     */
+    private final List<LogEntry<T>> entries = new ArrayList<>();
+
+    /**
+     * Index of the last entry compacted into a snapshot, 0 if log has not been compacted
+     */
+    @Getter
+    private long snapshotIndex;
+
+    /**
+     * Term of the last entry compacted into a snapshot, 0 if log has not been compacted
+     */
+    @Getter
+    private long snapshotTerm;
+
+    @Override
+    public long lastIndex() {
+        return snapshotIndex + entries.size();
+    }
+
+    @Override
+    public long lastTerm() {
+        return termAt(lastIndex());
+    }
+
+    /**
+     * Obtains the term of an entry
+     * @param index Index of the entry
+     * @return Term of the entry, {@link #snapshotTerm} for {@link #snapshotIndex}, or -1 if log doesn't contain
+     * the entry or it has been compacted
+     */
+    public long termAt(long index) {
+        if (index == snapshotIndex)
+            return snapshotTerm;
+
+        if (index < snapshotIndex || index > lastIndex())
+            return -1;
+
+        return get(index).term();
+    }
+
+    /**
+     * Obtains an entry
+     * @param index Index of the entry, from {@link #snapshotIndex} + 1 to {@link #lastIndex()}
+     * @return Entry
+     */
+    public LogEntry<T> get(long index) {
+        return entries.get((int) (index - snapshotIndex - 1));
+    }
+
+    /**
+     * Obtains consecutive entries
+     * @param from Index of the first entry
+     * @param max Maximum number of entries
+     * @return Entries from {@code from}, empty if log doesn't contain it or it has been compacted
+     */
+    public List<LogEntry<T>> getFrom(long from, int max) {
+        if (from <= snapshotIndex || from > lastIndex())
+            return List.of();
+
+        var start = (int) (from - snapshotIndex - 1);
+        return new ArrayList<>(entries.subList(start, (int) Math.min(entries.size(), (long) start + max)));
+    }
+
+    /**
+     * Appends a new entry at the end of the log
+     * @param term Term of the leader that appends the entry
+     * @param type Operation described by the entry
+     * @param content Content of the operation
+     * @return Appended entry
+     */
+    public LogEntry<T> append(long term, String type, T content) {
+        var entry = new LogEntry<T>(lastIndex() + 1, term, type, content);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Stores entries received from the leader. Entries already present or compacted are skipped and an entry
+     * whose term differs from the stored one removes it and all entries after it
+     * @param received Consecutive entries
+     */
+    public void merge(List<LogEntry<T>> received) {
+        for (var entry : received) {
+            if (entry.index() <= snapshotIndex)
+                continue;
+
+            var term = termAt(entry.index());
+
+            if (term == entry.term())
+                continue;
+
+            if (term != -1) {
+                entries.subList((int) (entry.index() - snapshotIndex - 1), entries.size()).clear();
+            }
+
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Removes the entries included in a snapshot. If log contains the last entry of the snapshot, entries after
+     * it are kept, else all entries are removed
+     * @param index Index of the last entry included in the snapshot
+     * @param term Term of the last entry included in the snapshot
+     */
+    public void compact(long index, long term) {
+        if (index <= snapshotIndex)
+            return;
+
+        if (termAt(index) == term) {
+            entries.subList(0, (int) (index - snapshotIndex)).clear();
+        } else {
+            entries.clear();
+        }
+
+        snapshotIndex = index;
+        snapshotTerm = term;
+    }
+}
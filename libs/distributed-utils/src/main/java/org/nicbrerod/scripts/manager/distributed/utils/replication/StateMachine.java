@@ -0,0 +1,30 @@
+package org.nicbrerod.scripts.manager.distributed.utils.replication;
+
+import java.io.Serializable;
+
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+
+/**
+ * State built by applying the committed entries of a replicated log. All methods are called from the same thread,
+ * so state is always consistent with the last applied entry when a snapshot is taken
+ * @param <T> Type of the content of log entries
+ */
+public interface StateMachine<T extends Serializable> {
+    /**
+     * Applies a committed entry
+     * @param entry Committed entry, entries appended by new leaders have no type and they can be ignored
+     */
+    void apply(LogEntry<T> entry);
+
+    /**
+     * Captures the current state, that replaces all entries applied until now
+     * @return Serialized state
+     */
+    byte[] snapshot();
+
+    /**
+     * Replaces the current state with a snapshot taken by another node
+     * @param snapshot Serialized state
+     */
+    void restore(byte[] snapshot);
+}
@@ -0,0 +1,142 @@
+package org.nicbrerod.scripts.manager.distributed.utils.request;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+
+/**
+ * Executor that processes requests out of the thread that receives them, so a slow request doesn't delay the
+ * processing of heartbeats and the rest of messages. Requests are distributed in a fixed number of lanes by their
+ * sender, and each lane processes its requests one by one, in the order they were submitted, so requests of the same
+ * sender are never reordered. Each lane has a bounded queue, and requests that don't fit in it are rejected
+ * @param <R> Type of the content of requests
+ */
+public class OrderedRequestExecutor<R extends Serializable> implements AutoCloseable {
+    /**
+     * Default maximum number of requests waiting in each lane
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Time, in seconds, that the thread of an idle lane waits for a new request before finishing
+     */
+    private static final long THREAD_KEEP_ALIVE = 60;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Single thread executors of the lanes
+     */
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * Processes each request, it's called from the thread of its lane
+     */
+    private final Consumer<RequestMessage<R>> handler;
+
+    /**
+     * Number of requests rejected because their lane was full
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    public OrderedRequestExecutor(int lanes, Consumer<RequestMessage<R>> handler) {
+        this(lanes, DEFAULT_CAPACITY, handler);
+    }
+
+    /**
+     * Creates a new request executor
+     * @param lanes Number of lanes, this is, maximum number of requests processed at the same time
+     * @param capacity Maximum number of requests waiting in each lane
+     * @param handler Processes each request
+     */
+    public OrderedRequestExecutor(int lanes, int capacity, Consumer<RequestMessage<R>> handler) {
+        this.handler = handler;
+        this.lanes = new ThreadPoolExecutor[lanes];
+
+        for (int i = 0; i < lanes; i++) {
+            var name = String.format("request-lane-%d", i);
+            this.lanes[i] = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(capacity), r -> {
+                var thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.lanes[i].allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Adds a request to the lane of its sender
+     * @param request Request to process
+     * @return True if request will be processed, false if it has been rejected because its lane is full or the
+     * executor is closed
+     */
+    public boolean submit(RequestMessage<R> request) {
+        try {
+            lanes[laneOf(request.getSender())].execute(() -> process(request));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Passes a request to {@link #handler}, logging its failures, so a failed request doesn't stop its lane
+     */
+    private void process(RequestMessage<R> request) {
+        try {
+            handler.accept(request);
+        } catch (RuntimeException e) {
+            log.warn(String.format("Error processing request '%s' from '%s'", request.getId(), request.getSender()), e);
+        }
+    }
+
+    /**
+     * Obtains the lane that processes the requests of a sender
+     * @param sender Id related to node that sent the requests
+     * @return Index of the lane
+     */
+    int laneOf(UUID sender) {
+        return sender == null ? 0 : Math.floorMod(sender.hashCode(), lanes.length);
+    }
+
+    /**
+     * Number of requests waiting in all lanes
+     * @return Count of waiting requests
+     */
+    public int getPending() {
+        var pending = 0;
+
+        for (var lane : lanes) {
+            pending += lane.getQueue().size();
+        }
+
+        return pending;
+    }
+
+    /**
+     * Number of requests rejected since executor creation
+     * @return Count of rejected requests
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops all lanes, discarding their waiting requests
+     */
+    @Override
+    public void close() {
+        for (var lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.nicbrerod.scripts.manager.distributed.utils.request;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+
+/**
+ * Buffer of requests that delays them during a short window, so a burst of requests is handled at once. The window
+ * starts with the first request added to an empty buffer, and all requests added until it ends are flushed together,
+ * in the order they were added. A request equivalent to another one waiting in the buffer, according to their
+ * coalescing keys, is merged with it and never flushed. The buffer is also flushed when it reaches
+ * {@link #maxBatch} requests, without waiting for the window to end
+ * @param <R> Type of the content of requests
+ */
+public class RequestCoalescer<R extends Serializable> implements AutoCloseable {
+    /**
+     * Default maximum number of requests flushed together
+     */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Time, in milliseconds, that a request waits in the buffer
+     */
+    private final long window;
+
+    /**
+     * Maximum number of requests flushed together
+     */
+    private final int maxBatch;
+
+    /**
+     * Obtains the key of a request, two requests with equal keys are merged
+     */
+    private final Function<RequestMessage<R>, Object> coalescingKey;
+
+    /**
+     * Receives each group of flushed requests, it's called out of the lock of the buffer
+     */
+    private final Consumer<List<RequestMessage<R>>> flusher;
+
+    /**
+     * Requests waiting in the buffer, by their coalescing key, in the order they were added
+     */
+    private final Map<Object, RequestMessage<R>> pending = new LinkedHashMap<>();
+
+    /**
+     * Executor used to flush the buffer when window ends
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Scheduled flush of the current window, null if buffer is empty
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Number of requests merged with another one
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public RequestCoalescer(long window, Function<RequestMessage<R>, Object> coalescingKey, Consumer<List<RequestMessage<R>>> flusher) {
+        this(window, DEFAULT_MAX_BATCH, coalescingKey, flusher);
+    }
+
+    /**
+     * Creates a new request buffer
+     * @param window Time, in milliseconds, that a request waits in the buffer
+     * @param maxBatch Maximum number of requests flushed together
+     * @param coalescingKey Obtains the key of a request, two requests with equal keys are merged
+     * @param flusher Receives each group of flushed requests, from the thread of the buffer or from the thread that
+     * adds a request that fills the buffer
+     */
+    public RequestCoalescer(long window, int maxBatch, Function<RequestMessage<R>, Object> coalescingKey,
+        Consumer<List<RequestMessage<R>>> flusher) {
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.coalescingKey = coalescingKey;
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "request-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a request to the buffer, unless an equivalent one is already waiting
+     * @param request Request to add
+     * @return True if request has been added, false if it has been merged with a waiting one
+     */
+    public boolean add(RequestMessage<R> request) {
+        List<RequestMessage<R>> full = null;
+
+        synchronized (this) {
+            var key = coalescingKey.apply(request);
+
+            if (pending.containsKey(key)) {
+                coalesced.incrementAndGet();
+                return false;
+            }
+
+            pending.put(key, request);
+
+            if (pending.size() >= maxBatch) {
+                full = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null) {
+            deliver(full);
+        }
+
+        return true;
+    }
+
+    /**
+     * Flushes all waiting requests without waiting for the window to end
+     */
+    public void flush() {
+        List<RequestMessage<R>> batch;
+
+        synchronized (this) {
+            batch = drain();
+        }
+
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    /**
+     * Number of requests merged with another one since buffer creation
+     * @return Count of coalesced requests
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Flushes all waiting requests and stops the buffer
+     */
+    @Override
+    public void close() {
+        flush();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Passes flushed requests to {@link #flusher}, logging its failures
+     */
+    private void deliver(List<RequestMessage<R>> batch) {
+        try {
+            flusher.accept(batch);
+        } catch (RuntimeException e) {
+            log.warn(String.format("Error flushing %d requests", batch.size()), e);
+        }
+    }
+
+    /**
+     * Takes all waiting requests and cancels the scheduled flush
+     */
+    private List<RequestMessage<R>> drain() {
+        List<RequestMessage<R>> batch = new ArrayList<>(pending.values());
+        pending.clear();
+
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        return batch;
+    }
+}
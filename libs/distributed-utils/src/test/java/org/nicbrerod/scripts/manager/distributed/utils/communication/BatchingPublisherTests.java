@@ -0,0 +1,169 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+
+/**
+ * Tests used to check that {@link BatchingPublisher} groups messages by destination, limits the groups waiting for
+ * confirmation and rejects messages when too many are waiting
+ */
+public class BatchingPublisherTests {
+
+    /**
+     * Group of messages sent by a publisher
+     */
+    private record SentBatch(String destination, List<String> messages, CompletableFuture<Void> confirmation) {}
+
+    /**
+     * Creates a sender that keeps sent groups, unpacked, without confirming them
+     * @param sent List where sent groups are added
+     * @return Sender of groups
+     */
+    private BatchingPublisher.BatchSender recordingSender(List<SentBatch> sent) {
+        return (destination, batch) -> {
+            List<String> messages = new ArrayList<>();
+
+            try {
+                BatchingPublisher.unpack(batch, message -> messages.add(new String(message, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            var confirmation = new CompletableFuture<Void>();
+            sent.add(new SentBatch(destination, messages, confirmation));
+            return confirmation;
+        };
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that messages published in the same window are sent in a group per destination, in order, and a group
+     * is sent without waiting for the window when it's full
+     */
+    @Test
+    public void batchingTest() {
+        List<SentBatch> sent = Collections.synchronizedList(new ArrayList<>());
+
+        try (var publisher = new BatchingPublisher(recordingSender(sent), 50, 3, 10, 100)) {
+            publisher.publish("a", bytes("a1"));
+            publisher.publish("b", bytes("b1"));
+            publisher.publish("a", bytes("a2"));
+
+            assertTrue("Group sent before window end", sent.isEmpty());
+
+            publisher.publish("a", bytes("a3"));
+            assertEquals("Full group not sent", 1, sent.size());
+            assertEquals(List.of("a1", "a2", "a3"), sent.get(0).messages());
+
+            Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> sent.size() == 2);
+            assertEquals("b", sent.get(1).destination());
+            assertEquals(List.of("b1"), sent.get(1).messages());
+
+            sent.forEach(batch -> batch.confirmation().complete(null));
+            assertEquals(4, publisher.getConfirmed());
+            assertEquals(0, publisher.getInFlight());
+        }
+    }
+
+    /**
+     * Checks that groups wait while the in-flight window is full, they are sent when a confirmation arrives and
+     * messages are rejected when too many are waiting
+     */
+    @Test
+    public void inFlightWindowTest() {
+        List<SentBatch> sent = Collections.synchronizedList(new ArrayList<>());
+
+        try (var publisher = new BatchingPublisher(recordingSender(sent), 0, 10, 1, 2)) {
+            assertTrue(publisher.publish("a", bytes("first")));
+            assertTrue("Publisher not saturated", publisher.isSaturated());
+
+            assertTrue(publisher.publish("a", bytes("second")));
+            assertTrue(publisher.publish("b", bytes("third")));
+            assertFalse("Message accepted with too many waiting messages", publisher.publish("b", bytes("fourth")));
+            assertEquals(1, publisher.getRejected());
+            assertEquals(1, sent.size());
+
+            sent.get(0).confirmation().complete(null);
+            assertEquals("Waiting group not sent after confirmation", 2, sent.size());
+            assertEquals(List.of("second"), sent.get(1).messages());
+
+            sent.get(1).confirmation().completeExceptionally(new IOException("Rejected by broker"));
+            assertEquals(3, sent.size());
+            assertEquals(List.of("third"), sent.get(2).messages());
+            assertEquals(1, publisher.getFailed());
+            assertEquals(0, publisher.getPending());
+        }
+    }
+
+    /**
+     * Checks that groups confirmed while they are sent don't send the rest of groups recursively, and all of them 
+     * are sent in order
+     */
+    @Test
+    public void synchronousConfirmTest() {
+        List<String> sent = new ArrayList<>();
+
+        try (var publisher = new BatchingPublisher((destination, batch) -> {
+            try {
+                BatchingPublisher.unpack(batch, message -> sent.add(new String(message, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            return CompletableFuture.completedFuture(null);
+        }, 0, 1, 1, 100_000)) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(publisher.publish("a", bytes(String.valueOf(i))));
+            }
+
+            assertEquals(10_000, sent.size());
+            assertEquals("9999", sent.get(9_999));
+            assertEquals(10_000, publisher.getConfirmed());
+        }
+    }
+
+    /**
+     * Checks that messages not sent when publisher is closed are counted as failed, and new messages are rejected
+     */
+    @Test
+    public void closeTest() {
+        List<SentBatch> sent = Collections.synchronizedList(new ArrayList<>());
+        var publisher = new BatchingPublisher(recordingSender(sent), 1_000, 10, 10, 100);
+
+        assertTrue(publisher.publish("a", bytes("a1")));
+        assertTrue(publisher.publish("b", bytes("b1")));
+        publisher.close();
+
+        assertEquals(2, publisher.getFailed());
+        assertEquals(0, publisher.getPending());
+        assertFalse("Message accepted by a closed publisher", publisher.publish("a", bytes("a2")));
+        assertEquals(1, publisher.getRejected());
+        assertTrue("Messages sent after close", sent.isEmpty());
+    }
+
+    /**
+     * Checks that truncated groups are not unpacked
+     */
+    @Test(expected = IOException.class)
+    public void truncatedBatchTest() throws IOException {
+        var packed = BatchingPublisher.pack(List.of(bytes("message")));
+        var truncated = new byte[packed.length - 1];
+        System.arraycopy(packed, 0, truncated, 0, truncated.length);
+        BatchingPublisher.unpack(truncated, message -> {});
+    }
+}
@@ -0,0 +1,192 @@
+package org.nicbrerod.scripts.manager.distributed.utils.communication.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.jboss.logging.Logger;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.GossipMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.HeartBeatMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ReplicationMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberState;
+import org.nicbrerod.scripts.manager.distributed.utils.model.membership.MemberUpdate;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
+
+/**
+ * Tests used to check that {@link BinaryMessageCodec} rebuilds messages without losing information and its encoded
+ * messages are smaller than the ones of {@link JavaSerializationCodec}
+ */
+public class MessageCodecTests {
+
+    /**
+     * Logger object used to show encoded sizes
+     */
+    private final static Logger log = Logger.getLogger(MessageCodecTests.class);
+
+    private final BinaryMessageCodec binary = new BinaryMessageCodec();
+
+    private final JavaSerializationCodec java = new JavaSerializationCodec();
+
+    @Test
+    public void heartbeatRoundTripTest() throws IOException {
+        var message = new HeartBeatMessage(UUID.randomUUID(), true, 42, 0.5f, 0.25f, 3, 7, 1024, 4096);
+        var decoded = (HeartBeatMessage) binary.decode(binary.encode(message));
+
+        assertEquals("Heartbeat fields have changed", message, decoded);
+        assertEquals("Id has changed", message.getId(), decoded.getId());
+        assertEquals("Timestamp has changed", message.getTimestamp(), decoded.getTimestamp());
+        assertEquals("Sender has changed", message.getSender(), decoded.getSender());
+    }
+
+    @Test
+    public void requestRoundTripTest() throws IOException {
+        var message = new RequestMessage<String>(UUID.randomUUID(), "ADD", "TYPE 1", UUID.randomUUID());
+        var decoded = (RequestMessage<?>) binary.decode(binary.encode(message));
+
+        assertEquals("Request fields have changed", message, decoded);
+        assertEquals("Id has changed", message.getId(), decoded.getId());
+
+        var serializedContent = new RequestMessage<UUID>(UUID.randomUUID(), "RUN", UUID.randomUUID());
+        var decodedContent = (RequestMessage<?>) binary.decode(binary.encode(serializedContent));
+
+        assertEquals("Serialized content has changed", serializedContent.getRequestContent(), decodedContent.getRequestContent());
+        assertNull("Request without assignee has been assigned", decodedContent.getAssignee());
+        assertEquals("Request without parameters has received some", 0, decodedContent.getParameters().length);
+
+        var withParameters = new RequestMessage<String>(UUID.randomUUID(), "RUN", "script", new String[] { "a b", "", null, "ñ" }, null);
+        var decodedParameters = (RequestMessage<?>) binary.decode(binary.encode(withParameters));
+
+        assertEquals("Request with parameters has changed", withParameters, decodedParameters);
+    }
+
+    @Test
+    public void gossipRoundTripTest() throws IOException {
+        var sender = UUID.randomUUID();
+        var info = new HeartBeatMessage(sender, false, 42, 0.5f, 0.25f, 3, 7, 1024, 4096);
+        var updates = List.of(new MemberUpdate(sender, MemberState.ALIVE, 2, info), new MemberUpdate(UUID.randomUUID(), MemberState.SUSPECT, 5, null));
+        var message = new GossipMessage(sender, GossipMessage.Kind.PING_REQ, 17, UUID.randomUUID(), updates);
+        var decoded = (GossipMessage) binary.decode(binary.encode(message));
+
+        assertEquals("Kind has changed", message.getKind(), decoded.getKind());
+        assertEquals("Sequence has changed", message.getSequence(), decoded.getSequence());
+        assertEquals("Target has changed", message.getTarget(), decoded.getTarget());
+        assertEquals("Updates have changed", message.getUpdates(), decoded.getUpdates());
+        assertEquals("Node information has changed", info.getTimestamp(), decoded.getUpdates().get(0).info().getTimestamp());
+
+        var ack = new GossipMessage(sender, GossipMessage.Kind.ACK, 1, null, List.of());
+        assertNull("Message without target has a target", ((GossipMessage) binary.decode(binary.encode(ack))).getTarget());
+    }
+
+    @Test
+    public void electionRoundTripTest() throws IOException {
+        var message = new ElectionMessage(UUID.randomUUID(), ElectionMessage.Kind.REQUEST_VOTE, 12, 3, true, 40, 11);
+        var decoded = (ElectionMessage) binary.decode(binary.encode(message));
+
+        assertEquals("Kind has changed", message.getKind(), decoded.getKind());
+        assertEquals("Term has changed", message.getTerm(), decoded.getTerm());
+        assertEquals("Round has changed", message.getRound(), decoded.getRound());
+        assertTrue("Granted vote has changed", decoded.isGranted());
+        assertEquals("Last log index has changed", message.getLastLogIndex(), decoded.getLastLogIndex());
+        assertEquals("Last log term has changed", message.getLastLogTerm(), decoded.getLastLogTerm());
+        assertEquals("Sender has changed", message.getSender(), decoded.getSender());
+    }
+
+    @Test
+    public void encodedSizeTest() throws IOException {
+        var heartbeat = new HeartBeatMessage(UUID.randomUUID(), false, 42, 0.5f, 0.25f, 3, 7, 1024, 4096);
+        var request = new RequestMessage<String>(UUID.randomUUID(), "ADD", "TYPE 1");
+
+        var heartbeatSizes = new int[] { binary.encode(heartbeat).length, java.encode(heartbeat).length };
+        var requestSizes = new int[] { binary.encode(request).length, java.encode(request).length };
+
+        log.info(String.format("Heartbeat size: binary %d bytes, java %d bytes", heartbeatSizes[0], heartbeatSizes[1]));
+        log.info(String.format("Request size: binary %d bytes, java %d bytes", requestSizes[0], requestSizes[1]));
+
+        assertTrue("Binary heartbeat is not smaller", heartbeatSizes[0] * 4 < heartbeatSizes[1]);
+        assertTrue("Binary request is not smaller", requestSizes[0] * 4 < requestSizes[1]);
+    }
+
+    @Test
+    public void invalidDataTest() throws IOException {
+        var encoded = binary.encode(new HeartBeatMessage(UUID.randomUUID(), false, 1, 0, 0));
+
+        try {
+            binary.decode(Arrays.copyOf(encoded, encoded.length / 2));
+            fail("Truncated message has been decoded");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        encoded[0] = BinaryMessageCodec.VERSION + 1;
+
+        try {
+            binary.decode(encoded);
+            fail("Message with unknown version has been decoded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Checks that lengths of variable fields are validated before allocating them
+     */
+    @Test
+    public void invalidLengthTest() throws IOException {
+        var encoded = binary.encode(new RequestMessage<String>(UUID.randomUUID(), "RUN", "content"));
+        // Request type length is after header, common fields, assignee flag and assignee
+        var lengthPosition = 2 + 44 + 1 + 16;
+
+        for (var length : new int[] { -2, Integer.MAX_VALUE }) {
+            ByteBuffer.wrap(encoded).putInt(lengthPosition, length);
+
+            try {
+                binary.decode(encoded);
+                fail(String.format("Message with field length %d has been decoded", length));
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Checks that serialized classes out of the allow-list are not deserialized, while messages and their contents 
+     * are still deserialized
+     */
+    @Test
+    public void forbiddenClassTest() throws IOException {
+        var entries = List.of(new LogEntry<UUID>(1, 1, "RUN", UUID.randomUUID()));
+        var replication = new ReplicationMessage<UUID>(UUID.randomUUID(), ReplicationMessage.Kind.SNAPSHOT, 3, 1, 1, entries, 1, true, 
+            0, 1, new byte[] { 1, 2, 3 });
+        var decoded = (ReplicationMessage<?>) binary.decode(binary.encode(replication));
+
+        assertEquals("Entries have changed", entries, decoded.getEntries());
+        assertTrue("Snapshot data has changed", Arrays.equals(replication.getData(), decoded.getData()));
+
+        var message = new RequestMessage<URI>(UUID.randomUUID(), "RUN", URI.create("http://localhost"));
+
+        try {
+            binary.decode(binary.encode(message));
+            fail("Request with a forbidden content class has been decoded");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            java.decode(java.encode(message));
+            fail("Message with a forbidden class has been decoded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.nicbrerod.scripts.manager.distributed.utils.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.awaitility.Awaitility;
+import org.jboss.logging.Logger;
+import org.junit.Test;
+
+/**
+ * Tests used to check the sampling of events by type and the ring buffer of recent events
+ */
+public class EventLogTests {
+
+    /**
+     * Waits until the first half of a second, so events recorded by a test fall in the same sampling window
+     */
+    private void awaitWindowStart() {
+        Awaitility.await().pollInterval(5, TimeUnit.MILLISECONDS).atMost(2, TimeUnit.SECONDS)
+            .until(() -> System.currentTimeMillis() % 1000 < 500);
+    }
+
+    /**
+     * Checks that events over the limit of their type are discarded, without affecting other types, and the number
+     * of discarded events is recorded with the first event of the next window
+     */
+    @Test
+    public void samplingTest() {
+        var events = new EventLog(Logger.getLogger(getClass()));
+        events.setMaxPerSecond(0);
+        events.setLimit("limited", 3);
+        awaitWindowStart();
+
+        for (int i = 0; i < 10; i++) {
+            events.record(Logger.Level.DEBUG, "limited", "Limited event %d", i);
+            events.record(Logger.Level.DEBUG, "unlimited", "Unlimited event %d", i);
+        }
+
+        assertEquals("Wrong number of events discarded", 7, events.getSuppressed());
+        assertEquals("Wrong number of recorded events", 13, events.recent(100).size());
+
+        Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> System.currentTimeMillis() % 1000 < 500
+            && events.recent(1).get(0).timestamp() / 1000 != System.currentTimeMillis() / 1000);
+        events.record(Logger.Level.DEBUG, "limited", "Limited event %d", 10);
+
+        var last = events.recent(2).stream().map(Event::message).collect(Collectors.toList());
+        assertEquals("Discarded events not reported", List.of("Suppressed 7 events of type 'limited'", "Limited event 10"), last);
+    }
+
+    /**
+     * Checks that the ring buffer keeps only the last events, from oldest to newest
+     */
+    @Test
+    public void recentEventsTest() {
+        var events = new EventLog(Logger.getLogger(getClass()), 4);
+        events.setMaxPerSecond(0);
+
+        assertTrue("Empty log returns events", events.recent(10).isEmpty());
+
+        for (int i = 0; i < 6; i++) {
+            events.record(Logger.Level.DEBUG, "test", "Event %d", i);
+        }
+
+        var messages = events.recent(10).stream().map(Event::message).collect(Collectors.toList());
+        assertEquals("Wrong recent events", List.of("Event 2", "Event 3", "Event 4", "Event 5"), messages);
+        assertEquals("Wrong limited recent events", List.of("Event 5"),
+            events.recent(1).stream().map(Event::message).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,108 @@
+package org.nicbrerod.scripts.manager.distributed.utils.failure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+
+/**
+ * Tests used to check the timing wheel, the suspicion level calculation and the detection of nodes that stop 
+ * sending heartbeats
+ */
+public class PhiAccrualFailureDetectorTests {
+
+    /**
+     * Checks that timeouts expire in the tick after their deadline, postponed timeouts are moved and cancelled 
+     * timeouts never expire
+     */
+    @Test
+    public void timingWheelTest() {
+        List<String> expired = new ArrayList<>();
+        var wheel = new HashedTimingWheel<String>(10, 8, 0, timeout -> expired.add(timeout.getKey()));
+
+        wheel.schedule("first", 25);
+        var postponed = wheel.schedule("postponed", 25);
+        var cancelled = wheel.schedule("cancelled", 25);
+        // Deadline in the next revolution of the wheel
+        wheel.schedule("far", 125);
+
+        wheel.advance(0);
+        postponed.reschedule(55);
+        cancelled.cancel();
+
+        assertEquals("Timeouts expired before the end of their tick", 0, wheel.advance(29));
+        assertEquals("Timeout not expired after its tick", 1, wheel.advance(30));
+        assertEquals("Wrong timeout expired", List.of("first"), expired);
+
+        wheel.advance(60);
+        assertEquals("Postponed timeout not expired", List.of("first", "postponed"), expired);
+
+        wheel.advance(129);
+        assertEquals("Timeout of next revolution expired early", 2, expired.size());
+
+        wheel.advance(130);
+        assertEquals("Timeout of next revolution not expired", List.of("first", "postponed", "far"), expired);
+    }
+
+    /**
+     * Checks that the suspicion level grows with the elapsed time and it's lower for irregular heartbeats
+     */
+    @Test
+    public void phiTest() {
+        var second = TimeUnit.SECONDS.toNanos(1);
+        var regular = new HeartbeatHistory(100, second, 1, 0);
+        var irregular = new HeartbeatHistory(100, second, 1, 0);
+
+        for (int i = 0; i < 100; i++) {
+            regular.add(second);
+            irregular.add(i % 2 == 0 ? second / 2 : second * 3 / 2);
+        }
+
+        assertTrue("Phi is high before the mean interval", regular.phi(second * 0.9) < 1);
+        assertTrue("Phi doesn't grow with elapsed time", regular.phi(second * 1.1) > regular.phi(second));
+        assertTrue("Irregular heartbeats are more suspected", irregular.phi(second * 2) < regular.phi(second * 2));
+
+        var elapsed = irregular.timeToPhi(PhiAccrualFailureDetector.DEFAULT_THRESHOLD);
+        assertEquals("Time to threshold is not accurate", PhiAccrualFailureDetector.DEFAULT_THRESHOLD, irregular.phi(elapsed), 0.01);
+    }
+
+    /**
+     * Checks that a node is considered failed when it stops sending heartbeats, but not while it sends them
+     */
+    @Test
+    public void detectionTest() throws InterruptedException {
+        Set<UUID> failed = ConcurrentHashMap.newKeySet();
+        var detector = new PhiAccrualFailureDetector(20, failed::add);
+        var alive = UUID.randomUUID();
+        var stopped = UUID.randomUUID();
+
+        for (int i = 0; i < 25; i++) {
+            detector.heartbeat(alive);
+
+            if (i < 5) {
+                detector.heartbeat(stopped);
+            }
+
+            detector.expire();
+            Thread.sleep(20);
+        }
+
+        assertTrue("Stopped node not detected", failed.contains(stopped));
+        assertFalse("Alive node detected", failed.contains(alive));
+        assertTrue("Alive node not available", detector.isAvailable(alive));
+
+        Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> {
+            detector.expire();
+            return failed.contains(alive);
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package org.nicbrerod.scripts.manager.distributed.utils.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+
+public class SystemMetricsSamplerTests {
+
+    /**
+     * Checks that sampler takes a first sample in background and values are in their ranges
+     */
+    @Test
+    public void samplingTest() {
+        try (var sampler = new SystemMetricsSampler(100)) {
+            Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sampler.getSnapshot() != SystemMetrics.EMPTY);
+
+            var metrics = sampler.getSnapshot();
+
+            assertTrue("Heap usage not sampled", metrics.heapUsed() > 0);
+            assertTrue("CPU usage out of range", metrics.cpuUsage() >= 0 && metrics.cpuUsage() <= 1);
+            assertTrue("Memory usage out of range", metrics.memoryUsage() >= 0 && metrics.memoryUsage() <= 1);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.nicbrerod.scripts.manager.distributed.utils.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+
+/**
+ * Test class used to check that equivalent requests submitted in the same coalescing window are processed once in
+ * the cluster, and that the rest of requests are all processed
+ */
+public class ClusterNodeCoalescingTests {
+
+    /**
+     * Number of nodes created in the test
+     */
+    private static final int NODE_COUNT = 3;
+
+    /**
+     * Time, in milliseconds, that requests wait to be sent
+     */
+    private static final long COALESCING_WINDOW = 300;
+
+    /**
+     * Number of times each follower submits the same request
+     */
+    private static final int DUPLICATES = 10;
+
+    /**
+     * Number of different requests submitted by the test
+     */
+    private static final int DISTINCT = 20;
+
+    /**
+     * Counts how many times a request has been processed in the cluster
+     */
+    private static int processed(List<TestNode> nodes, String content) {
+        return nodes.stream().mapToInt(node -> node.getCount(content)).sum();
+    }
+
+    /**
+     * Submits the same request many times from all followers, and many different requests from a follower, and 
+     * checks that the repeated request is processed once and each different one is processed once
+     */
+    @Test
+    public void coalescingTest() {
+        var commInterface = new LocalCommInterface();
+        List<TestNode> nodes = new ArrayList<>();
+        var executor = Executors.newFixedThreadPool(NODE_COUNT);
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            var node = new TestNode(commInterface, 100, 300, 600);
+            node.setCoalescingWindow(COALESCING_WINDOW);
+            node.setClusterSize(NODE_COUNT);
+            commInterface.registerNode(node);
+            node.configureCommInterface();
+            nodes.add(node);
+
+            executor.execute(() -> {
+                try {
+                    node.consensus();
+                } catch (InterruptedException e) {
+                    // do nothing
+                }
+            });
+        }
+
+        try {
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+                var leaders = nodes.stream().map(TestNode::getLeader).collect(Collectors.toSet());
+                return leaders.size() == 1 && !leaders.contains(null);
+            });
+
+            var followers = nodes.stream().filter(node -> !node.imLeader()).collect(Collectors.toList());
+            var follower = followers.get(0);
+
+            // Batches of both followers reach the leader in the same window, so their requests are merged too
+            for (int i = 0; i < DUPLICATES; i++) {
+                followers.forEach(node -> node.submitRequest(TestNode.REQUEST_ADD, "repeated"));
+            }
+
+            for (int i = 0; i < DISTINCT; i++) {
+                follower.submitRequest(TestNode.REQUEST_ADD, String.format("distinct-%d", i));
+            }
+
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> processed(nodes, "repeated") > 0
+                && IntStream.range(0, DISTINCT).allMatch(i -> processed(nodes, String.format("distinct-%d", i)) > 0));
+
+            // Wait for a whole window, so requests that were not coalesced would have been processed
+            Awaitility.await().pollDelay(2 * COALESCING_WINDOW, TimeUnit.MILLISECONDS).until(() -> true);
+
+            assertEquals("Repeated request has not been coalesced", 1, processed(nodes, "repeated"));
+
+            for (int i = 0; i < DISTINCT; i++) {
+                assertEquals("Different request has not been processed once", 1, processed(nodes, String.format("distinct-%d", i)));
+            }
+
+            var coalesced = nodes.stream().mapToLong(TestNode::getCoalescedRequests).sum();
+            assertTrue("Coalesced requests have not been counted", coalesced >= followers.size() * DUPLICATES - 1);
+        } finally {
+            nodes.forEach(TestNode::stop);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.nicbrerod.scripts.manager.distributed.utils.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nicbrerod.scripts.manager.distributed.utils.util.ClusterAwaits.awaitLeader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.election.ElectionStateFile;
+import org.nicbrerod.scripts.manager.distributed.utils.election.LeaderElection;
+import org.nicbrerod.scripts.manager.distributed.utils.election.LogState;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.CommInterfaceMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.ElectionMessage.Kind;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+
+/**
+ * Test class used to check that nodes elect a single leader and, when the leader stops, elect a new one in a
+ * newer term, that a configured cluster size prevents elections without a majority and that a node doesn't vote 
+ * for two candidates while the lease of the first one can be valid, or twice in the same term after a restart
+ */
+public class ClusterNodeElectionTests {
+
+    /**
+     * Number of nodes created in the test
+     */
+    private static final int NODE_COUNT = 5;
+
+    /**
+     * Creates a communication interface that only keeps the messages sent to a specific node
+     * @param answers List where sent messages are added
+     * @return Created communication interface
+     */
+    private static CommInterface answersTo(List<ElectionMessage> answers) {
+        return new CommInterface() {
+            @Override
+            public void sendBroadcast(CommInterfaceMessage message) {}
+
+            @Override
+            public void sendMessage(CommInterfaceMessage message, UUID recipient) {
+                answers.add((ElectionMessage) message);
+            }
+
+            @Override
+            public void configureMessageProcessing(Consumer<CommInterfaceMessage> consumer) {}
+
+            @Override
+            public void onStop() {}
+        };
+    }
+
+    /**
+     * Checks that only the leader considers itself leader and, after stopping it, remaining nodes elect a new 
+     * leader in a newer term
+     * @throws InterruptedException Thrown if any thread created by nodes is broken by a system interruption
+     */
+    @Test
+    public void reelectionTest() throws InterruptedException {
+        List<TestNode> nodes = new ArrayList<>();
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            var commInterface = new LocalCommInterface();
+            var node = new TestNode(commInterface, 100, 300, 600);
+            node.setClusterSize(NODE_COUNT);
+            commInterface.registerNode(node);
+            node.configureCommInterface();
+            nodes.add(node);
+        }
+
+        var executor = Executors.newScheduledThreadPool(NODE_COUNT);
+
+        for (var node : nodes) {
+            executor.schedule(() -> {
+                try {
+                    node.consensus();
+                } catch (InterruptedException e) {
+                    // do nothing
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            var oldLeader = awaitLeader(nodes, null);
+            var oldTerm = oldLeader.getTerm();
+
+            assertTrue("Leader doesn't consider itself leader", oldLeader.imLeader());
+            assertTrue("More than one node considers itself leader", nodes.stream().filter(TestNode::imLeader).count() == 1);
+
+            nodes.remove(oldLeader);
+            oldLeader.stop();
+
+            var newTerm = awaitLeader(nodes, oldLeader.getId()).getTerm();
+
+            assertTrue("New leader has not a newer term", newTerm > oldTerm);
+        } finally {
+            nodes.forEach(TestNode::stop);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that a node alone doesn't elect itself when cluster size is configured, and it's elected when another 
+     * node joins and they form a majority
+     * @throws InterruptedException Thrown if any thread created by nodes is broken by a system interruption
+     */
+    @Test
+    public void fixedClusterSizeTest() throws InterruptedException {
+        List<TestNode> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            var commInterface = new LocalCommInterface();
+            var node = new TestNode(commInterface, 100, 300, 600);
+            node.setClusterSize(3);
+            commInterface.registerNode(node);
+            node.configureCommInterface();
+            nodes.add(node);
+        }
+
+        try {
+            nodes.get(0).consensus();
+            Awaitility.await().pollDelay(1500, TimeUnit.MILLISECONDS).until(() -> true);
+            assertNull("Node alone elected a leader without a majority", nodes.get(0).getLeader());
+
+            nodes.get(1).consensus();
+            awaitLeader(nodes, null);
+        } finally {
+            nodes.forEach(TestNode::stop);
+        }
+    }
+
+    /**
+     * Asks the same voter for its vote from two candidates, the second one with a newer term, and checks that only the
+     * first one gets it until the minimum election timeout after the vote expires
+     */
+    @Test
+    public void singleVoteDuringLeaseTest() {
+        List<ElectionMessage> answers = new CopyOnWriteArrayList<>();
+        var voter = new LeaderElection(UUID.randomUUID(), answersTo(answers), 100, 300, 600, () -> 3, new Random());
+
+        try {
+            // Voter doesn't vote during the first timeout after its creation
+            Awaitility.await().pollDelay(400, TimeUnit.MILLISECONDS).until(() -> true);
+
+            voter.receive(new ElectionMessage(UUID.randomUUID(), Kind.REQUEST_VOTE, 1, 0, false));
+            voter.receive(new ElectionMessage(UUID.randomUUID(), Kind.REQUEST_VOTE, 2, 0, false));
+
+            assertTrue("First candidate didn't get the vote", answers.get(0).isGranted());
+            assertFalse("Second candidate got the vote while the lease of the first one can be valid", answers.get(1).isGranted());
+            assertEquals("Voter moved to the term of the second candidate", 1, voter.getTerm());
+
+            var late = UUID.randomUUID();
+            Awaitility.await().pollDelay(400, TimeUnit.MILLISECONDS).until(() -> true);
+            voter.receive(new ElectionMessage(late, Kind.REQUEST_VOTE, 2, 0, false));
+            assertTrue("Candidate didn't get the vote after the timeout", answers.get(2).isGranted());
+        } finally {
+            voter.close();
+        }
+    }
+
+    /**
+     * Grants a vote, recreates the voter from its stored state, as after a restart, and checks that it doesn't vote
+     * for another candidate in the same term
+     * @throws IOException Thrown if election state can't be stored
+     */
+    @Test
+    public void storedVoteTest() throws IOException {
+        List<ElectionMessage> answers = new CopyOnWriteArrayList<>();
+        var folder = Files.createTempDirectory("election");
+        var file = folder.resolve("election.state");
+        var id = UUID.randomUUID();
+
+        try {
+            var voter = new LeaderElection(id, answersTo(answers), 100, 300, 600, () -> 3, new Random(), LogState.EMPTY, 
+                new ElectionStateFile(file));
+            Awaitility.await().pollDelay(400, TimeUnit.MILLISECONDS).until(() -> true);
+            voter.receive(new ElectionMessage(UUID.randomUUID(), Kind.REQUEST_VOTE, 1, 0, false));
+            voter.close();
+
+            var restarted = new LeaderElection(id, answersTo(answers), 100, 300, 600, () -> 3, new Random(), LogState.EMPTY, 
+                new ElectionStateFile(file));
+            Awaitility.await().pollDelay(400, TimeUnit.MILLISECONDS).until(() -> true);
+            restarted.receive(new ElectionMessage(UUID.randomUUID(), Kind.REQUEST_VOTE, 1, 0, false));
+            restarted.close();
+
+            assertTrue("First candidate didn't get the vote", answers.get(0).isGranted());
+            assertEquals("Restarted voter lost its term", 1, restarted.getTerm());
+            assertFalse("Restarted voter voted twice in the same term", answers.get(1).isGranted());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(folder);
+        }
+    }
+}
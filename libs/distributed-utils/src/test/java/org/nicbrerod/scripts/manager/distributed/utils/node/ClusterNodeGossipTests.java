@@ -0,0 +1,74 @@
+package org.nicbrerod.scripts.manager.distributed.utils.node;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.membership.MembershipMode;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+
+/**
+ * Test class used to check that nodes in {@link MembershipMode#GOSSIP} mode discover all the cluster and detect 
+ * stopped nodes, with the same {@code clusterNodesInfo} view of the heartbeat mode
+ */
+public class ClusterNodeGossipTests {
+
+    /**
+     * Number of nodes created in the test
+     */
+    private static final int NODE_COUNT = 10;
+
+    /**
+     * Checks that all nodes know the rest of nodes and, when a node stops, all nodes remove it
+     * @throws InterruptedException Thrown if any thread created by nodes is broken by a system interruption
+     */
+    @Test
+    public void membershipTest() throws InterruptedException {
+        List<TestNode> nodes = new ArrayList<>();
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            var commInterface = new LocalCommInterface();
+            var node = new TestNode(commInterface, 100);
+            node.setMembershipMode(MembershipMode.GOSSIP);
+            node.setClusterSize(NODE_COUNT);
+            commInterface.registerNode(node);
+            node.configureCommInterface();
+            nodes.add(node);
+        }
+
+        var executor = Executors.newScheduledThreadPool(NODE_COUNT);
+
+        for (var node : nodes) {
+            executor.schedule(() -> {
+                try {
+                    node.consensus();
+                } catch (InterruptedException e) {
+                    // do nothing
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            Awaitility.await().atMost(20, TimeUnit.SECONDS)
+                .until(() -> nodes.stream().allMatch(node -> {
+                    var others = nodes.stream().map(TestNode::getId).filter(id -> !id.equals(node.getId())).collect(Collectors.toSet());
+                    return new HashSet<>(node.getClusterNodesInfo().keySet()).equals(others);
+                }));
+
+            var stopped = nodes.remove(0);
+            stopped.stop();
+
+            Awaitility.await().atMost(20, TimeUnit.SECONDS)
+                .until(() -> nodes.stream().noneMatch(node -> node.getClusterNodesInfo().containsKey(stopped.getId())));
+        } finally {
+            nodes.forEach(TestNode::stop);
+            executor.shutdownNow();
+        }
+    }
+}
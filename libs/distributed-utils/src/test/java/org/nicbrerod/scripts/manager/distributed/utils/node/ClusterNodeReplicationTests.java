@@ -0,0 +1,81 @@
+package org.nicbrerod.scripts.manager.distributed.utils.node;
+
+import static org.junit.Assert.assertTrue;
+import static org.nicbrerod.scripts.manager.distributed.utils.util.ClusterAwaits.awaitApplied;
+import static org.nicbrerod.scripts.manager.distributed.utils.util.ClusterAwaits.awaitLeader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+
+/**
+ * Test class used to check that operations proposed to any node are applied by all nodes in the same order, also
+ * after the leader stops
+ */
+public class ClusterNodeReplicationTests {
+
+    /**
+     * Number of nodes created in the test
+     */
+    private static final int NODE_COUNT = 3;
+
+    /**
+     * Proposes operations from a follower and from the leader, checks that all nodes apply them in order and, after
+     * stopping the leader, that the new leader keeps the applied operations and replicates new ones
+     * @throws InterruptedException Thrown if any thread created by nodes is broken by a system interruption
+     */
+    @Test
+    public void replicationTest() throws InterruptedException {
+        List<TestNode> nodes = new ArrayList<>();
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            var commInterface = new LocalCommInterface();
+            var node = new TestNode(commInterface, 100, 300, 600);
+            node.setClusterSize(NODE_COUNT);
+            commInterface.registerNode(node);
+            node.configureCommInterface();
+            nodes.add(node);
+        }
+
+        var executor = Executors.newScheduledThreadPool(NODE_COUNT);
+
+        for (var node : nodes) {
+            executor.schedule(() -> {
+                try {
+                    node.consensus();
+                } catch (InterruptedException e) {
+                    // do nothing
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            var leader = awaitLeader(nodes, null);
+            var follower = nodes.stream().filter(node -> node != leader).findFirst().get();
+
+            assertTrue("Follower can't propose an operation", follower.propose(TestNode.REQUEST_ADD, "A"));
+            assertTrue("Follower can't propose an operation", follower.propose(TestNode.REQUEST_ADD, "B"));
+            awaitApplied(nodes, List.of("A", "B"));
+
+            assertTrue("Leader can't propose an operation", leader.propose(TestNode.REQUEST_ADD, "C"));
+            awaitApplied(nodes, List.of("A", "B", "C"));
+
+            nodes.remove(leader);
+            leader.stop();
+
+            var newLeader = awaitLeader(nodes, leader.getId());
+            var newFollower = nodes.stream().filter(node -> node != newLeader).findFirst().get();
+
+            assertTrue("Follower can't propose an operation", newFollower.propose(TestNode.REQUEST_DELETE, "D"));
+            awaitApplied(nodes, List.of("A", "B", "C", "D"));
+        } finally {
+            nodes.forEach(TestNode::stop);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.nicbrerod.scripts.manager.distributed.utils.node;
+
+import static org.junit.Assert.assertTrue;
+import static org.nicbrerod.scripts.manager.distributed.utils.util.ClusterAwaits.awaitApplied;
+import static org.nicbrerod.scripts.manager.distributed.utils.util.ClusterAwaits.awaitLeader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.replication.LogReplication;
+import org.nicbrerod.scripts.manager.distributed.utils.util.LocalCommInterface;
+import org.nicbrerod.scripts.manager.distributed.utils.util.TestNode;
+
+/**
+ * Test class used to check that a node that joins the cluster after the log has been compacted receives the
+ * snapshot of the leader and the operations after it
+ */
+public class ClusterNodeStateTransferTests {
+
+    /**
+     * Number of nodes created before proposing operations
+     */
+    private static final int NODE_COUNT = 3;
+
+    /**
+     * Number of applied operations after which nodes take a snapshot
+     */
+    private static final int SNAPSHOT_THRESHOLD = 8;
+
+    /**
+     * Number of operations proposed before the new node joins. Their content makes the snapshot greater than
+     * {@link LogReplication#SNAPSHOT_WINDOW} chunks
+     */
+    private static final int OPERATION_COUNT = 50;
+
+    /**
+     * Creates and starts a new node
+     * @param executor Executor used to start the consensus algorithm of the node
+     * @return Created node
+     */
+    private static TestNode startNode(ScheduledExecutorService executor) {
+        var commInterface = new LocalCommInterface();
+        var node = new TestNode(commInterface, 100, 300, 600);
+        node.setSnapshotThreshold(SNAPSHOT_THRESHOLD);
+        node.setClusterSize(NODE_COUNT);
+        commInterface.registerNode(node);
+        node.configureCommInterface();
+
+        executor.schedule(() -> {
+            try {
+                node.consensus();
+            } catch (InterruptedException e) {
+                // do nothing
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+
+        return node;
+    }
+
+    /**
+     * Proposes operations until nodes compact their logs, adds a new node and checks that it restores the snapshot
+     * of the leader, applies the operations after it and the new ones
+     */
+    @Test
+    public void joinAfterCompactionTest() {
+        List<TestNode> nodes = new ArrayList<>();
+        var executor = Executors.newScheduledThreadPool(NODE_COUNT + 1);
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes.add(startNode(executor));
+        }
+
+        try {
+            awaitLeader(nodes, null);
+
+            List<String> expected = new ArrayList<>();
+            var padding = "x".repeat(4096);
+
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                var operation = String.format("%d-%s", i, padding);
+                expected.add(operation);
+                assertTrue("Operation can't be proposed", nodes.get(i % NODE_COUNT).propose(TestNode.REQUEST_ADD, operation));
+            }
+
+            awaitApplied(nodes, expected);
+
+            var newNode = startNode(executor);
+            nodes.add(newNode);
+            awaitApplied(nodes, expected);
+
+            assertTrue("New node has not received a snapshot", newNode.getRestoredSnapshots() > 0);
+
+            expected.add("last");
+            assertTrue("Operation can't be proposed", newNode.propose(TestNode.REQUEST_ADD, "last"));
+            awaitApplied(nodes, expected);
+        } finally {
+            nodes.forEach(TestNode::stop);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.stream.Collectors;
 
 import org.awaitility.Awaitility;
 import org.jboss.logging.Logger;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -54,12 +55,21 @@ public class ClusterNodeTests {
         for (int i = 0; i < nodeCount; i++) {
             var commInterface = new LocalCommInterface();
             var node = new TestNode(commInterface);
+            node.setClusterSize(nodeCount);
             commInterface.registerNode(node);
             node.configureCommInterface();
             this.nodes.add(node);
         }
     }
 
+    /**
+     * Stops all nodes, so they don't take part in the clusters of next tests
+     */
+    @After
+    public void stopNodes() {
+        nodes.forEach(TestNode::stop);
+    }
+
     /**
      * Checks that, when all nodes have execute their consensus algorithm, all nodes have the same leader 
      * and there is no other leader in the system
@@ -85,7 +95,7 @@ public class ClusterNodeTests {
             .until(() -> {
                 var leaders = nodes.stream().map(x -> x.getLeader()).collect(Collectors.toSet());
                 log.info("Current leaders: " + leaders.size());
-                return leaders.size() == 1;
+                return leaders.size() == 1 && !leaders.contains(null);
             });
     }
 }
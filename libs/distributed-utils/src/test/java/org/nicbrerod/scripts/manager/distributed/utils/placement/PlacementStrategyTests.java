@@ -0,0 +1,73 @@
+package org.nicbrerod.scripts.manager.distributed.utils.placement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Tests used to check the node selected by each {@link PlacementStrategy} implementation
+ */
+public class PlacementStrategyTests {
+
+    /**
+     * Creates the load of a node with the passed number of queued requests
+     * @param queued Number of queued requests
+     * @return Load of a new node
+     */
+    private static NodeLoad load(int queued) {
+        return new NodeLoad(UUID.randomUUID(), 0, 0, 0, queued);
+    }
+
+    @Test
+    public void leastLoadedTest() {
+        var candidates = List.of(load(3), load(1), load(2));
+
+        assertEquals("Least loaded node not selected", candidates.get(1).id(), new LeastLoadedPlacement().select("key", candidates).get());
+        assertTrue("A node has been selected without candidates", new LeastLoadedPlacement().select("key", List.of()).isEmpty());
+    }
+
+    @Test
+    public void powerOfTwoChoicesTest() {
+        var candidates = List.of(load(0), load(5), load(10));
+        var strategy = new PowerOfTwoChoicesPlacement(new Random(0));
+
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals("Most loaded node has been selected", candidates.get(2).id(), strategy.select("key", candidates).get());
+        }
+    }
+
+    @Test
+    public void consistentHashTest() {
+        List<NodeLoad> candidates = new ArrayList<>(List.of(load(0), load(0), load(0)));
+        var strategy = new ConsistentHashPlacement();
+        List<UUID> before = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            before.add(strategy.select(String.valueOf(i), candidates).get());
+        }
+
+        assertEquals("Same key is placed in different nodes", before.get(0), strategy.select("0", candidates).get());
+
+        var added = load(0);
+        candidates.add(added);
+        var moved = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            var selected = strategy.select(String.valueOf(i), candidates).get();
+
+            if (!selected.equals(before.get(i))) {
+                assertEquals("Key moved to an old node", added.id(), selected);
+                moved++;
+            }
+        }
+
+        assertTrue(String.format("Unexpected number of moved keys: %d", moved), moved > 100 && moved < 400);
+    }
+}
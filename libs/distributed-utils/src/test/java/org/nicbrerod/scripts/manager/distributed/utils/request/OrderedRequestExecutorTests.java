@@ -0,0 +1,101 @@
+package org.nicbrerod.scripts.manager.distributed.utils.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+
+/**
+ * Tests used to check that requests of the same sender are processed in order, a blocked sender doesn't block the
+ * rest of senders and full lanes reject requests
+ */
+public class OrderedRequestExecutorTests {
+
+    /**
+     * Checks that requests of each sender are processed in the order they were submitted, while requests of another
+     * lane are processed even if the first one is blocked
+     * @throws InterruptedException Thrown if test is interrupted while waiting
+     */
+    @Test
+    public void perSenderOrderTest() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        var slowSender = UUID.randomUUID();
+
+        try (var executor = new OrderedRequestExecutor<String>(8, request -> {
+            if (request.getSender().equals(slowSender)) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            processed.add(request.getRequestContent());
+        })) {
+            var fastSender = UUID.randomUUID();
+
+            while (executor.laneOf(fastSender) == executor.laneOf(slowSender)) {
+                fastSender = UUID.randomUUID();
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertTrue(executor.submit(new RequestMessage<>(slowSender, "RUN", "slow-" + i)));
+                assertTrue(executor.submit(new RequestMessage<>(fastSender, "RUN", "fast-" + i)));
+            }
+
+            Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> processed.size() == 5);
+            assertEquals("Fast sender blocked by slow one", List.of("fast-0", "fast-1", "fast-2", "fast-3", "fast-4"),
+                new ArrayList<>(processed));
+
+            blocked.countDown();
+            Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> processed.size() == 10);
+            assertEquals("Requests of slow sender reordered", List.of("slow-0", "slow-1", "slow-2", "slow-3", "slow-4"),
+                new ArrayList<>(processed.subList(5, 10)));
+        }
+    }
+
+    /**
+     * Checks that requests are rejected when their lane is full and a failed request doesn't stop its lane
+     */
+    @Test
+    public void boundedLaneTest() {
+        var blocked = new CountDownLatch(1);
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        var sender = UUID.randomUUID();
+
+        try (var executor = new OrderedRequestExecutor<String>(1, 1, request -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if ("fail".equals(request.getRequestContent()))
+                throw new IllegalStateException("Failed request");
+
+            processed.add(request.getRequestContent());
+        })) {
+            assertTrue("First request not accepted", executor.submit(new RequestMessage<>(sender, "RUN", "fail")));
+            Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> executor.getPending() == 0);
+            assertTrue("Request not queued", executor.submit(new RequestMessage<>(sender, "RUN", "queued")));
+            assertFalse("Request accepted in a full lane", executor.submit(new RequestMessage<>(sender, "RUN", "rejected")));
+            assertEquals(1, executor.getPending());
+            assertEquals(1, executor.getRejected());
+
+            blocked.countDown();
+            Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> processed.size() == 1);
+            assertEquals(List.of("queued"), processed);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.nicbrerod.scripts.manager.distributed.utils.util;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.awaitility.Awaitility;
+
+/**
+ * Waits shared by the tests that start a cluster of {@link TestNode}
+ */
+public final class ClusterAwaits {
+
+    private ClusterAwaits() {}
+
+    /**
+     * Waits until all nodes agree on a leader
+     * @param nodes Nodes of the cluster
+     * @param previous Previous leader, that followers keep while its lease is valid, or null
+     * @return Leader node
+     */
+    public static TestNode awaitLeader(List<TestNode> nodes, UUID previous) {
+        var leader = new AtomicReference<UUID>();
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            var leaders = nodes.stream().map(TestNode::getLeader).collect(Collectors.toSet());
+
+            if (leaders.size() != 1 || leaders.contains(null) || leaders.contains(previous))
+                return false;
+
+            leader.set(leaders.iterator().next());
+            return true;
+        });
+
+        return nodes.stream().filter(node -> node.getId().equals(leader.get())).findFirst().get();
+    }
+
+    /**
+     * Waits until all nodes have applied the same operations
+     * @param nodes Nodes of the cluster
+     * @param expected Expected operations, in order
+     */
+    public static void awaitApplied(List<TestNode> nodes, List<String> expected) {
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> nodes.stream().allMatch(node -> node.getApplied().equals(expected)));
+    }
+}
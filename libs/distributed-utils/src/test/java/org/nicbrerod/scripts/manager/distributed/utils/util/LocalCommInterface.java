@@ -71,12 +71,12 @@ public class LocalCommInterface implements CommInterface {
     }
 
     /**
-     * Method to be processed when node wants to stop its execution. In this implementation, the instance 
-     * does nothing
+     * Method to be processed when node wants to stop its execution. In this implementation, node is unregistered, 
+     * so it doesn't receive more messages and direct messages to it fail
      */
     @Override
     public void onStop() {
-        // do nothing
+        registeredNodes.remove(nodeId);
     }
     
 }
@@ -1,10 +1,21 @@
 package org.nicbrerod.scripts.manager.distributed.utils.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.nicbrerod.scripts.manager.distributed.utils.communication.CommInterface;
 import org.nicbrerod.scripts.manager.distributed.utils.model.communication.msg.RequestMessage;
+import org.nicbrerod.scripts.manager.distributed.utils.model.replication.LogEntry;
 import org.nicbrerod.scripts.manager.distributed.utils.node.ClusterNode;
 
 public class TestNode extends ClusterNode<String> {
@@ -14,10 +25,22 @@ public class TestNode extends ClusterNode<String> {
 
     private Map<String, Integer> received = new ConcurrentHashMap<>();
 
+    private volatile List<String> applied = new CopyOnWriteArrayList<>();
+
+    private AtomicInteger restoredSnapshots = new AtomicInteger();
+
     public TestNode(CommInterface commInterface) {
         super(commInterface);
     }
 
+    public TestNode(CommInterface commInterface, long heartbeatRate) {
+        super(commInterface, heartbeatRate);
+    }
+
+    public TestNode(CommInterface commInterface, long heartbeatRate, long millisStart, long millisEnd) {
+        super(commInterface, heartbeatRate, millisStart, millisEnd);
+    }
+
     @Override
     protected void onRequest(RequestMessage<String> request) {
         Integer current = received.computeIfAbsent(request.getRequestContent(), x -> 0);
@@ -35,8 +58,47 @@ public class TestNode extends ClusterNode<String> {
         }
     }
 
+    @Override
+    protected void onLogEntry(LogEntry<String> entry) {
+        if (entry.type() != null) {
+            applied.add(entry.content());
+        }
+    }
+
+    @Override
+    protected byte[] snapshotState() {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(applied));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void restoreState(byte[] snapshot) {
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(snapshot))) {
+            applied = new CopyOnWriteArrayList<>((List<String>) in.readObject());
+            restoredSnapshots.incrementAndGet();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getRestoredSnapshots() {
+        return restoredSnapshots.get();
+    }
+
     public int getCount(String key) {
         return received.getOrDefault(key, 0);
     }
+
+    public List<String> getApplied() {
+        return List.copyOf(applied);
+    }
     
 }
@@ -1,34 +1,101 @@
 package org.nicbrerod.scripts.manager.script.runner;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.function.Consumer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
-import lombok.AllArgsConstructor;
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+
+import lombok.Getter;
 
 /**
- * Used to redirect a process output to another way
+ * Used to drain a process output stream and redirect it to a sink. The stream is read through a channel into a 
+ * reused buffer, and each chunk read is passed to the sink as raw bytes, so no object is allocated per line
  */
-@AllArgsConstructor
 public class ScriptOutputGobbler implements Runnable {
+    /**
+     * Default size, in bytes, of the buffer used to read the stream
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Logger object used to show errors reading the stream
+     */
+    private static final Logger log = Logger.getLogger(ScriptOutputGobbler.class);
+
     /**
      * InputStream obtained from process to redirect their output
      */
-    private InputStream iStream;
+    private final InputStream iStream;
+
+    /**
+     * Type of the stream read by this gobbler
+     */
+    private final OutputStreamType type;
+
+    /**
+     * Sink where all read bytes are redirected
+     */
+    private final OutputSink sink;
 
     /**
-     * Consumer object with logic to redirect messages
+     * Size, in bytes, of the buffer used to read the stream
      */
-    private Consumer<String> consumer;
+    private final int bufferSize;
 
     /**
-     * Method that redirects all process output lines to consumer
+     * Total number of bytes read from the stream
+     */
+    @Getter
+    private volatile long bytesRead;
+
+    public ScriptOutputGobbler(InputStream iStream, OutputStreamType type, OutputSink sink) {
+        this(iStream, type, sink, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ScriptOutputGobbler(InputStream iStream, OutputStreamType type, OutputSink sink, int bufferSize) {
+        this.iStream = iStream;
+        this.type = type;
+        this.sink = sink;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Method that reads the stream until its end and redirects all bytes to the sink. If the sink fails, the 
+     * stream is still drained to don't block the process
      */
     @Override
     public void run() {
-        new BufferedReader(new InputStreamReader(iStream)).lines()
-            .forEach(consumer);
+        var buffer = ByteBuffer.allocate(bufferSize);
+        var sinkFailed = false;
+
+        try (var channel = Channels.newChannel(iStream)) {
+            int read;
+
+            while ((read = channel.read(buffer)) >= 0) {
+                bytesRead += read;
+                buffer.flip();
+
+                if (!sinkFailed) {
+                    try {
+                        sink.write(type, buffer);
+                    } catch (IOException e) {
+                        log.error(String.format("Error redirecting process %s, next output is discarded", type), e);
+                        sinkFailed = true;
+                    }
+                }
+
+                buffer.clear();
+            }
+
+            sink.endOfStream(type);
+        } catch (IOException e) {
+            // stream is closed when process is destroyed
+            log.debug(String.format("Process %s closed before its end", type), e);
+        }
     }
     
 }
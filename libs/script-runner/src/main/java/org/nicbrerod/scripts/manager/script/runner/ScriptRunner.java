@@ -1,20 +1,68 @@
 package org.nicbrerod.scripts.manager.script.runner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.events.RunnerEventListener;
 import org.nicbrerod.scripts.manager.script.runner.exception.ScriptNotExistException;
 import org.nicbrerod.scripts.manager.script.runner.exception.ScriptTimeoutException;
+import org.nicbrerod.scripts.manager.script.runner.metrics.ScriptRunnerMeters;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
 import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.output.CompositeSink;
+import org.nicbrerod.scripts.manager.script.runner.output.LimitedSink;
+import org.nicbrerod.scripts.manager.script.runner.output.LogSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.registry.DurableScriptRegistry;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Abstract class to define any scripts runner. An script runner is an object with the ability of 
- * run an script of an specific language and control its execution
+ * run an script of an specific language and control its execution. All background tasks of a script runner, 
+ * like reading the output of its processes, run in a bounded executor owned by the runner, which is 
+ * released when the runner is closed
  */
-public abstract class ScriptRunner {
+public abstract class ScriptRunner implements AutoCloseable {
+    /**
+     * Default maximum number of threads used by a script runner for its background tasks
+     */
+    public static final int DEFAULT_MAX_THREADS = 256;
+
+    /**
+     * Time, in seconds, that an idle thread of the executor waits for a new task before finishing
+     */
+    private static final long THREAD_KEEP_ALIVE = 60;
+
+    /**
+     * Maximum number of bytes of each output stream written to {@link #log} for each process. Standard output lines 
+     * are written with DEBUG level and standard error lines with WARN level
+     */
+    public static final long DEFAULT_LOG_OUTPUT_LIMIT = 1024 * 1024;
+
+    /**
+     * Types of the events sent by a runner to its {@link #eventListener}
+     */
+    public static final String EVENT_RUN = "run", EVENT_WORKER = "worker";
+
     /**
      * Logger object used to show some information about script lifetime
      */
@@ -26,6 +74,77 @@ public abstract class ScriptRunner {
      */
     protected final Map<UUID, Script> registeredScripts = new ConcurrentHashMap<>();
 
+    /**
+     * Executor used to run all background tasks of this runner. It doesn't queue tasks, so a task is rejected 
+     * if all threads are busy, instead of waiting while the process related to it blocks
+     */
+    protected final ThreadPoolExecutor executor;
+
+    /**
+     * Number of tasks rejected by {@link #executor} because all its threads were busy
+     */
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    /**
+     * Factories of the additional sinks that receive the output of each script execution. Each factory receives 
+     * the id of the executed script and creates a new sink for the execution
+     */
+    private final List<Function<UUID, OutputSink>> outputSinkFactories = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registry where registered scripts are stored in disk, or null if they are only kept in memory
+     */
+    private volatile DurableScriptRegistry durableRegistry;
+
+    /**
+     * IDs of the scripts recovered from {@link #durableRegistry} whose environment is waiting to be prepared again
+     */
+    private final Set<UUID> pendingRestores = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Executor used to prepare again, one by one, the recovered scripts whose environment is not valid, or null if 
+     * no script needed it
+     */
+    private volatile ExecutorService restoreExecutor;
+
+    /**
+     * Meters where the runner records its activity, not published anywhere until {@link #bindMeters(MeterRegistry)} 
+     * is called
+     */
+    protected volatile ScriptRunnerMeters meters = new ScriptRunnerMeters();
+
+    /**
+     * Number of script processes running at this moment
+     */
+    protected final AtomicInteger runningProcesses = new AtomicInteger();
+
+    /**
+     * Listener of the events produced by executions. By default, events are written in {@link #log} if their level 
+     * is enabled, formatting them only in that case
+     */
+    private volatile RunnerEventListener eventListener = (level, type, format, args) -> log.logf(level, format, args);
+
+    public ScriptRunner() {
+        this(DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * Creates a script runner with a custom limit of threads
+     * @param maxThreads Maximum number of threads used by the runner for its background tasks
+     */
+    public ScriptRunner(int maxThreads) {
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            var thread = new Thread(r, String.format("script-runner-%d", threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }, (r, pool) -> {
+            rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException(String.format("All %d threads of script runner are busy", pool.getMaximumPoolSize()));
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
     /**
      * This is the previous phase to script execution. With this method, script runner make all operations needed to
      * ensure the script will be successfully executed, like create an environment space, install script dependencies,...
@@ -38,6 +157,16 @@ public abstract class ScriptRunner {
      */
     protected abstract boolean prepareScript(Script script) throws IOException, InterruptedException, ScriptTimeoutException;
 
+    /**
+     * Checks if the environment of an script, prepared before this runner was created, is still valid to run it 
+     * without preparing it again. By default, environments are never reused
+     * @param script Script recovered from a durable registry
+     * @return True if script can be run with its current environment
+     */
+    protected boolean isPrepared(Script script) {
+        return false;
+    }
+
     /**
      * Method used to run a previously registered script by their id
      * @param scriptId ID related to script to execute
@@ -62,6 +191,40 @@ public abstract class ScriptRunner {
         return runScript(scriptId, new Object[0]);
     }
 
+    /**
+     * Runs a previously registered script and obtains the exit code of its process. By default, it calls
+     * {@link #runScript(UUID, Object[])} and ignores the execution sink, so exit code is only 0 or 1
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters to pass to script in this execution
+     * @param executionSink Sink that receives the output of this execution only, besides the sinks added with
+     * {@link #addOutputSink(Function)}, or null if not needed
+     * @return Exit code returned by the script
+     * @throws IOException Thrown if any I/O operation (create folders, files, create a proces,...) fails
+     * @throws ScriptNotExistException Thrown if not exists any script related to passed scriptId
+     * @throws ScriptTimeoutException Throw if script exceeds its timeout
+     */
+    public int execute(UUID scriptId, Object[] parameters, OutputSink executionSink) throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        return runScript(scriptId, parameters) ? 0 : 1;
+    }
+
+    /**
+     * Runs a previously registered script like {@link #execute(UUID, Object[], OutputSink)}, and passes the resources
+     * used by the execution to a listener once it ends. By default, resources are not accounted and listener is never
+     * called
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters to pass to script in this execution
+     * @param executionSink Sink that receives the output of this execution only, or null if not needed
+     * @param usageListener Receives the resources used by the execution, if they are accounted, or null if not needed
+     * @return Exit code returned by the script
+     * @throws IOException Thrown if any I/O operation (create folders, files, create a proces,...) fails
+     * @throws ScriptNotExistException Thrown if not exists any script related to passed scriptId
+     * @throws ScriptTimeoutException Throw if script exceeds its timeout
+     */
+    public int execute(UUID scriptId, Object[] parameters, OutputSink executionSink, Consumer<ResourceUsage> usageListener) 
+        throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        return execute(scriptId, parameters, executionSink);
+    }
+
     /**
      * Used to register an script in this script runner. It's important to register an script, because, in this
      * phase, the script runner must create the script environment and install their dependencies
@@ -70,12 +233,15 @@ public abstract class ScriptRunner {
      */
     public boolean registerScript(Script script) {
         boolean scriptPrepared = false;
+        var start = System.nanoTime();
 
         try {
             scriptPrepared = prepareScript(script);
+            meters.prepared(start);
 
             if (scriptPrepared) {
                 registeredScripts.put(script.id(), script);
+                persist(script);
             }
         } catch (Exception e) {
             log.error(String.format("Error preparing script %s", script.id()));
@@ -84,7 +250,257 @@ public abstract class ScriptRunner {
         return scriptPrepared;
     }
 
+    /**
+     * Recovers the scripts stored in a durable registry and stores all later registrations in it. Scripts whose 
+     * environment is still valid are registered immediately, the rest are prepared again in background, one by one, 
+     * so this method doesn't wait for their dependencies to be installed. Scripts that can't be prepared are kept in 
+     * the registry, to be tried again when they are registered or the runner is restarted. Registry is closed with 
+     * this runner
+     * @param registry Durable registry of scripts
+     * @return Number of scripts registered without preparing them again
+     */
+    public int restore(DurableScriptRegistry registry) {
+        durableRegistry = registry;
+        var reused = 0;
+        var pending = new ArrayList<Script>();
+
+        for (var prepared : registry.getScripts()) {
+            var script = prepared.script();
+
+            if (isPrepared(script)) {
+                registeredScripts.put(script.id(), script);
+                reused++;
+            } else {
+                pendingRestores.add(script.id());
+                pending.add(script);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            restoreExecutor = Executors.newSingleThreadExecutor(r -> {
+                var thread = new Thread(r, "script-restore");
+                thread.setDaemon(true);
+                return thread;
+            });
+            pending.forEach(script -> restoreExecutor.execute(() -> prepareRestored(script)));
+        }
+
+        log.info(String.format("Restored %d scripts with their previous environment, %d to be prepared again", reused, pending.size()));
+        return reused;
+    }
+
+    /**
+     * Prepares again a recovered script whose environment is not valid, unless it has been registered or 
+     * unregistered since it was recovered
+     * @param script Recovered script
+     */
+    private void prepareRestored(Script script) {
+        try {
+            if (!pendingRestores.contains(script.id()) || isRegistered(script.id()))
+                return;
+
+            if (!registerScript(script)) {
+                log.warn(String.format("Recovered script %s can't be prepared again, it's kept in durable registry", script.id()));
+            }
+        } finally {
+            pendingRestores.remove(script.id());
+        }
+    }
+
+    /**
+     * Number of recovered scripts waiting to be prepared again
+     * @return Count of scripts recovered by {@link #restore(DurableScriptRegistry)} not prepared yet
+     */
+    public int getPendingRestores() {
+        return pendingRestores.size();
+    }
+
+    /**
+     * Stores a registered script in the durable registry, if any
+     */
+    private void persist(Script script) {
+        var registry = durableRegistry;
+
+        if (registry == null)
+            return;
+
+        try {
+            registry.put(script);
+        } catch (IOException e) {
+            log.error(String.format("Error storing script %s in durable registry", script.id()), e);
+        }
+    }
+
+    /**
+     * Removes an script from the durable registry, if any
+     */
+    private void forget(UUID id) {
+        var registry = durableRegistry;
+
+        if (registry == null)
+            return;
+
+        try {
+            registry.remove(id);
+        } catch (IOException e) {
+            log.error(String.format("Error removing script %s from durable registry", id), e);
+        }
+    }
+
+    /**
+     * Adds a new destination for the output of all script executions. Output is always written to {@link #log}, 
+     * limited to {@link #DEFAULT_LOG_OUTPUT_LIMIT} bytes per stream
+     * @param factory Function that creates a new sink for each execution, receiving the id of the executed script
+     */
+    public void addOutputSink(Function<UUID, OutputSink> factory) {
+        outputSinkFactories.add(factory);
+    }
+
+    /**
+     * Creates the sink that receives the output of a process
+     * @param scriptId ID related to executed script, or null if process is not an script execution, like an 
+     * environment preparation
+     * @return Sink that writes output in {@link #log} and, for script executions, in all added sinks
+     */
+    protected OutputSink createOutputSink(UUID scriptId) {
+        List<OutputSink> sinks = new ArrayList<>();
+        sinks.add(new LimitedSink(new LogSink(log, Logger.Level.DEBUG), DEFAULT_LOG_OUTPUT_LIMIT));
+
+        if (scriptId != null) {
+            sinks.add(meters.outputCounter(scriptId));
+            outputSinkFactories.forEach(factory -> sinks.add(factory.apply(scriptId)));
+        }
+
+        return new CompositeSink(sinks);
+    }
+
+    /**
+     * Creates the sink that receives the output of an script execution, including a sink of the execution
+     * @param scriptId ID related to executed script
+     * @param executionSink Sink that receives the output of this execution only, or null if not needed
+     * @return Sink that writes output in {@link #log}, in all added sinks and in the execution sink
+     */
+    protected OutputSink createOutputSink(UUID scriptId, OutputSink executionSink) {
+        var sink = createOutputSink(scriptId);
+        return executionSink != null ? new CompositeSink(List.of(sink, executionSink)) : sink;
+    }
+
+    /**
+     * Checks if an script is registered in this script runner
+     * @param id ID related to script
+     * @return True if script is registered, else false
+     */
+    public boolean isRegistered(UUID id) {
+        return registeredScripts.containsKey(id);
+    }
+
+    /**
+     * Obtains an script registered in this script runner
+     * @param id ID related to script
+     * @return Registered script, or empty if not registered
+     */
+    public Optional<Script> getRegisteredScript(UUID id) {
+        return Optional.ofNullable(registeredScripts.get(id));
+    }
+
+    /**
+     * Used to remove a previously registered script from this script runner
+     * @param id ID related to script to remove
+     * @return True if script was registered, else false
+     */
     public boolean unregisterScript(UUID id) {
+        pendingRestores.remove(id);
+        forget(id);
+        meters.scriptRemoved(id);
         return registeredScripts.remove(id) != null;
     }
+
+    /**
+     * Number of background tasks running at this moment
+     * @return Count of busy threads of the runner's executor
+     */
+    public int getActiveTasks() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Number of threads currently created by the runner's executor, busy or idle
+     * @return Count of threads of the runner's executor
+     */
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Number of background tasks finished since runner creation
+     * @return Count of completed tasks of the runner's executor
+     */
+    public long getCompletedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Number of background tasks rejected because all threads were busy
+     * @return Count of rejected tasks since runner creation
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    /**
+     * Changes the listener of the events produced by executions
+     * @param eventListener New listener of events
+     */
+    public void setEventListener(RunnerEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Sends an event to {@link #eventListener}
+     * @param level Level of the event
+     * @param type Type of the event
+     * @param format Format of the message
+     * @param args Arguments of the message
+     */
+    protected void event(Logger.Level level, String type, String format, Object... args) {
+        eventListener.event(level, type, format, args);
+    }
+
+    /**
+     * Number of script processes running at this moment
+     * @return Count of running processes
+     */
+    public int getRunningProcesses() {
+        return runningProcesses.get();
+    }
+
+    /**
+     * Publishes the meters of this runner in a registry. Values recorded before calling this method are not published
+     * @param registry Registry where meters are published
+     */
+    public void bindMeters(MeterRegistry registry) {
+        meters = new ScriptRunnerMeters(registry, this);
+    }
+
+    /**
+     * Stops all background tasks of this runner. Runner can't be used after closing it
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        if (restoreExecutor != null) {
+            restoreExecutor.shutdownNow();
+        }
+
+        var registry = durableRegistry;
+
+        if (registry != null) {
+            try {
+                registry.close();
+            } catch (IOException e) {
+                log.warn("Error closing durable registry", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package org.nicbrerod.scripts.manager.script.runner.cgroup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceLimits;
+
+import lombok.Getter;
+
+/**
+ * Creates cgroup v2 sub-groups, one for each script execution, under a control group delegated to the node. The
+ * delegated group must be writable by the node's user and must not contain any process, because cgroup v2 only
+ * allows processes in groups that don't distribute resources to their children, so the node's process must be
+ * placed in another group, like a sibling of the delegated one.
+ *
+ * Controllers used to apply resource limits are enabled for the sub-groups when the manager is created, and limits
+ * that need a controller that can't be enabled are ignored
+ */
+public class CgroupManager {
+    /**
+     * Controllers used to apply the resource limits of an script
+     */
+    public static final String CPU = "cpu", MEMORY = "memory", PIDS = "pids", IO = "io";
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Path of the delegated control group
+     */
+    @Getter
+    private final Path root;
+
+    /**
+     * Controllers enabled for the sub-groups
+     */
+    @Getter
+    private final Set<String> controllers;
+
+    /**
+     * Prepares the delegated group to create sub-groups, enabling all controllers used to apply resource limits
+     * @param rootPath Path of the delegated control group, usually under /sys/fs/cgroup
+     * @throws IOException Thrown if path is not a writable cgroup v2 group
+     */
+    public CgroupManager(String rootPath) throws IOException {
+        this.root = Paths.get(rootPath);
+        var available = root.resolve("cgroup.controllers");
+
+        if (!Files.isReadable(available) || !Files.isWritable(root))
+            throw new IOException(String.format("'%s' is not a writable cgroup v2 group", rootPath));
+
+        var availableControllers = Set.of(Files.readString(available).trim().split("\\s+"));
+        Set<String> enabled = new LinkedHashSet<>();
+
+        for (var controller : Arrays.asList(CPU, MEMORY, PIDS, IO)) {
+            if (!availableControllers.contains(controller)) {
+                log.warn(String.format("Controller '%s' is not available in '%s', its limits are ignored", controller, rootPath));
+                continue;
+            }
+
+            try {
+                Files.writeString(root.resolve("cgroup.subtree_control"), "+" + controller);
+                enabled.add(controller);
+            } catch (IOException e) {
+                log.warn(String.format("Controller '%s' can't be enabled in '%s', its limits are ignored", controller, rootPath), e);
+            }
+        }
+
+        this.controllers = Collections.unmodifiableSet(enabled);
+        log.info(String.format("Script executions are placed in sub-groups of '%s' with controllers %s", rootPath,
+            controllers.stream().collect(Collectors.joining(", "))));
+    }
+
+    /**
+     * Creates a new sub-group and applies the passed limits to it
+     * @param name Name of the sub-group, unique among existing ones
+     * @param limits Resources that processes of the group can use, or null if they are not limited
+     * @return Created group
+     * @throws IOException Thrown if group can't be created or a limit can't be applied
+     */
+    public ExecutionCgroup create(String name, ResourceLimits limits) throws IOException {
+        var group = new ExecutionCgroup(Files.createDirectory(root.resolve(name)));
+
+        if (limits == null)
+            return group;
+
+        try {
+            if (limits.cpuQuota() > 0) {
+                write(group, CPU, "cpu.max", String.format("%d %d", limits.cpuQuota(), limits.cpuPeriod()));
+            }
+
+            if (limits.memoryMax() > 0) {
+                write(group, MEMORY, "memory.max", Long.toString(limits.memoryMax()));
+            }
+
+            if (limits.pidsMax() > 0) {
+                write(group, PIDS, "pids.max", Long.toString(limits.pidsMax()));
+            }
+
+            if (limits.ioWeight() > 0) {
+                write(group, IO, "io.weight", String.format("default %d", limits.ioWeight()));
+            }
+        } catch (IOException e) {
+            group.close();
+            throw e;
+        }
+
+        return group;
+    }
+
+    /**
+     * Writes a limit in an interface file of a group, if its controller is enabled
+     */
+    private void write(ExecutionCgroup group, String controller, String file, String value) throws IOException {
+        if (controllers.contains(controller)) {
+            Files.writeString(group.getPath().resolve(file), value);
+        } else {
+            log.warn(String.format("Limit '%s' of group '%s' is ignored, controller '%s' is not enabled", file, group.getPath(), controller));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.nicbrerod.scripts.manager.script.runner.cgroup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
+
+import lombok.Getter;
+
+/**
+ * Control group where the processes of a single script execution run. Processes join the group before executing the
+ * script, so every child they create is also limited and accounted, and all of them are killed when group is closed
+ */
+public class ExecutionCgroup implements AutoCloseable {
+    /**
+     * Number of times that group removal is tried while its killed processes end
+     */
+    private static final int REMOVE_ATTEMPTS = 20;
+
+    /**
+     * Time, in milliseconds, between two attempts to remove the group
+     */
+    private static final long REMOVE_INTERVAL = 50;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Path of the group
+     */
+    @Getter
+    private final Path path;
+
+    ExecutionCgroup(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Wraps a command in a shell that moves itself to this group and then is replaced by the command, so the command
+     * never runs outside the group. If the shell can't join the group, command is not executed and process ends with
+     * a non-zero exit code
+     * @param command Command to run in the group, with its arguments
+     * @return Command to start instead of the passed one
+     */
+    public List<String> wrap(List<String> command) {
+        List<String> wrapped = new ArrayList<>(List.of("sh", "-c", "echo $$ > \"$0/cgroup.procs\" && exec \"$@\"", path.toString()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Reads the resources used by the processes of the group until now. Values of controllers that are not enabled
+     * are zero, and memory peak is -1 if system doesn't account it
+     * @return Resources used by the group
+     * @throws IOException Thrown if an accounting file can't be read
+     */
+    public ResourceUsage usage() throws IOException {
+        var cpu = readKeyed("cpu.stat");
+        var memoryEvents = readKeyed("memory.events");
+        var peakFile = path.resolve("memory.peak");
+        var memoryPeak = Files.exists(peakFile) ? Long.parseLong(Files.readString(peakFile).trim()) : -1;
+        return new ResourceUsage(cpu.getOrDefault("usage_usec", 0L), cpu.getOrDefault("throttled_usec", 0L), memoryPeak,
+            memoryEvents.getOrDefault("oom_kill", 0L));
+    }
+
+    /**
+     * Reads an interface file with a key and a value in each line
+     * @param file Name of the file
+     * @return Values of the file by their keys, empty if file doesn't exist
+     */
+    private Map<String, Long> readKeyed(String file) throws IOException {
+        Map<String, Long> values = new HashMap<>();
+        var filePath = path.resolve(file);
+
+        if (!Files.exists(filePath))
+            return values;
+
+        for (var line : Files.readAllLines(filePath)) {
+            var fields = line.trim().split("\\s+");
+
+            if (fields.length == 2) {
+                values.put(fields[0], Long.parseLong(fields[1]));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Kills all processes that remain in the group, like children that have outlived the script, and removes the group
+     */
+    @Override
+    public void close() {
+        var kill = path.resolve("cgroup.kill");
+
+        try {
+            if (Files.exists(kill)) {
+                Files.writeString(kill, "1");
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Processes of group '%s' can't be killed", path), e);
+        }
+
+        for (int attempt = 1; attempt <= REMOVE_ATTEMPTS; attempt++) {
+            try {
+                Files.deleteIfExists(path);
+                return;
+            } catch (IOException e) {
+                if (attempt == REMOVE_ATTEMPTS) {
+                    log.warn(String.format("Group '%s' can't be removed", path), e);
+                    return;
+                }
+            }
+
+            try {
+                Thread.sleep(REMOVE_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn(String.format("Interrupted while removing group '%s'", path));
+                return;
+            }
+        }
+    }
+}
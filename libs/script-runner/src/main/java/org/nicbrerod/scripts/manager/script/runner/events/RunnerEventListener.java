@@ -0,0 +1,19 @@
+package org.nicbrerod.scripts.manager.script.runner.events;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Listener of the events produced by a script runner while it runs scripts. Messages are received as a format and 
+ * its arguments, so a listener that discards an event doesn't build its message
+ */
+@FunctionalInterface
+public interface RunnerEventListener {
+    /**
+     * Receives an event of the runner
+     * @param level Level of the event
+     * @param type Type of the event, used to group similar events
+     * @param format Format of the message, as used by {@link String#format(String, Object...)}
+     * @param args Arguments of the message
+     */
+    void event(Logger.Level level, String type, String format, Object... args);
+}
@@ -0,0 +1,140 @@
+package org.nicbrerod.scripts.manager.script.runner.execution;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import lombok.Getter;
+
+/**
+ * Handle of a script execution submitted to an {@link ExecutionScheduler}. It allows to check the state of the 
+ * execution, wait for its result without blocking, and cancel it while it's queued
+ */
+public class ExecutionHandle {
+    /**
+     * Auto-generated id used to identify the execution
+     */
+    @Getter
+    private final UUID id = UUID.randomUUID();
+
+    /**
+     * ID related to the executed script
+     */
+    @Getter
+    private final UUID scriptId;
+
+    /**
+     * Parameters passed to the script
+     */
+    @Getter
+    private final Object[] parameters;
+
+    /**
+     * Priority of the execution
+     */
+    @Getter
+    private final ExecutionPriority priority;
+
+    /**
+     * Value of {@link System#nanoTime()} when execution was submitted
+     */
+    @Getter
+    private final long submittedNanos = System.nanoTime();
+
+    /**
+     * Value of {@link System#nanoTime()} when script started, zero if not started yet
+     */
+    @Getter
+    private volatile long startedNanos;
+
+    /**
+     * Value of {@link System#nanoTime()} when script ended, zero if not ended yet
+     */
+    @Getter
+    private volatile long endedNanos;
+
+    /**
+     * Current state of the execution
+     */
+    @Getter
+    private volatile ExecutionStatus status = ExecutionStatus.QUEUED;
+
+    /**
+     * Exit code returned by the script, -1 if it has not ended or it couldn't be executed
+     */
+    @Getter
+    private volatile int exitCode = -1;
+
+    /**
+     * Future completed when execution ends, with true if script returned a zero exit code, or exceptionally if script 
+     * couldn't be executed, it exceeded its timeout or execution was cancelled
+     */
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    /**
+     * Scheduler that owns this execution
+     */
+    private final ExecutionScheduler scheduler;
+
+    ExecutionHandle(ExecutionScheduler scheduler, UUID scriptId, Object[] parameters, ExecutionPriority priority) {
+        this.scheduler = scheduler;
+        this.scriptId = scriptId;
+        this.parameters = parameters;
+        this.priority = priority;
+    }
+
+    /**
+     * Future completed when execution ends. Returned future is a copy, so completing it doesn't affect the execution
+     * @return Future with true if script returned a zero exit code, else false. It's completed exceptionally if script 
+     * couldn't be executed, it exceeded its timeout or execution was cancelled
+     */
+    public CompletableFuture<Boolean> result() {
+        return result.copy();
+    }
+
+    /**
+     * Cancels the execution if it's still queued. A running execution can't be cancelled
+     * @return True if execution has been cancelled
+     */
+    public boolean cancel() {
+        return scheduler.cancel(this);
+    }
+
+    /**
+     * Marks the execution as started
+     */
+    void started() {
+        startedNanos = System.nanoTime();
+        status = ExecutionStatus.RUNNING;
+    }
+
+    /**
+     * Marks the execution as ended
+     * @param exitCode Exit code returned by the script
+     */
+    void ended(int exitCode) {
+        endedNanos = System.nanoTime();
+        this.exitCode = exitCode;
+        status = exitCode == 0 ? ExecutionStatus.SUCCEEDED : ExecutionStatus.FAILED;
+        result.complete(exitCode == 0);
+    }
+
+    /**
+     * Marks the execution as failed because script couldn't be executed
+     * @param error Cause of the failure
+     */
+    void failed(Throwable error) {
+        endedNanos = System.nanoTime();
+        status = ExecutionStatus.FAILED;
+        result.completeExceptionally(error);
+    }
+
+    /**
+     * Marks the execution as cancelled
+     * @param cause Exception passed to the result future
+     */
+    void cancelled(Throwable cause) {
+        endedNanos = System.nanoTime();
+        status = ExecutionStatus.CANCELLED;
+        result.completeExceptionally(cause);
+    }
+}
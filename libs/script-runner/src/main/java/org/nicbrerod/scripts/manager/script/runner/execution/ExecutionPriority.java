@@ -0,0 +1,20 @@
+package org.nicbrerod.scripts.manager.script.runner.execution;
+
+/**
+ * Priority of a script execution submitted to an {@link ExecutionScheduler}. Executions with a higher priority 
+ * always start before executions with a lower one
+ */
+public enum ExecutionPriority {
+    /**
+     * Executions that must start as soon as possible, like user's interactive requests
+     */
+    HIGH,
+    /**
+     * Default priority of an execution
+     */
+    NORMAL,
+    /**
+     * Executions that can wait, like background or batch tasks
+     */
+    LOW
+}
@@ -0,0 +1,414 @@
+package org.nicbrerod.scripts.manager.script.runner.execution;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.ScriptRunner;
+import org.nicbrerod.scripts.manager.script.runner.history.ExecutionHistory;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
+import org.nicbrerod.scripts.manager.script.runner.output.TailSink;
+
+/**
+ * Scheduler used to run scripts of a {@link ScriptRunner} asynchronously, limiting the number of scripts running at 
+ * the same time in the node. Submitted executions are queued by priority and, inside the same priority, scripts take 
+ * turns, so an script with a lot of pending executions doesn't delay the executions of the other ones
+ */
+public class ExecutionScheduler implements AutoCloseable {
+    /**
+     * Default maximum number of queued executions
+     */
+    public static final int DEFAULT_MAX_QUEUED = 10000;
+
+    /**
+     * Logger object used to show some information about executions
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Script runner used to run the scripts
+     */
+    private final ScriptRunner runner;
+
+    /**
+     * Maximum number of scripts running at the same time
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Maximum number of executions waiting to start, new executions are rejected when it's reached
+     */
+    private final int maxQueued;
+
+    /**
+     * Pending executions for each priority. Inside a priority, executions are grouped by script, and scripts are 
+     * kept in the order they will take their turn
+     */
+    private final Map<ExecutionPriority, LinkedHashMap<UUID, Deque<ExecutionHandle>>> queues = new EnumMap<>(ExecutionPriority.class);
+
+    /**
+     * Threads used to run the scripts, never more than {@link #maxConcurrency}
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Number of scripts running
+     */
+    private int running;
+
+    /**
+     * Number of executions waiting to start
+     */
+    private int queued;
+
+    /**
+     * Indicates if scheduler has been closed and doesn't accept more executions
+     */
+    private boolean closed;
+
+    /**
+     * Number of executions rejected because queue was full
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Number of executions ended, successfully or not
+     */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * Number of submitted executions merged with an equivalent queued one
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * History where ended executions are stored, or null if they are not stored
+     */
+    private final ExecutionHistory history;
+
+    public ExecutionScheduler(ScriptRunner runner, int maxConcurrency) {
+        this(runner, maxConcurrency, DEFAULT_MAX_QUEUED);
+    }
+
+    public ExecutionScheduler(ScriptRunner runner, int maxConcurrency, int maxQueued) {
+        this(runner, maxConcurrency, maxQueued, null);
+    }
+
+    /**
+     * Creates a scheduler that stores the result of each execution that reaches the script runner
+     * @param runner Script runner used to run the scripts
+     * @param maxConcurrency Maximum number of scripts running at the same time
+     * @param maxQueued Maximum number of executions waiting to start
+     * @param history History where ended executions are stored, with the tail of their output, or null if they
+     * are not stored
+     */
+    public ExecutionScheduler(ScriptRunner runner, int maxConcurrency, int maxQueued, ExecutionHistory history) {
+        this.runner = runner;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+        this.history = history;
+
+        for (var priority : ExecutionPriority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+        }
+
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            var thread = new Thread(r, String.format("script-execution-%d", threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits a new execution with {@link ExecutionPriority#NORMAL} priority
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters to pass to script in this execution
+     * @return Handle of the execution
+     * @see #submit(UUID, Object[], ExecutionPriority)
+     */
+    public ExecutionHandle submit(UUID scriptId, Object[] parameters) {
+        return submit(scriptId, parameters, ExecutionPriority.NORMAL);
+    }
+
+    /**
+     * Submits a new execution. This method never blocks, the execution starts when there is a free slot and no 
+     * execution before it in the queue. If queue is full, the result of the returned handle is completed 
+     * exceptionally with a {@link RejectedExecutionException}
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters to pass to script in this execution
+     * @param priority Priority of the execution
+     * @return Handle of the execution
+     */
+    public ExecutionHandle submit(UUID scriptId, Object[] parameters, ExecutionPriority priority) {
+        return submit(scriptId, parameters, priority, false);
+    }
+
+    /**
+     * Submits a new execution, like {@link #submit(UUID, Object[], ExecutionPriority)}, optionally merging it with 
+     * an equivalent execution that is still queued. Executions are equivalent if they run the same script, with the 
+     * same priority and equal parameters, and merged executions share the same handle, so all submitters receive 
+     * the result of a single run
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters to pass to script in this execution
+     * @param priority Priority of the execution
+     * @param coalesce True to merge the execution with an equivalent queued one, if exists
+     * @return Handle of the execution, or of the queued execution it has been merged with
+     */
+    public ExecutionHandle submit(UUID scriptId, Object[] parameters, ExecutionPriority priority, boolean coalesce) {
+        var handle = new ExecutionHandle(this, scriptId, parameters, priority);
+
+        synchronized (this) {
+            var pending = coalesce ? queues.get(priority).get(scriptId) : null;
+
+            if (pending != null) {
+                for (var queued : pending) {
+                    if (Arrays.deepEquals(queued.getParameters(), parameters)) {
+                        coalesced.incrementAndGet();
+                        return queued;
+                    }
+                }
+            }
+
+            if (closed || queued >= maxQueued) {
+                rejected.incrementAndGet();
+                handle.cancelled(new RejectedExecutionException(closed ? "Scheduler is closed" : String.format("Execution queue is full, %d executions waiting", queued)));
+                return handle;
+            }
+
+            queues.get(priority).computeIfAbsent(scriptId, id -> new ArrayDeque<>()).add(handle);
+            queued++;
+        }
+
+        dispatch();
+        return handle;
+    }
+
+    /**
+     * Starts as many queued executions as free slots there are. Executions are started out of the lock, so 
+     * scheduler may be closed meanwhile, in that case they are cancelled and their slots released
+     */
+    private void dispatch() {
+        List<ExecutionHandle> toStart = new ArrayList<>();
+
+        synchronized (this) {
+            while (!closed && running < maxConcurrency && queued > 0) {
+                toStart.add(pollNext());
+                running++;
+                queued--;
+            }
+        }
+
+        for (var handle : toStart) {
+            try {
+                executor.execute(() -> run(handle));
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running--;
+                }
+
+                handle.cancelled(new CancellationException("Scheduler has been closed"));
+            }
+        }
+    }
+
+    /**
+     * Takes the next execution to start, from the highest priority with pending executions. Script which owns 
+     * the execution goes to the end of the turns of its priority
+     * @return Next execution to start
+     */
+    private ExecutionHandle pollNext() {
+        for (var priority : ExecutionPriority.values()) {
+            var scripts = queues.get(priority);
+
+            if (!scripts.isEmpty()) {
+                var turn = scripts.entrySet().iterator().next();
+                var handle = turn.getValue().poll();
+                scripts.remove(turn.getKey());
+
+                if (!turn.getValue().isEmpty()) {
+                    scripts.put(turn.getKey(), turn.getValue());
+                }
+
+                return handle;
+            }
+        }
+
+        throw new IllegalStateException("There are no queued executions");
+    }
+
+    /**
+     * Runs an script and, when it ends, starts the next queued execution. Execution is stored in {@link #history} 
+     * before completing its result, so it can be read as soon as the result is received
+     * @param handle Execution to run
+     */
+    private void run(ExecutionHandle handle) {
+        var tail = history != null ? new TailSink(history.getTailSize()) : null;
+        var usage = new AtomicReference<ResourceUsage>();
+        handle.started();
+
+        try {
+            var exitCode = -1;
+            Exception error = null;
+
+            try {
+                exitCode = runner.execute(handle.getScriptId(), handle.getParameters(), tail, usage::set);
+            } catch (Exception e) {
+                log.warn(String.format("Execution %s of script %s has failed", handle.getId(), handle.getScriptId()), e);
+                error = e;
+            }
+
+            if (tail != null) {
+                record(handle, exitCode, exitCode == 0 ? ExecutionStatus.SUCCEEDED : ExecutionStatus.FAILED, tail, usage.get());
+            }
+
+            if (error == null) {
+                handle.ended(exitCode);
+            } else {
+                handle.failed(error);
+            }
+        } finally {
+            completed.incrementAndGet();
+
+            synchronized (this) {
+                running--;
+            }
+
+            dispatch();
+        }
+    }
+
+    /**
+     * Stores an ended execution in {@link #history}. Handle only has monotonic times, so they are converted to
+     * times since epoch from the current time
+     * @param handle Ended execution
+     * @param exitCode Exit code returned by the script, or -1 if it couldn't be executed
+     * @param status Final state of the execution
+     * @param tail Sink that has received the output of the execution
+     * @param usage Resources used by the execution, or null if they were not accounted
+     */
+    private void record(ExecutionHandle handle, int exitCode, ExecutionStatus status, TailSink tail, ResourceUsage usage) {
+        var now = Instant.now();
+        var endedNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        var startedNanos = endedNanos - (System.nanoTime() - handle.getStartedNanos());
+
+        try {
+            history.record(handle.getId(), handle.getScriptId(), startedNanos, endedNanos, exitCode, status, tail.getReceived(), tail.tail(), usage);
+        } catch (IOException e) {
+            log.warn(String.format("Execution %s of script %s can't be stored in history", handle.getId(), handle.getScriptId()), e);
+        }
+    }
+
+    /**
+     * History where ended executions are stored
+     * @return Execution history, or null if executions are not stored
+     */
+    public ExecutionHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Cancels an execution if it's still queued
+     * @param handle Execution to cancel
+     * @return True if execution was queued and has been cancelled
+     */
+    synchronized boolean cancel(ExecutionHandle handle) {
+        var scripts = queues.get(handle.getPriority());
+        var pending = scripts.get(handle.getScriptId());
+
+        if (pending == null || !pending.remove(handle))
+            return false;
+
+        if (pending.isEmpty()) {
+            scripts.remove(handle.getScriptId());
+        }
+
+        queued--;
+        handle.cancelled(new CancellationException(String.format("Execution %s has been cancelled", handle.getId())));
+        return true;
+    }
+
+    /**
+     * Number of scripts running at this moment
+     * @return Count of running executions
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Number of executions waiting to start
+     * @return Count of queued executions
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Maximum number of scripts running at the same time
+     * @return Configured concurrency of the scheduler
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Number of executions rejected because queue was full or scheduler was closed
+     * @return Count of rejected executions since scheduler creation
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of executions ended, successfully or not
+     * @return Count of completed executions since scheduler creation
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Number of submitted executions merged with an equivalent queued one
+     * @return Count of coalesced executions since scheduler creation
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Cancels all queued executions and stops accepting new ones. Running executions are not interrupted
+     */
+    @Override
+    public void close() {
+        List<ExecutionHandle> pending = new ArrayList<>();
+
+        synchronized (this) {
+            closed = true;
+            queues.values().forEach(scripts -> scripts.values().forEach(pending::addAll));
+            queues.values().forEach(Map::clear);
+            queued = 0;
+        }
+
+        pending.forEach(handle -> handle.cancelled(new CancellationException("Scheduler has been closed")));
+        executor.shutdown();
+    }
+}
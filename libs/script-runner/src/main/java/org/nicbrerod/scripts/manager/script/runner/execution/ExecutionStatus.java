@@ -0,0 +1,27 @@
+package org.nicbrerod.scripts.manager.script.runner.execution;
+
+/**
+ * Different states of a script execution submitted to an {@link ExecutionScheduler}
+ */
+public enum ExecutionStatus {
+    /**
+     * Execution is waiting for a free slot to start
+     */
+    QUEUED,
+    /**
+     * Script is running
+     */
+    RUNNING,
+    /**
+     * Script has ended with a zero exit code
+     */
+    SUCCEEDED,
+    /**
+     * Script has ended with a non-zero exit code, or it couldn't be executed
+     */
+    FAILED,
+    /**
+     * Execution was cancelled before starting
+     */
+    CANCELLED
+}
@@ -0,0 +1,469 @@
+package org.nicbrerod.scripts.manager.script.runner.history;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionStatus;
+import org.nicbrerod.scripts.manager.script.runner.model.ExecutionRecord;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
+
+import lombok.Getter;
+
+/**
+ * History of ended script executions stored in disk. Records are appended to segment files, one checksummed record
+ * per execution, and a new segment is started when the current one reaches {@link #segmentSize} bytes or it's
+ * older than {@link #segmentDuration} milliseconds. Segments whose records are all older than {@link #retention}
+ * milliseconds are deleted when a new segment is started.
+ *
+ * History is read in pages, from a cursor that points to a position of a segment, so reading it never needs to keep
+ * more than a page in memory. Records are not forced to disk, so last executions can be lost if the machine stops,
+ * and a record partially written is skipped with the rest of its segment
+ */
+public class ExecutionHistory implements Closeable {
+    /**
+     * Name of the folder, inside home directory, where history files are stored
+     */
+    public static final String HISTORY_DIR = ".history";
+
+    /**
+     * Default time, in milliseconds, that records are kept
+     */
+    public static final long DEFAULT_RETENTION = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Default maximum number of bytes of output kept for each execution
+     */
+    public static final int DEFAULT_TAIL_SIZE = 4 * 1024;
+
+    /**
+     * Default size, in bytes, from which a new segment is started
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Default time, in milliseconds, from which a new segment is started
+     */
+    public static final long DEFAULT_SEGMENT_DURATION = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Prefix and suffix of the name of segment files, the name contains the creation time of the segment
+     */
+    private static final String SEGMENT_PREFIX = "executions-", SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Size of the header of a record: length and checksum of its content
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Maximum size of the content of a record, greater lengths are considered corrupted
+     */
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Folder where segment files are stored
+     */
+    private final Path folder;
+
+    /**
+     * ID of the node whose executions are stored, or null if executions don't run in a cluster node
+     */
+    private final UUID nodeId;
+
+    /**
+     * Time, in milliseconds, that records are kept
+     */
+    @Getter
+    private final long retention;
+
+    /**
+     * Maximum number of bytes of output kept for each execution
+     */
+    @Getter
+    private final int tailSize;
+
+    /**
+     * Size, in bytes, from which a new segment is started
+     */
+    private final long segmentSize;
+
+    /**
+     * Time, in milliseconds, from which a new segment is started
+     */
+    private final long segmentDuration;
+
+    /**
+     * Segment files, by their creation time, in milliseconds since epoch
+     */
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+
+    /**
+     * Channel used to append records to the last segment, null until first record is stored
+     */
+    private FileChannel active;
+
+    /**
+     * Creation time of the segment written by {@link #active}
+     */
+    private long activeId;
+
+    /**
+     * Number of bytes written to the segment of {@link #active}
+     */
+    private long activeSize;
+
+    public ExecutionHistory(String homeDir, UUID nodeId) throws IOException {
+        this(homeDir, nodeId, DEFAULT_RETENTION);
+    }
+
+    public ExecutionHistory(String homeDir, UUID nodeId, long retention) throws IOException {
+        this(homeDir, nodeId, retention, DEFAULT_TAIL_SIZE, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_DURATION);
+    }
+
+    /**
+     * Opens the history stored in a home directory, creating it if not exists
+     * @param homeDir Working directory of the script runner whose executions are stored
+     * @param nodeId ID of the node whose executions are stored, or null if executions don't run in a cluster node
+     * @param retention Time, in milliseconds, that records are kept
+     * @param tailSize Maximum number of bytes of output kept for each execution, must be greater than zero
+     * @param segmentSize Size, in bytes, from which a new segment is started
+     * @param segmentDuration Time, in milliseconds, from which a new segment is started
+     * @throws IOException Thrown if history folder can't be created or read
+     */
+    public ExecutionHistory(String homeDir, UUID nodeId, long retention, int tailSize, long segmentSize, long segmentDuration) throws IOException {
+        // Tail of each execution is captured with a TailSink, which can't be empty
+        if (tailSize <= 0)
+            throw new IllegalArgumentException(String.format("Tail size must be greater than zero, but was %d", tailSize));
+
+        this.folder = Paths.get(homeDir, HISTORY_DIR);
+        this.nodeId = nodeId;
+        this.retention = retention;
+        this.tailSize = tailSize;
+        this.segmentSize = segmentSize;
+        this.segmentDuration = segmentDuration;
+        Files.createDirectories(folder);
+
+        try (var files = Files.list(folder)) {
+            files.forEach(file -> {
+                var name = file.getFileName().toString();
+
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+                    } catch (NumberFormatException e) {
+                        log.warn(String.format("Ignoring unknown file %s in execution history", file));
+                    }
+                }
+            });
+        }
+
+        purge();
+    }
+
+    /**
+     * Stores an ended execution, starting a new segment if needed
+     * @param executionId ID of the execution
+     * @param scriptId ID related to executed script
+     * @param startedNanos Nanoseconds since epoch when script started
+     * @param endedNanos Nanoseconds since epoch when script ended
+     * @param exitCode Exit code returned by the script, or -1 if it couldn't be executed
+     * @param status Final state of the execution
+     * @param outputSize Number of bytes written by the script
+     * @param tail Last bytes of the output, only the last {@link #tailSize} bytes are stored
+     * @return Stored record
+     * @throws IOException Thrown if record can't be written
+     */
+    public ExecutionRecord record(UUID executionId, UUID scriptId, long startedNanos, long endedNanos, int exitCode, ExecutionStatus status,
+        long outputSize, byte[] tail) throws IOException {
+        return record(executionId, scriptId, startedNanos, endedNanos, exitCode, status, outputSize, tail, null);
+    }
+
+    /**
+     * Stores an ended execution with the resources it has used, starting a new segment if needed
+     * @param executionId ID of the execution
+     * @param scriptId ID related to executed script
+     * @param startedNanos Nanoseconds since epoch when script started
+     * @param endedNanos Nanoseconds since epoch when script ended
+     * @param exitCode Exit code returned by the script, or -1 if it couldn't be executed
+     * @param status Final state of the execution
+     * @param outputSize Number of bytes written by the script
+     * @param tail Last bytes of the output, only the last {@link #tailSize} bytes are stored
+     * @param usage Resources used by the execution, or null if they were not accounted
+     * @return Stored record
+     * @throws IOException Thrown if record can't be written
+     */
+    public ExecutionRecord record(UUID executionId, UUID scriptId, long startedNanos, long endedNanos, int exitCode, ExecutionStatus status,
+        long outputSize, byte[] tail, ResourceUsage usage) throws IOException {
+        var kept = tail.length > tailSize ? Arrays.copyOfRange(tail, tail.length - tailSize, tail.length) : tail;
+        var record = new ExecutionRecord(executionId, scriptId, nodeId, startedNanos, endedNanos, exitCode, status, outputSize,
+            outputSize > kept.length, new String(kept, StandardCharsets.UTF_8), usage);
+        append(encode(record, kept));
+        return record;
+    }
+
+    /**
+     * Reads a page of records, in the order they were stored
+     * @param cursor Position from which records are read, obtained from a previous page, or null to read from the
+     * oldest record. If cursor points to a deleted segment, records are read from the next one
+     * @param limit Maximum number of records of the page
+     * @param filter Condition that records must meet to be included in the page, records that don't meet it are
+     * skipped without counting them in the limit
+     * @return Page with the read records and the cursor of the next page
+     * @throws IOException Thrown if a segment can't be read
+     * @throws IllegalArgumentException Thrown if cursor is malformed
+     */
+    public ExecutionPage read(String cursor, int limit, Predicate<ExecutionRecord> filter) throws IOException {
+        var segment = 0L;
+        var offset = 0L;
+
+        if (cursor != null && !cursor.isBlank()) {
+            var parts = cursor.split(":");
+
+            try {
+                segment = Long.parseLong(parts[0]);
+                offset = Long.parseLong(parts[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(String.format("Invalid execution history cursor '%s'", cursor), e);
+            }
+        }
+
+        NavigableMap<Long, Path> pending;
+        long lastId;
+        long lastSize;
+
+        // Only bytes written before this point are read, so a record being written is never read partially
+        synchronized (this) {
+            pending = new TreeMap<>(segments.tailMap(segment, true));
+            lastId = active != null ? activeId : -1;
+            lastSize = activeSize;
+        }
+
+        List<ExecutionRecord> records = new ArrayList<>();
+
+        for (var entry : pending.entrySet()) {
+            if (entry.getKey() != segment) {
+                segment = entry.getKey();
+                offset = 0;
+            }
+
+            try (var channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                var end = segment == lastId ? lastSize : channel.size();
+                var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset))));
+
+                while (offset < end && records.size() < limit) {
+                    var content = readRecord(in, end - offset);
+
+                    if (content == null) {
+                        log.warn(String.format("Skipping invalid records at the end of execution history segment %s", entry.getValue()));
+                        offset = end;
+                        break;
+                    }
+
+                    offset += RECORD_HEADER_SIZE + content.length;
+                    var record = decode(content);
+
+                    if (filter.test(record)) {
+                        records.add(record);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // Segment has been deleted by retention while reading previous ones
+                continue;
+            }
+
+            if (records.size() >= limit)
+                break;
+        }
+
+        return new ExecutionPage(records, String.format("%d:%d", segment, offset));
+    }
+
+    /**
+     * Deletes the segments whose records are all older than {@link #retention}. A segment only contains records
+     * older than the creation of the next one, so the last segment is never deleted
+     * @throws IOException Thrown if a segment can't be deleted
+     */
+    public synchronized void purge() throws IOException {
+        var limit = System.currentTimeMillis() - retention;
+        var expired = new ArrayList<Long>();
+
+        for (var id : segments.keySet()) {
+            var next = segments.higherKey(id);
+
+            if (next == null || next > limit)
+                break;
+
+            expired.add(id);
+        }
+
+        for (var id : expired) {
+            Files.deleteIfExists(segments.remove(id));
+        }
+
+        if (!expired.isEmpty()) {
+            log.info(String.format("Deleted %d expired segments of execution history", expired.size()));
+        }
+    }
+
+    /**
+     * Number of segment files of the history
+     * @return Count of segments
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new one if it's full or too old
+     */
+    private synchronized void append(byte[] record) throws IOException {
+        var now = System.currentTimeMillis();
+
+        if (active == null || activeSize >= segmentSize || now - activeId >= segmentDuration) {
+            roll(now);
+        }
+
+        var buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        buffer.putInt(record.length).putLong(checksum(record)).put(record).flip();
+
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+
+        activeSize += RECORD_HEADER_SIZE + record.length;
+    }
+
+    /**
+     * Closes the active segment and starts a new one, deleting expired segments
+     */
+    private void roll(long now) throws IOException {
+        if (active != null) {
+            active.close();
+        }
+
+        // Segments are identified by their creation time, which must be unique and increasing
+        var id = segments.isEmpty() ? now : Math.max(now, segments.lastKey() + 1);
+        var file = folder.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        active = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeId = id;
+        activeSize = 0;
+        segments.put(id, file);
+        purge();
+    }
+
+    /**
+     * Reads the content of next record
+     * @return Content of the record, or null if record is incomplete or corrupted
+     */
+    private static byte[] readRecord(DataInputStream in, long available) throws IOException {
+        if (available < RECORD_HEADER_SIZE)
+            return null;
+
+        var length = in.readInt();
+        var checksum = in.readLong();
+
+        if (length < 0 || length > MAX_RECORD_SIZE || available - RECORD_HEADER_SIZE < length)
+            return null;
+
+        var content = in.readNBytes(length);
+        return content.length == length && checksum(content) == checksum ? content : null;
+    }
+
+    private static byte[] encode(ExecutionRecord record, byte[] tail) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        writeUuid(out, record.executionId());
+        writeUuid(out, record.scriptId());
+        out.writeBoolean(record.nodeId() != null);
+
+        if (record.nodeId() != null) {
+            writeUuid(out, record.nodeId());
+        }
+
+        out.writeLong(record.startedNanos());
+        out.writeLong(record.endedNanos());
+        out.writeInt(record.exitCode());
+        out.writeByte(record.status().ordinal());
+        out.writeLong(record.outputSize());
+        out.writeBoolean(record.truncated());
+        out.writeInt(tail.length);
+        out.write(tail);
+        out.writeBoolean(record.usage() != null);
+
+        if (record.usage() != null) {
+            out.writeLong(record.usage().cpuUsageMicros());
+            out.writeLong(record.usage().cpuThrottledMicros());
+            out.writeLong(record.usage().memoryPeak());
+            out.writeLong(record.usage().oomKills());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static ExecutionRecord decode(byte[] content) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(content));
+        var executionId = readUuid(in);
+        var scriptId = readUuid(in);
+        var nodeId = in.readBoolean() ? readUuid(in) : null;
+        var startedNanos = in.readLong();
+        var endedNanos = in.readLong();
+        var exitCode = in.readInt();
+        var status = ExecutionStatus.values()[in.readByte()];
+        var outputSize = in.readLong();
+        var truncated = in.readBoolean();
+        var tail = in.readNBytes(in.readInt());
+        // Records stored before resource usage was accounted end after the tail
+        var usage = in.available() > 0 && in.readBoolean() ? new ResourceUsage(in.readLong(), in.readLong(), in.readLong(), in.readLong()) : null;
+        return new ExecutionRecord(executionId, scriptId, nodeId, startedNanos, endedNanos, exitCode, status, outputSize, truncated,
+            new String(tail, StandardCharsets.UTF_8), usage);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static long checksum(byte[] record) {
+        var crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,20 @@
+package org.nicbrerod.scripts.manager.script.runner.history;
+
+import java.util.List;
+
+import org.nicbrerod.scripts.manager.script.runner.model.ExecutionRecord;
+
+/**
+ * Page of records read from an {@link ExecutionHistory}
+ */
+public record ExecutionPage(
+    /**
+     * Records of the page, in the order they were stored
+     */
+    List<ExecutionRecord> records,
+    /**
+     * Position after the last read record, used to read the next page. Reading from it when page is the last one
+     * returns the records stored after this page was read
+     */
+    String nextCursor
+) {}
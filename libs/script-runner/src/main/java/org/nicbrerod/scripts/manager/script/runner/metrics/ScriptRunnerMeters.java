@@ -0,0 +1,158 @@
+package org.nicbrerod.scripts.manager.script.runner.metrics;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.nicbrerod.scripts.manager.script.runner.ScriptRunner;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.py.VirtualEnvPool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Meters of a script runner. Latencies are recorded in timers with percentiles, calculated with HdrHistogram, and
+ * histogram buckets, so they can be aggregated between nodes. Meters are created once, or once per script for
+ * output counters, so recording a value doesn't allocate
+ */
+public class ScriptRunnerMeters {
+    /**
+     * Names of the meters
+     */
+    public static final String PREPARE_TIME = "scripts.prepare", RUN_TIME = "scripts.run", PROCESSES = "scripts.processes",
+        OUTPUT = "scripts.output", VENV_POOL_CLAIMS = "scripts.venv-pool.claims", VENV_POOL_AVAILABLE = "scripts.venv-pool.available";
+
+    /**
+     * Values of the 'outcome' tag of {@link #RUN_TIME} timers
+     */
+    public static final String OUTCOME_SUCCESS = "success", OUTCOME_FAILURE = "failure", OUTCOME_ERROR = "error";
+
+    /**
+     * Values of the 'result' tag of {@link #VENV_POOL_CLAIMS} counters
+     */
+    public static final String RESULT_HIT = "hit", RESULT_MISS = "miss";
+
+    /**
+     * Registry where meters are published
+     */
+    private final MeterRegistry registry;
+
+    private final Timer prepareTime;
+
+    /**
+     * Time of executions that have returned a zero exit code
+     */
+    private final Timer runSucceeded;
+
+    /**
+     * Time of executions that have returned a non-zero exit code
+     */
+    private final Timer runFailed;
+
+    /**
+     * Time of executions that couldn't be run or exceeded their timeout
+     */
+    private final Timer runError;
+
+    /**
+     * Bytes written by each script, created on its first execution
+     */
+    private final Map<UUID, Counter> output = new ConcurrentHashMap<>();
+
+    /**
+     * Creates meters that are not published anywhere, used until a runner is bound to a registry
+     */
+    public ScriptRunnerMeters() {
+        this(new CompositeMeterRegistry(), null);
+    }
+
+    /**
+     * Creates the meters of a runner in a registry
+     * @param registry Registry where meters are published
+     * @param runner Runner whose running processes are published, or null to not register it
+     */
+    public ScriptRunnerMeters(MeterRegistry registry, ScriptRunner runner) {
+        this.registry = registry;
+        this.prepareTime = Timer.builder(PREPARE_TIME).description("Time to prepare the environment of an script")
+            .publishPercentiles(0.5, 0.95, 0.99).publishPercentileHistogram().register(registry);
+        this.runSucceeded = runTimer(OUTCOME_SUCCESS);
+        this.runFailed = runTimer(OUTCOME_FAILURE);
+        this.runError = runTimer(OUTCOME_ERROR);
+
+        if (runner != null) {
+            Gauge.builder(PROCESSES, runner, ScriptRunner::getRunningProcesses).description("Script processes running at this moment")
+                .register(registry);
+        }
+    }
+
+    private Timer runTimer(String outcome) {
+        return Timer.builder(RUN_TIME).description("Time to run an script").tag("outcome", outcome)
+            .publishPercentiles(0.5, 0.95, 0.99).publishPercentileHistogram().register(registry);
+    }
+
+    /**
+     * Publishes the claims of a pool of virtual environments and the environments ready in it
+     * @param pool Pool used by the runner
+     */
+    public void bindVenvPool(VirtualEnvPool pool) {
+        FunctionCounter.builder(VENV_POOL_CLAIMS, pool, VirtualEnvPool::getHits).description("Environments claimed from the pool")
+            .tag("result", RESULT_HIT).register(registry);
+        FunctionCounter.builder(VENV_POOL_CLAIMS, pool, VirtualEnvPool::getMisses).description("Claims that found the pool empty")
+            .tag("result", RESULT_MISS).register(registry);
+        Gauge.builder(VENV_POOL_AVAILABLE, pool, VirtualEnvPool::available).description("Environments ready to be claimed")
+            .register(registry);
+    }
+
+    /**
+     * Records the time spent preparing an script
+     * @param startNanos Value of {@link System#nanoTime()} when preparation started
+     */
+    public void prepared(long startNanos) {
+        prepareTime.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time spent running an script
+     * @param startNanos Value of {@link System#nanoTime()} when execution started
+     * @param exitCode Exit code returned by the script, or -1 if it couldn't be run or exceeded its timeout
+     */
+    public void executed(long startNanos, int exitCode) {
+        var timer = exitCode == 0 ? runSucceeded : exitCode == -1 ? runError : runFailed;
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a sink that counts the bytes written by an script
+     * @param scriptId ID related to script
+     * @return Sink that only counts received bytes
+     */
+    public OutputSink outputCounter(UUID scriptId) {
+        var counter = output.get(scriptId);
+
+        if (counter == null) {
+            counter = output.computeIfAbsent(scriptId, id -> Counter.builder(OUTPUT).baseUnit("bytes")
+                .description("Bytes written by an script").tag("script", id.toString()).register(registry));
+        }
+
+        var scriptCounter = counter;
+        return (type, chunk) -> scriptCounter.increment(chunk.remaining());
+    }
+
+    /**
+     * Removes the output counter of an script that is no longer registered
+     * @param scriptId ID related to script
+     */
+    public void scriptRemoved(UUID scriptId) {
+        var counter = output.remove(scriptId);
+
+        if (counter != null) {
+            registry.remove(counter);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.nicbrerod.scripts.manager.script.runner.model;
+
+import java.util.UUID;
+
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionStatus;
+
+/**
+ * Model to represent an ended script execution, as stored in an execution history
+ */
+public record ExecutionRecord(
+    /**
+     * ID of the execution
+     */
+    UUID executionId,
+    /**
+     * ID related to executed script
+     */
+    UUID scriptId,
+    /**
+     * ID of the node that ran the script, or null if script wasn't run by a cluster node
+     */
+    UUID nodeId,
+    /**
+     * Nanoseconds since epoch when script started
+     */
+    long startedNanos,
+    /**
+     * Nanoseconds since epoch when script ended
+     */
+    long endedNanos,
+    /**
+     * Exit code returned by the script, or -1 if it couldn't be executed or exceeded its timeout
+     */
+    int exitCode,
+    /**
+     * Final state of the execution
+     */
+    ExecutionStatus status,
+    /**
+     * Number of bytes written by the script
+     */
+    long outputSize,
+    /**
+     * Indicates if output tail doesn't contain all the output of the script
+     */
+    boolean truncated,
+    /**
+     * Last bytes of the output of the script, decoded as UTF-8
+     */
+    String outputTail,
+    /**
+     * Resources used by the execution, or null if they were not accounted
+     */
+    ResourceUsage usage
+) {
+    /**
+     * Time that script was running
+     * @return Duration of the execution, in nanoseconds
+     */
+    public long durationNanos() {
+        return endedNanos - startedNanos;
+    }
+}
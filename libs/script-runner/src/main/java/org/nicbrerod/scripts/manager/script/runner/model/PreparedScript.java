@@ -0,0 +1,15 @@
+package org.nicbrerod.scripts.manager.script.runner.model;
+
+/**
+ * Model to represent an script whose environment has been prepared, as stored in a durable registry
+ */
+public record PreparedScript(
+    /**
+     * Registered script
+     */
+    Script script,
+    /**
+     * Time, in milliseconds since epoch, when the environment of the script was prepared
+     */
+    long preparedAt
+) {}
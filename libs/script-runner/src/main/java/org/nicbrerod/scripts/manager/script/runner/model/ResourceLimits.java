@@ -0,0 +1,48 @@
+package org.nicbrerod.scripts.manager.script.runner.model;
+
+import java.io.Serializable;
+
+/**
+ * Model to represent the resources that an script's process, with all its children, can use in each execution. A
+ * value of zero or less means that resource is not limited
+ */
+public record ResourceLimits(
+    /**
+     * Microseconds of CPU time that processes can use in each {@link #cpuPeriod}, it can be greater than the period
+     * to allow the use of more than one CPU
+     */
+    long cpuQuota,
+    /**
+     * Length, in microseconds, of the period in which {@link #cpuQuota} is applied
+     */
+    long cpuPeriod,
+    /**
+     * Maximum number of bytes of memory that processes can use, they are killed if they exceed it
+     */
+    long memoryMax,
+    /**
+     * Maximum number of processes and threads that can exist at the same time
+     */
+    long pidsMax,
+    /**
+     * Relative weight of processes for I/O operations, from 1 to 10000, being 100 the default weight
+     */
+    int ioWeight
+) implements Serializable {
+    /**
+     * Default length, in microseconds, of the period in which CPU quota is applied
+     */
+    public static final long DEFAULT_CPU_PERIOD = 100_000;
+
+    /**
+     * Additional constructor with the CPU limit as a number of CPUs, applied in periods of
+     * {@link #DEFAULT_CPU_PERIOD} microseconds
+     * @param cpus Number of CPUs that processes can use, it can be fractional
+     * @param memoryMax Maximum number of bytes of memory that processes can use
+     * @param pidsMax Maximum number of processes and threads that can exist at the same time
+     * @param ioWeight Relative weight of processes for I/O operations
+     */
+    public ResourceLimits(double cpus, long memoryMax, long pidsMax, int ioWeight) {
+        this(Math.round(cpus * DEFAULT_CPU_PERIOD), DEFAULT_CPU_PERIOD, memoryMax, pidsMax, ioWeight);
+    }
+}
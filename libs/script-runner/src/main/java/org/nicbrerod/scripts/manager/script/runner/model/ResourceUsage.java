@@ -0,0 +1,23 @@
+package org.nicbrerod.scripts.manager.script.runner.model;
+
+/**
+ * Model to represent the resources used by an script execution, as accounted by the control group where it ran
+ */
+public record ResourceUsage(
+    /**
+     * Microseconds of CPU time used by all processes of the execution
+     */
+    long cpuUsageMicros,
+    /**
+     * Microseconds that processes have been throttled because they reached their CPU quota
+     */
+    long cpuThrottledMicros,
+    /**
+     * Maximum number of bytes of memory used at the same time, or -1 if it's not accounted by the system
+     */
+    long memoryPeak,
+    /**
+     * Number of processes killed because memory limit was reached
+     */
+    long oomKills
+) {}
@@ -27,8 +27,25 @@ public record Script(
     /**
      * Time unit related to {@link #timeout} field
      */
-    TimeUnit timeunit
+    TimeUnit timeunit,
+    /**
+     * Resources that each execution of the script can use, or null if they are not limited
+     */
+    ResourceLimits limits
 ) implements Serializable {
+
+    /**
+     * Additional constructor without resource limits
+     * @param id ID related to script
+     * @param script Script content as string
+     * @param dependencies Array with dependencies to be installed
+     * @param timeout Timeout to wait before killing the script when its executes
+     * @param timeunit Time unit related to {@link #timeout} field
+     */
+    public Script(UUID id, String script, String[] dependencies, long timeout, TimeUnit timeunit) {
+        this(id, script, dependencies, timeout, timeunit, null);
+    }
+
     /**
      * Additional constructor with 'timeunit' field as MILLISECONDS by default
      * @param id ID related to script
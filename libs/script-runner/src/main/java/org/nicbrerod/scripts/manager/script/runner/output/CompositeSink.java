@@ -0,0 +1,66 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Sink that delivers each chunk to several sinks. Both streams of a process are drained in parallel, so this sink 
+ * serializes all calls, allowing the rest of sinks to not be thread-safe. A failure in a sink is logged and doesn't 
+ * prevent other sinks from receiving the chunk
+ */
+public class CompositeSink implements OutputSink {
+    /**
+     * Logger object used to show errors produced by sinks
+     */
+    private static final Logger log = Logger.getLogger(CompositeSink.class);
+
+    /**
+     * Sinks that receive the output
+     */
+    private final List<OutputSink> sinks;
+
+    public CompositeSink(List<OutputSink> sinks) {
+        this.sinks = sinks;
+    }
+
+    @Override
+    public synchronized void write(OutputStreamType type, ByteBuffer chunk) {
+        var position = chunk.position();
+        var limit = chunk.limit();
+
+        for (var sink : sinks) {
+            try {
+                sink.write(type, chunk);
+            } catch (IOException e) {
+                log.error("Error writing process output to sink", e);
+            } finally {
+                chunk.limit(limit).position(position);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void endOfStream(OutputStreamType type) {
+        for (var sink : sinks) {
+            try {
+                sink.endOfStream(type);
+            } catch (IOException e) {
+                log.error("Error flushing process output to sink", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (var sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                log.error("Error closing output sink", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sink that writes all output, from both streams, in a file. Chunks are written directly from the read buffer 
+ * to the file channel, without intermediate copies
+ */
+public class FileSink implements OutputSink {
+    /**
+     * Channel of the file where output is written
+     */
+    private final FileChannel channel;
+
+    /**
+     * Creates a sink that writes in a file, replacing its content if already exists
+     * @param file Path of the file
+     * @throws IOException Thrown if file can't be opened
+     */
+    public FileSink(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(OutputStreamType type, ByteBuffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
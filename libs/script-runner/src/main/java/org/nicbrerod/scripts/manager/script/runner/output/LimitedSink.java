@@ -0,0 +1,73 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sink that only passes to its delegate a maximum number of bytes for each stream, discarding the rest. Discarded 
+ * bytes are still read from the process, so it never blocks writing its output
+ */
+public class LimitedSink implements OutputSink {
+    /**
+     * Sink that receives the allowed bytes
+     */
+    private final OutputSink delegate;
+
+    /**
+     * Maximum number of bytes of each stream passed to the delegate
+     */
+    private final long maxBytes;
+
+    /**
+     * Number of bytes passed to the delegate, for each stream
+     */
+    private final Map<OutputStreamType, Long> passed = new EnumMap<>(OutputStreamType.class);
+
+    /**
+     * Total number of bytes discarded, from both streams
+     */
+    private long discarded;
+
+    public LimitedSink(OutputSink delegate, long maxBytes) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(OutputStreamType type, ByteBuffer chunk) throws IOException {
+        long current = passed.getOrDefault(type, 0L);
+        var allowed = (int) Math.min(chunk.remaining(), maxBytes - current);
+
+        if (allowed < chunk.remaining()) {
+            discarded += chunk.remaining() - allowed;
+        }
+
+        if (allowed > 0) {
+            var end = chunk.limit();
+            chunk.limit(chunk.position() + allowed);
+            delegate.write(type, chunk);
+            chunk.limit(end);
+            passed.put(type, current + allowed);
+        }
+    }
+
+    @Override
+    public void endOfStream(OutputStreamType type) throws IOException {
+        delegate.endOfStream(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * Total number of bytes discarded, from both streams
+     * @return Count of bytes not passed to the delegate
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+}
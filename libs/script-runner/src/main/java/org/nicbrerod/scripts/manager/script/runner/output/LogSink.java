@@ -0,0 +1,112 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Sink that writes each line of output in a logger. Standard output lines are logged with INFO level, or the 
+ * configured one, and standard error lines with WARN level. Lines longer than the configured maximum are split, so 
+ * a process without line breaks in its output can't make this sink retain an unbounded amount of memory. Lines are 
+ * only converted to strings if their level is enabled
+ */
+public class LogSink implements OutputSink {
+    /**
+     * Default maximum length, in bytes, of a logged line
+     */
+    public static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+
+    /**
+     * Logger where output lines are written
+     */
+    private final Logger log;
+
+    /**
+     * Maximum length, in bytes, of a logged line
+     */
+    private final int maxLineLength;
+
+    /**
+     * Level of standard output lines
+     */
+    private final Logger.Level outputLevel;
+
+    /**
+     * Bytes of the line currently being read, for each stream
+     */
+    private final Map<OutputStreamType, ByteBuffer> lines = new EnumMap<>(OutputStreamType.class);
+
+    public LogSink(Logger log) {
+        this(log, Logger.Level.INFO);
+    }
+
+    public LogSink(Logger log, Logger.Level outputLevel) {
+        this(log, outputLevel, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public LogSink(Logger log, int maxLineLength) {
+        this(log, Logger.Level.INFO, maxLineLength);
+    }
+
+    public LogSink(Logger log, Logger.Level outputLevel, int maxLineLength) {
+        this.log = log;
+        this.outputLevel = outputLevel;
+        this.maxLineLength = maxLineLength;
+    }
+
+    @Override
+    public void write(OutputStreamType type, ByteBuffer chunk) {
+        var line = lines.computeIfAbsent(type, t -> ByteBuffer.allocate(maxLineLength));
+
+        while (chunk.hasRemaining()) {
+            var b = chunk.get();
+
+            if (b == '\n') {
+                flush(type, line);
+            } else {
+                line.put(b);
+
+                if (!line.hasRemaining()) {
+                    flush(type, line);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void endOfStream(OutputStreamType type) {
+        var line = lines.get(type);
+
+        if (line != null && line.position() > 0) {
+            flush(type, line);
+        }
+    }
+
+    /**
+     * Logs the content of a line buffer and clears it
+     * @param type Stream related to the line
+     * @param line Buffer with the line's bytes
+     */
+    private void flush(OutputStreamType type, ByteBuffer line) {
+        var level = type == OutputStreamType.STDERR ? Logger.Level.WARN : outputLevel;
+
+        if (!log.isEnabled(level)) {
+            line.clear();
+            return;
+        }
+
+        var length = line.position();
+
+        // Windows line endings
+        if (length > 0 && line.get(length - 1) == '\r') {
+            length--;
+        }
+
+        var text = new String(line.array(), 0, length, StandardCharsets.UTF_8);
+        line.clear();
+        log.log(level, text);
+    }
+}
@@ -0,0 +1,42 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination of the output produced by a script process. Output is delivered as raw bytes, in the same chunks 
+ * read from the process, without decoding them, so a sink only pays for the conversions it really needs.
+ * 
+ * Chunks are delivered synchronously from the thread that drains the process stream, so a slow sink slows down 
+ * the reading of the stream and, when the pipe is full, the process itself. This is the backpressure mechanism 
+ * of the output pipeline, so sinks that can't keep up must drop data, like {@link LimitedSink} does
+ */
+public interface OutputSink extends AutoCloseable {
+
+    /**
+     * Receives a chunk of output. Passed buffer is reused after this call returns, so sinks must copy any byte 
+     * they want to keep
+     * @param type Stream where chunk was read
+     * @param chunk Bytes read from the stream, between buffer's position and limit
+     * @throws IOException Thrown if sink fails writing the chunk to its destination
+     */
+    void write(OutputStreamType type, ByteBuffer chunk) throws IOException;
+
+    /**
+     * Called when a stream of the process has been completely read
+     * @param type Stream that has ended
+     * @throws IOException Thrown if sink fails flushing pending data
+     */
+    default void endOfStream(OutputStreamType type) throws IOException {
+        // do nothing
+    }
+
+    /**
+     * Releases any resource used by this sink, called when process has ended and all its streams have been read
+     * @throws IOException Thrown if sink fails releasing its resources
+     */
+    @Override
+    default void close() throws IOException {
+        // do nothing
+    }
+}
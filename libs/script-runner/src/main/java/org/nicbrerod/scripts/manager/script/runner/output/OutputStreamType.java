@@ -0,0 +1,15 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+/**
+ * Different output streams of a script process
+ */
+public enum OutputStreamType {
+    /**
+     * Standard output of the process
+     */
+    STDOUT,
+    /**
+     * Standard error of the process
+     */
+    STDERR
+}
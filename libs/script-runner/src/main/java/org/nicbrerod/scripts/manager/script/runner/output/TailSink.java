@@ -0,0 +1,91 @@
+package org.nicbrerod.scripts.manager.script.runner.output;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sink that keeps in memory only the last bytes of output, from both streams, in a fixed-size ring buffer. It's 
+ * useful to show the end of an execution's output, where errors usually are, without retaining all of it
+ */
+public class TailSink implements OutputSink {
+    /**
+     * Ring buffer with the last bytes received
+     */
+    private final byte[] ring;
+
+    /**
+     * Position of the ring where next byte will be written
+     */
+    private int next;
+
+    /**
+     * Total number of bytes received
+     */
+    private long received;
+
+    /**
+     * Creates a tail sink
+     * @param capacity Number of bytes to keep, must be greater than zero
+     */
+    public TailSink(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(String.format("Tail capacity must be greater than zero, but was %d", capacity));
+
+        this.ring = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(OutputStreamType type, ByteBuffer chunk) {
+        var length = chunk.remaining();
+        received += length;
+
+        // Only last 'capacity' bytes of the chunk can stay in the ring
+        if (length > ring.length) {
+            chunk.position(chunk.position() + length - ring.length);
+            length = ring.length;
+        }
+
+        var first = Math.min(length, ring.length - next);
+        chunk.get(ring, next, first);
+        chunk.get(ring, 0, length - first);
+        next = (next + length) % ring.length;
+    }
+
+    /**
+     * Copies the bytes currently kept by the sink, in the order they were received
+     * @return Last received bytes
+     */
+    public synchronized byte[] tail() {
+        var size = (int) Math.min(received, ring.length);
+        var tail = new byte[size];
+        var start = (next - size + ring.length) % ring.length;
+        var first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, tail, 0, first);
+        System.arraycopy(ring, 0, tail, first, size - first);
+        return tail;
+    }
+
+    /**
+     * Decodes the bytes currently kept by the sink as an UTF-8 string
+     * @return Last received output
+     */
+    public String tailAsString() {
+        return new String(tail(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Total number of bytes received by the sink, including the ones no longer kept
+     * @return Count of received bytes
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * Indicates if some received bytes are no longer kept
+     * @return True if output has been truncated
+     */
+    public synchronized boolean isTruncated() {
+        return received > ring.length;
+    }
+}
@@ -0,0 +1,215 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Trigger that fires at times defined by a cron expression. Expression has five fields (minute, hour, day of month,
+ * month and day of week) or six, if it starts with seconds. Each field accepts '*', single values, ranges 'a-b',
+ * steps 'a-b/n' or 'a/n' (an asterisk is also accepted as range of a step) and lists separated by commas. Months
+ * and days of week also accept three-letter english names, and day of week 0 and 7 are both sunday. As in standard
+ * cron, if both day of month and day of week are restricted, a day matches if any of them matches
+ */
+public class CronTrigger implements Trigger {
+    /**
+     * Names accepted for months, in order
+     */
+    private static final List<String> MONTHS = List.of("JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC");
+
+    /**
+     * Names accepted for days of week, in order starting at sunday
+     */
+    private static final List<String> DAYS_OF_WEEK = List.of("SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT");
+
+    /**
+     * Maximum number of years searched for a matching time, expressions like '0 0 30 2 *' never match
+     */
+    private static final int MAX_YEARS = 5;
+
+    /**
+     * Original cron expression
+     */
+    @Getter
+    private final String expression;
+
+    /**
+     * Time zone used to evaluate the expression
+     */
+    @Getter
+    private final ZoneId zone;
+
+    /**
+     * Values matched by each field of the expression
+     */
+    private final BitSet seconds, minutes, hours, daysOfMonth, months, daysOfWeek;
+
+    /**
+     * Indicates if day of month field is restricted, it's false if field is '*'
+     */
+    private final boolean daysOfMonthRestricted;
+
+    /**
+     * Indicates if day of week field is restricted, it's false if field is '*'
+     */
+    private final boolean daysOfWeekRestricted;
+
+    /**
+     * Creates a cron trigger evaluated in system's default time zone
+     * @param expression Cron expression
+     */
+    public CronTrigger(String expression) {
+        this(expression, ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates a cron trigger
+     * @param expression Cron expression
+     * @param zone Time zone used to evaluate the expression
+     * @throws IllegalArgumentException Thrown if expression is not valid
+     */
+    public CronTrigger(String expression, ZoneId zone) {
+        this.expression = expression;
+        this.zone = zone;
+
+        var fields = expression.trim().split("\\s+");
+
+        if (fields.length != 5 && fields.length != 6)
+            throw new IllegalArgumentException(String.format("Cron expression '%s' must have 5 or 6 fields", expression));
+
+        var offset = fields.length - 5;
+
+        this.seconds = offset == 1 ? parseField(fields[0], 0, 59, null) : parseField("0", 0, 59, null);
+        this.minutes = parseField(fields[offset], 0, 59, null);
+        this.hours = parseField(fields[offset + 1], 0, 23, null);
+        this.daysOfMonth = parseField(fields[offset + 2], 1, 31, null);
+        this.months = parseField(fields[offset + 3], 1, 12, MONTHS);
+        this.daysOfWeek = parseField(fields[offset + 4], 0, 7, DAYS_OF_WEEK);
+
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+
+        this.daysOfMonthRestricted = !fields[offset + 2].equals("*");
+        this.daysOfWeekRestricted = !fields[offset + 4].equals("*");
+    }
+
+    /**
+     * Parses a field of a cron expression
+     * @param field Field to parse
+     * @param min Minimum value of the field
+     * @param max Maximum value of the field
+     * @param names Names accepted as values, the first one is {@code min}, or null if field has no names
+     * @return Set of values matched by the field
+     */
+    private BitSet parseField(String field, int min, int max, List<String> names) {
+        var values = new BitSet(max + 1);
+
+        for (var part : field.split(",")) {
+            var stepParts = part.split("/", 2);
+            var range = stepParts[0];
+            var step = stepParts.length == 2 ? parseValue(stepParts[1], 1, max, null) : 1;
+            int from, to;
+
+            if (range.equals("*")) {
+                from = min;
+                to = max;
+            } else if (range.contains("-")) {
+                var bounds = range.split("-", 2);
+                from = parseValue(bounds[0], min, max, names);
+                to = parseValue(bounds[1], min, max, names);
+            } else {
+                from = parseValue(range, min, max, names);
+                to = stepParts.length == 2 ? max : from;
+            }
+
+            if (from > to)
+                throw new IllegalArgumentException(String.format("Invalid range '%s' in cron expression '%s'", range, expression));
+
+            for (int i = from; i <= to; i += step) {
+                values.set(i);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Parses a single value of a field
+     * @param value Value to parse, a number or a name
+     * @param min Minimum value allowed
+     * @param max Maximum value allowed
+     * @param names Names accepted as values, the first one is {@code min}, or null if field has no names
+     * @return Parsed value
+     */
+    private int parseValue(String value, int min, int max, List<String> names) {
+        int parsed;
+
+        if (names != null && names.contains(value.toUpperCase())) {
+            parsed = names.indexOf(value.toUpperCase()) + min;
+        } else {
+            try {
+                parsed = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid value '%s' in cron expression '%s'", value, expression), e);
+            }
+        }
+
+        if (parsed < min || parsed > max)
+            throw new IllegalArgumentException(String.format("Value '%s' out of range [%d, %d] in cron expression '%s'", value, min, max, expression));
+
+        return parsed;
+    }
+
+    /**
+     * Checks if a day matches the day of month and day of week fields
+     * @param time Any time of the day to check
+     * @return True if day matches
+     */
+    private boolean matchesDay(ZonedDateTime time) {
+        var dayOfMonth = daysOfMonth.get(time.getDayOfMonth());
+        var dayOfWeek = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+
+        if (daysOfMonthRestricted && daysOfWeekRestricted)
+            return dayOfMonth || dayOfWeek;
+
+        return dayOfMonth && dayOfWeek;
+    }
+
+    @Override
+    public long nextFireTime(long after) {
+        var time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(after), zone)
+            .truncatedTo(ChronoUnit.SECONDS)
+            .plusSeconds(1);
+        var limit = time.plusYears(MAX_YEARS);
+
+        // Each step moves to the start of the next candidate unit, so loop ends in a few iterations per field
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchesDay(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            } else if (!seconds.get(time.getSecond())) {
+                time = time.plusSeconds(1);
+            } else {
+                return time.toInstant().toEpochMilli();
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
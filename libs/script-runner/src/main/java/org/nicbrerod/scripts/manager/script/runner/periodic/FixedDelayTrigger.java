@@ -0,0 +1,44 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+/**
+ * Trigger that fires a fixed delay after the end of the previous execution, so executions never overlap
+ */
+public class FixedDelayTrigger implements Trigger {
+    /**
+     * First fire time, in epoch milliseconds
+     */
+    private final long start;
+
+    /**
+     * Time, in milliseconds, between the end of an execution and the next fire
+     */
+    private final long delay;
+
+    /**
+     * Creates a fixed delay trigger
+     * @param start First fire time, in epoch milliseconds
+     * @param delay Time, in milliseconds, between the end of an execution and the next fire, must not be negative
+     */
+    public FixedDelayTrigger(long start, long delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException("Delay must not be negative");
+
+        this.start = start;
+        this.delay = delay;
+    }
+
+    @Override
+    public long nextFireTime(long after) {
+        return after < start ? start : after + Math.max(delay, 1);
+    }
+
+    @Override
+    public boolean isFromCompletion() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ms after completion", delay);
+    }
+}
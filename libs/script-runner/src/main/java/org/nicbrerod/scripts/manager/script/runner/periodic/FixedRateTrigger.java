@@ -0,0 +1,43 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+/**
+ * Trigger that fires at a fixed rate, starting at a given time. Fire times are always aligned to the start, so a 
+ * delayed fire doesn't shift the following ones
+ */
+public class FixedRateTrigger implements Trigger {
+    /**
+     * First fire time, in epoch milliseconds
+     */
+    private final long start;
+
+    /**
+     * Time, in milliseconds, between two fires
+     */
+    private final long period;
+
+    /**
+     * Creates a fixed rate trigger
+     * @param start First fire time, in epoch milliseconds
+     * @param period Time, in milliseconds, between two fires, must be greater than zero
+     */
+    public FixedRateTrigger(long start, long period) {
+        if (period <= 0)
+            throw new IllegalArgumentException("Period must be greater than zero");
+
+        this.start = start;
+        this.period = period;
+    }
+
+    @Override
+    public long nextFireTime(long after) {
+        if (after < start)
+            return start;
+
+        return start + ((after - start) / period + 1) * period;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("every %d ms", period);
+    }
+}
@@ -0,0 +1,16 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+/**
+ * What a {@link PeriodicScheduler} does when a schedule couldn't fire on time, because the scheduler was stopped 
+ * or overloaded, and its fire time has passed more than the misfire threshold
+ */
+public enum MisfirePolicy {
+    /**
+     * Fires once immediately, no matter how many fires were missed, and continues with the next fire time
+     */
+    FIRE_NOW,
+    /**
+     * Ignores all missed fires and waits for the next fire time
+     */
+    SKIP
+}
@@ -0,0 +1,156 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
+
+import lombok.Getter;
+
+/**
+ * Periodic execution of an script registered in a {@link PeriodicScheduler}
+ */
+public class PeriodicSchedule {
+    /**
+     * Unique identifier of the schedule
+     */
+    @Getter
+    private final UUID id = UUID.randomUUID();
+
+    /**
+     * ID related to script to execute
+     */
+    @Getter
+    private final UUID scriptId;
+
+    /**
+     * Parameters passed to script on each execution
+     */
+    @Getter
+    private final Object[] parameters;
+
+    /**
+     * Rule used to calculate fire times
+     */
+    @Getter
+    private final Trigger trigger;
+
+    /**
+     * What to do when a fire time is missed
+     */
+    @Getter
+    private final MisfirePolicy misfirePolicy;
+
+    /**
+     * Indicates if a new execution can start while previous one is still running. If false, fires that happen while
+     * script is running are skipped
+     */
+    @Getter
+    private final boolean allowOverlap;
+
+    /**
+     * Priority of the executions in the {@link org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler}
+     */
+    @Getter
+    private final ExecutionPriority priority;
+
+    /**
+     * Next fire time, in epoch milliseconds. It's only modified by the scheduler while schedule is out of its trigger
+     * store
+     */
+    @Getter
+    private volatile long nextFireTime;
+
+    /**
+     * Indicates if schedule has been removed from its scheduler
+     */
+    @Getter
+    private volatile boolean cancelled;
+
+    /**
+     * Number of executions of this schedule currently running
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Number of executions submitted by this schedule
+     */
+    private final AtomicLong fired = new AtomicLong();
+
+    /**
+     * Number of fires skipped because previous execution was still running
+     */
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Number of fires missed because scheduler couldn't fire them on time
+     */
+    private final AtomicLong misfired = new AtomicLong();
+
+    PeriodicSchedule(UUID scriptId, Object[] parameters, Trigger trigger, MisfirePolicy misfirePolicy, boolean allowOverlap, ExecutionPriority priority) {
+        this.scriptId = scriptId;
+        this.parameters = parameters;
+        this.trigger = trigger;
+        this.misfirePolicy = misfirePolicy;
+        this.allowOverlap = allowOverlap;
+        this.priority = priority;
+    }
+
+    void setNextFireTime(long nextFireTime) {
+        this.nextFireTime = nextFireTime;
+    }
+
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    void started() {
+        running.incrementAndGet();
+        fired.incrementAndGet();
+    }
+
+    void ended() {
+        running.decrementAndGet();
+    }
+
+    void skip() {
+        skipped.incrementAndGet();
+    }
+
+    void misfire() {
+        misfired.incrementAndGet();
+    }
+
+    /**
+     * Checks if any execution of this schedule is running
+     * @return True if there is at least one execution running
+     */
+    public boolean isRunning() {
+        return running.get() > 0;
+    }
+
+    /**
+     * Number of executions submitted by this schedule
+     * @return Count of fired executions
+     */
+    public long getFired() {
+        return fired.get();
+    }
+
+    /**
+     * Number of fires skipped because previous execution was still running
+     * @return Count of skipped fires
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Number of fires missed because scheduler couldn't fire them on time
+     * @return Count of misfires, including the ones fired late because of {@link MisfirePolicy#FIRE_NOW}
+     */
+    public long getMisfired() {
+        return misfired.get();
+    }
+}
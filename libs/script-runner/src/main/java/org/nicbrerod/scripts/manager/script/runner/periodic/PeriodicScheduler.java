@@ -0,0 +1,319 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+
+/**
+ * Scheduler used to run scripts periodically. All schedules are kept in a single heap ordered by next fire time,
+ * watched by one thread, so the cost of a schedule is a heap entry instead of a task in a scheduled executor. When a
+ * schedule fires, its execution is submitted to an {@link ExecutionScheduler}, so fires never block the scheduler
+ * thread and executions respect the node's concurrency limit
+ */
+public class PeriodicScheduler implements AutoCloseable {
+    /**
+     * Default time, in milliseconds, that a fire can be delayed before being considered a misfire
+     */
+    public static final long DEFAULT_MISFIRE_THRESHOLD = 5000;
+
+    /**
+     * Maximum time, in milliseconds, that scheduler thread waits without checking the heap, so changes in system's
+     * clock are noticed
+     */
+    private static final long MAX_WAIT = 1000;
+
+    /**
+     * Logger object used to show some information about fires
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Scheduler used to run the fired executions
+     */
+    private final ExecutionScheduler executions;
+
+    /**
+     * Time, in milliseconds, that a fire can be delayed before being considered a misfire
+     */
+    private final long misfireThreshold;
+
+    /**
+     * All active schedules, by their ID
+     */
+    private final Map<UUID, PeriodicSchedule> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * Schedules waiting for their next fire, ordered by fire time. Schedules with a trigger counting from completion
+     * are out of the heap while they are running
+     */
+    private final PriorityQueue<PeriodicSchedule> fires = new PriorityQueue<>(Comparator.comparingLong(PeriodicSchedule::getNextFireTime));
+
+    /**
+     * Lock that guards {@link #fires}
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Condition signaled when the first schedule of the heap changes
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Thread that waits for the next fire time and fires the schedules
+     */
+    private final Thread thread;
+
+    /**
+     * Indicates if scheduler has been closed
+     */
+    private volatile boolean closed;
+
+    public PeriodicScheduler(ExecutionScheduler executions) {
+        this(executions, DEFAULT_MISFIRE_THRESHOLD);
+    }
+
+    public PeriodicScheduler(ExecutionScheduler executions, long misfireThreshold) {
+        this.executions = executions;
+        this.misfireThreshold = misfireThreshold;
+        this.thread = new Thread(this::loop, "periodic-scheduler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Schedules an script with {@link MisfirePolicy#FIRE_NOW} policy, without overlapping executions and with
+     * {@link ExecutionPriority#NORMAL} priority
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters passed to script on each execution
+     * @param trigger Rule used to calculate fire times
+     * @return Created schedule, or empty if trigger never fires
+     * @see #schedule(UUID, Object[], Trigger, MisfirePolicy, boolean, ExecutionPriority)
+     */
+    public Optional<PeriodicSchedule> schedule(UUID scriptId, Object[] parameters, Trigger trigger) {
+        return schedule(scriptId, parameters, trigger, MisfirePolicy.FIRE_NOW, false, ExecutionPriority.NORMAL);
+    }
+
+    /**
+     * Schedules an script
+     * @param scriptId ID related to script to execute
+     * @param parameters Parameters passed to script on each execution
+     * @param trigger Rule used to calculate fire times
+     * @param misfirePolicy What to do when a fire time is missed
+     * @param allowOverlap If false, fires that happen while a previous execution is running are skipped
+     * @param priority Priority of the executions
+     * @return Created schedule, or empty if trigger never fires
+     */
+    public Optional<PeriodicSchedule> schedule(UUID scriptId, Object[] parameters, Trigger trigger, MisfirePolicy misfirePolicy, boolean allowOverlap, ExecutionPriority priority) {
+        if (closed)
+            throw new IllegalStateException("Periodic scheduler is closed");
+
+        var schedule = new PeriodicSchedule(scriptId, parameters, trigger, misfirePolicy, allowOverlap, priority);
+        schedules.put(schedule.getId(), schedule);
+
+        if (!enqueue(schedule, System.currentTimeMillis() - 1))
+            return Optional.empty();
+
+        log.info(String.format("Script %s scheduled with trigger %s, first fire at %d", scriptId, trigger, schedule.getNextFireTime()));
+        return Optional.of(schedule);
+    }
+
+    /**
+     * Removes a schedule. Running executions are not cancelled
+     * @param scheduleId ID related to schedule to remove
+     * @return True if schedule existed
+     */
+    public boolean unschedule(UUID scheduleId) {
+        var schedule = schedules.remove(scheduleId);
+
+        if (schedule == null)
+            return false;
+
+        lock.lock();
+
+        try {
+            schedule.cancel();
+            fires.remove(schedule);
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes all schedules of an script, used when script is unregistered
+     * @param scriptId ID related to script
+     * @return Number of schedules removed
+     */
+    public int unscheduleScript(UUID scriptId) {
+        var removed = 0;
+
+        for (var schedule : getSchedules()) {
+            if (schedule.getScriptId().equals(scriptId) && unschedule(schedule.getId())) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Obtains a schedule by its ID
+     * @param scheduleId ID related to schedule
+     * @return Schedule, or empty if it doesn't exist
+     */
+    public Optional<PeriodicSchedule> getSchedule(UUID scheduleId) {
+        return Optional.ofNullable(schedules.get(scheduleId));
+    }
+
+    /**
+     * Obtains all active schedules
+     * @return List of schedules
+     */
+    public List<PeriodicSchedule> getSchedules() {
+        return new ArrayList<>(schedules.values());
+    }
+
+    /**
+     * Stops the scheduler thread and removes all schedules. Running executions are not cancelled
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+
+        lock.lock();
+
+        try {
+            fires.clear();
+            schedules.values().forEach(PeriodicSchedule::cancel);
+            schedules.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calculates the next fire time of a schedule and puts it in the heap. If trigger has no more fire times,
+     * schedule is removed
+     * @param schedule Schedule to enqueue
+     * @param after Time after which next fire must happen
+     * @return True if schedule has been enqueued
+     */
+    private boolean enqueue(PeriodicSchedule schedule, long after) {
+        var next = schedule.getTrigger().nextFireTime(after);
+
+        lock.lock();
+
+        try {
+            if (closed || schedule.isCancelled())
+                return false;
+
+            if (next < 0) {
+                log.info(String.format("Schedule %s of script %s has no more fire times", schedule.getId(), schedule.getScriptId()));
+                schedules.remove(schedule.getId());
+                schedule.cancel();
+                return false;
+            }
+
+            schedule.setNextFireTime(next);
+            fires.add(schedule);
+
+            if (fires.peek() == schedule) {
+                changed.signal();
+            }
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Main loop of scheduler thread, waits until the first schedule of the heap must fire and fires it
+     */
+    private void loop() {
+        while (!closed) {
+            PeriodicSchedule due;
+
+            lock.lock();
+
+            try {
+                var first = fires.peek();
+                var wait = first == null ? MAX_WAIT : first.getNextFireTime() - System.currentTimeMillis();
+
+                if (wait > 0) {
+                    changed.await(Math.min(wait, MAX_WAIT), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+
+                due = fires.poll();
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                fire(due);
+            } catch (RuntimeException e) {
+                log.error(String.format("Error firing schedule %s of script %s", due.getId(), due.getScriptId()), e);
+            }
+        }
+    }
+
+    /**
+     * Submits the execution of a due schedule, applying its misfire and overlap policies, and enqueues it again
+     * @param schedule Schedule to fire
+     */
+    private void fire(PeriodicSchedule schedule) {
+        var scheduled = schedule.getNextFireTime();
+        var now = System.currentTimeMillis();
+        var misfired = now - scheduled > misfireThreshold;
+        var fromCompletion = schedule.getTrigger().isFromCompletion();
+
+        if (misfired) {
+            schedule.misfire();
+            log.warn(String.format("Schedule %s of script %s misfired by %d ms", schedule.getId(), schedule.getScriptId(), now - scheduled));
+
+            if (schedule.getMisfirePolicy() == MisfirePolicy.SKIP) {
+                enqueue(schedule, now);
+                return;
+            }
+        }
+
+        if (!schedule.isAllowOverlap() && schedule.isRunning()) {
+            schedule.skip();
+            log.debug(String.format("Schedule %s of script %s skipped, previous execution is still running", schedule.getId(), schedule.getScriptId()));
+            enqueue(schedule, misfired ? now : scheduled);
+            return;
+        }
+
+        schedule.started();
+        executions.submit(schedule.getScriptId(), schedule.getParameters(), schedule.getPriority()).result()
+            .whenComplete((result, error) -> {
+                schedule.ended();
+
+                if (fromCompletion) {
+                    enqueue(schedule, System.currentTimeMillis());
+                }
+            });
+
+        if (!fromCompletion) {
+            // Missed fires are collapsed into this one, the others keep aligned to the trigger
+            enqueue(schedule, misfired ? now : scheduled);
+        }
+    }
+}
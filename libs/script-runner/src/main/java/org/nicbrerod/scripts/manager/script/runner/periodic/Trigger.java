@@ -0,0 +1,25 @@
+package org.nicbrerod.scripts.manager.script.runner.periodic;
+
+/**
+ * Rule used by a {@link PeriodicScheduler} to calculate when a schedule must fire
+ */
+public interface Trigger {
+
+    /**
+     * Calculates the next fire time of a schedule
+     * @param after Time, in epoch milliseconds, after which next fire must happen. Usually, the previous fire time 
+     * or, for triggers {@link #isFromCompletion() from completion}, the time when previous execution ended
+     * @return Next fire time, in epoch milliseconds, strictly greater than passed time, or a negative value if 
+     * trigger will never fire again
+     */
+    long nextFireTime(long after);
+
+    /**
+     * Indicates if next fire time must be calculated from the end of the previous execution, instead of from the 
+     * previous fire time
+     * @return True if trigger counts from previous execution end
+     */
+    default boolean isFromCompletion() {
+        return false;
+    }
+}
@@ -0,0 +1,240 @@
+package org.nicbrerod.scripts.manager.script.runner.py;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Content-addressed cache of Python environments with dependencies installed. Each environment is identified by a hash
+ * of the interpreter version and the normalized set of dependencies, so all scripts with the same dependencies share
+ * one site-packages folder, linked inside their own environment, instead of installing their own copy. Shared
+ * site-packages must be treated as read-only by scripts
+ */
+public class DependencyCache {
+    /**
+     * Name of the folder, inside home directory, where shared environments are stored
+     */
+    public static final String CACHE_DIR = ".deps-cache";
+
+    /**
+     * Name of the file written inside a shared environment when it has been completely built
+     */
+    private static final String COMPLETE_MARK = ".complete";
+
+    /**
+     * Logger object used to show some information about cache operations
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Working directory of the script runner that owns this cache
+     */
+    private final String homeDir;
+
+    /**
+     * Logic used to build a new shared environment. It receives the path of the environment, relative to
+     * {@link #homeDir}, and the dependencies to install, and returns true if environment was successfully built
+     */
+    private final EnvironmentBuilder builder;
+
+    /**
+     * Locks used to avoid building the same environment twice when scripts with same dependencies are registered
+     * at the same time
+     */
+    private final Map<String, Object> buildLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Number of scripts linked to an already built environment
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of scripts that needed to build a new environment
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Logic used by the cache to build a shared environment
+     */
+    @FunctionalInterface
+    public interface EnvironmentBuilder {
+        /**
+         * Creates an environment and installs the passed dependencies in it
+         * @param relativePath Path of the environment, relative to home directory
+         * @param dependencies Dependencies to install
+         * @return True if environment was successfully built
+         */
+        boolean build(String relativePath, String[] dependencies);
+    }
+
+    public DependencyCache(String homeDir, EnvironmentBuilder builder) {
+        this.homeDir = homeDir;
+        this.builder = builder;
+    }
+
+    /**
+     * Generates the key of a shared environment. Dependencies are trimmed, lower-cased, deduplicated and sorted
+     * before hashing, so same dependencies in different order produces the same key
+     * @param interpreterVersion Version of the Python interpreter used by the environment
+     * @param dependencies Dependencies installed in the environment
+     * @return Hex-encoded SHA-256 hash of interpreter version and dependencies
+     */
+    public static String key(String interpreterVersion, String[] dependencies) {
+        var normalized = Arrays.stream(dependencies)
+            .map(String::trim)
+            .filter(dep -> !dep.isEmpty())
+            .map(String::toLowerCase)
+            .distinct()
+            .sorted()
+            .collect(Collectors.joining("\n"));
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(interpreterVersion.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Reads the interpreter version of a virtual environment from its pyvenv.cfg file
+     * @param envPath Path of the environment
+     * @return Version of the interpreter used to create the environment
+     * @throws IOException Thrown if pyvenv.cfg file doesn't exist or doesn't contain the version
+     */
+    public static String interpreterVersion(Path envPath) throws IOException {
+        try (Stream<String> lines = Files.lines(envPath.resolve("pyvenv.cfg"))) {
+            // virtualenv writes 'version_info', built-in venv module writes 'version'
+            var versions = lines.map(line -> line.split("=", 2))
+                .filter(parts -> parts.length == 2)
+                .filter(parts -> parts[0].trim().equals("version_info") || parts[0].trim().equals("version"))
+                .collect(Collectors.toMap(parts -> parts[0].trim(), parts -> parts[1].trim(), (a, b) -> a));
+
+            return Optional.ofNullable(versions.get("version_info"))
+                .or(() -> Optional.ofNullable(versions.get("version")))
+                .orElseThrow(() -> new IOException(String.format("Interpreter version not found for environment '%s'", envPath)));
+        }
+    }
+
+    /**
+     * Finds the site-packages folder of a virtual environment
+     * @param envPath Path of the environment
+     * @return Path of the site-packages folder
+     * @throws IOException Thrown if environment doesn't have a site-packages folder
+     */
+    public static Path sitePackages(Path envPath) throws IOException {
+        try (Stream<Path> libs = Files.list(envPath.resolve("lib"))) {
+            return libs.filter(lib -> lib.getFileName().toString().startsWith("python"))
+                .map(lib -> lib.resolve("site-packages"))
+                .filter(Files::isDirectory)
+                .findFirst()
+                .orElseThrow(() -> new IOException(String.format("Not found site-packages folder for environment '%s'", envPath)));
+        }
+    }
+
+    /**
+     * Links an environment to the shared environment with the passed dependencies, building it if not exists yet
+     * @param envRelativePath Path of the environment to link, relative to home directory
+     * @param dependencies Dependencies needed by the environment
+     * @return True if environment was successfully linked
+     * @throws IOException Thrown if any I/O operation over the environments fails
+     */
+    public boolean link(String envRelativePath, String[] dependencies) throws IOException {
+        var envPath = Paths.get(homeDir, envRelativePath);
+        var key = key(interpreterVersion(envPath), dependencies);
+        var sharedRelativePath = String.format("%s/%s", CACHE_DIR, key);
+        var sharedPath = Paths.get(homeDir, sharedRelativePath);
+
+        synchronized (buildLocks.computeIfAbsent(key, k -> new Object())) {
+            if (Files.exists(sharedPath.resolve(COMPLETE_MARK))) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                log.info(String.format("Building shared environment '%s'", key));
+
+                if (Files.exists(sharedPath)) {
+                    deleteRecursively(sharedPath);
+                }
+
+                Files.createDirectories(sharedPath.getParent());
+
+                if (!builder.build(sharedRelativePath, dependencies)) {
+                    return false;
+                }
+
+                Files.createFile(sharedPath.resolve(COMPLETE_MARK));
+            }
+        }
+
+        var ownSitePackages = sitePackages(envPath).toAbsolutePath().normalize();
+        var sharedSitePackages = sitePackages(sharedPath).toAbsolutePath().normalize();
+
+        // Link is relative to be valid for any process that mounts home directory in another path, like a container
+        deleteRecursively(ownSitePackages);
+        Files.createSymbolicLink(ownSitePackages, ownSitePackages.getParent().relativize(sharedSitePackages));
+
+        return true;
+    }
+
+    /**
+     * Checks if an environment is linked to a complete shared environment
+     * @param envRelativePath Path of the environment, relative to home directory
+     * @return True if site-packages folder of the environment is a link to an existing folder
+     */
+    public boolean isLinked(String envRelativePath) {
+        try {
+            var ownSitePackages = sitePackages(Paths.get(homeDir, envRelativePath));
+            return Files.isSymbolicLink(ownSitePackages) && Files.exists(ownSitePackages.toRealPath().getParent().getParent().getParent().resolve(COMPLETE_MARK));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Number of scripts linked to an already built environment
+     * @return Count of cache hits since cache creation
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of scripts that needed to build a new environment
+     * @return Count of cache misses since cache creation
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Deletes a folder and all its content
+     * @param path Folder to delete
+     * @throws IOException Thrown if folder can't be walked
+     */
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+}
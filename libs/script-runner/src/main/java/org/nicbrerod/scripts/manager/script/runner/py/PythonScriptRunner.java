@@ -2,21 +2,36 @@ package org.nicbrerod.scripts.manager.script.runner.py;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.jboss.logging.Logger;
 import org.nicbrerod.scripts.manager.script.runner.ScriptOutputGobbler;
 import org.nicbrerod.scripts.manager.script.runner.ScriptRunner;
+import org.nicbrerod.scripts.manager.script.runner.cgroup.CgroupManager;
+import org.nicbrerod.scripts.manager.script.runner.cgroup.ExecutionCgroup;
 import org.nicbrerod.scripts.manager.script.runner.exception.ScriptNotExistException;
 import org.nicbrerod.scripts.manager.script.runner.exception.ScriptTimeoutException;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
 import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * ScriptRunner child used to process Python scripts
@@ -47,12 +62,52 @@ public class PythonScriptRunner extends ScriptRunner {
      */
     private final String homeDir;
 
+    /**
+     * Maximum time, in milliseconds, to wait for the output of a process to be drained once it has ended
+     */
+    private static final long OUTPUT_DRAIN_TIMEOUT = 5000;
+
+    /**
+     * Pool of virtual environments created in background, used to avoid creating a new environment in 
+     * script registration. If null, all environments are created on demand
+     */
+    @Getter
+    private VirtualEnvPool venvPool;
+
+    /**
+     * Cache of environments with dependencies installed, shared by all scripts with the same dependencies
+     */
+    @Getter
+    private final DependencyCache dependencyCache;
+
+    /**
+     * Warm workers used to run scripts without starting a new interpreter on each execution. If null, each 
+     * execution runs in a new process
+     */
+    @Getter
+    private PythonWorkerPool workerPool;
+
+    /**
+     * Content of the host script run by warm workers
+     */
+    private String workerHostScript;
+
+    /**
+     * Manager of the control groups where script executions run, limited by the resource limits of each script and 
+     * accounting the resources they use. Scripts with resource limits are never run by warm workers, so each 
+     * execution has its own group. If null, executions run in the node's group without limits
+     */
+    @Getter
+    @Setter
+    private CgroupManager cgroupManager;
+
     public PythonScriptRunner(String pythonPath, String venvPath, String homeDir) {
         this.pythonPath = pythonPath;
         this.venvPath = venvPath;
         this.venvInstallOpts = "";
         this.venvExecOpts = "";
         this.homeDir = homeDir;
+        this.dependencyCache = new DependencyCache(homeDir, this::buildSharedEnv);
     }
 
     public PythonScriptRunner(String pythonPath, String venvPath, String homeDir, String venvInstallOpts) {
@@ -66,52 +121,141 @@ public class PythonScriptRunner extends ScriptRunner {
     }
 
     /**
-     * Runs a command in a new process and redirects its outpur to {@link #log}
-     * @param command Command to be executed
+     * Creates a script runner that keeps a pool of empty virtual environments ready to be claimed by new scripts
+     * @param pythonPath Python's interpreter path
+     * @param venvPath VirtualEnv's path
+     * @param homeDir Working directory where to run all commands
+     * @param venvInstallOpts Options to pass to install command
+     * @param venvExecOpts Options to pass to execution command
+     * @param venvPoolSize Number of environments to keep ready, if zero or less, the pool is disabled
+     * @param venvPoolRefillRate Time, in milliseconds, between two consecutive environment creations to refill the pool, 
+     * must be greater than zero if pool is enabled
+     * @throws IOException Thrown if pool folder can't be created inside home directory
+     * @throws IllegalArgumentException Thrown if pool is enabled with a refill rate of zero or less
+     */
+    public PythonScriptRunner(String pythonPath, String venvPath, String homeDir, String venvInstallOpts, String venvExecOpts, 
+        int venvPoolSize, long venvPoolRefillRate) throws IOException {
+        this(pythonPath, venvPath, homeDir, venvInstallOpts, venvExecOpts);
+
+        if (venvPoolSize > 0) {
+            this.venvPool = new VirtualEnvPool(homeDir, venvPoolSize, venvPoolRefillRate, this::createVirtualEnv);
+            this.venvPool.start();
+        }
+    }
+
+    /**
+     * Creates a script runner that can keep a pool of empty virtual environments and runs scripts in warm workers, 
+     * long-lived Python processes that keep the interpreter and script's imports loaded between executions
+     * @param pythonPath Python's interpreter path
+     * @param venvPath VirtualEnv's path
+     * @param homeDir Working directory where to run all commands
+     * @param venvInstallOpts Options to pass to install command
+     * @param venvExecOpts Options to pass to execution command
+     * @param venvPoolSize Number of environments to keep ready, if zero or less, the pool is disabled
+     * @param venvPoolRefillRate Time, in milliseconds, between two consecutive environment creations to refill the pool
+     * @param workerMaxRuns Number of executions after which a worker is replaced by a new one, if zero or less, warm workers are disabled
+     * @param workerIdleTimeout Time, in milliseconds, that a worker can stay without executions before being stopped
+     * @throws IOException Thrown if pool folder can't be created inside home directory or host script can't be loaded
+     */
+    public PythonScriptRunner(String pythonPath, String venvPath, String homeDir, String venvInstallOpts, String venvExecOpts, 
+        int venvPoolSize, long venvPoolRefillRate, int workerMaxRuns, long workerIdleTimeout) throws IOException {
+        this(pythonPath, venvPath, homeDir, venvInstallOpts, venvExecOpts, venvPoolSize, venvPoolRefillRate);
+
+        if (workerMaxRuns > 0) {
+            try (var hostScript = getClass().getClassLoader().getResourceAsStream("python/worker-host.py")) {
+                this.workerHostScript = new String(hostScript.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            this.workerPool = new PythonWorkerPool(workerMaxRuns, workerIdleTimeout, executor, this::createOutputSink);
+        }
+    }
+
+    /**
+     * Runs a command in a new process and redirects its output to a sink. Both output streams are drained by tasks 
+     * of the runner's executor
+     * @param command Command to be executed, its arguments are separated by whitespaces
      * @param homeDir Working directory
      * @param timeout Amount of time to wait for command to run
      * @param timeUnit Time unit related to timeout
+     * @param sink Sink that receives the process output, it's closed when process ends
+     * @param cgroup Control group where process runs, or null to run it in the node's group
      * @return The exit code of the process to run
-     * @throws Exception
+     * @throws IOException Thrown if process can't be started, or there isn't any thread available to read its output
+     * @throws ScriptTimeoutException Thrown if process exceeds the timeout
      */
-    private int runCommand(String command, String homeDir, long timeout, TimeUnit timeUnit) throws ScriptTimeoutException {
-        int exitCode = 0;
-        Future<?> gobblerTask = null;
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> executor.shutdownNow()));
+    private int runCommand(String command, String homeDir, long timeout, TimeUnit timeUnit, OutputSink sink, ExecutionCgroup cgroup) 
+        throws IOException, ScriptTimeoutException {
+        return runCommand(Arrays.asList(command.split("\\s+")), homeDir, timeout, timeUnit, sink, cgroup);
+    }
 
-        try {
-            var processBuilder = new ProcessBuilder(command.split("\\s+")).directory(new File(homeDir));
+    /**
+     * Runs a command in a new process and redirects its output to a sink. Both output streams are drained by tasks 
+     * of the runner's executor
+     * @param arguments Command to be executed and its arguments, passed to the process as they are
+     * @param homeDir Working directory
+     * @param timeout Amount of time to wait for command to run
+     * @param timeUnit Time unit related to timeout
+     * @param sink Sink that receives the process output, it's closed when process ends
+     * @param cgroup Control group where process runs, or null to run it in the node's group
+     * @return The exit code of the process to run
+     * @throws IOException Thrown if process can't be started, or there isn't any thread available to read its output
+     * @throws ScriptTimeoutException Thrown if process exceeds the timeout
+     */
+    private int runCommand(List<String> arguments, String homeDir, long timeout, TimeUnit timeUnit, OutputSink sink, ExecutionCgroup cgroup) 
+        throws IOException, ScriptTimeoutException {
+        List<Future<?>> gobblerTasks = new ArrayList<>();
+
+        try (sink) {
+            var processBuilder = new ProcessBuilder(cgroup != null ? cgroup.wrap(arguments) : arguments).directory(new File(homeDir));
             var process = processBuilder.start();
-            var outputGobbler = new ScriptOutputGobbler(process.getInputStream(), x -> log.info(x));
-            gobblerTask = executor.submit(outputGobbler);
-            if (timeout <= 0) {
-                exitCode = process.waitFor();
-            } else {
-                boolean terminated = process.waitFor(timeout, timeUnit);
-                
-                if (!terminated) {
+            runningProcesses.incrementAndGet();
+
+            try {
+                gobblerTasks.add(executor.submit(new ScriptOutputGobbler(process.getInputStream(), OutputStreamType.STDOUT, sink)));
+                gobblerTasks.add(executor.submit(new ScriptOutputGobbler(process.getErrorStream(), OutputStreamType.STDERR, sink)));
+
+                if (timeout <= 0) {
+                    process.waitFor();
+                } else if (!process.waitFor(timeout, timeUnit)) {
                     process.destroy();
                     throw new ScriptTimeoutException();
-                } else {
-                    exitCode = process.exitValue();
                 }
+
+                awaitOutput(gobblerTasks);
+                return process.exitValue();
+            } catch (RejectedExecutionException e) {
+                process.destroyForcibly();
+                throw new IOException("Process output can't be read", e);
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for process", e);
+            } finally {
+                runningProcesses.decrementAndGet();
+                gobblerTasks.forEach(task -> task.cancel(true));
             }
-        } catch (Exception e) {
-            if (gobblerTask != null) {
-                gobblerTask.cancel(true);
-            }
+        }
+    }
 
-            if (e instanceof ScriptTimeoutException) {
-                throw new ScriptTimeoutException();
+    /**
+     * Waits for all output of an ended process to be drained. Output can remain in the pipes after the process ends, 
+     * or a child process can keep them open, so the wait is limited to {@link #OUTPUT_DRAIN_TIMEOUT} milliseconds
+     * @param gobblerTasks Tasks that are draining the process output
+     * @throws InterruptedException Thrown if current thread is interrupted while waiting
+     */
+    private void awaitOutput(List<Future<?>> gobblerTasks) throws InterruptedException {
+        for (var task : gobblerTasks) {
+            try {
+                task.get(OUTPUT_DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Process output has not been completely drained", e);
             }
         }
-        
-        return exitCode;
     }
 
     /**
-     * Equivalent to {@link #runCommand(String, String, long, TimeUnit)}, with timeout as zero by default, to produce a non-wait execution
+     * Equivalent to {@link #runCommand(String, String, long, TimeUnit, OutputSink, ExecutionCgroup)}, with timeout as zero by default, to produce a non-wait 
+     * execution, and output redirected only to {@link #log}
      * @param command Command to be executed
      * @param homeDir Working directory
      * @return The exit code of the process to run
@@ -119,52 +263,247 @@ public class PythonScriptRunner extends ScriptRunner {
      * @throws ScriptTimeoutException
      */
     private int runCommand(String command, String homeDir) throws IOException, ScriptTimeoutException {
-        return runCommand(command, homeDir, 0, TimeUnit.MILLISECONDS);
+        return runCommand(command, homeDir, 0, TimeUnit.MILLISECONDS, createOutputSink(null), null);
+    }
+
+    /**
+     * Creates a new virtual environment
+     * @param relativePath Path of the environment, relative to {@link #homeDir}
+     * @return True if environment was successfully created
+     */
+    private boolean createVirtualEnv(String relativePath) {
+        try {
+            return runCommand(String.format("%s -m virtualenv %s", pythonPath, relativePath), homeDir) == 0;
+        } catch (IOException | ScriptTimeoutException e) {
+            log.error(String.format("Error creating virtual environment '%s'", relativePath), e);
+            return false;
+        }
+    }
+
+    /**
+     * Places a virtual environment in the passed folder, claiming it from {@link #venvPool} if possible, else creating it
+     * @param relativePath Path of the environment, relative to {@link #homeDir}
+     * @return True if environment is ready in the passed folder
+     */
+    private boolean obtainVirtualEnv(String relativePath) {
+        if (venvPool != null && venvPool.claim(relativePath)) {
+            log.info("Claimed Python virtual environment from pool");
+            return true;
+        }
+
+        log.info("Creating Python virtual environment");
+        return createVirtualEnv(relativePath);
+    }
+
+    /**
+     * Builds an environment to be shared by all scripts with the same dependencies
+     * @param relativePath Path of the environment, relative to {@link #homeDir}
+     * @param dependencies Dependencies to install in the environment
+     * @return True if environment was successfully built
+     */
+    private boolean buildSharedEnv(String relativePath, String[] dependencies) {
+        if (!obtainVirtualEnv(relativePath))
+            return false;
+
+        // pip is called as a module of the environment's interpreter because pooled environments are renamed, and 
+        // the shebang of pip's launcher keeps the original path of the environment
+        String depsInstallCommand = String.format("%s %s ./%s/bin/python3 -m pip install %s", venvPath, venvInstallOpts, relativePath, Arrays.stream(dependencies).collect(Collectors.joining(" ")));
+
+        try {
+            log.info("Installing dependencies");
+            return runCommand(depsInstallCommand, homeDir) == 0;
+        } catch (IOException | ScriptTimeoutException e) {
+            log.error(String.format("Error installing dependencies in '%s'", relativePath), e);
+            return false;
+        }
     }
 
     @Override
     protected boolean prepareScript(Script script) throws IOException, InterruptedException, ScriptTimeoutException {
-        int exitCode = 0;
-
         log.info(String.format("Preparing script %s", script.id()));
 
-        String venvCommand = String.format("%s -m virtualenv %s", pythonPath, script.id());
-        String depsInstallCommand = String.format("%s %s ./%s/bin/pip3 install %s", venvPath, venvInstallOpts, script.id(), Arrays.stream(script.dependencies()).collect(Collectors.joining(" ")));
-        
-        log.info("Creating Python virtual environment");
-        exitCode = runCommand(venvCommand, homeDir);
+        if (!obtainVirtualEnv(script.id().toString()))
+            return false;
 
-        if (exitCode == 0) {
-            log.info("Copying file");
-            Files.writeString(Paths.get(homeDir, script.id().toString(), "script.py"), script.script());
+        log.info("Copying file");
+        Files.writeString(Paths.get(homeDir, script.id().toString(), "script.py"), script.script());
+
+        if (workerPool != null) {
+            // a new version of an script must not be run by the worker of the previous one
+            workerPool.evict(script.id());
+            Files.writeString(Paths.get(homeDir, script.id().toString(), PythonWorker.HOST_SCRIPT), workerHostScript);
         }
 
-        if (exitCode == 0 && script.dependencies().length > 0) {
-            log.info("Installing dependencies");
-            exitCode = runCommand(depsInstallCommand, homeDir);
+        if (script.dependencies().length > 0) {
+            log.info("Linking dependencies");
+            return dependencyCache.link(script.id().toString(), script.dependencies());
         }
 
-        return exitCode == 0;
+        return true;
+    }
+
+    /**
+     * An environment is reused if it contains the same script file and, if needed, worker host and dependencies
+     */
+    @Override
+    protected boolean isPrepared(Script script) {
+        var envPath = Paths.get(homeDir, script.id().toString());
+
+        try {
+            if (!Files.exists(envPath.resolve("pyvenv.cfg")) || !script.script().equals(Files.readString(envPath.resolve("script.py"))))
+                return false;
+
+            if (workerPool != null && !workerHostScript.equals(Files.readString(envPath.resolve(PythonWorker.HOST_SCRIPT))))
+                return false;
+
+            return script.dependencies().length == 0 || dependencyCache.isLinked(script.id().toString());
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     @Override
     public boolean runScript(UUID scriptId, Object[] parameters) throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        return execute(scriptId, parameters, null) == 0;
+    }
+
+    @Override
+    public int execute(UUID scriptId, Object[] parameters, OutputSink executionSink) throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        return execute(scriptId, parameters, executionSink, null);
+    }
+
+    /**
+     * Resources are accounted only if there is a {@link #cgroupManager} and script is run in a new process
+     */
+    @Override
+    public int execute(UUID scriptId, Object[] parameters, OutputSink executionSink, Consumer<ResourceUsage> usageListener) 
+        throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        var start = System.nanoTime();
+        var exitCode = -1;
+
+        try {
+            exitCode = executeScript(scriptId, parameters, executionSink, usageListener);
+            return exitCode;
+        } finally {
+            meters.executed(start, exitCode);
+        }
+    }
+
+    /**
+     * Runs an script in its worker, if it's available, or in a new process
+     * @see #execute(UUID, Object[], OutputSink, Consumer)
+     */
+    private int executeScript(UUID scriptId, Object[] parameters, OutputSink executionSink, Consumer<ResourceUsage> usageListener) 
+        throws IOException, ScriptNotExistException, ScriptTimeoutException {
         var script = registeredScripts.get(scriptId);
 
         if (script == null)
             throw new ScriptNotExistException(scriptId);
         
-        int exitCode = 0;
-        log.info(String.format("Running script %s", scriptId));
+        event(Logger.Level.INFO, EVENT_RUN, "Running script %s", scriptId);
+
+        if (workerPool != null && (cgroupManager == null || script.limits() == null)) {
+            String workerCommand = String.format("%s %s ./bin/python3 ./%s", venvPath, venvExecOpts.replace("{scriptDir}", scriptId.toString()), PythonWorker.HOST_SCRIPT);
+            var workerExitCode = workerPool.run(scriptId, workerCommand, homeDir, parameters, script.timeout(), script.timeunit(), executionSink);
+
+            if (workerExitCode.isPresent())
+                return workerExitCode.getAsInt();
+
+            event(Logger.Level.INFO, EVENT_WORKER, "Worker of script %s is busy, running it in a new process", scriptId);
+        }
         
-        String runScriptCommand = String.format("%1$s %2$s ./bin/python3 ./script.py %4$s", venvPath, venvExecOpts.replace("{scriptDir}", scriptId.toString()), scriptId, Arrays.stream(parameters).map(o -> o.toString()).collect(Collectors.joining(" ")));
+        String runScriptCommand = String.format("%s %s ./bin/python3 ./script.py", venvPath, venvExecOpts.replace("{scriptDir}", scriptId.toString()));
+        // Each parameter is a separate argument, even if it's empty or has whitespaces, as in warm workers
+        List<String> arguments = new ArrayList<>(Arrays.asList(runScriptCommand.split("\\s+")));
+        Arrays.stream(parameters).map(String::valueOf).forEach(arguments::add);
+
+        var cgroup = createCgroup(script);
 
         try {
-            exitCode = runCommand(runScriptCommand, homeDir, script.timeout(), script.timeunit());
-            return exitCode == 0;
+            return runCommand(arguments, homeDir, script.timeout(), script.timeunit(), createOutputSink(scriptId, executionSink), cgroup);
         } catch (ScriptTimeoutException e) {
             throw new ScriptTimeoutException(scriptId);
+        } finally {
+            if (cgroup != null) {
+                reportUsage(script, cgroup, usageListener);
+                cgroup.close();
+            }
         }
-        
+    }
+
+    /**
+     * Creates the control group of a new execution of an script
+     * @param script Script to execute
+     * @return Created group, or null if there isn't a {@link #cgroupManager} or group can't be created and script 
+     * hasn't resource limits
+     * @throws IOException Thrown if group can't be created and script has resource limits, so script is not run 
+     * without them
+     */
+    private ExecutionCgroup createCgroup(Script script) throws IOException {
+        if (cgroupManager == null)
+            return null;
+
+        try {
+            return cgroupManager.create(String.format("%s-%s", script.id(), UUID.randomUUID()), script.limits());
+        } catch (IOException e) {
+            if (script.limits() != null)
+                throw new IOException(String.format("Resource limits of script %s can't be applied", script.id()), e);
+
+            log.warn(String.format("Control group of script %s can't be created, resources are not accounted", script.id()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the resources used by an ended execution and passes them to its listener
+     */
+    private void reportUsage(Script script, ExecutionCgroup cgroup, Consumer<ResourceUsage> usageListener) {
+        try {
+            var usage = cgroup.usage();
+
+            if (usage.oomKills() > 0) {
+                log.warn(String.format("Execution of script %s has reached its memory limit", script.id()));
+            }
+
+            if (usageListener != null) {
+                usageListener.accept(usage);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn(String.format("Resources used by script %s can't be read", script.id()), e);
+        }
+    }
+
+    /**
+     * Hits and misses of the {@link #venvPool} are also published, if it exists
+     */
+    @Override
+    public void bindMeters(MeterRegistry registry) {
+        super.bindMeters(registry);
+
+        if (venvPool != null) {
+            meters.bindVenvPool(venvPool);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (venvPool != null) {
+            venvPool.stop();
+        }
+
+        if (workerPool != null) {
+            workerPool.stop();
+        }
+
+        super.close();
+    }
+
+    @Override
+    public boolean unregisterScript(UUID id) {
+        if (workerPool != null) {
+            workerPool.evict(id);
+        }
+
+        return super.unregisterScript(id);
     }
 }
@@ -0,0 +1,262 @@
+package org.nicbrerod.scripts.manager.script.runner.py;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.ScriptOutputGobbler;
+import org.nicbrerod.scripts.manager.script.runner.exception.ScriptTimeoutException;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+
+import lombok.Getter;
+
+/**
+ * Long-lived Python process that runs an script several times without starting a new interpreter on each execution.
+ * The process runs the host script copied in the script's environment, which receives run requests from stdin and
+ * answers with the exit code of each execution through stdout. Script's output is received through stderr
+ */
+public class PythonWorker {
+    /**
+     * Name of the host script inside the script's environment
+     */
+    public static final String HOST_SCRIPT = ".worker-host.py";
+
+    /**
+     * Prefix of the lines sent by host script when an execution ends
+     */
+    private static final String DONE_PREFIX = "DONE ";
+
+    /**
+     * Logger object used to show script's output and some information about worker lifetime
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * ID related to script run by this worker
+     */
+    @Getter
+    private final UUID scriptId;
+
+    /**
+     * Python process running the host script
+     */
+    private final Process process;
+
+    /**
+     * Writer used to send run requests to the host script
+     */
+    private final BufferedWriter requests;
+
+    /**
+     * Sink that receives the output of all executions of this worker
+     */
+    private final OutputSink sink;
+
+    /**
+     * Sink that receives the output of the current execution, if any
+     */
+    private volatile OutputSink executionSink;
+
+    /**
+     * Execution waiting for host script's answer, if any
+     */
+    private volatile CompletableFuture<Integer> pending;
+
+    /**
+     * Indicates if worker is running an execution, a worker only runs an execution at a time
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Number of executions completed by this worker
+     */
+    @Getter
+    private volatile int runs;
+
+    /**
+     * Value of {@link System#nanoTime()} when worker ended its last execution
+     */
+    private volatile long lastUsed;
+
+    /**
+     * Starts a new worker process
+     * @param scriptId ID related to script to run
+     * @param command Command used to start the host script
+     * @param homeDir Working directory of the command
+     * @param executor Executor used to read process' streams, it needs two free threads during worker's lifetime
+     * @param sink Sink that receives the output of all executions, both streams of the script are merged and received as 
+     * {@link OutputStreamType#STDOUT}, because host script reserves its real stdout to answer requests
+     * @throws IOException Thrown if process can't be started or executor has no threads available
+     */
+    public PythonWorker(UUID scriptId, String command, String homeDir, ExecutorService executor, OutputSink sink) throws IOException {
+        this.scriptId = scriptId;
+        this.sink = sink;
+        this.process = new ProcessBuilder(command.split("\\s+")).directory(new File(homeDir)).start();
+        this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.lastUsed = System.nanoTime();
+
+        try {
+            executor.execute(this::readAnswers);
+            executor.execute(new ScriptOutputGobbler(process.getErrorStream(), OutputStreamType.STDOUT, new OutputSink() {
+                @Override
+                public void write(OutputStreamType type, ByteBuffer chunk) throws IOException {
+                    deliver(type, chunk);
+                }
+
+                @Override
+                public void endOfStream(OutputStreamType type) throws IOException {
+                    sink.endOfStream(type);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            process.destroyForcibly();
+            sink.close();
+            throw new IOException(String.format("Worker of script %s can't read process output", scriptId), e);
+        }
+    }
+
+    /**
+     * Delivers a chunk of output to the sink of the worker and to the sink of the current execution. Output and
+     * answers are read from different streams, so last bytes of an execution can arrive after its answer and be
+     * missed by its execution sink
+     */
+    private void deliver(OutputStreamType type, ByteBuffer chunk) throws IOException {
+        var position = chunk.position();
+        var limit = chunk.limit();
+        sink.write(type, chunk);
+        var current = executionSink;
+
+        if (current != null) {
+            current.write(type, chunk.limit(limit).position(position));
+        }
+    }
+
+    /**
+     * Reads all answers from host script and completes the pending execution with the received exit code. If
+     * process ends, pending execution is completed exceptionally
+     */
+    private void readAnswers() {
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                var current = pending;
+
+                if (line.startsWith(DONE_PREFIX) && current != null) {
+                    current.complete(Integer.parseInt(line.substring(DONE_PREFIX.length()).trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn(String.format("Error reading answers from worker of script %s", scriptId), e);
+        }
+
+        var current = pending;
+
+        if (current != null) {
+            current.completeExceptionally(new IOException(String.format("Worker of script %s has stopped", scriptId)));
+        }
+    }
+
+    /**
+     * Tries to reserve this worker to run an execution
+     * @return True if worker was free and now is reserved by caller
+     */
+    public boolean tryAcquire() {
+        return busy.compareAndSet(false, true);
+    }
+
+    /**
+     * Frees a worker previously reserved with {@link #tryAcquire()}
+     */
+    public void release() {
+        lastUsed = System.nanoTime();
+        busy.set(false);
+    }
+
+    /**
+     * Runs the script once. Worker must be reserved with {@link #tryAcquire()} before calling this method
+     * @param parameters Parameters to pass to script in this execution, each one is a separate argument of the script
+     * @param timeout Amount of time to wait for script to run, if zero or less, waits indefinitely
+     * @param timeUnit Time unit related to timeout
+     * @param executionSink Sink that receives the output of this execution only, or null if not needed
+     * @return Exit code of the execution
+     * @throws IOException Thrown if request can't be sent or worker stops during the execution
+     * @throws ScriptTimeoutException Thrown if execution exceeds the timeout. Worker must be closed after it
+     */
+    public int run(Object[] parameters, long timeout, TimeUnit timeUnit, OutputSink executionSink) throws IOException, ScriptTimeoutException {
+        var execution = new CompletableFuture<Integer>();
+        pending = execution;
+        this.executionSink = executionSink;
+
+        // Count of parameters goes first, so empty parameters are sent as empty fields instead of being lost
+        requests.write(Stream.concat(Stream.of(String.valueOf(parameters.length)), Arrays.stream(parameters)
+            .map(param -> Base64.getEncoder().encodeToString(String.valueOf(param).getBytes(StandardCharsets.UTF_8))))
+            .collect(Collectors.joining(" ")));
+        requests.newLine();
+        requests.flush();
+
+        try {
+            return timeout <= 0 ? execution.get() : execution.get(timeout, timeUnit);
+        } catch (TimeoutException e) {
+            throw new ScriptTimeoutException(scriptId);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            pending = null;
+            this.executionSink = null;
+            runs++;
+        }
+    }
+
+    /**
+     * Checks if worker process is still running
+     * @return True if process is alive
+     */
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Time that worker has been waiting for a new execution
+     * @param timeUnit Time unit of returned value
+     * @return Time since last execution ended
+     */
+    public long idleTime(TimeUnit timeUnit) {
+        return timeUnit.convert(System.nanoTime() - lastUsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops worker process
+     */
+    public void close() {
+        process.destroy();
+
+        try {
+            sink.close();
+        } catch (IOException e) {
+            log.warn(String.format("Error closing output of worker of script %s", scriptId), e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.nicbrerod.scripts.manager.script.runner.py;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.exception.ScriptTimeoutException;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+
+/**
+ * Set of warm workers, one per registered script, used to run scripts without paying the interpreter startup and
+ * imports on each execution. Workers are recycled after a number of executions, to release any state leaked by
+ * scripts, and evicted when they stay idle too much time
+ */
+public class PythonWorkerPool {
+    /**
+     * Logger object used to show some information about workers lifetime
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Number of executions after which a worker is stopped and replaced by a new one
+     */
+    private final int maxRuns;
+
+    /**
+     * Time, in milliseconds, that a worker can stay without executions before being stopped
+     */
+    private final long idleTimeout;
+
+    /**
+     * Map with the current worker of each script
+     */
+    private final Map<UUID, PythonWorker> workers = new ConcurrentHashMap<>();
+
+    /**
+     * Executor service used to check periodically for idle workers
+     */
+    private final ScheduledExecutorService evictionExecutor;
+
+    /**
+     * Executor used by workers to read their processes' streams
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Factory of the sinks that receive the output of each worker, it receives the id of the worker's script
+     */
+    private final Function<UUID, OutputSink> sinkFactory;
+
+    public PythonWorkerPool(int maxRuns, long idleTimeout, ExecutorService executor, Function<UUID, OutputSink> sinkFactory) {
+        this.maxRuns = maxRuns;
+        this.idleTimeout = idleTimeout;
+        this.executor = executor;
+        this.sinkFactory = sinkFactory;
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "py-worker-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var checkRate = Math.max(idleTimeout / 2, 1);
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdle, checkRate, checkRate, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs an script in its worker, starting it if script has no worker yet
+     * @param scriptId ID related to script to run
+     * @param command Command used to start the worker's host script
+     * @param homeDir Working directory of the command
+     * @param parameters Parameters to pass to script in this execution
+     * @param timeout Amount of time to wait for script to run, if zero or less, waits indefinitely
+     * @param timeUnit Time unit related to timeout
+     * @param executionSink Sink that receives the output of this execution only, or null if not needed
+     * @return Exit code of the execution, or empty if script's worker is running another execution, so caller
+     * must run the script by itself
+     * @throws IOException Thrown if worker can't be started or stops during the execution
+     * @throws ScriptTimeoutException Thrown if execution exceeds the timeout
+     */
+    public OptionalInt run(UUID scriptId, String command, String homeDir, Object[] parameters, long timeout, TimeUnit timeUnit, 
+        OutputSink executionSink) throws IOException, ScriptTimeoutException {
+        PythonWorker worker;
+
+        synchronized (workers) {
+            worker = workers.get(scriptId);
+
+            if (worker == null || !worker.isAlive()) {
+                log.info(String.format("Starting worker for script %s", scriptId));
+                worker = new PythonWorker(scriptId, command, homeDir, executor, sinkFactory.apply(scriptId));
+                workers.put(scriptId, worker);
+            }
+        }
+
+        if (!worker.tryAcquire())
+            return OptionalInt.empty();
+
+        try {
+            var exitCode = worker.run(parameters, timeout, timeUnit, executionSink);
+
+            if (worker.getRuns() >= maxRuns) {
+                log.info(String.format("Recycling worker for script %s after %d executions", scriptId, worker.getRuns()));
+                retire(worker);
+            }
+
+            return OptionalInt.of(exitCode);
+        } catch (IOException | ScriptTimeoutException e) {
+            retire(worker);
+            throw e;
+        } finally {
+            worker.release();
+        }
+    }
+
+    /**
+     * Stops the worker of an script, if exists
+     * @param scriptId ID related to script
+     */
+    public void evict(UUID scriptId) {
+        var worker = workers.remove(scriptId);
+
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    /**
+     * Number of workers currently started
+     * @return Count of workers
+     */
+    public int size() {
+        return workers.size();
+    }
+
+    /**
+     * Stops all workers and idle checking
+     */
+    public void stop() {
+        evictionExecutor.shutdownNow();
+        workers.keySet().forEach(this::evict);
+    }
+
+    /**
+     * Removes a worker from the pool and stops it
+     * @param worker Worker to retire
+     */
+    private void retire(PythonWorker worker) {
+        workers.remove(worker.getScriptId(), worker);
+        worker.close();
+    }
+
+    /**
+     * Stops all workers which are not running an execution and have exceeded {@link #idleTimeout}
+     */
+    private void evictIdle() {
+        workers.values().forEach(worker -> {
+            if (worker.idleTime(TimeUnit.MILLISECONDS) > idleTimeout && worker.tryAcquire()) {
+                log.info(String.format("Stopping idle worker for script %s", worker.getScriptId()));
+                retire(worker);
+            }
+        });
+    }
+}
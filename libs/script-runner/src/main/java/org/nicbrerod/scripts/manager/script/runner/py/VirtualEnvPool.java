@@ -0,0 +1,259 @@
+package org.nicbrerod.scripts.manager.script.runner.py;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Pool of empty Python virtual environments created in background inside the script runner's home directory.
+ * Creating a virtual environment forks a new Python process and takes some seconds, so, keeping some of them
+ * ready allows script registration to just claim one of them and rename it to the script's folder
+ */
+public class VirtualEnvPool {
+    /**
+     * Name of the folder, inside home directory, where pooled environments are stored
+     */
+    public static final String POOL_DIR = ".venv-pool";
+
+    /**
+     * Logger object used to show some information about pool operations
+     */
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Working directory of the script runner that owns this pool
+     */
+    private final String homeDir;
+
+    /**
+     * Maximum number of ready environments to keep in the pool
+     */
+    private final int size;
+
+    /**
+     * Time, in milliseconds, between two consecutive pool refills. On each refill, only one environment is created
+     */
+    private final long refillRate;
+
+    /**
+     * Logic used to create a new virtual environment. It receives the path of the new environment, relative to
+     * {@link #homeDir}, and returns true if environment was successfully created
+     */
+    private final Predicate<String> venvCreator;
+
+    /**
+     * Relative paths of all environments ready to be claimed
+     */
+    private final Queue<String> ready = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of environments ready or being created. Used to not exceed {@link #size}
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    /**
+     * Number of claims served with a pooled environment
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of claims that found the pool empty
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Executor service used to refill the pool periodically
+     */
+    private ScheduledExecutorService refillExecutor;
+
+    /**
+     * Creates a pool, that is not filled until {@link #start()} is called
+     * @param homeDir Working directory of the script runner that owns this pool
+     * @param size Maximum number of ready environments, must be greater than zero
+     * @param refillRate Time, in milliseconds, between two consecutive pool refills, must be greater than zero
+     * @param venvCreator Logic used to create a new virtual environment
+     */
+    public VirtualEnvPool(String homeDir, int size, long refillRate, Predicate<String> venvCreator) {
+        if (size <= 0)
+            throw new IllegalArgumentException(String.format("Pool size must be greater than zero, but was %d", size));
+
+        if (refillRate <= 0)
+            throw new IllegalArgumentException(String.format("Pool refill rate must be greater than zero, but was %d", refillRate));
+
+        this.homeDir = homeDir;
+        this.size = size;
+        this.refillRate = refillRate;
+        this.venvCreator = venvCreator;
+    }
+
+    /**
+     * Removes any environment left in the pool folder by a previous execution and starts the periodical refill
+     * @throws IOException Thrown if pool folder can't be cleaned or created
+     */
+    public synchronized void start() throws IOException {
+        if (refillExecutor != null)
+            return;
+
+        var poolPath = Paths.get(homeDir, POOL_DIR);
+
+        if (Files.exists(poolPath)) {
+            deleteRecursively(poolPath);
+        }
+
+        Files.createDirectories(poolPath);
+
+        refillExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "venv-pool-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refillExecutor.scheduleWithFixedDelay(this::refill, 0, refillRate, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodical refill. Environments already created remain in the pool folder until next {@link #start()}
+     */
+    public synchronized void stop() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+            refillExecutor = null;
+        }
+    }
+
+    /**
+     * Creates a new environment if pool has not reached its size
+     */
+    private void refill() {
+        if (reserved.incrementAndGet() > size) {
+            reserved.decrementAndGet();
+            return;
+        }
+
+        var relativePath = String.format("%s/%s", POOL_DIR, UUID.randomUUID());
+
+        try {
+            if (venvCreator.test(relativePath)) {
+                ready.add(relativePath);
+            } else {
+                reserved.decrementAndGet();
+                log.warn(String.format("Error creating pooled environment '%s'", relativePath));
+            }
+        } catch (Exception e) {
+            reserved.decrementAndGet();
+            log.warn(String.format("Error creating pooled environment '%s'", relativePath), e);
+        }
+    }
+
+    /**
+     * Tries to take an environment from the pool and move it to the passed folder. If the folder already exists, 
+     * like when a script is updated, it's replaced by the pooled environment
+     * @param target Path of the folder where the environment must be placed, relative to home directory
+     * @return True if an environment was claimed and moved to the target folder, false if pool is empty or target 
+     * folder can't be replaced, and caller must create the environment itself
+     */
+    public boolean claim(String target) {
+        var targetPath = Paths.get(homeDir, target);
+
+        try {
+            if (Files.exists(targetPath)) {
+                deleteRecursively(targetPath);
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Error removing previous environment '%s'", target), e);
+        }
+
+        String pooled;
+
+        while ((pooled = ready.poll()) != null) {
+            var pooledPath = Paths.get(homeDir, pooled);
+
+            try {
+                Files.move(pooledPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+                reserved.decrementAndGet();
+                hits.incrementAndGet();
+                return true;
+            } catch (IOException e) {
+                if (Files.isDirectory(pooledPath)) {
+                    // pooled environment is intact, so the target is the problem and any other environment would fail too
+                    ready.add(pooled);
+                    log.warn(String.format("Error moving pooled environment to '%s'", target), e);
+                    break;
+                }
+
+                reserved.decrementAndGet();
+                log.warn(String.format("Error claiming pooled environment '%s', discarding it", pooled), e);
+                discard(pooledPath);
+            }
+        }
+
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Deletes what remains of a pooled environment that can't be claimed
+     * @param pooledPath Path of the environment
+     */
+    private void discard(Path pooledPath) {
+        try {
+            if (Files.exists(pooledPath)) {
+                deleteRecursively(pooledPath);
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Error deleting discarded environment '%s'", pooledPath), e);
+        }
+    }
+
+    /**
+     * Number of environments ready to be claimed
+     * @return Current number of pooled environments
+     */
+    public int available() {
+        return ready.size();
+    }
+
+    /**
+     * Number of claims served with a pooled environment
+     * @return Count of pool hits since pool creation
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of claims that found the pool empty
+     * @return Count of pool misses since pool creation
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Deletes a folder and all its content
+     * @param path Folder to delete
+     * @throws IOException Thrown if folder can't be walked
+     */
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.nicbrerod.scripts.manager.script.runner.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.jboss.logging.Logger;
+import org.nicbrerod.scripts.manager.script.runner.model.PreparedScript;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceLimits;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+
+import lombok.Getter;
+
+/**
+ * Registry of prepared scripts stored in disk, so a restarted script runner can recover its scripts without
+ * preparing their environments again. Changes are appended to a log file, one checksummed record per change,
+ * and, when the log reaches {@link #snapshotThreshold} records, all scripts are written to a snapshot file and
+ * the log is emptied.
+ *
+ * When the registry is opened, it loads the snapshot and replays the log. A record partially written when
+ * the process stopped is detected by its length or checksum, and it's discarded with all records after it
+ */
+public class DurableScriptRegistry implements Closeable {
+    /**
+     * Name of the folder, inside home directory, where registry files are stored
+     */
+    public static final String REGISTRY_DIR = ".registry";
+
+    /**
+     * Default number of records of the log from which a snapshot is written
+     */
+    public static final int DEFAULT_SNAPSHOT_THRESHOLD = 1024;
+
+    /**
+     * Name of the log file
+     */
+    private static final String LOG_FILE = "registry.log";
+
+    /**
+     * Name of the snapshot file
+     */
+    private static final String SNAPSHOT_FILE = "registry.snapshot";
+
+    /**
+     * Types of record
+     */
+    private static final byte RECORD_PUT = 1, RECORD_REMOVE = 2;
+
+    /**
+     * Size of the header of a record: length and checksum of its content
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Maximum size of the content of a record, greater lengths are considered corrupted
+     */
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    /**
+     * Folder where registry files are stored
+     */
+    private final Path folder;
+
+    /**
+     * Number of records of the log from which a snapshot is written
+     */
+    @Getter
+    private final int snapshotThreshold;
+
+    /**
+     * Registered scripts, by their id, in registration order
+     */
+    private final Map<UUID, PreparedScript> scripts = new LinkedHashMap<>();
+
+    /**
+     * Channel used to append records to the log file
+     */
+    private FileChannel logChannel;
+
+    /**
+     * Number of records in the log file
+     */
+    @Getter
+    private int logRecords;
+
+    public DurableScriptRegistry(String homeDir) throws IOException {
+        this(homeDir, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * Opens the registry stored in a home directory, creating it if not exists
+     * @param homeDir Working directory of the script runner that owns the registry
+     * @param snapshotThreshold Number of records of the log from which a snapshot is written
+     * @throws IOException Thrown if registry files can't be created or read
+     */
+    public DurableScriptRegistry(String homeDir, int snapshotThreshold) throws IOException {
+        this.folder = Paths.get(homeDir, REGISTRY_DIR);
+        this.snapshotThreshold = snapshotThreshold;
+        Files.createDirectories(folder);
+        recover();
+    }
+
+    /**
+     * Obtains all registered scripts
+     * @return Registered scripts, in registration order
+     */
+    public synchronized Collection<PreparedScript> getScripts() {
+        return new ArrayList<>(scripts.values());
+    }
+
+    /**
+     * Stores an script whose environment has been prepared, replacing the previous version if exists
+     * @param script Prepared script
+     * @throws IOException Thrown if change can't be written in disk
+     */
+    public synchronized void put(Script script) throws IOException {
+        var prepared = new PreparedScript(script, System.currentTimeMillis());
+        append(encodePut(prepared));
+        scripts.remove(script.id());
+        scripts.put(script.id(), prepared);
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes an script
+     * @param id ID related to script
+     * @throws IOException Thrown if change can't be written in disk
+     */
+    public synchronized void remove(UUID id) throws IOException {
+        if (!scripts.containsKey(id))
+            return;
+
+        append(encodeRemove(id));
+        scripts.remove(id);
+        compactIfNeeded();
+    }
+
+    /**
+     * Writes all registered scripts to the snapshot file and empties the log. Snapshot is written in a temporary
+     * file and moved over the previous one, so a failure leaves the previous snapshot and the log untouched
+     * @throws IOException Thrown if snapshot can't be written
+     */
+    public synchronized void snapshot() throws IOException {
+        var tmp = folder.resolve(SNAPSHOT_FILE + ".tmp");
+
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (var prepared : scripts.values()) {
+                write(channel, encodePut(prepared));
+            }
+
+            channel.force(true);
+        }
+
+        Files.move(tmp, folder.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Records of the log are already in the snapshot, replaying them again would be harmless
+        logChannel.truncate(0);
+        logChannel.force(true);
+        logRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        logChannel.close();
+    }
+
+    /**
+     * Loads the snapshot and replays the log, discarding the records after the first invalid one
+     */
+    private void recover() throws IOException {
+        var snapshot = folder.resolve(SNAPSHOT_FILE);
+
+        if (Files.exists(snapshot)) {
+            var content = Files.readAllBytes(snapshot);
+
+            if (replay(content).length() < content.length) {
+                log.warn("Script registry snapshot is corrupted, ignoring its invalid records");
+            }
+        }
+
+        var logFile = folder.resolve(LOG_FILE);
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var content = Files.readAllBytes(logFile);
+        var valid = replay(content);
+        logRecords = valid.records();
+
+        if (valid.length() < content.length) {
+            log.warn(String.format("Discarding %d bytes of incomplete records at the end of script registry log", content.length - valid.length()));
+            logChannel.truncate(valid.length());
+            logChannel.force(true);
+        }
+
+        logChannel.position(valid.length());
+        log.info(String.format("Recovered %d scripts from registry", scripts.size()));
+    }
+
+    /**
+     * Result of replaying a file: number of valid records and length of the part of the file that contains them
+     */
+    private record Replayed(int records, int length) {}
+
+    /**
+     * Applies all valid records of a file to {@link #scripts}
+     */
+    private Replayed replay(byte[] content) {
+        var buffer = ByteBuffer.wrap(content);
+        var records = 0;
+
+        while (buffer.remaining() > 0) {
+            var start = buffer.position();
+
+            try {
+                if (buffer.remaining() < RECORD_HEADER_SIZE)
+                    throw new EOFException();
+
+                var length = buffer.getInt();
+                var checksum = buffer.getLong();
+
+                if (length < 0 || length > MAX_RECORD_SIZE || buffer.remaining() < length)
+                    throw new EOFException();
+
+                var record = new byte[length];
+                buffer.get(record);
+
+                if (checksum(record) != checksum)
+                    throw new IOException("Invalid checksum");
+
+                apply(record);
+                records++;
+            } catch (IOException e) {
+                return new Replayed(records, start);
+            }
+        }
+
+        return new Replayed(records, content.length);
+    }
+
+    /**
+     * Applies a record to {@link #scripts}
+     */
+    private void apply(byte[] record) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(record));
+        var type = in.readByte();
+        var id = new UUID(in.readLong(), in.readLong());
+
+        switch (type) {
+            case RECORD_PUT:
+                var content = readString(in);
+                var dependencies = new String[in.readInt()];
+
+                for (int i = 0; i < dependencies.length; i++) {
+                    dependencies[i] = readString(in);
+                }
+
+                var timeout = in.readLong();
+                var timeUnit = readString(in);
+                var preparedAt = in.readLong();
+                // Records written before resource limits were supported end after preparation time
+                var limits = in.available() > 0 && in.readBoolean()
+                    ? new ResourceLimits(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt()) : null;
+                scripts.remove(id);
+                scripts.put(id, new PreparedScript(new Script(id, content, dependencies, timeout,
+                    timeUnit != null ? TimeUnit.valueOf(timeUnit) : null, limits), preparedAt));
+                break;
+            case RECORD_REMOVE:
+                scripts.remove(id);
+                break;
+            default:
+                throw new IOException(String.format("Unknown record type %d", type));
+        }
+    }
+
+    private static byte[] encodePut(PreparedScript prepared) throws IOException {
+        var script = prepared.script();
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_PUT);
+        out.writeLong(script.id().getMostSignificantBits());
+        out.writeLong(script.id().getLeastSignificantBits());
+        writeString(out, script.script());
+        var dependencies = script.dependencies() != null ? script.dependencies() : new String[0];
+        out.writeInt(dependencies.length);
+
+        for (var dependency : dependencies) {
+            writeString(out, dependency);
+        }
+
+        out.writeLong(script.timeout());
+        writeString(out, script.timeunit() != null ? script.timeunit().name() : null);
+        out.writeLong(prepared.preparedAt());
+        out.writeBoolean(script.limits() != null);
+
+        if (script.limits() != null) {
+            out.writeLong(script.limits().cpuQuota());
+            out.writeLong(script.limits().cpuPeriod());
+            out.writeLong(script.limits().memoryMax());
+            out.writeLong(script.limits().pidsMax());
+            out.writeInt(script.limits().ioWeight());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRemove(UUID id) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_REMOVE);
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a nullable string as its length in bytes, -1 for null, and its UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+
+        if (length < 0)
+            return null;
+
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(byte[] record) {
+        var crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+
+    /**
+     * Appends a record to the log, waiting for it to be written in disk
+     */
+    private void append(byte[] record) throws IOException {
+        write(logChannel, record);
+        logChannel.force(false);
+        logRecords++;
+    }
+
+    private static void write(FileChannel channel, byte[] record) throws IOException {
+        var buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        buffer.putInt(record.length).putLong(checksum(record)).put(record).flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (logRecords >= snapshotThreshold) {
+            snapshot();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+# Host process used by PythonScriptRunner's warm workers. It keeps the interpreter, and all modules imported by
+# the script, loaded between executions. Each line received from stdin is a run request: the number of parameters
+# followed by each parameter encoded in base64, separated by single spaces, so an empty parameter is an empty field.
+# Script receives them as separate arguments, as a script run in a new process. Original stdout is reserved to answer
+# with the exit code of each execution, so script's output is redirected to stderr
+
+import base64
+import os
+import runpy
+import sys
+import traceback
+
+protocol = os.fdopen(os.dup(1), 'w')
+os.dup2(2, 1)
+home = os.getcwd()
+
+for line in sys.stdin:
+    count, *params = line.rstrip('\n').split(' ')
+    sys.argv = ['./script.py'] + [base64.b64decode(param).decode('utf-8') for param in params[:int(count)]]
+    exit_code = 0
+
+    try:
+        runpy.run_path('./script.py', run_name='__main__')
+    except SystemExit as e:
+        if e.code is None:
+            exit_code = 0
+        elif isinstance(e.code, int):
+            exit_code = e.code
+        else:
+            print(e.code, file=sys.stderr)
+            exit_code = 1
+    except BaseException:
+        traceback.print_exc()
+        exit_code = 1
+    finally:
+        os.chdir(home)
+
+    sys.stdout.flush()
+    sys.stderr.flush()
+    protocol.write('DONE %d\n' % exit_code)
+    protocol.flush()
@@ -0,0 +1,115 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.cgroup.CgroupManager;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceLimits;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceUsage;
+
+/**
+ * Tests used to check that {@link CgroupManager} applies resource limits to execution groups, that wrapped commands
+ * join their group before running and that resource usage is read back. A regular folder is used as delegated group,
+ * with the interface files that the kernel would create, so tests don't need cgroup v2 or privileges
+ */
+public class CgroupManagerTest {
+
+    /**
+     * Local path used as delegated group
+     */
+    private static final String ROOT_PATH = "./cgroup-manager-test";
+
+    @Before
+    public void setUp() throws IOException {
+        var root = Files.createDirectories(Paths.get(ROOT_PATH));
+        Files.writeString(root.resolve("cgroup.controllers"), "cpuset cpu memory pids\n");
+        Files.writeString(root.resolve("cgroup.subtree_control"), "");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        var path = Paths.get(ROOT_PATH);
+
+        if (Files.exists(path)) {
+            try (var files = Files.walk(path)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Checks that available controllers are enabled, limits are written in the interface files of the group and
+     * limits of a controller that isn't available are ignored
+     * @throws IOException Thrown if group files can't be written or read
+     */
+    @Test
+    public void limitsTest() throws IOException {
+        var manager = new CgroupManager(ROOT_PATH);
+        assertEquals("Unexpected enabled controllers", Set.of(CgroupManager.CPU, CgroupManager.MEMORY, CgroupManager.PIDS), manager.getControllers());
+
+        var group = manager.create("limited", new ResourceLimits(0.5, 256 * 1024 * 1024, 64, 200));
+        assertEquals("CPU limit has not been applied", "50000 100000", Files.readString(group.getPath().resolve("cpu.max")));
+        assertEquals("Memory limit has not been applied", "268435456", Files.readString(group.getPath().resolve("memory.max")));
+        assertEquals("Pids limit has not been applied", "64", Files.readString(group.getPath().resolve("pids.max")));
+        assertFalse("Limit of an unavailable controller has been applied", Files.exists(group.getPath().resolve("io.weight")));
+
+        var unlimited = manager.create("unlimited", null);
+        assertFalse("Limit has been applied to a group without limits", Files.exists(unlimited.getPath().resolve("cpu.max")));
+    }
+
+    /**
+     * Checks that a wrapped command joins its group before running, that it isn't run if it can't join it, and that
+     * accounting files of the group are read as resource usage
+     * @throws IOException Thrown if group files can't be written or read
+     * @throws InterruptedException Thrown if test is interrupted while waiting for processes
+     */
+    @Test
+    public void wrapAndUsageTest() throws IOException, InterruptedException {
+        var manager = new CgroupManager(ROOT_PATH);
+        var group = manager.create("execution", null);
+
+        var process = new ProcessBuilder(group.wrap(List.of("echo", "joined"))).start();
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("Wrapped command has failed", 0, process.waitFor());
+        assertEquals("Wrapped command has not been run", "joined", output.trim());
+        assertEquals("Process has not joined its group", Long.toString(process.pid()), Files.readString(group.getPath().resolve("cgroup.procs")).trim());
+
+        Files.writeString(group.getPath().resolve("cpu.stat"), "usage_usec 1500\nuser_usec 1000\nsystem_usec 500\nnr_periods 10\nnr_throttled 2\nthrottled_usec 300\n");
+        Files.writeString(group.getPath().resolve("memory.peak"), "4096\n");
+        Files.writeString(group.getPath().resolve("memory.events"), "low 0\nhigh 0\nmax 1\noom 1\noom_kill 1\n");
+        assertEquals("Unexpected resource usage", new ResourceUsage(1500, 300, 4096, 1), group.usage());
+
+        var unaccounted = manager.create("unaccounted", null);
+        assertEquals("Missing accounting files have not been read as defaults", new ResourceUsage(0, 0, -1, 0), unaccounted.usage());
+
+        // A folder can't be written, like a group that can't be joined
+        Files.createDirectory(unaccounted.getPath().resolve("cgroup.procs"));
+        process = new ProcessBuilder(unaccounted.wrap(List.of("echo", "outside"))).start();
+        output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertNotEquals("Command that can't join its group has not failed", 0, process.waitFor());
+        assertTrue("Command that can't join its group has been run", output.isEmpty());
+    }
+
+    /**
+     * Checks that a folder that isn't a cgroup v2 group is rejected
+     */
+    @Test(expected = IOException.class)
+    public void invalidRootTest() throws IOException {
+        new CgroupManager(Paths.get(ROOT_PATH, "missing").toString());
+    }
+}
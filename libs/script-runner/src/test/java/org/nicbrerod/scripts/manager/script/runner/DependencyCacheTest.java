@@ -0,0 +1,104 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.py.DependencyCache;
+
+/**
+ * Tests used to check the correct operation of {@link DependencyCache} class. Environments are simulated
+ * with a folder structure equivalent to the one generated by virtualenv, so no Python interpreter is needed
+ */
+public class DependencyCacheTest {
+
+    /**
+     * Local path used as home directory of the cache
+     */
+    private static final String HOST_PATH = "./deps-cache-test";
+
+    /**
+     * Creates a folder structure equivalent to a virtual environment
+     * @param relativePath Path of the environment, relative to {@link #HOST_PATH}
+     */
+    private static void fakeVenv(String relativePath) {
+        try {
+            var envPath = Paths.get(HOST_PATH, relativePath);
+            Files.createDirectories(envPath.resolve("lib/python3.11/site-packages"));
+            Files.writeString(envPath.resolve("pyvenv.cfg"), "home = /usr/local/bin\nversion_info = 3.11.4.final.0\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks that dependencies in different order and case generate the same key, and different interpreter versions not
+     */
+    @Test
+    public void keyNormalizationTest() {
+        var key = DependencyCache.key("3.11.4", new String[] { "pandas==2.0.3", "requests" });
+
+        assertEquals("Same dependencies generate different keys", key, DependencyCache.key("3.11.4", new String[] { " Requests", "pandas==2.0.3", "requests" }));
+        assertNotEquals("Different interpreters generate the same key", key, DependencyCache.key("3.10.2", new String[] { "pandas==2.0.3", "requests" }));
+    }
+
+    /**
+     * Checks that two scripts with same dependencies share the same site-packages folder, built only once
+     * @throws IOException Thrown if any I/O operation over environments fails
+     */
+    @Test
+    public void sharedEnvironmentTest() throws IOException {
+        var builds = new AtomicInteger();
+        var cache = new DependencyCache(HOST_PATH, (relativePath, dependencies) -> {
+            builds.incrementAndGet();
+            fakeVenv(relativePath);
+
+            for (var dependency : dependencies) {
+                new File(Paths.get(HOST_PATH, relativePath, "lib/python3.11/site-packages").toFile(), dependency).mkdir();
+            }
+
+            return true;
+        });
+
+        fakeVenv("first");
+        fakeVenv("second");
+
+        assertTrue("Error linking first environment", cache.link("first", new String[] { "pandas" }));
+        assertTrue("Error linking second environment", cache.link("second", new String[] { "PANDAS" }));
+
+        assertEquals("Shared environment has been built more than once", 1, builds.get());
+        assertEquals("Cache hits are not the expected", 1, cache.getHits());
+        assertEquals("Cache misses are not the expected", 1, cache.getMisses());
+        assertTrue("First environment not linked", Files.isSymbolicLink(Paths.get(HOST_PATH, "first/lib/python3.11/site-packages")));
+        assertTrue("Dependency not visible from second environment", Files.isDirectory(Paths.get(HOST_PATH, "second/lib/python3.11/site-packages/pandas")));
+    }
+
+    /**
+     * Used to clear local-generated files between tests
+     * @throws IOException Throws if any I/O operation fails
+     */
+    @Before
+    @After
+    public void cleanHostPath() throws IOException {
+        var hostPath = Paths.get(HOST_PATH);
+
+        if (Files.exists(hostPath)) {
+            Files.walk(hostPath)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+}
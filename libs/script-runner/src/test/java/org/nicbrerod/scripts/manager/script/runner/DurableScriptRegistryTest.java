@@ -0,0 +1,238 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.exception.ScriptNotExistException;
+import org.nicbrerod.scripts.manager.script.runner.model.ResourceLimits;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.registry.DurableScriptRegistry;
+
+/**
+ * Tests used to check that {@link DurableScriptRegistry} recovers registered scripts after reopening it, also after
+ * snapshots and incomplete writes, and that a script runner reuses the environments of recovered scripts
+ */
+public class DurableScriptRegistryTest {
+
+    /**
+     * Local path used as home directory of the registry
+     */
+    private static final String HOST_PATH = "./durable-registry-test";
+
+    /**
+     * Script runner that simulates environments with a set of prepared scripts
+     */
+    private static class FakeScriptRunner extends ScriptRunner {
+        private final Set<UUID> environments;
+        private final AtomicInteger preparations = new AtomicInteger();
+        private volatile boolean failPreparations;
+
+        private FakeScriptRunner(Set<UUID> environments) {
+            super(1);
+            this.environments = environments;
+        }
+
+        @Override
+        protected boolean prepareScript(Script script) {
+            preparations.incrementAndGet();
+
+            if (failPreparations)
+                return false;
+
+            environments.add(script.id());
+            return true;
+        }
+
+        @Override
+        protected boolean isPrepared(Script script) {
+            return environments.contains(script.id());
+        }
+
+        @Override
+        public boolean runScript(UUID scriptId, Object[] parameters) throws ScriptNotExistException {
+            return true;
+        }
+    }
+
+    /**
+     * Waits until a runner has prepared again all recovered scripts
+     * @param runner Runner that restored a registry
+     * @throws InterruptedException Thrown if system interrupts the wait
+     */
+    private static void awaitRestored(ScriptRunner runner) throws InterruptedException {
+        for (int i = 0; i < 100 && runner.getPendingRestores() > 0; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals("Recovered scripts have not been prepared", 0, runner.getPendingRestores());
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        var path = Paths.get(HOST_PATH);
+
+        if (Files.exists(path)) {
+            try (var files = Files.walk(path)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Checks that registrations, updates and removals are recovered after reopening the registry
+     * @throws IOException Thrown if registry files can't be written or read
+     */
+    @Test
+    public void recoveryTest() throws IOException {
+        var first = new Script(UUID.randomUUID(), "print('first')", new String[] { "requests" }, 10, TimeUnit.SECONDS);
+        var second = new Script(UUID.randomUUID(), "print('second')");
+        var updated = new Script(first.id(), "print('updated')", new String[] { "pandas", "requests" }, 5, TimeUnit.MINUTES,
+            new ResourceLimits(0.5, 256 * 1024 * 1024, 64, 100));
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            registry.put(first);
+            registry.put(second);
+            registry.put(updated);
+            registry.remove(second.id());
+        }
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            var scripts = registry.getScripts();
+            assertEquals("Unexpected number of recovered scripts", 1, scripts.size());
+
+            var recovered = scripts.iterator().next().script();
+            assertEquals("Script content has changed", updated.script(), recovered.script());
+            assertArrayEquals("Script dependencies have changed", updated.dependencies(), recovered.dependencies());
+            assertEquals("Script timeout has changed", updated.timeout(), recovered.timeout());
+            assertEquals("Script time unit has changed", updated.timeunit(), recovered.timeunit());
+            assertEquals("Script resource limits have changed", updated.limits(), recovered.limits());
+        }
+    }
+
+    /**
+     * Checks that a snapshot is written when log reaches its threshold and scripts are recovered from it
+     * @throws IOException Thrown if registry files can't be written or read
+     */
+    @Test
+    public void snapshotTest() throws IOException {
+        try (var registry = new DurableScriptRegistry(HOST_PATH, 4)) {
+            for (int i = 0; i < 10; i++) {
+                registry.put(new Script(UUID.randomUUID(), String.format("print(%d)", i)));
+            }
+
+            assertTrue("Log has not been compacted", registry.getLogRecords() < 4);
+        }
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH, 4)) {
+            assertEquals("Scripts have not been recovered from snapshot", 10, registry.getScripts().size());
+        }
+    }
+
+    /**
+     * Checks that an incomplete record at the end of the log is discarded and next records are written after the
+     * valid ones
+     * @throws IOException Thrown if registry files can't be written or read
+     */
+    @Test
+    public void incompleteRecordTest() throws IOException {
+        var first = new Script(UUID.randomUUID(), "print('first')");
+        var second = new Script(UUID.randomUUID(), "print('second')");
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            registry.put(first);
+        }
+
+        Files.write(Paths.get(HOST_PATH, DurableScriptRegistry.REGISTRY_DIR, "registry.log"), new byte[] { 0, 0, 1, 0, 42, 42 },
+            StandardOpenOption.APPEND);
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            assertEquals("Valid record has not been recovered", 1, registry.getScripts().size());
+            registry.put(second);
+        }
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            assertEquals("Record written after an incomplete one has not been recovered", 2, registry.getScripts().size());
+        }
+    }
+
+    /**
+     * Checks that a restarted runner registers recovered scripts without preparing them again if their environment
+     * is still valid, and prepares again the rest in background
+     * @throws IOException Thrown if registry files can't be written or read
+     * @throws InterruptedException Thrown if system interrupts the wait for background preparations
+     */
+    @Test
+    public void restoreTest() throws IOException, InterruptedException {
+        Set<UUID> environments = ConcurrentHashMap.newKeySet();
+        var kept = new Script(UUID.randomUUID(), "print('kept')");
+        var lost = new Script(UUID.randomUUID(), "print('lost')");
+        var removed = new Script(UUID.randomUUID(), "print('removed')");
+
+        try (var runner = new FakeScriptRunner(environments)) {
+            runner.restore(new DurableScriptRegistry(HOST_PATH));
+            assertTrue("Error registering script", runner.registerScript(kept));
+            assertTrue("Error registering script", runner.registerScript(lost));
+            assertTrue("Error registering script", runner.registerScript(removed));
+            runner.unregisterScript(removed.id());
+        }
+
+        environments.remove(lost.id());
+
+        try (var runner = new FakeScriptRunner(environments)) {
+            assertEquals("Valid environment has not been reused", 1, runner.restore(new DurableScriptRegistry(HOST_PATH)));
+            awaitRestored(runner);
+            assertEquals("Invalid environment has not been prepared again", 1, runner.preparations.get());
+            assertTrue("Script has not been restored", runner.isRegistered(kept.id()));
+            assertTrue("Script has not been restored", runner.isRegistered(lost.id()));
+            assertFalse("Unregistered script has been restored", runner.isRegistered(removed.id()));
+        }
+    }
+
+    /**
+     * Checks that a recovered script whose environment can't be prepared again is kept in the durable registry, so
+     * it's tried again after the next restart
+     * @throws IOException Thrown if registry files can't be written or read
+     * @throws InterruptedException Thrown if system interrupts the wait for background preparations
+     */
+    @Test
+    public void failedRestoreTest() throws IOException, InterruptedException {
+        Set<UUID> environments = ConcurrentHashMap.newKeySet();
+        var script = new Script(UUID.randomUUID(), "print('lost')");
+
+        try (var runner = new FakeScriptRunner(environments)) {
+            runner.restore(new DurableScriptRegistry(HOST_PATH));
+            assertTrue("Error registering script", runner.registerScript(script));
+        }
+
+        environments.clear();
+
+        try (var runner = new FakeScriptRunner(environments)) {
+            runner.failPreparations = true;
+            assertEquals("Invalid environment has been reused", 0, runner.restore(new DurableScriptRegistry(HOST_PATH)));
+            awaitRestored(runner);
+            assertEquals("Invalid environment has not been prepared again", 1, runner.preparations.get());
+            assertFalse("Script without environment has been registered", runner.isRegistered(script.id()));
+        }
+
+        try (var registry = new DurableScriptRegistry(HOST_PATH)) {
+            assertEquals("Script has been removed from durable registry", 1, registry.getScripts().size());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionHandle;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionStatus;
+import org.nicbrerod.scripts.manager.script.runner.history.ExecutionHistory;
+import org.nicbrerod.scripts.manager.script.runner.model.ExecutionRecord;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+
+/**
+ * Tests used to check that {@link ExecutionHistory} stores the executions run by a scheduler, that it can be read in
+ * pages after reopening it, and that old records are deleted
+ */
+public class ExecutionHistoryTest {
+
+    /**
+     * Local path used as home directory of the history
+     */
+    private static final String HOST_PATH = "./execution-history-test";
+
+    /**
+     * Script runner that writes the parameter of each execution as output and returns the parity of its length as exit code
+     */
+    private static class EchoScriptRunner extends ScriptRunner {
+
+        @Override
+        protected boolean prepareScript(Script script) {
+            return true;
+        }
+
+        @Override
+        public boolean runScript(UUID scriptId, Object[] parameters) {
+            return true;
+        }
+
+        @Override
+        public int execute(UUID scriptId, Object[] parameters, OutputSink executionSink) throws IOException {
+            var output = parameters[0].toString();
+            executionSink.write(OutputStreamType.STDOUT, ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+            return output.length() % 2;
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        var path = Paths.get(HOST_PATH);
+
+        if (Files.exists(path)) {
+            try (var files = Files.walk(path)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Reads all records of the history, page by page
+     */
+    private static List<ExecutionRecord> readAll(ExecutionHistory history, int limit) throws IOException {
+        List<ExecutionRecord> records = new ArrayList<>();
+        String cursor = null;
+
+        while (true) {
+            var page = history.read(cursor, limit, record -> true);
+
+            if (page.records().isEmpty())
+                return records;
+
+            assertTrue("Page exceeds its limit", page.records().size() <= limit);
+            records.addAll(page.records());
+            cursor = page.nextCursor();
+        }
+    }
+
+    /**
+     * Checks that executions run by a scheduler are stored with their exit code and the tail of their output, and
+     * they are read in pages in the same order after reopening the history
+     * @throws IOException Thrown if history files can't be written or read
+     */
+    @Test
+    public void recordAndPageTest() throws IOException {
+        var nodeId = UUID.randomUUID();
+        var scriptId = UUID.randomUUID();
+        List<ExecutionHandle> handles = new ArrayList<>();
+
+        try (var history = new ExecutionHistory(HOST_PATH, nodeId, ExecutionHistory.DEFAULT_RETENTION, 8, 256, TimeUnit.HOURS.toMillis(1));
+            var scheduler = new ExecutionScheduler(new EchoScriptRunner(), 1, 100, history)) {
+            for (int i = 0; i < 10; i++) {
+                handles.add(scheduler.submit(scriptId, new Object[] { "output-" + "x".repeat(i + 2) }));
+            }
+
+            CompletableFuture.allOf(handles.stream().map(ExecutionHandle::result).toArray(CompletableFuture[]::new)).join();
+            assertTrue("History has not been split in segments", history.getSegmentCount() > 1);
+        }
+
+        try (var history = new ExecutionHistory(HOST_PATH, nodeId)) {
+            var records = readAll(history, 3);
+            assertEquals("Unexpected number of stored executions", 10, records.size());
+
+            for (int i = 0; i < records.size(); i++) {
+                var record = records.get(i);
+                var output = "output-" + "x".repeat(i + 2);
+                assertEquals("Executions are not in order", handles.get(i).getId(), record.executionId());
+                assertEquals("Node has not been stored", nodeId, record.nodeId());
+                assertEquals("Exit code has not been stored", output.length() % 2, record.exitCode());
+                assertEquals("Status has not been stored", record.exitCode() == 0 ? ExecutionStatus.SUCCEEDED : ExecutionStatus.FAILED, record.status());
+                assertEquals("Output size has not been stored", output.length(), record.outputSize());
+                assertEquals("Output tail has not been stored", output.substring(output.length() - 8), record.outputTail());
+                assertTrue("Output has not been marked as truncated", record.truncated());
+                assertTrue("Invalid duration", record.durationNanos() >= 0);
+            }
+
+            var filtered = history.read(null, 100, record -> record.exitCode() != 0);
+            assertEquals("Filter has not been applied", 5, filtered.records().size());
+        }
+    }
+
+    /**
+     * Checks that segments older than retention are deleted and a cursor of a deleted segment continues in the
+     * next one
+     * @throws IOException Thrown if history files can't be written or read
+     * @throws InterruptedException Thrown if test is interrupted while waiting
+     */
+    @Test
+    public void retentionTest() throws IOException, InterruptedException {
+        var scriptId = UUID.randomUUID();
+
+        try (var history = new ExecutionHistory(HOST_PATH, null, 200, 8, 1024, 50)) {
+            history.record(UUID.randomUUID(), scriptId, 0, 1, 0, ExecutionStatus.SUCCEEDED, 0, new byte[0]);
+            var oldCursor = history.read(null, 1, record -> true).nextCursor();
+            history.record(UUID.randomUUID(), scriptId, 0, 1, 0, ExecutionStatus.SUCCEEDED, 0, new byte[0]);
+            Thread.sleep(300);
+
+            var recent = history.record(UUID.randomUUID(), scriptId, 0, 1, 0, ExecutionStatus.SUCCEEDED, 0, new byte[0]);
+            Thread.sleep(300);
+            var last = history.record(UUID.randomUUID(), scriptId, 0, 1, 0, ExecutionStatus.SUCCEEDED, 0, new byte[0]);
+
+            var records = readAll(history, 10);
+            assertFalse("Expired records have not been deleted", records.stream().anyMatch(record -> !record.executionId().equals(recent.executionId())
+                && !record.executionId().equals(last.executionId())));
+            assertEquals("Records within retention have been deleted", 2, records.size());
+
+            var page = history.read(oldCursor, 10, record -> true);
+            assertEquals("Cursor of a deleted segment has not continued in the next one", records, page.records());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionHandle;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionStatus;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+
+/**
+ * Tests used to check the correct operation of {@link ExecutionScheduler} class. Scripts are not really executed, a 
+ * fake script runner records the executions instead
+ */
+public class ExecutionSchedulerTest {
+
+    /**
+     * Script runner that records the order of executions and the maximum number of concurrent ones. Each execution 
+     * waits for {@link #gate} before ending
+     */
+    private static class RecordingScriptRunner extends ScriptRunner {
+        private final List<UUID> executed = new ArrayList<>();
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @Override
+        protected boolean prepareScript(Script script) {
+            return true;
+        }
+
+        @Override
+        public boolean runScript(UUID scriptId, Object[] parameters) {
+            synchronized (executed) {
+                executed.add(scriptId);
+            }
+
+            maxConcurrent.accumulateAndGet(current.incrementAndGet(), Math::max);
+
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            current.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Checks that scheduler never runs more scripts than its concurrency limit and all submitted executions end
+     */
+    @Test
+    public void maxConcurrencyTest() {
+        var runner = new RecordingScriptRunner();
+
+        try (var scheduler = new ExecutionScheduler(runner, 3)) {
+            List<ExecutionHandle> handles = new ArrayList<>();
+
+            for (int i = 0; i < 20; i++) {
+                handles.add(scheduler.submit(UUID.randomUUID(), new Object[0]));
+            }
+
+            CompletableFuture.allOf(handles.stream().map(ExecutionHandle::result).toArray(CompletableFuture[]::new)).join();
+
+            assertTrue("Scheduler has exceeded its concurrency", runner.maxConcurrent.get() <= 3);
+            assertEquals("Not all executions have been run", 20, runner.executed.size());
+            assertTrue("Not all executions have succeeded", handles.stream().allMatch(handle -> handle.getStatus() == ExecutionStatus.SUCCEEDED));
+        }
+    }
+
+    /**
+     * Checks that higher priorities start first and, inside a priority, scripts take turns
+     */
+    @Test
+    public void priorityAndFairnessTest() {
+        var runner = new RecordingScriptRunner();
+        var blocker = UUID.randomUUID();
+        var scriptA = UUID.randomUUID();
+        var scriptB = UUID.randomUUID();
+        var scriptC = UUID.randomUUID();
+        runner.gate = new CountDownLatch(1);
+
+        try (var scheduler = new ExecutionScheduler(runner, 1)) {
+            List<ExecutionHandle> handles = new ArrayList<>();
+            handles.add(scheduler.submit(blocker, new Object[0]));
+            handles.add(scheduler.submit(scriptA, new Object[0]));
+            handles.add(scheduler.submit(scriptA, new Object[0]));
+            handles.add(scheduler.submit(scriptA, new Object[0]));
+            handles.add(scheduler.submit(scriptB, new Object[0]));
+            handles.add(scheduler.submit(scriptC, new Object[0], ExecutionPriority.HIGH));
+            var cancelled = scheduler.submit(scriptB, new Object[0], ExecutionPriority.LOW);
+
+            assertTrue("Queued execution has not been cancelled", cancelled.cancel());
+            assertEquals("Queued executions are not the expected", 5, scheduler.getQueued());
+
+            runner.gate.countDown();
+            CompletableFuture.allOf(handles.stream().map(ExecutionHandle::result).toArray(CompletableFuture[]::new)).join();
+
+            assertEquals("Executions order is not the expected", List.of(blocker, scriptC, scriptA, scriptB, scriptA, scriptA), runner.executed);
+            assertEquals("Cancelled execution has not the expected status", ExecutionStatus.CANCELLED, cancelled.getStatus());
+        }
+    }
+
+    /**
+     * Checks that equivalent executions submitted while one is queued share its run, and executions with different 
+     * parameters or submitted without coalescing run separately
+     */
+    @Test
+    public void coalescingTest() {
+        var runner = new RecordingScriptRunner();
+        var blocker = UUID.randomUUID();
+        var script = UUID.randomUUID();
+        runner.gate = new CountDownLatch(1);
+
+        try (var scheduler = new ExecutionScheduler(runner, 1)) {
+            var running = scheduler.submit(blocker, new Object[0]);
+            var first = scheduler.submit(script, new Object[] { "a" }, ExecutionPriority.NORMAL, true);
+            var duplicate = scheduler.submit(script, new Object[] { "a" }, ExecutionPriority.NORMAL, true);
+            var other = scheduler.submit(script, new Object[] { "b" }, ExecutionPriority.NORMAL, true);
+            var uncoalesced = scheduler.submit(script, new Object[] { "a" }, ExecutionPriority.NORMAL, false);
+
+            assertSame("Equivalent execution has not been merged", first, duplicate);
+            assertEquals("Coalesced executions are not the expected", 1, scheduler.getCoalesced());
+
+            runner.gate.countDown();
+            CompletableFuture.allOf(running.result(), first.result(), other.result(), uncoalesced.result()).join();
+
+            assertEquals("Executions are not the expected", List.of(blocker, script, script, script), runner.executed);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionPriority;
+import org.nicbrerod.scripts.manager.script.runner.execution.ExecutionScheduler;
+import org.nicbrerod.scripts.manager.script.runner.model.Script;
+import org.nicbrerod.scripts.manager.script.runner.periodic.CronTrigger;
+import org.nicbrerod.scripts.manager.script.runner.periodic.FixedRateTrigger;
+import org.nicbrerod.scripts.manager.script.runner.periodic.MisfirePolicy;
+import org.nicbrerod.scripts.manager.script.runner.periodic.PeriodicSchedule;
+import org.nicbrerod.scripts.manager.script.runner.periodic.PeriodicScheduler;
+import org.nicbrerod.scripts.manager.script.runner.periodic.Trigger;
+
+/**
+ * Tests used to check the correct operation of {@link PeriodicScheduler} class and its triggers. Scripts are not
+ * really executed, a fake script runner counts the executions instead
+ */
+public class PeriodicSchedulerTest {
+
+    /**
+     * Script runner that counts executions, each one lasting {@link #duration} milliseconds
+     */
+    private static class CountingScriptRunner extends ScriptRunner {
+        private final AtomicInteger executions = new AtomicInteger();
+        private final long duration;
+
+        private CountingScriptRunner(long duration) {
+            this.duration = duration;
+        }
+
+        @Override
+        protected boolean prepareScript(Script script) {
+            return true;
+        }
+
+        @Override
+        public boolean runScript(UUID scriptId, Object[] parameters) {
+            executions.incrementAndGet();
+
+            try {
+                Thread.sleep(duration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Calculates the next fire time of a cron expression, evaluated in UTC
+     * @param expression Cron expression
+     * @param after Time after which next fire must happen, in ISO format
+     * @return Next fire time, in ISO format
+     */
+    private static String nextCron(String expression, String after) {
+        var next = new CronTrigger(expression, ZoneOffset.UTC).nextFireTime(ZonedDateTime.parse(after).toInstant().toEpochMilli());
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(next), ZoneOffset.UTC).toString();
+    }
+
+    /**
+     * Waits until a schedule has no more fire times or a maximum time passes
+     * @param schedule Schedule to wait for
+     * @throws InterruptedException Thrown if system interrupts the wait
+     */
+    private static void awaitCancelled(PeriodicSchedule schedule) throws InterruptedException {
+        for (int i = 0; i < 100 && !schedule.isCancelled(); i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Checks next fire times of some cron expressions, including names, steps, leap years and seconds field
+     */
+    @Test
+    public void cronTriggerTest() {
+        assertEquals("Weekday range not respected", "2023-07-10T09:00Z", nextCron("*/15 9-17 * * MON-FRI", "2023-07-07T17:50:00Z"));
+        assertEquals("Leap day not found", "2024-02-29T00:00Z", nextCron("0 0 29 FEB *", "2023-03-01T00:00:00Z"));
+        assertEquals("Seconds field not respected", "2023-07-07T12:00:10Z", nextCron("*/10 * * * * *", "2023-07-07T12:00:05Z"));
+        assertEquals("Day of month and day of week are not combined", "2023-01-06T00:00Z", nextCron("0 0 13 * 5", "2023-01-01T00:00:00Z"));
+        assertEquals("Never matching expression returns a fire time", -1, new CronTrigger("0 0 30 2 *", ZoneOffset.UTC).nextFireTime(0));
+
+        try {
+            new CronTrigger("0 24 * * *");
+            fail("Invalid expression accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Checks that fixed rate fire times stay aligned to the start
+     */
+    @Test
+    public void fixedRateTriggerTest() {
+        var trigger = new FixedRateTrigger(1000, 100);
+
+        assertEquals("First fire is not the start", 1000, trigger.nextFireTime(0));
+        assertEquals("Fire is not aligned", 1100, trigger.nextFireTime(1000));
+        assertEquals("Fire is not aligned after a delay", 1400, trigger.nextFireTime(1357));
+    }
+
+    /**
+     * Checks that a schedule without overlapping skips fires while its previous execution is running
+     * @throws InterruptedException Thrown if system interrupts the wait for executions
+     */
+    @Test
+    public void overlapPreventionTest() throws InterruptedException {
+        var runner = new CountingScriptRunner(300);
+
+        try (var executions = new ExecutionScheduler(runner, 4); var scheduler = new PeriodicScheduler(executions)) {
+            var schedule = scheduler.schedule(UUID.randomUUID(), new Object[0], new FixedRateTrigger(System.currentTimeMillis(), 20)).get();
+
+            Thread.sleep(450);
+            scheduler.unschedule(schedule.getId());
+
+            assertEquals("Overlapped executions have been run", 2, runner.executions.get());
+            assertTrue("No fire has been skipped", schedule.getSkipped() > 0);
+            assertFalse("Removed schedule is still active", scheduler.getSchedule(schedule.getId()).isPresent());
+        }
+    }
+
+    /**
+     * Checks both misfire policies with a trigger whose only fire time is in the past
+     * @throws InterruptedException Thrown if system interrupts the wait for executions
+     */
+    @Test
+    public void misfirePolicyTest() throws InterruptedException {
+        var runner = new CountingScriptRunner(0);
+        var past = System.currentTimeMillis() - 10000;
+
+        try (var executions = new ExecutionScheduler(runner, 1); var scheduler = new PeriodicScheduler(executions, 1000)) {
+            var skipCalls = new AtomicInteger();
+            Trigger skipTrigger = after -> skipCalls.getAndIncrement() == 0 ? past : -1;
+            var skipped = scheduler.schedule(UUID.randomUUID(), new Object[0], skipTrigger, MisfirePolicy.SKIP, false, ExecutionPriority.NORMAL).get();
+            awaitCancelled(skipped);
+
+            assertEquals("Misfire not detected", 1, skipped.getMisfired());
+            assertEquals("Skipped misfire has been fired", 0, skipped.getFired());
+
+            var fireCalls = new AtomicInteger();
+            Trigger fireTrigger = after -> fireCalls.getAndIncrement() == 0 ? past : -1;
+            var fired = scheduler.schedule(UUID.randomUUID(), new Object[0], fireTrigger, MisfirePolicy.FIRE_NOW, false, ExecutionPriority.NORMAL).get();
+            awaitCancelled(fired);
+
+            assertEquals("Misfire not detected", 1, fired.getMisfired());
+            assertEquals("Misfire has not been fired", 1, fired.getFired());
+        }
+    }
+}
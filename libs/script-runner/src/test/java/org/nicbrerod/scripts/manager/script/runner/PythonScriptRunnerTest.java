@@ -2,8 +2,10 @@ package org.nicbrerod.scripts.manager.script.runner;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -18,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -77,6 +80,50 @@ public class PythonScriptRunnerTest {
     private static final Script parametersScript = new Script(UUID.randomUUID(), 
         new BufferedReader(new InputStreamReader(PythonScriptRunnerTest.class.getClassLoader().getResourceAsStream("python/python-param-test.py"), StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n")));
 
+    /**
+     * Script that ends with the exit code received as parameter
+     */
+    private static final Script exitScript = new Script(UUID.randomUUID(), loadScript("python/python-exit-test.py"));
+
+    /**
+     * Script that waits the seconds received as first parameter and writes the id of its process in the file received 
+     * as second parameter
+     */
+    private static final Script pidScript = new Script(UUID.randomUUID(), loadScript("python/python-pid-test.py"));
+
+    /**
+     * Reads the content of a test script
+     * @param resource Path of the script in the classpath
+     * @return Content of the script
+     */
+    private static String loadScript(String resource) {
+        return new BufferedReader(new InputStreamReader(PythonScriptRunnerTest.class.getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8))
+            .lines().collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Creates a script runner that runs scripts in warm workers
+     * @param workerMaxRuns Number of executions after which a worker is replaced by a new one
+     * @param workerIdleTimeout Time, in milliseconds, that a worker can stay without executions before being stopped
+     * @return Created script runner
+     * @throws IOException Thrown if host script of workers can't be loaded
+     */
+    private static PythonScriptRunner workerRunner(int workerMaxRuns, long workerIdleTimeout) throws IOException {
+        var containerName = container.getContainerName();
+        return new PythonScriptRunner(pyExecutable(containerName), venvExecutable, "./python-test", venvInstallOpts(containerName), 
+            venvExecOpts(containerName), 0, 0, workerMaxRuns, workerIdleTimeout);
+    }
+
+    /**
+     * Reads the process id written by {@link #pidScript}
+     * @param file Name of the file passed to the script
+     * @return Id of the process that ran the script
+     * @throws IOException Thrown if file can't be read
+     */
+    private static String readPid(String file) throws IOException {
+        return Files.readString(Paths.get(HOST_PATH, pidScript.id().toString(), file));
+    }
+
     /**
      * Cleans all files created locally from script
      * @throws IOException Thrown if there are any problem during I/O operations, like check if file exists or deleting folder
@@ -226,6 +273,160 @@ public class PythonScriptRunnerTest {
         assertEquals("Script not executed correctly, file content is not the expected", "./script.py,param1,34,123.5", content.get(0));
     }
     
+    /**
+     * Checks that a script run by a new process and by a warm worker receives the same arguments, even if a parameter 
+     * is empty or has whitespaces
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     * @throws ScriptTimeoutException Thrown if script to run exceeds its timeout
+     */
+    @Test
+    public void workerParametersTest() throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        var containerName = container.getContainerName();
+        var parameters = new Object[] { "a b", "", 34 };
+        var processRunner = new PythonScriptRunner(pyExecutable(containerName), venvExecutable, "./python-test", venvInstallOpts(containerName), venvExecOpts(containerName));
+        var output = Paths.get(HOST_PATH, parametersScript.id().toString(), "params-test.txt");
+
+        assertTrue("Error preparing script", processRunner.registerScript(parametersScript));
+        assertTrue("Error running script in a new process", processRunner.runScript(parametersScript.id(), parameters));
+        var processArguments = Files.readString(output);
+
+        try (var scriptRunner = workerRunner(10, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(parametersScript));
+            assertTrue("Error running script in a worker", scriptRunner.runScript(parametersScript.id(), parameters));
+            assertEquals("Worker has not been used", 1, scriptRunner.getWorkerPool().size());
+        }
+
+        assertEquals("Script in a new process received unexpected arguments", "./script.py,a b,,34", processArguments);
+        assertEquals("Script in a worker received different arguments", processArguments, Files.readString(output));
+    }
+
+    /**
+     * Checks that a warm worker answers with the exit code of each execution
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     * @throws ScriptTimeoutException Thrown if script to run exceeds its timeout
+     */
+    @Test
+    public void workerExitCodeTest() throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        try (var scriptRunner = workerRunner(10, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(exitScript));
+
+            assertEquals("Unexpected exit code", 3, scriptRunner.execute(exitScript.id(), new Object[] { 3 }, null));
+            assertEquals("Unexpected exit code", 0, scriptRunner.execute(exitScript.id(), new Object[] { 0 }, null));
+            assertEquals("Executions have not been run by the same worker", 1, scriptRunner.getWorkerPool().size());
+        }
+    }
+
+    /**
+     * Checks that a worker is replaced by a new process after its maximum number of executions
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     * @throws ScriptTimeoutException Thrown if script to run exceeds its timeout
+     */
+    @Test
+    public void workerRecycleTest() throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        try (var scriptRunner = workerRunner(2, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(pidScript));
+
+            assertTrue("Error running script", scriptRunner.runScript(pidScript.id(), new Object[] { 0, "first.txt" }));
+            assertEquals("Worker has been recycled before its maximum number of executions", 1, scriptRunner.getWorkerPool().size());
+            assertTrue("Error running script", scriptRunner.runScript(pidScript.id(), new Object[] { 0, "second.txt" }));
+            assertEquals("Worker has not been recycled after its maximum number of executions", 0, scriptRunner.getWorkerPool().size());
+            assertTrue("Error running script", scriptRunner.runScript(pidScript.id(), new Object[] { 0, "third.txt" }));
+
+            assertEquals("Executions before recycling have not been run by the same worker", readPid("first.txt"), readPid("second.txt"));
+            assertNotEquals("Execution after recycling has been run by the old worker", readPid("second.txt"), readPid("third.txt"));
+        }
+    }
+
+    /**
+     * Checks that a worker is stopped when it stays idle more than its timeout
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     * @throws ScriptTimeoutException Thrown if script to run exceeds its timeout
+     * @throws InterruptedException Thrown if test is interrupted while waiting for the eviction
+     */
+    @Test
+    public void workerIdleEvictionTest() throws IOException, ScriptNotExistException, ScriptTimeoutException, InterruptedException {
+        try (var scriptRunner = workerRunner(10, 500)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(exitScript));
+            assertEquals("Unexpected exit code", 0, scriptRunner.execute(exitScript.id(), new Object[] { 0 }, null));
+            assertEquals("Worker has been evicted while it was running", 1, scriptRunner.getWorkerPool().size());
+
+            Thread.sleep(2000);
+
+            assertEquals("Idle worker has not been evicted", 0, scriptRunner.getWorkerPool().size());
+        }
+    }
+
+    /**
+     * Checks that an execution requested while the worker of the script is busy is run in a new process, without 
+     * waiting for the worker
+     * @throws Exception Thrown if any execution fails
+     */
+    @Test
+    public void workerBusyFallbackTest() throws Exception {
+        var executor = Executors.newSingleThreadExecutor();
+
+        try (var scriptRunner = workerRunner(10, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(pidScript));
+            var slow = executor.submit(() -> scriptRunner.runScript(pidScript.id(), new Object[] { 5, "worker.txt" }));
+            // Worker is started and reserved by the first execution
+            Thread.sleep(2000);
+
+            assertTrue("Error running script", scriptRunner.runScript(pidScript.id(), new Object[] { 0, "process.txt" }));
+            assertFalse("Execution waited for the busy worker", slow.isDone());
+            assertTrue("Error running script in the worker", slow.get());
+
+            assertNotEquals("Both executions have been run by the worker", readPid("worker.txt"), readPid("process.txt"));
+            assertEquals("Worker has been stopped by the execution in a new process", 1, scriptRunner.getWorkerPool().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the worker of an script is stopped when a new version of the script is registered
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     * @throws ScriptTimeoutException Thrown if script to run exceeds its timeout
+     */
+    @Test
+    public void workerEvictedOnRegisterTest() throws IOException, ScriptNotExistException, ScriptTimeoutException {
+        try (var scriptRunner = workerRunner(10, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(exitScript));
+            assertEquals("Unexpected exit code", 5, scriptRunner.execute(exitScript.id(), new Object[] { 5 }, null));
+            assertEquals("Worker has not been started", 1, scriptRunner.getWorkerPool().size());
+
+            var newVersion = new Script(exitScript.id(), "import sys\n\nsys.exit(int(sys.argv[1]) + 1)");
+            assertTrue("Error preparing new version of script", scriptRunner.registerScript(newVersion));
+            assertEquals("Worker of previous version has not been stopped", 0, scriptRunner.getWorkerPool().size());
+            assertEquals("Previous version of script has been run", 6, scriptRunner.execute(exitScript.id(), new Object[] { 5 }, null));
+        }
+    }
+
+    /**
+     * Checks that a worker that exceeds the timeout of the script is stopped, so next execution starts a new one
+     * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
+     * @throws ScriptNotExistException Thrown if script to run doesn't exists
+     */
+    @Test
+    public void workerTimeoutTest() throws IOException, ScriptNotExistException {
+        var shortTimeoutScript = new Script(timeoutScript.id(), timeoutScript.script(), new String[]{}, 2, TimeUnit.SECONDS);
+
+        try (var scriptRunner = workerRunner(10, 60000)) {
+            assertTrue("Error preparing script", scriptRunner.registerScript(shortTimeoutScript));
+
+            try {
+                scriptRunner.runScript(shortTimeoutScript.id());
+                fail("Execution has not exceeded its timeout");
+            } catch (ScriptTimeoutException e) {
+                assertEquals("Worker that exceeded the timeout has not been stopped", 0, scriptRunner.getWorkerPool().size());
+            }
+        }
+    }
+
     /**
      * Used to clear local-generated files by a test execution before another test
      * @throws IOException Throws if any I/O operation fails, like file-based operations, or process streams management operations
@@ -0,0 +1,80 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.output.CompositeSink;
+import org.nicbrerod.scripts.manager.script.runner.output.LimitedSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputSink;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+import org.nicbrerod.scripts.manager.script.runner.output.TailSink;
+
+/**
+ * Tests used to check the correct operation of {@link ScriptOutputGobbler} class and the output sinks
+ */
+public class ScriptOutputGobblerTest {
+
+    /**
+     * Sink that stores all received bytes, used to check what other sinks pass to their delegates
+     */
+    private static class CollectorSink implements OutputSink {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public void write(OutputStreamType type, ByteBuffer chunk) {
+            var bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            received.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Checks that all bytes of a stream are delivered, in order, to all sinks, reading it with a buffer smaller than the stream
+     */
+    @Test
+    public void drainStreamTest() {
+        var content = "first line\nsecond line\nthird line without end".getBytes(StandardCharsets.UTF_8);
+        var collector = new CollectorSink();
+        var tail = new TailSink(16);
+        var gobbler = new ScriptOutputGobbler(new ByteArrayInputStream(content), OutputStreamType.STDOUT, new CompositeSink(List.of(collector, tail)), 7);
+
+        gobbler.run();
+
+        assertEquals("Read bytes are not the expected", content.length, gobbler.getBytesRead());
+        assertArrayEquals("Sink has not received all the stream", content, collector.received.toByteArray());
+        assertEquals("Tail is not the end of the stream", "line without end", tail.tailAsString());
+        assertTrue("Tail is not marked as truncated", tail.isTruncated());
+    }
+
+    /**
+     * Checks that a limited sink passes only the allowed bytes of each stream and counts the discarded ones
+     */
+    @Test
+    public void limitedSinkTest() throws Exception {
+        var collector = new CollectorSink();
+        var limited = new LimitedSink(collector, 5);
+
+        limited.write(OutputStreamType.STDOUT, ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+        limited.write(OutputStreamType.STDOUT, ByteBuffer.wrap("defgh".getBytes(StandardCharsets.UTF_8)));
+        limited.write(OutputStreamType.STDERR, ByteBuffer.wrap("123456".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("Limited sink has not passed the expected bytes", "abcde12345", collector.received.toString(StandardCharsets.UTF_8));
+        assertEquals("Discarded bytes are not the expected", 4, limited.getDiscarded());
+    }
+
+    /**
+     * Checks that a tail sink without capacity is rejected when created, instead of failing on its first write
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTailSinkTest() {
+        new TailSink(0);
+    }
+}
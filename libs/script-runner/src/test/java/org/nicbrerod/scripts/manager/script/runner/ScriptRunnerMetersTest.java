@@ -0,0 +1,84 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.metrics.ScriptRunnerMeters;
+import org.nicbrerod.scripts.manager.script.runner.output.OutputStreamType;
+import org.nicbrerod.scripts.manager.script.runner.py.VirtualEnvPool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests used to check that {@link ScriptRunnerMeters} records execution times by outcome, counts the output of
+ * each script until it's removed and publishes the claims of the virtual environment pool
+ */
+public class ScriptRunnerMetersTest {
+
+    /**
+     * Checks that each execution is recorded in the timer of its outcome
+     */
+    @Test
+    public void executionTimesTest() {
+        var registry = new SimpleMeterRegistry();
+        var meters = new ScriptRunnerMeters(registry, null);
+        var start = System.nanoTime();
+
+        meters.prepared(start);
+        meters.executed(start, 0);
+        meters.executed(start, 0);
+        meters.executed(start, 2);
+        meters.executed(start, -1);
+
+        assertEquals(1, registry.get(ScriptRunnerMeters.PREPARE_TIME).timer().count());
+        assertEquals(2, registry.get(ScriptRunnerMeters.RUN_TIME).tag("outcome", ScriptRunnerMeters.OUTCOME_SUCCESS).timer().count());
+        assertEquals(1, registry.get(ScriptRunnerMeters.RUN_TIME).tag("outcome", ScriptRunnerMeters.OUTCOME_FAILURE).timer().count());
+        assertEquals(1, registry.get(ScriptRunnerMeters.RUN_TIME).tag("outcome", ScriptRunnerMeters.OUTCOME_ERROR).timer().count());
+    }
+
+    /**
+     * Checks that output bytes are counted per script, without moving the buffer read by other sinks, and the counter
+     * of an script is removed with it
+     * @throws IOException Never thrown by counting sinks
+     */
+    @Test
+    public void outputBytesTest() throws IOException {
+        var registry = new SimpleMeterRegistry();
+        var meters = new ScriptRunnerMeters(registry, null);
+        var scriptId = UUID.randomUUID();
+        var chunk = ByteBuffer.wrap("hello\n".getBytes(StandardCharsets.UTF_8));
+
+        meters.outputCounter(scriptId).write(OutputStreamType.STDOUT, chunk);
+        meters.outputCounter(scriptId).write(OutputStreamType.STDERR, chunk);
+
+        assertEquals(6, chunk.remaining());
+        assertEquals(12, registry.get(ScriptRunnerMeters.OUTPUT).tag("script", scriptId.toString()).counter().count(), 0);
+
+        meters.scriptRemoved(scriptId);
+        assertNull(registry.find(ScriptRunnerMeters.OUTPUT).tag("script", scriptId.toString()).counter());
+    }
+
+    /**
+     * Checks that claims of an empty pool are published as misses
+     */
+    @Test
+    public void venvPoolClaimsTest() {
+        var registry = new SimpleMeterRegistry();
+        var meters = new ScriptRunnerMeters(registry, null);
+        var pool = new VirtualEnvPool("./meters-test", 1, 1000, path -> true);
+        meters.bindVenvPool(pool);
+
+        pool.claim("first");
+        pool.claim("second");
+
+        assertEquals(0, registry.get(ScriptRunnerMeters.VENV_POOL_CLAIMS).tag("result", ScriptRunnerMeters.RESULT_HIT).functionCounter().count(), 0);
+        assertEquals(2, registry.get(ScriptRunnerMeters.VENV_POOL_CLAIMS).tag("result", ScriptRunnerMeters.RESULT_MISS).functionCounter().count(), 0);
+        assertEquals(0, registry.get(ScriptRunnerMeters.VENV_POOL_AVAILABLE).gauge().value(), 0);
+    }
+}
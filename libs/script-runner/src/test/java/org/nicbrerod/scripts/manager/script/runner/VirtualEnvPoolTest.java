@@ -0,0 +1,130 @@
+package org.nicbrerod.scripts.manager.script.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nicbrerod.scripts.manager.script.runner.py.VirtualEnvPool;
+
+/**
+ * Tests used to check the correct operation of {@link VirtualEnvPool} class. Environments are simulated
+ * with empty folders, so no Python interpreter is needed
+ */
+public class VirtualEnvPoolTest {
+
+    /**
+     * Local path used as home directory of the pool
+     */
+    private static final String HOST_PATH = "./venv-pool-test";
+
+    /**
+     * Creates a folder to simulate a virtual environment
+     * @param relativePath Path of the environment, relative to {@link #HOST_PATH}
+     * @return True if folder was created
+     */
+    private static boolean fakeVenv(String relativePath) {
+        return new File(HOST_PATH, relativePath).mkdirs();
+    }
+
+    /**
+     * Checks that pool is filled in background and a claimed environment is moved to the requested folder
+     * @throws IOException Thrown if pool folder can't be created
+     * @throws InterruptedException Thrown if system interrupts the wait for pool refill
+     */
+    @Test
+    public void claimFromPoolTest() throws IOException, InterruptedException {
+        var pool = new VirtualEnvPool(HOST_PATH, 2, 10, VirtualEnvPoolTest::fakeVenv);
+        pool.start();
+
+        for (int i = 0; i < 100 && pool.available() < 2; i++) {
+            Thread.sleep(20);
+        }
+
+        pool.stop();
+
+        assertEquals("Pool has not been filled", 2, pool.available());
+        assertTrue("Error claiming environment from pool", pool.claim("first"));
+        assertTrue("Error claiming environment from pool", pool.claim("second"));
+        assertFalse("Empty pool returns an environment", pool.claim("third"));
+
+        assertTrue("Claimed environment has not been moved", Files.isDirectory(Paths.get(HOST_PATH, "first")));
+        assertTrue("Claimed environment has not been moved", Files.isDirectory(Paths.get(HOST_PATH, "second")));
+        assertEquals("Pool hits are not the expected", 2, pool.getHits());
+        assertEquals("Pool misses are not the expected", 1, pool.getMisses());
+    }
+
+    /**
+     * Checks that a pool without size is rejected when created
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeTest() {
+        new VirtualEnvPool(HOST_PATH, 0, 10, VirtualEnvPoolTest::fakeVenv);
+    }
+
+    /**
+     * Checks that a pool without refill rate is rejected when created, not when started
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRefillRateTest() {
+        new VirtualEnvPool(HOST_PATH, 2, 0, VirtualEnvPoolTest::fakeVenv);
+    }
+
+    /**
+     * Checks that an existing folder, like the environment of a previous version of a script, is replaced by the 
+     * claimed environment, and a target that can't be replaced doesn't drain the pool
+     * @throws IOException Thrown if pool folder can't be created
+     * @throws InterruptedException Thrown if system interrupts the wait for pool refill
+     */
+    @Test
+    public void claimExistingTargetTest() throws IOException, InterruptedException {
+        var pool = new VirtualEnvPool(HOST_PATH, 2, 10, VirtualEnvPoolTest::fakeVenv);
+        pool.start();
+
+        for (int i = 0; i < 100 && pool.available() < 2; i++) {
+            Thread.sleep(20);
+        }
+
+        pool.stop();
+
+        var previous = Paths.get(HOST_PATH, "script", "old.txt");
+        Files.createDirectories(previous.getParent());
+        Files.writeString(previous, "previous version");
+
+        assertTrue("Error replacing existing environment", pool.claim("script"));
+        assertFalse("Previous environment has not been replaced", Files.exists(previous));
+        assertEquals("Pool has not one environment left", 1, pool.available());
+
+        // a regular file as parent folder makes the move fail because of the target
+        Files.writeString(Paths.get(HOST_PATH, "blocker"), "not a folder");
+
+        assertFalse("Environment claimed for an invalid target", pool.claim("blocker/script"));
+        assertEquals("Invalid target has drained the pool", 1, pool.available());
+    }
+
+    /**
+     * Used to clear local-generated files between tests
+     * @throws IOException Throws if any I/O operation fails
+     */
+    @Before
+    @After
+    public void cleanHostPath() throws IOException {
+        var hostPath = Paths.get(HOST_PATH);
+
+        if (Files.exists(hostPath)) {
+            Files.walk(hostPath)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+}
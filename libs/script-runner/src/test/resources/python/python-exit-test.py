@@ -0,0 +1,3 @@
+import sys
+
+sys.exit(int(sys.argv[1]))
\ No newline at end of file
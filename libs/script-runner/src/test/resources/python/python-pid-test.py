@@ -0,0 +1,8 @@
+import os
+import sys
+import time
+
+time.sleep(float(sys.argv[1]))
+
+with open(sys.argv[2], 'w+') as file:
+    file.write(str(os.getpid()))
\ No newline at end of file